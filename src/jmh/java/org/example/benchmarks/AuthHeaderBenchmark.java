@@ -0,0 +1,46 @@
+package org.example.benchmarks;
+
+import org.example.ApiConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding the basic Authorization header per request versus once.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthHeaderBenchmark {
+
+    private String username = "admin";
+    private String password = "password";
+    private String precomputed;
+
+    @Setup
+    public void setUp() {
+        precomputed = ApiConfig.basicAuthorization(username, password);
+    }
+
+    @Benchmark
+    public String encodePerRequest() {
+        return ApiConfig.basicAuthorization(username, password);
+    }
+
+    @Benchmark
+    public String precomputed() {
+        return precomputed;
+    }
+}
@@ -0,0 +1,94 @@
+package org.example.benchmarks;
+
+import io.restassured.path.json.JsonPath;
+import org.example.Book;
+import org.example.BookCodec;
+import org.example.Json;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BookCodec} against the other ways a book becomes bytes and back.
+ *
+ * RestAssured's object mapping needs Jackson, Gson or JSON-B on the class
+ * path and this project has none, so its default here is JsonPath over
+ * Groovy's JsonSlurper, the path {@code response.jsonPath()} takes. Run
+ * with {@code -prof gc} to see allocation per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookCodecBenchmark {
+
+    private final Book book = new Book(12345, "The World: A Family History", "British historian Simon Sebag Montefiore");
+    private byte[] json;
+
+    @Setup
+    public void setUp() {
+        json = BookCodec.encode(book);
+    }
+
+    // what UpdateBookTest used to send
+    @Benchmark
+    public byte[] encodeStringFormat() {
+        return String.format("{\n" +
+                "    \"id\": %d,\n" +
+                "    \"title\": \"%s\",\n" +
+                "    \"author\": \"%s\"\n" +
+                "}", book.getId(), book.getTitle(), book.getAuthor()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] encodeJsonMap() {
+        return Json.write(Map.of("id", book.getId(), "title", book.getTitle(), "author", book.getAuthor()))
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] encodeCodec() {
+        return BookCodec.encode(book);
+    }
+
+    // the server's path: pooled buffer, written straight to the response stream
+    @Benchmark
+    public int encodeCodecPooled() {
+        BookCodec.Buffer buffer = BookCodec.buffer();
+        BookCodec.encode(book, buffer);
+        int length = buffer.length();
+        BookCodec.release(buffer);
+        return length;
+    }
+
+    @Benchmark
+    public Book decodeJsonPath() {
+        JsonPath path = JsonPath.from(new String(json, StandardCharsets.UTF_8));
+        return new Book(path.getLong("id"), path.getString("title"), path.getString("author"));
+    }
+
+    @Benchmark
+    public Book decodeJsonMap() {
+        Map<String, Object> fields = Json.parseObject(new String(json, StandardCharsets.UTF_8));
+        return new Book(((Number) fields.get("id")).longValue(), (String) fields.get("title"),
+                (String) fields.get("author"));
+    }
+
+    @Benchmark
+    public Book decodeCodec() {
+        return BookCodec.decode(json);
+    }
+}
@@ -0,0 +1,83 @@
+package org.example.benchmarks;
+
+import org.example.Book;
+import org.example.BookLog;
+import org.example.BookStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Durable creates into a store opened on a temporary directory with each
+ * {@code fsync} policy, every one waiting in {@link BookStore#sync()}
+ * until its write is as durable as the policy makes it, as the server's
+ * POST handler does. {@code memory} is the same create on a store without
+ * a log. Writers that sync at the same time share fsyncs, so ALWAYS gains
+ * most from more threads; run with e.g. {@code -t 1} or {@code -t 64} to
+ * see it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Threads(8)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class BookLogBenchmark {
+
+    @Param({"memory", "ALWAYS", "PERIODIC", "NEVER"})
+    private String fsync;
+
+    private Path directory;
+    private BookStore store;
+
+    @Setup
+    public void setUp() throws IOException {
+        if (fsync.equals("memory")) {
+            store = new BookStore();
+        } else {
+            directory = Files.createTempDirectory("book-log-benchmark");
+            store = BookStore.open(directory, BookLog.Fsync.valueOf(fsync));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        store.close();
+        if (directory != null) {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Benchmark
+    public Book create() {
+        Book book = store.insertWithNewId("Durable title", "Durable author");
+        store.sync();
+        return book;
+    }
+
+    static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.example.benchmarks;
+
+import org.example.Book;
+import org.example.BookLog;
+import org.example.BookStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opening a store whose directory holds {@code books} books, that is
+ * reading the newest snapshot and the log after it and building the map
+ * and search index from them. With {@code source} = {@code snapshot} the
+ * books were written with the default snapshot interval, so recovery
+ * reads a snapshot and at most a million logged writes; with {@code log}
+ * no snapshot was taken and every write is replayed.
+ *
+ * Book i is titled "w{i mod 1000} v{i/1000 mod 1000}" and written by one
+ * of 500,000 authors, so the index has a bounded vocabulary; ten million
+ * books with a unique word each need more heap than most machines have.
+ * Writing the books takes minutes at ten million, and recovering them
+ * needs the 8g heap below.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class BookRecoveryBenchmark {
+
+    @Param({"1000000", "10000000"})
+    private int books;
+
+    @Param({"snapshot", "log"})
+    private String source;
+
+    private Path directory;
+    private BookStore recovered;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("book-recovery-benchmark");
+        int snapshotEvery = source.equals("snapshot") ? BookLog.DEFAULT_SNAPSHOT_EVERY : Integer.MAX_VALUE;
+        BookStore store = BookStore.open(directory, BookLog.Fsync.NEVER, snapshotEvery);
+        for (int i = 1; i <= books; i++) {
+            store.insertIfAbsent(new Book(i, "w" + i % 1000 + " v" + (i / 1000) % 1000, "Author " + i % 500_000));
+        }
+        store.sync();
+        store.close();
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeRecovered() {
+        if (recovered != null) {
+            recovered.close();
+            recovered = null;
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BookLogBenchmark.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public int open() throws IOException {
+        recovered = BookStore.open(directory, BookLog.Fsync.NEVER);
+        return recovered.size();
+    }
+}
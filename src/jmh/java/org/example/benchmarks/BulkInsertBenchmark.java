@@ -0,0 +1,122 @@
+package org.example.benchmarks;
+
+import org.example.AsyncBooksClient;
+import org.example.Book;
+import org.example.BookResponse;
+import org.example.BookStore;
+import org.example.Main;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Seeding {@code books} books into a freshly seeded in-process stand-in, one
+ * POST per book against one POST /api/books/_bulk for all of them. Each
+ * measurement is one whole seeding, so items per second is {@code books}
+ * divided by the score. Single creates keep {@code inFlight} requests
+ * going at once, the most favourable way to send them one by one.
+ *
+ * The million-book single run takes minutes; skip it with
+ * {@code -Djmh.args="BulkInsert -p books=1000,100000"}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkInsertBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int books;
+
+    @Param({"64"})
+    private int inFlight;
+
+    private Main server;
+    private AsyncBooksClient client;
+    private BookStore.Snapshot seeded;
+
+    @Setup
+    public void setUp() {
+        server = Main.start(0);
+        client = AsyncBooksClient.forServer(server);
+        seeded = server.store().snapshot();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetStore() {
+        server.store().restore(seeded);
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public int single() throws InterruptedException {
+        Semaphore permits = new Semaphore(inFlight);
+        AtomicInteger created = new AtomicInteger();
+        for (Book book : books()) {
+            permits.acquire();
+            client.asAdmin().create(book).whenComplete((response, error) -> {
+                if (response != null && response.getStatusCode() == 201) {
+                    created.incrementAndGet();
+                }
+                permits.release();
+            });
+        }
+        permits.acquire(inFlight);
+        return requireAll(created.get());
+    }
+
+    @Benchmark
+    public int bulk() {
+        CompletableFuture<BookResponse> response = client.asAdmin().bulkCreate(books());
+        response.join().statusCode(200).field("created", books);
+        return books;
+    }
+
+    private int requireAll(int created) {
+        if (created != books) {
+            throw new IllegalStateException("Created " + created + " of " + books + " books");
+        }
+        return created;
+    }
+
+    /** Books 2 to {@code books + 1}, next to the seeded book 1. */
+    private Iterable<Book> books() {
+        return () -> new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < books;
+            }
+
+            @Override
+            public Book next() {
+                next++;
+                return new Book(next + 1, "Seeded title " + next, "Seeded author " + next);
+            }
+        };
+    }
+}
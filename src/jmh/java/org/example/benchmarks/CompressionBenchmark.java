@@ -0,0 +1,140 @@
+package org.example.benchmarks;
+
+import org.example.ApiConfig;
+import org.example.Main;
+import org.example.StreamingBookAssertions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * GET /api/books of a {@code books}-book catalog with the listing gzipped
+ * at {@code level}, or sent uncompressed with "off", read end to end: the
+ * body is inflated as it arrives and streamed through
+ * {@link StreamingBookAssertions}. The score is the latency of one
+ * listing. After each iteration the benchmark prints the body bytes on
+ * the wire and the process CPU time per listing, server and client
+ * together, since both run in this JVM.
+ *
+ * Over loopback the wire is nearly free, so compression only costs
+ * latency here; the bytes column is what it saves on a real network.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompressionBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int books;
+
+    @Param({"off", "1", "6", "9"})
+    private String level;
+
+    private Main server;
+    private HttpClient client;
+    private HttpRequest request;
+    private long wireBytes;
+    private long listings;
+    private long cpuAtStart;
+
+    @Setup
+    public void setUp() {
+        server = Main.start(0);
+        for (int i = server.store().size(); i < books; i++) {
+            server.store().insertWithNewId("Seeded title " + i, "Seeded author " + i);
+        }
+        if (level.equals("off")) {
+            server.setCompression(6, Integer.MAX_VALUE);
+        } else {
+            server.setCompression(Integer.parseInt(level), 1024);
+        }
+        ApiConfig config = ApiConfig.load();
+        client = HttpClient.newHttpClient();
+        request = HttpRequest.newBuilder(URI.create(server.baseUri() + Main.BOOKS_PATH))
+                .header("Authorization", ApiConfig.basicAuthorization(config.userUsername(), config.userPassword()))
+                .header("Accept-Encoding", "gzip")
+                .build();
+    }
+
+    @Setup(Level.Iteration)
+    public void startCounting() {
+        wireBytes = 0;
+        listings = 0;
+        cpuAtStart = processCpuTime();
+    }
+
+    @TearDown(Level.Iteration)
+    public void printCounts() {
+        System.out.printf("%n%d books, level %s: %d bytes on the wire, %.3f ms CPU per listing%n",
+                books, level, wireBytes / listings, (processCpuTime() - cpuAtStart) / 1e6 / listings);
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public long list() throws IOException, InterruptedException {
+        HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        CountingStream wire = new CountingStream(response.body());
+        boolean gzipped = response.headers().firstValue("Content-Encoding").isPresent();
+        long count = StreamingBookAssertions.assertThatBooks(gzipped ? new GZIPInputStream(wire, 8192) : wire)
+                .hasCount(books)
+                .verify();
+        wireBytes += wire.bytes;
+        listings++;
+        return count;
+    }
+
+    private static long processCpuTime() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+                .getProcessCpuTime();
+    }
+
+    private static final class CountingStream extends FilterInputStream {
+        long bytes;
+
+        CountingStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            bytes += b < 0 ? 0 : 1;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            bytes += Math.max(read, 0);
+            return read;
+        }
+    }
+}
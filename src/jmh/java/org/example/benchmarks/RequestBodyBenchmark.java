@@ -0,0 +1,73 @@
+package org.example.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The three ways the tests build request bodies.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestBodyBenchmark {
+
+    private int bookId = 1;
+    private String title = "The World: A Family History";
+    private String author = "British historian Simon Sebag Montefiore";
+
+    // UpdateBookTest
+    @Benchmark
+    public String stringFormat() {
+        return String.format("{\n" +
+                "    \"id\": %d,\n" +
+                "    \"title\": \"%s\",\n" +
+                "    \"author\": \"%s\"\n" +
+                "}", bookId, title, author);
+    }
+
+    // APITest, with the values spliced in
+    @Benchmark
+    public String concatenation() {
+        return "{\n" +
+                "    \"id\": " + bookId + ",\n" +
+                "    \"title\": \"" + title + "\",\n" +
+                "    \"author\": \"" + author + "\"\n" +
+                "}";
+    }
+
+    // LibraryAPITest, parameterised the way a text block has to be
+    @Benchmark
+    public String textBlockFormatted() {
+        return """
+        {
+            "id": %d,
+            "title": "%s",
+            "author": "%s"
+        }
+        """.formatted(bookId, title, author);
+    }
+
+    // LibraryAPITest as written: a compile-time constant
+    @Benchmark
+    public String textBlockConstant() {
+        return """
+        {
+            "id": 6,
+            "title": "Jadunama",
+            "author": "Javed Akhtar and Arvind Mandloi"
+        }
+        """;
+    }
+}
@@ -0,0 +1,68 @@
+package org.example.benchmarks;
+
+import io.restassured.builder.RequestSpecBuilder;
+import io.restassured.specification.RequestSpecification;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static io.restassured.RestAssured.given;
+import static io.restassured.RestAssured.preemptive;
+
+/**
+ * Cost of building the request specification every test starts with,
+ * before anything goes on the wire.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestSpecBenchmark {
+
+    private static final String BODY = "{\"title\": \"New Book Title\", \"author\": \"Author Name\"}";
+
+    private RequestSpecification prebuilt;
+
+    @Setup
+    public void setUp() {
+        prebuilt = new RequestSpecBuilder()
+                .setBaseUri("http://localhost:7081")
+                .setAuth(preemptive().basic("admin", "password"))
+                .setContentType("application/json")
+                .build();
+    }
+
+    // the chain used throughout APITest and UpdateBookTest
+    @Benchmark
+    public RequestSpecification givenPreemptiveBasic() {
+        return given()
+                .auth().preemptive().basic("admin", "password")
+                .contentType("application/json")
+                .body(BODY);
+    }
+
+    @Benchmark
+    public RequestSpecification givenWithoutAuth() {
+        return given()
+                .contentType("application/json")
+                .body(BODY);
+    }
+
+    @Benchmark
+    public RequestSpecification givenFromPrebuiltSpec() {
+        return given()
+                .spec(prebuilt)
+                .body(BODY);
+    }
+}
@@ -0,0 +1,89 @@
+package org.example.benchmarks;
+
+import io.restassured.path.json.JsonPath;
+import org.example.Book;
+import org.example.Json;
+import org.hamcrest.Matcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * What {@code .body("title", equalTo(...))} and {@code response.asString()}
+ * cost once the bytes have arrived: a single book and a listing of
+ * {@code books} books.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseParsingBenchmark {
+
+    private static final String TITLE = "The World: A Family History";
+
+    @Param({"1", "100", "10000"})
+    public int books;
+
+    private byte[] single;
+    private byte[] listing;
+    private String singleText;
+    private Matcher<Object> titleMatcher;
+
+    @Setup
+    public void setUp() {
+        Book book = new Book(1, TITLE, "British historian Simon Sebag Montefiore");
+        single = book.toJson().getBytes(StandardCharsets.UTF_8);
+        singleText = book.toJson();
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 1; i <= books; i++) {
+            if (i > 1) {
+                json.append(',');
+            }
+            json.append(new Book(i, TITLE, "Author " + i).toJson());
+        }
+        listing = json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+        titleMatcher = equalTo(TITLE);
+    }
+
+    @Benchmark
+    public String asStringSingle() {
+        return new String(single, StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String asStringListing() {
+        return new String(listing, StandardCharsets.UTF_8);
+    }
+
+    // the JsonPath lookup plus matcher behind .body("title", equalTo(...))
+    @Benchmark
+    public boolean bodyPathAssertionSingle() {
+        return titleMatcher.matches(JsonPath.from(singleText).get("title"));
+    }
+
+    @Benchmark
+    public List<String> bodyPathListing() {
+        return JsonPath.from(new String(listing, StandardCharsets.UTF_8)).getList("title");
+    }
+
+    @Benchmark
+    public boolean flatParserSingle() {
+        return titleMatcher.matches(Json.parseObject(singleText).get("title"));
+    }
+}
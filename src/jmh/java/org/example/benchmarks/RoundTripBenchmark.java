@@ -0,0 +1,87 @@
+package org.example.benchmarks;
+
+import io.restassured.response.Response;
+import org.example.ApiSpecs;
+import org.example.Main;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Whole GET /api/books/1 calls against the in-process stand-in server,
+ * differing only in what is done with the response.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoundTripBenchmark {
+
+    private Main server;
+    private String baseUri;
+    private ApiSpecs api;
+
+    @Setup
+    public void setUp() {
+        server = Main.start(0);
+        baseUri = server.baseUri();
+        api = ApiSpecs.forServer(server);
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public int statusCodeOnly() {
+        return given()
+                .baseUri(baseUri)
+                .auth().preemptive().basic("admin", "password")
+                .get("/api/books/1")
+                .getStatusCode();
+    }
+
+    // same call through the shared pooled keep-alive spec
+    @Benchmark
+    public int statusCodeOnlyPooled() {
+        return api.asAdmin()
+                .get("/1")
+                .getStatusCode();
+    }
+
+    @Benchmark
+    public String asString() {
+        Response response = given()
+                .baseUri(baseUri)
+                .auth().preemptive().basic("admin", "password")
+                .get("/api/books/1");
+        return response.asString();
+    }
+
+    @Benchmark
+    public Object bodyAssertion() {
+        return given()
+                .baseUri(baseUri)
+                .auth().preemptive().basic("admin", "password")
+                .get("/api/books/1")
+                .then()
+                .statusCode(200)
+                .body("title", equalTo("The World: A Family History"));
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.benchmarks;
+
+import org.example.Book;
+import org.example.BookQuery;
+import org.example.BookStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One page of a GET /api/books search over {@code books} books, answered
+ * from the store's index against a scan of the sorted list that stops once
+ * the page is full, which is the best a store without an index could do.
+ *
+ * Book i is by "Author n" with n = i mod books/20, so every author has 20
+ * books, and is titled after one of ten words and its number. The
+ * searches are {@code author}: one author's 20 books; {@code title}: the
+ * first 100 of the tenth of the books with one title word; {@code prefix}:
+ * the authors whose number starts with the same digits as one author's.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    private static final String[] TITLE_WORDS = {
+            "world", "family", "history", "poems", "letters", "journey", "garden", "river", "night", "city"};
+    private static final int LIMIT = 100;
+
+    @Param({"1000000"})
+    private int books;
+
+    @Param({"author", "title", "prefix"})
+    private String search;
+
+    private BookStore.Snapshot snapshot;
+    private List<Book> sorted;
+    private BookQuery query;
+
+    @Setup
+    public void setUp() {
+        BookStore store = new BookStore();
+        int authors = Math.max(1, books / 20);
+        for (int i = 1; i <= books; i++) {
+            store.insertIfAbsent(new Book(i, TITLE_WORDS[i % TITLE_WORDS.length] + " " + i, "Author " + i % authors));
+        }
+        snapshot = store.snapshot();
+        sorted = snapshot.list();
+        String author = String.valueOf(authors * 7 / 10);
+        switch (search) {
+            case "author": query = BookQuery.of("author " + author, null, false); break;
+            case "title": query = BookQuery.of(null, "history", false); break;
+            case "prefix": query = BookQuery.of(author.substring(0, Math.max(1, author.length() - 2)), null, true); break;
+            default: throw new IllegalArgumentException("Unknown search " + search);
+        }
+    }
+
+    @Benchmark
+    public List<Book> indexed() {
+        return snapshot.search(query, Long.MIN_VALUE, LIMIT);
+    }
+
+    @Benchmark
+    public List<Book> scan() {
+        List<Book> page = new ArrayList<>(LIMIT);
+        for (Book book : sorted) {
+            if (query.matches(book)) {
+                page.add(book);
+                if (page.size() == LIMIT) {
+                    break;
+                }
+            }
+        }
+        return page;
+    }
+}
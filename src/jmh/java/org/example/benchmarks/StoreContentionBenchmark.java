@@ -0,0 +1,62 @@
+package org.example.benchmarks;
+
+import org.example.Book;
+import org.example.BookStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writers updating random books of a store of {@code books} books, all
+ * at once. Writers of different stripes never wait for each other, so
+ * {@code replace} throughput should grow with the threads up to the
+ * cores; compare e.g. {@code -t 1}, {@code -t 8} and {@code -t 32} on a
+ * machine with that many. {@code snapshot} is the cost of a consistent
+ * read of every stripe, which each listing and search starts with.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class StoreContentionBenchmark {
+
+    @Param({"100000"})
+    private int books;
+
+    private BookStore store;
+
+    @Setup
+    public void setUp() {
+        store = new BookStore();
+        for (int i = 1; i <= books; i++) {
+            store.insertIfAbsent(new Book(i, "Title " + i, "Author " + i % 1000));
+        }
+    }
+
+    @Benchmark
+    public boolean replace() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long id = 1 + random.nextInt(books);
+        return store.replace(new Book(id, "Title " + random.nextInt(), "Author " + random.nextInt(1000)));
+    }
+
+    @Benchmark
+    public int snapshot() {
+        return store.snapshot().size();
+    }
+}
@@ -0,0 +1,134 @@
+package org.example.benchmarks;
+
+import io.restassured.path.json.JsonPath;
+import org.example.Book;
+import org.example.StreamingBookAssertions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * "Every book has a title and author, ids are unique, count is N" over a
+ * listing of {@code books} books, evaluated by streaming the body through
+ * {@link StreamingBookAssertions} versus reading it as a string and
+ * querying it with JsonPath, which is what {@code response.asString()} and
+ * {@code .body("title", ...)} do.
+ *
+ * The listing is generated on the fly as the body is read, so the streaming
+ * side never holds it. Run with {@code -prof gc} for allocation per
+ * operation. At 10M books the JsonPath variant needs a heap of several GB,
+ * e.g. {@code -jvmArgs -Xmx8g}, and fails with OutOfMemoryError otherwise.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StreamingAssertionBenchmark {
+
+    private static final String TITLE = "The World: A Family History";
+
+    @Param({"10000", "1000000", "10000000"})
+    public int books;
+
+    @Benchmark
+    public long streaming() {
+        return StreamingBookAssertions.assertThatBooks(new ListingStream(books))
+                .eachHasTitleAndAuthor()
+                .hasUniqueIds()
+                .hasCount(books)
+                .verify();
+    }
+
+    @Benchmark
+    public long asStringJsonPath() throws IOException {
+        String body;
+        try (InputStream in = new ListingStream(books)) {
+            body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        JsonPath json = JsonPath.from(body);
+        List<String> titles = json.getList("title");
+        List<String> authors = json.getList("author");
+        List<Number> ids = json.getList("id");
+        for (int i = 0; i < titles.size(); i++) {
+            if (titles.get(i).isBlank() || authors.get(i).isBlank()) {
+                throw new AssertionError("Blank title or author at " + i);
+            }
+        }
+        Set<Long> unique = new HashSet<>();
+        for (Number id : ids) {
+            if (!unique.add(id.longValue())) {
+                throw new AssertionError("Duplicate id " + id);
+            }
+        }
+        if (titles.size() != books) {
+            throw new AssertionError("Expected " + books + " books but got " + titles.size());
+        }
+        return titles.size();
+    }
+
+    /** The body of GET /api/books for books 1..count, produced one book at a time. */
+    static final class ListingStream extends InputStream {
+        private final int count;
+        private int next = 1;
+        private byte[] chunk = {'['};
+        private int pos;
+
+        ListingStream(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public int read() {
+            if (!fill()) {
+                return -1;
+            }
+            return chunk[pos++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            int copied = 0;
+            while (copied < len && fill()) {
+                int n = Math.min(len - copied, chunk.length - pos);
+                System.arraycopy(chunk, pos, b, off + copied, n);
+                pos += n;
+                copied += n;
+            }
+            return copied == 0 ? -1 : copied;
+        }
+
+        private boolean fill() {
+            if (pos < chunk.length) {
+                return true;
+            }
+            if (next > count + 1) {
+                return false;
+            }
+            String json = next > count ? "]" : (next > 1 ? "," : "") + new Book(next, TITLE, "Author " + next).toJson();
+            next++;
+            chunk = json.getBytes(StandardCharsets.UTF_8);
+            pos = 0;
+            return true;
+        }
+    }
+}
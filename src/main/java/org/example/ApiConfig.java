@@ -0,0 +1,61 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Properties;
+
+/**
+ * Settings from config.properties on the classpath: the books service
+ * base URI and the admin and user credentials.
+ */
+public final class ApiConfig {
+
+    private final Properties properties;
+
+    private ApiConfig(Properties properties) {
+        this.properties = properties;
+    }
+
+    public static ApiConfig load() {
+        Properties properties = new Properties();
+        try (InputStream in = ApiConfig.class.getResourceAsStream("/config.properties")) {
+            if (in != null) {
+                properties.load(in);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new ApiConfig(properties);
+    }
+
+    public String baseUri() {
+        return properties.getProperty("baseURI", "http://localhost:" + Main.DEFAULT_PORT);
+    }
+
+    public String adminUsername() {
+        return properties.getProperty("adminUsername", "admin");
+    }
+
+    public String adminPassword() {
+        return properties.getProperty("adminPassword", "password");
+    }
+
+    public String userUsername() {
+        return properties.getProperty("userUsername", "user");
+    }
+
+    public String userPassword() {
+        return properties.getProperty("userPassword", "password");
+    }
+
+    /**
+     * Returns the value of a preemptive basic Authorization header.
+     */
+    public static String basicAuthorization(String username, String password) {
+        String credentials = username + ":" + password;
+        return "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+    }
+}
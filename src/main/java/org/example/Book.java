@@ -0,0 +1,83 @@
+package org.example;
+
+import java.util.Objects;
+
+/**
+ * Immutable book as exchanged on /api/books. Title and author are null
+ * only for books read from a response that lacks them.
+ *
+ * Books held by a {@link BookStore} also carry the version the store
+ * stamped them with when they were written. It identifies the stored
+ * representation for ETags and takes no part in {@link #equals}.
+ */
+public final class Book {
+
+    private final long id;
+    private final String title;
+    private final String author;
+    private final long version;
+
+    public Book(long id, String title, String author) {
+        this(id, title, author, 0);
+    }
+
+    private Book(long id, String title, String author, long version) {
+        this.id = id;
+        this.title = title;
+        this.author = author;
+        this.version = version;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public Book withId(long newId) {
+        return new Book(newId, title, author);
+    }
+
+    /** The store version, or 0 for a book that was not read from a store. */
+    long version() {
+        return version;
+    }
+
+    Book withVersion(long newVersion) {
+        return new Book(id, title, author, newVersion);
+    }
+
+    public String toJson() {
+        BookCodec.Buffer json = new BookCodec.Buffer(40 + length(title) + length(author));
+        BookCodec.encode(this, json);
+        return json.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Book)) return false;
+        Book other = (Book) o;
+        return id == other.id && Objects.equals(title, other.title) && Objects.equals(author, other.author);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * Long.hashCode(id) + Objects.hashCode(title)) + Objects.hashCode(author);
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
@@ -0,0 +1,553 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * JSON encoding and decoding of {@link Book} straight between objects and
+ * UTF-8 bytes, without the intermediate Strings, maps and formatters of
+ * {@link Json}.
+ *
+ * Encoding writes into a {@link Buffer}; {@link #buffer()} takes one from a
+ * small shared pool and {@link #release} puts it back, so steady-state
+ * encoding allocates nothing but the array the caller finally needs, if
+ * any. The pool is not per thread: the server runs each request on its own
+ * virtual thread, which a thread-local pool would never see twice. Decoding
+ * reads the fields in any order, skips unknown ones, and allocates only
+ * the book, its two strings and a small cursor.
+ *
+ * The decoder is strict like {@link JsonReader}: anything but one JSON
+ * object throws {@link IllegalArgumentException} with the byte offset.
+ * Payloads that are malformed on purpose are built elsewhere, never here.
+ */
+public final class BookCodec {
+
+    /** Released buffers that grew past this are dropped rather than kept in the pool. */
+    private static final int MAX_POOLED = 1 << 20;
+    /** Buffers kept for reuse; more can be out at once, the extra ones are garbage once released. */
+    private static final int POOL_SIZE = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+    private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final ArrayBlockingQueue<Buffer> POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private BookCodec() {
+    }
+
+    /**
+     * An empty buffer from the pool, or a new one if the pool is empty. Hand
+     * it back through {@link #release} once its bytes are written out.
+     */
+    public static Buffer buffer() {
+        Buffer buffer = POOL.poll();
+        if (buffer == null) {
+            return new Buffer(256);
+        }
+        buffer.length = 0;
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer from {@link #buffer()} to the pool. The caller must not
+     * touch it afterwards.
+     */
+    public static void release(Buffer buffer) {
+        if (buffer.bytes.length <= MAX_POOLED) {
+            POOL.offer(buffer);
+        }
+    }
+
+    /**
+     * Encodes the book into an array of exactly its length.
+     */
+    public static byte[] encode(Book book) {
+        Buffer buffer = buffer();
+        try {
+            encode(book, buffer);
+            return buffer.toByteArray();
+        } finally {
+            release(buffer);
+        }
+    }
+
+    public static void encode(Book book, Buffer out) {
+        out.putAscii("{\"id\":").putLong(book.getId())
+                .putAscii(",\"title\":").putString(book.getTitle())
+                .putAscii(",\"author\":").putString(book.getAuthor())
+                .put('}');
+    }
+
+    public static void encode(List<Book> books, Buffer out) {
+        out.put('[');
+        for (int i = 0; i < books.size(); i++) {
+            if (i > 0) {
+                out.put(',');
+            }
+            encode(books.get(i), out);
+        }
+        out.put(']');
+    }
+
+    public static Book decode(byte[] json) {
+        return decode(json, 0, json.length);
+    }
+
+    /**
+     * Decodes one book object. A missing or null id reads as 0, a missing or
+     * null title or author as {@code null}.
+     */
+    public static Book decode(byte[] json, int offset, int length) {
+        return new Decoder(json, offset, offset + length).book();
+    }
+
+    /**
+     * Growable byte array with the appends the encoder needs.
+     */
+    public static final class Buffer {
+        private byte[] bytes;
+        private int length;
+
+        public Buffer(int capacity) {
+            this.bytes = new byte[Math.max(16, capacity)];
+        }
+
+        public int length() {
+            return length;
+        }
+
+        /** The backing array; only the first {@link #length()} bytes are content. */
+        public byte[] array() {
+            return bytes;
+        }
+
+        public byte[] toByteArray() {
+            return Arrays.copyOf(bytes, length);
+        }
+
+        public void writeTo(OutputStream out) throws IOException {
+            out.write(bytes, 0, length);
+        }
+
+        public void reset() {
+            length = 0;
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+
+        Buffer put(char ascii) {
+            ensure(1);
+            bytes[length++] = (byte) ascii;
+            return this;
+        }
+
+        Buffer putAscii(String ascii) {
+            ensure(ascii.length());
+            for (int i = 0; i < ascii.length(); i++) {
+                bytes[length++] = (byte) ascii.charAt(i);
+            }
+            return this;
+        }
+
+        Buffer putLong(long value) {
+            if (value == Long.MIN_VALUE) {
+                ensure(MIN_LONG.length);
+                System.arraycopy(MIN_LONG, 0, bytes, length, MIN_LONG.length);
+                length += MIN_LONG.length;
+                return this;
+            }
+            ensure(20);
+            if (value < 0) {
+                bytes[length++] = '-';
+                value = -value;
+            }
+            int digits = 1;
+            for (long rest = value / 10; rest != 0; rest /= 10) {
+                digits++;
+            }
+            for (int i = length + digits - 1; i >= length; i--) {
+                bytes[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            length += digits;
+            return this;
+        }
+
+        /** Appends the string quoted and escaped as {@link Json#quote} does, or {@code null}. */
+        Buffer putString(String value) {
+            if (value == null) {
+                return putAscii("null");
+            }
+            // worst case: every char a six-byte \\u escape or three UTF-8 bytes
+            ensure(2 + 6 * value.length());
+            bytes[length++] = '"';
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                    bytes[length++] = (byte) c;
+                } else if (c < 0x80) {
+                    escape(c);
+                } else if (c < 0x800) {
+                    bytes[length++] = (byte) (0xc0 | c >> 6);
+                    bytes[length++] = (byte) (0x80 | c & 0x3f);
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    bytes[length++] = (byte) (0xf0 | codePoint >> 18);
+                    bytes[length++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                    bytes[length++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                    bytes[length++] = (byte) (0x80 | codePoint & 0x3f);
+                } else if (Character.isSurrogate(c)) {
+                    // a lone surrogate has no UTF-8 form, but survives as an escape
+                    unicodeEscape(c);
+                } else {
+                    bytes[length++] = (byte) (0xe0 | c >> 12);
+                    bytes[length++] = (byte) (0x80 | c >> 6 & 0x3f);
+                    bytes[length++] = (byte) (0x80 | c & 0x3f);
+                }
+            }
+            bytes[length++] = '"';
+            return this;
+        }
+
+        private void escape(char c) {
+            char shorthand;
+            switch (c) {
+                case '"': shorthand = '"'; break;
+                case '\\': shorthand = '\\'; break;
+                case '\n': shorthand = 'n'; break;
+                case '\r': shorthand = 'r'; break;
+                case '\t': shorthand = 't'; break;
+                case '\b': shorthand = 'b'; break;
+                case '\f': shorthand = 'f'; break;
+                default:
+                    unicodeEscape(c);
+                    return;
+            }
+            bytes[length++] = '\\';
+            bytes[length++] = (byte) shorthand;
+        }
+
+        private void unicodeEscape(char c) {
+            bytes[length++] = '\\';
+            bytes[length++] = 'u';
+            bytes[length++] = HEX[c >> 12];
+            bytes[length++] = HEX[c >> 8 & 0xf];
+            bytes[length++] = HEX[c >> 4 & 0xf];
+            bytes[length++] = HEX[c & 0xf];
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length << 1, length + extra));
+            }
+        }
+    }
+
+    /**
+     * Cursor over one payload. The scratch array that unescapes strings is
+     * made only for strings that have escapes.
+     */
+    private static final class Decoder {
+        private final byte[] in;
+        private final int end;
+        private int pos;
+        private char[] scratch;
+
+        Decoder(byte[] in, int start, int end) {
+            this.in = in;
+            this.pos = start;
+            this.end = end;
+        }
+
+        Book book() {
+            long id = 0;
+            String title = null;
+            String author = null;
+            expect('{');
+            if (peek() == '}') {
+                pos++;
+            } else {
+                do {
+                    int nameStart = skipWhitespace();
+                    expect('"');
+                    int nameEnd = scanString();
+                    expect(':');
+                    if (is("id", nameStart + 1, nameEnd)) {
+                        id = peek() == 'n' ? literal("null", 0) : readLong();
+                    } else if (is("title", nameStart + 1, nameEnd)) {
+                        title = readNullableString();
+                    } else if (is("author", nameStart + 1, nameEnd)) {
+                        author = readNullableString();
+                    } else {
+                        skipValue(0);
+                    }
+                } while (next(',', '}'));
+            }
+            if (skipWhitespace() != end) {
+                throw syntax("Trailing data");
+            }
+            return new Book(id, title, author);
+        }
+
+        /** Consumes a separator or the closer; true for the separator. */
+        private boolean next(char separator, char closer) {
+            byte b = peek();
+            pos++;
+            if (b == separator) {
+                return true;
+            }
+            if (b == closer) {
+                return false;
+            }
+            pos--;
+            throw syntax("Expected '" + separator + "' or '" + closer + "'");
+        }
+
+        private long readLong() {
+            skipWhitespace();
+            int start = pos;
+            boolean negative = pos < end && in[pos] == '-';
+            if (negative) {
+                pos++;
+            }
+            long value = 0;
+            int digits = 0;
+            while (pos < end && in[pos] >= '0' && in[pos] <= '9') {
+                int digit = in[pos++] - '0';
+                if (value < (Long.MIN_VALUE + digit) / 10) {
+                    pos = start;
+                    throw syntax("Number out of range");
+                }
+                value = value * 10 - digit;
+                digits++;
+            }
+            if (digits == 0 || digits > 1 && in[start + (negative ? 1 : 0)] == '0') {
+                pos = start;
+                throw syntax("Invalid number");
+            }
+            if (pos < end && (in[pos] == '.' || in[pos] == 'e' || in[pos] == 'E')) {
+                pos = start;
+                throw syntax("Expected an integer");
+            }
+            if (!negative && value == Long.MIN_VALUE) {
+                pos = start;
+                throw syntax("Number out of range");
+            }
+            return negative ? value : -value;
+        }
+
+        private String readNullableString() {
+            if (peek() == 'n') {
+                literal("null", 0);
+                return null;
+            }
+            expect('"');
+            int start = pos;
+            int close = scanString();
+            boolean plain = true;
+            for (int i = start; i < close; i++) {
+                if (in[i] == '\\') {
+                    plain = false;
+                    break;
+                }
+            }
+            if (plain) {
+                return new String(in, start, close - start, StandardCharsets.UTF_8);
+            }
+            return unescape(start, close);
+        }
+
+        /**
+         * Skips the rest of a string whose opening quote was consumed.
+         *
+         * @return the offset of the closing quote
+         */
+        private int scanString() {
+            while (pos < end) {
+                byte b = in[pos++];
+                if (b == '"') {
+                    return pos - 1;
+                }
+                if (b == '\\') {
+                    pos++;
+                } else if (b >= 0 && b < 0x20) {
+                    pos--;
+                    throw syntax("Unescaped control character in string");
+                }
+            }
+            throw syntax("Unterminated string");
+        }
+
+        private String unescape(int start, int close) {
+            if (scratch == null || scratch.length < close - start) {
+                scratch = new char[close - start];
+            }
+            int length = 0;
+            int i = start;
+            while (i < close) {
+                int b = in[i] & 0xff;
+                if (b != '\\') {
+                    // copy a run of unescaped bytes, decoding UTF-8 through the JDK
+                    int run = i;
+                    while (run < close && in[run] != '\\') {
+                        run++;
+                    }
+                    String chunk = new String(in, i, run - i, StandardCharsets.UTF_8);
+                    chunk.getChars(0, chunk.length(), scratch, length);
+                    length += chunk.length();
+                    i = run;
+                    continue;
+                }
+                char escaped = (char) in[i + 1];
+                i += 2;
+                switch (escaped) {
+                    case '"': case '\\': case '/': scratch[length++] = escaped; break;
+                    case 'n': scratch[length++] = '\n'; break;
+                    case 'r': scratch[length++] = '\r'; break;
+                    case 't': scratch[length++] = '\t'; break;
+                    case 'b': scratch[length++] = '\b'; break;
+                    case 'f': scratch[length++] = '\f'; break;
+                    case 'u':
+                        if (i + 4 > close) {
+                            pos = i - 2;
+                            throw syntax("Invalid unicode escape");
+                        }
+                        int value = 0;
+                        for (int k = 0; k < 4; k++) {
+                            int digit = Character.digit(in[i + k], 16);
+                            if (digit < 0) {
+                                pos = i - 2;
+                                throw syntax("Invalid unicode escape");
+                            }
+                            value = value << 4 | digit;
+                        }
+                        scratch[length++] = (char) value;
+                        i += 4;
+                        break;
+                    default:
+                        pos = i - 2;
+                        throw syntax("Invalid escape");
+                }
+            }
+            return new String(scratch, 0, length);
+        }
+
+        private void skipValue(int depth) {
+            if (depth > 64) {
+                throw syntax("Nesting too deep");
+            }
+            byte b = peek();
+            switch (b) {
+                case '"':
+                    pos++;
+                    scanString();
+                    return;
+                case '{':
+                    pos++;
+                    if (peek() == '}') {
+                        pos++;
+                        return;
+                    }
+                    do {
+                        skipWhitespace();
+                        expect('"');
+                        scanString();
+                        expect(':');
+                        skipValue(depth + 1);
+                    } while (next(',', '}'));
+                    return;
+                case '[':
+                    pos++;
+                    if (peek() == ']') {
+                        pos++;
+                        return;
+                    }
+                    do {
+                        skipValue(depth + 1);
+                    } while (next(',', ']'));
+                    return;
+                case 't':
+                    literal("true", 0);
+                    return;
+                case 'f':
+                    literal("false", 0);
+                    return;
+                case 'n':
+                    literal("null", 0);
+                    return;
+                default:
+                    skipNumber();
+            }
+        }
+
+        private void skipNumber() {
+            int start = pos;
+            if (pos < end && in[pos] == '-') {
+                pos++;
+            }
+            int digits = pos;
+            while (pos < end && (in[pos] >= '0' && in[pos] <= '9' || in[pos] == '.' || in[pos] == 'e'
+                    || in[pos] == 'E' || in[pos] == '+' || in[pos] == '-')) {
+                pos++;
+            }
+            if (pos == digits) {
+                pos = start;
+                throw syntax("Unexpected character");
+            }
+        }
+
+        private long literal(String word, long value) {
+            skipWhitespace();
+            if (!is(word, pos, Math.min(end, pos + word.length()))) {
+                throw syntax("Expected " + word);
+            }
+            pos += word.length();
+            return value;
+        }
+
+        private boolean is(String ascii, int from, int to) {
+            if (to - from != ascii.length()) {
+                return false;
+            }
+            for (int i = 0; i < ascii.length(); i++) {
+                if (in[from + i] != ascii.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void expect(char c) {
+            if (peek() != c) {
+                throw syntax("Expected '" + c + "'");
+            }
+            pos++;
+        }
+
+        /** The next non-whitespace byte, not consumed; fails at the end of input. */
+        private byte peek() {
+            if (skipWhitespace() == end) {
+                throw syntax("Unexpected end of input");
+            }
+            return in[pos];
+        }
+
+        private int skipWhitespace() {
+            while (pos < end && (in[pos] == ' ' || in[pos] == '\n' || in[pos] == '\r' || in[pos] == '\t')) {
+                pos++;
+            }
+            return pos;
+        }
+
+        private IllegalArgumentException syntax(String message) {
+            return new IllegalArgumentException(message + " at offset " + pos);
+        }
+    }
+}
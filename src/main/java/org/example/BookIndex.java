@@ -0,0 +1,240 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Immutable inverted index of a version of a {@link BookStore}: the ids of
+ * all books in order, and for every word of an author or a title the ids
+ * of the books that have it. {@link #plus}, {@link #minus} and
+ * {@link #replace} touch only the words of the books they change, so the
+ * store keeps the index current with every write and versions of it share
+ * all the rest.
+ */
+final class BookIndex {
+
+    static final BookIndex EMPTY =
+            new BookIndex(PersistentLongSet.EMPTY, PersistentTermMap.EMPTY, PersistentTermMap.EMPTY);
+
+    private final PersistentLongSet ids;
+    private final PersistentTermMap authors;
+    private final PersistentTermMap titles;
+
+    private BookIndex(PersistentLongSet ids, PersistentTermMap authors, PersistentTermMap titles) {
+        this.ids = ids;
+        this.authors = authors;
+        this.titles = titles;
+    }
+
+    /**
+     * The index of the books, which must be in id order, built in one pass
+     * rather than a book at a time; recovering a store uses it.
+     */
+    static BookIndex of(List<Book> books) {
+        long[] ids = new long[books.size()];
+        Map<String, Postings> authors = new HashMap<>();
+        Map<String, Postings> titles = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            Book book = books.get(i);
+            ids[i] = book.getId();
+            collect(authors, book.getAuthor(), ids[i]);
+            collect(titles, book.getTitle(), ids[i]);
+        }
+        return new BookIndex(PersistentLongSet.of(ids, ids.length), terms(authors), terms(titles));
+    }
+
+    BookIndex plus(Book book) {
+        long id = book.getId();
+        return new BookIndex(ids.plus(id), add(authors, book.getAuthor(), id), add(titles, book.getTitle(), id));
+    }
+
+    BookIndex minus(Book book) {
+        long id = book.getId();
+        return new BookIndex(ids.minus(id),
+                remove(authors, book.getAuthor(), id), remove(titles, book.getTitle(), id));
+    }
+
+    /** The index with {@code previous} replaced by the book with the same id. */
+    BookIndex replace(Book previous, Book book) {
+        long id = book.getId();
+        PersistentTermMap updatedAuthors = authors;
+        if (!BookQuery.words(previous.getAuthor()).equals(BookQuery.words(book.getAuthor()))) {
+            updatedAuthors = add(remove(authors, previous.getAuthor(), id), book.getAuthor(), id);
+        }
+        PersistentTermMap updatedTitles = titles;
+        if (!BookQuery.words(previous.getTitle()).equals(BookQuery.words(book.getTitle()))) {
+            updatedTitles = add(remove(titles, previous.getTitle(), id), book.getTitle(), id);
+        }
+        return updatedAuthors == authors && updatedTitles == titles
+                ? this
+                : new BookIndex(ids, updatedAuthors, updatedTitles);
+    }
+
+    /**
+     * Up to {@code limit} books that match the query and have an id greater
+     * than {@code after}, in id order.
+     */
+    List<Book> search(BookQuery query, long after, int limit, PersistentBookMap books) {
+        Matches matches = matches(query, after, books);
+        List<Book> found = new ArrayList<>(Math.min(limit, 64));
+        Book book;
+        while (found.size() < limit && (book = matches.next()) != null) {
+            found.add(book);
+        }
+        return found;
+    }
+
+    /**
+     * The books that match the query and have an id greater than
+     * {@code after}, in id order, found one at a time as they are asked for.
+     *
+     * The query word with the fewest books drives the search: its ids, or
+     * for a prefix the ids of all words that start with it, are walked in
+     * order from {@code after}, and each book is checked against the whole
+     * query. A search without words walks all ids.
+     */
+    Matches matches(BookQuery query, long after, PersistentBookMap books) {
+        List<PersistentLongSet> driver = List.of(ids);
+        long driverSize = Long.MAX_VALUE;
+        for (String word : query.author()) {
+            List<PersistentLongSet> sets = lookup(authors, word, query.prefix());
+            long size = size(sets);
+            if (size < driverSize) {
+                driver = sets;
+                driverSize = size;
+            }
+        }
+        for (String word : query.title()) {
+            List<PersistentLongSet> sets = lookup(titles, word, query.prefix());
+            long size = size(sets);
+            if (size < driverSize) {
+                driver = sets;
+                driverSize = size;
+            }
+        }
+        return new Matches(query, after, driver, books);
+    }
+
+    private static List<PersistentLongSet> lookup(PersistentTermMap terms, String word, boolean prefix) {
+        if (!prefix) {
+            return List.of(terms.get(word));
+        }
+        List<PersistentLongSet> sets = new ArrayList<>();
+        terms.forEachWithPrefix(word, sets::add);
+        return sets;
+    }
+
+    private static long size(List<PersistentLongSet> sets) {
+        long size = 0;
+        for (PersistentLongSet set : sets) {
+            size += set.size();
+        }
+        return size;
+    }
+
+    private static void collect(Map<String, Postings> terms, String text, long id) {
+        BookQuery.forEachWord(text, word -> terms.computeIfAbsent(word, w -> new Postings()).add(id));
+    }
+
+    private static PersistentTermMap terms(Map<String, Postings> postings) {
+        String[] terms = postings.keySet().toArray(new String[0]);
+        Arrays.sort(terms);
+        PersistentLongSet[] ids = new PersistentLongSet[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            Postings term = postings.get(terms[i]);
+            ids[i] = PersistentLongSet.of(term.ids, term.size);
+        }
+        return PersistentTermMap.of(terms, ids);
+    }
+
+    private static PersistentTermMap add(PersistentTermMap terms, String text, long id) {
+        for (String word : BookQuery.words(text)) {
+            terms = terms.plus(word, id);
+        }
+        return terms;
+    }
+
+    private static PersistentTermMap remove(PersistentTermMap terms, String text, long id) {
+        for (String word : BookQuery.words(text)) {
+            terms = terms.minus(word, id);
+        }
+        return terms;
+    }
+
+    /** The books a search finds, in id order. */
+    static final class Matches {
+        private final BookQuery query;
+        private final PersistentBookMap books;
+        /** The driving sets that have ids left, by their next id. */
+        private final PriorityQueue<Cursor> heads;
+
+        private Matches(BookQuery query, long after, List<PersistentLongSet> driver, PersistentBookMap books) {
+            this.query = query;
+            this.books = books;
+            this.heads = new PriorityQueue<>(Math.max(1, driver.size()));
+            for (PersistentLongSet set : driver) {
+                Cursor cursor = new Cursor(set, set.higher(after));
+                if (cursor.head != PersistentLongSet.NONE) {
+                    heads.add(cursor);
+                }
+            }
+        }
+
+        /** The next matching book, or {@code null} when there are no more. */
+        Book next() {
+            while (!heads.isEmpty()) {
+                // merge the driving sets: the smallest head is the next id, advance every set at it
+                long next = heads.peek().head;
+                while (!heads.isEmpty() && heads.peek().head == next) {
+                    Cursor cursor = heads.poll();
+                    cursor.head = cursor.set.higher(next);
+                    if (cursor.head != PersistentLongSet.NONE) {
+                        heads.add(cursor);
+                    }
+                }
+                Book book = books.get(next);
+                if (book != null && query.matches(book)) {
+                    return book;
+                }
+            }
+            return null;
+        }
+    }
+
+    /** A driving set and the next id of it the merge has not passed. */
+    private static final class Cursor implements Comparable<Cursor> {
+        final PersistentLongSet set;
+        long head;
+
+        Cursor(PersistentLongSet set, long head) {
+            this.set = set;
+            this.head = head;
+        }
+
+        @Override
+        public int compareTo(Cursor other) {
+            return Long.compare(head, other.head);
+        }
+    }
+
+    /** The ids of one term while {@link #of} collects them, which come in order. */
+    private static final class Postings {
+        long[] ids = new long[1];
+        int size;
+
+        void add(long id) {
+            if (size > 0 && ids[size - 1] == id) {
+                // the word came up again in the same text
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+}
@@ -0,0 +1,829 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Write-ahead log that makes a {@link BookStore} durable: numbered,
+ * append-only segments of the store's writes and compacted snapshots of
+ * all its books, in one directory.
+ *
+ * <pre>
+ * books-N.log:       "BKLOG" version:u8 record*
+ * books-N.snapshot:  "BKSNP" version:u8 lastId:i64 count:i64 record*
+ * record:            length:i32 crc:i32 type:u8 id:i64 [version:i64 title:i32-prefixed author:i32-prefixed]
+ * </pre>
+ *
+ * All numbers are big-endian and strings UTF-8, with a length of -1 for
+ * null. {@code length} counts the bytes after itself and the CRC-32C
+ * covers those after the checksum. A put record (type 1) holds the book as
+ * the store stamped it, a delete (type 2) only the id. A snapshot holds
+ * one put per book, in id order.
+ *
+ * Snapshot N is the books as of the start of segment N, so recovery loads
+ * the newest snapshot and replays the segments from N on. A record that is
+ * cut short or fails its checksum ends the last segment, which is where a
+ * crash in the middle of a write leaves it; the segment is truncated there
+ * and appended to. In any other segment it means the files are damaged,
+ * and recovery fails.
+ *
+ * Records are added to a buffer in the order the store makes its writes.
+ * A single flusher thread writes whatever has gathered to the segment, so
+ * writes that arrive while it is busy go out together in its next write
+ * and fsync, a group commit. {@link #sync()} waits until the writes so far
+ * are as durable as the {@link Fsync} policy makes them.
+ *
+ * Every {@code snapshotEvery} records the log starts a new segment and
+ * writes a snapshot of the store's current version in the background. The
+ * version is immutable, so writes go on meanwhile. Once the snapshot is on
+ * disk, the segments and snapshots before it are deleted.
+ */
+public final class BookLog implements Closeable {
+
+    /** When {@link #sync()} considers writes durable. */
+    public enum Fsync {
+        /** Forced to disk; syncs that wait at the same time share one fsync. */
+        ALWAYS,
+        /**
+         * Written to the file, which is forced at most every
+         * {@value BookLog#PERIODIC_MILLIS} ms: a crash of the process loses
+         * nothing, one of the machine at most that much.
+         */
+        PERIODIC,
+        /** Written to the file, which is left to the operating system to force. */
+        NEVER
+    }
+
+    public static final long PERIODIC_MILLIS = 100;
+    /** Records between snapshots unless the store is opened with another count. */
+    public static final int DEFAULT_SNAPSHOT_EVERY = 1_000_000;
+
+    private static final byte[] LOG_MAGIC = {'B', 'K', 'L', 'O', 'G'};
+    private static final byte[] SNAPSHOT_MAGIC = {'B', 'K', 'S', 'N', 'P'};
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = LOG_MAGIC.length + 1;
+    private static final int SNAPSHOT_HEADER_SIZE = HEADER_SIZE + 8 + 8;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    /** Bytes after the length of a delete, the smallest record. */
+    private static final int MIN_LENGTH = 4 + 1 + 8;
+    private static final int BUFFER_SIZE = 1 << 20;
+    /** Buffered bytes at which writers wait for the flusher to catch up. */
+    private static final int MAX_PENDING = 64 << 20;
+    private static final long PERIODIC_NANOS = TimeUnit.MILLISECONDS.toNanos(PERIODIC_MILLIS);
+
+    private final Path directory;
+    private final Fsync fsync;
+    private final int snapshotEvery;
+    private final ThreadLocal<ByteBuffer> scratch = ThreadLocal.withInitial(() -> ByteBuffer.allocate(4096));
+    private final Thread flusher;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pendingWrites = lock.newCondition();
+    private final Condition progress = lock.newCondition();
+    // guarded by lock; positions count the bytes appended since the log was opened
+    private ByteBuffer pending = ByteBuffer.allocate(BUFFER_SIZE);
+    private ByteBuffer spare = ByteBuffer.allocate(BUFFER_SIZE);
+    private long appended;
+    private long written;
+    private long durable;
+    private long records;
+    private long fsyncs;
+    private long sinceSnapshot;
+    private Thread snapshotter;
+    private IOException failure;
+    private boolean closed;
+
+    /** Held by the flusher while it writes, and while the segment is switched. */
+    private final Object io = new Object();
+    private FileChannel channel;
+    private long segment;
+    /** When the flusher last forced the segment; only it reads this. */
+    private long lastForce = System.nanoTime();
+
+    private BookLog(Path directory, Recovery recovery, Fsync fsync, int snapshotEvery) throws IOException {
+        if (snapshotEvery < 1) {
+            throw new IllegalArgumentException("snapshotEvery must be positive: " + snapshotEvery);
+        }
+        this.directory = directory;
+        this.fsync = fsync;
+        this.snapshotEvery = snapshotEvery;
+        this.segment = recovery.segment;
+        this.sinceSnapshot = recovery.records;
+        Path file = directory.resolve(name(segment, ".log"));
+        if (recovery.segmentEnd < HEADER_SIZE) {
+            Files.deleteIfExists(file);
+            channel = createSegment(segment);
+        } else {
+            channel = FileChannel.open(file, StandardOpenOption.WRITE);
+            // drop a record cut short by a crash, so new ones follow the last whole one
+            channel.truncate(recovery.segmentEnd);
+            channel.position(recovery.segmentEnd);
+            channel.force(false);
+        }
+        flusher = new Thread(this::flush, "book-log");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Reads back the books the log in the directory holds, creating the
+     * directory if needed. Leftovers of a snapshot that was being written
+     * are deleted.
+     */
+    static Recovery recover(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        TreeMap<Long, Path> snapshots = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "books-*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.delete(file);
+                } else if (name.endsWith(".log")) {
+                    segments.put(number(name, ".log"), file);
+                } else if (name.endsWith(".snapshot")) {
+                    snapshots.put(number(name, ".snapshot"), file);
+                }
+            }
+        }
+
+        Recovery recovery = new Recovery();
+        List<Book> books = new ArrayList<>();
+        long first = 0;
+        if (!snapshots.isEmpty()) {
+            first = snapshots.lastKey();
+            readSnapshot(snapshots.lastEntry().getValue(), books, recovery);
+        }
+        // the latest write of each id in the segments, null for a delete
+        Map<Long, Book> changes = new HashMap<>();
+        recovery.segment = first;
+        for (Map.Entry<Long, Path> entry : segments.tailMap(first).entrySet()) {
+            boolean last = entry.getKey().equals(segments.lastKey());
+            recovery.segment = entry.getKey();
+            recovery.segmentEnd = replay(entry.getValue(), changes, last, recovery);
+        }
+
+        if (!changes.isEmpty()) {
+            List<Book> merged = new ArrayList<>(books.size() + changes.size());
+            for (Book book : books) {
+                if (!changes.containsKey(book.getId())) {
+                    merged.add(book);
+                } else {
+                    Book changed = changes.remove(book.getId());
+                    if (changed != null) {
+                        merged.add(changed);
+                    }
+                }
+            }
+            for (Book added : changes.values()) {
+                if (added != null) {
+                    merged.add(added);
+                }
+            }
+            merged.sort(Comparator.comparingLong(Book::getId));
+            books = merged;
+        }
+        recovery.books = books;
+        return recovery;
+    }
+
+    /**
+     * Opens the recovered log for appending, and starts its flusher.
+     *
+     * @param snapshotEvery records after which a snapshot is due
+     */
+    static BookLog open(Path directory, Recovery recovery, Fsync fsync, int snapshotEvery) throws IOException {
+        return new BookLog(directory, recovery, fsync, snapshotEvery);
+    }
+
+    /**
+     * Logs a stored book. Callers make sure writes are logged one at a
+     * time, in the order they take effect.
+     */
+    void put(Book book) {
+        append(encode(PUT, book.getId(), book.version(), book.getTitle(), book.getAuthor()));
+    }
+
+    /** Logs the removal of a book, under the same rule as {@link #put}. */
+    void delete(long id) {
+        append(encode(DELETE, id, 0, null, null));
+    }
+
+    /** Whether enough records have been logged since the last snapshot to take another. */
+    boolean snapshotDue() {
+        lock.lock();
+        try {
+            return sinceSnapshot >= snapshotEvery && snapshotter == null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts a new segment and writes a snapshot of the books as of its
+     * start, which must be the store's current version. Callers hold off
+     * writes until this returns, which takes one fsync; the snapshot
+     * itself is written in the background unless {@code wait} is set.
+     */
+    void snapshot(BookStore.Snapshot books, long lastId, boolean wait) {
+        long number = roll();
+        if (wait) {
+            try {
+                writeSnapshot(number, books, lastId);
+            } catch (IOException e) {
+                throw failed(e);
+            }
+            return;
+        }
+        lock.lock();
+        try {
+            snapshotter = new Thread(() -> {
+                try {
+                    writeSnapshot(number, books, lastId);
+                } catch (IOException e) {
+                    failed(e);
+                } finally {
+                    lock.lock();
+                    try {
+                        snapshotter = null;
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }, "book-log-snapshot");
+            snapshotter.setDaemon(true);
+            snapshotter.start();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until everything logged so far is as durable as the
+     * {@link Fsync} policy makes it.
+     *
+     * @throws UncheckedIOException if the log could not be written
+     */
+    public void sync() {
+        lock.lock();
+        try {
+            long target = appended;
+            while ((fsync == Fsync.ALWAYS ? durable : written) < target) {
+                checkFailure();
+                progress.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Records logged since the log was opened. */
+    public long records() {
+        lock.lock();
+        try {
+            return records;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Times the segment was forced to disk since the log was opened. */
+    public long fsyncs() {
+        lock.lock();
+        try {
+            return fsyncs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Fsync fsync() {
+        return fsync;
+    }
+
+    /**
+     * Writes and forces what is logged, waits for a snapshot in progress
+     * and closes the segment.
+     */
+    @Override
+    public void close() throws IOException {
+        Thread snapshotting;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            snapshotting = snapshotter;
+            pendingWrites.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+            if (snapshotting != null) {
+                snapshotting.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing the book log");
+        }
+        synchronized (io) {
+            if (failure == null) {
+                channel.force(false);
+            }
+            channel.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void append(ByteBuffer record) {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Book log is closed");
+            }
+            while (pending.position() > MAX_PENDING) {
+                checkFailure();
+                progress.awaitUninterruptibly();
+            }
+            checkFailure();
+            if (pending.remaining() < record.remaining()) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2,
+                        pending.position() + record.remaining()));
+                pending.flip();
+                grown.put(pending);
+                pending = grown;
+            }
+            appended += record.remaining();
+            pending.put(record);
+            records++;
+            sinceSnapshot++;
+            pendingWrites.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** The flusher: writes batches of records until the log is closed. */
+    private void flush() {
+        try {
+            while (true) {
+                ByteBuffer batch;
+                long end;
+                lock.lock();
+                try {
+                    while (pending.position() == 0 && !closed && !forceDue()) {
+                        if (fsync == Fsync.PERIODIC && durable < written) {
+                            pendingWrites.awaitNanos(lastForce + PERIODIC_NANOS - System.nanoTime());
+                        } else {
+                            pendingWrites.await();
+                        }
+                    }
+                    if (pending.position() == 0 && closed) {
+                        return;
+                    }
+                    batch = pending;
+                    pending = spare;
+                    spare = null;
+                    end = appended;
+                } finally {
+                    lock.unlock();
+                }
+
+                boolean force;
+                batch.flip();
+                synchronized (io) {
+                    while (batch.hasRemaining()) {
+                        channel.write(batch);
+                    }
+                    force = fsync == Fsync.ALWAYS
+                            || fsync == Fsync.PERIODIC && System.nanoTime() - lastForce >= PERIODIC_NANOS;
+                    if (force) {
+                        channel.force(false);
+                        lastForce = System.nanoTime();
+                    }
+                }
+
+                lock.lock();
+                try {
+                    spare = batch.clear();
+                    written = end;
+                    if (force) {
+                        durable = end;
+                        fsyncs++;
+                    }
+                    progress.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (IOException e) {
+            failed(e);
+        } catch (InterruptedException e) {
+            failed(new InterruptedIOException("Book log flusher interrupted"));
+        }
+    }
+
+    /** Whether the periodic policy owes an fsync for writes that are only in the file; flusher only. */
+    private boolean forceDue() {
+        return fsync == Fsync.PERIODIC && durable < written && System.nanoTime() - lastForce >= PERIODIC_NANOS;
+    }
+
+    /**
+     * Waits for the flusher to write everything logged, then forces and
+     * closes the segment and starts the next one.
+     *
+     * @return the number of the new segment
+     */
+    private long roll() {
+        lock.lock();
+        try {
+            long target = appended;
+            while (written < target) {
+                checkFailure();
+                progress.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+        long number;
+        synchronized (io) {
+            try {
+                channel.force(false);
+                channel.close();
+                number = ++segment;
+                channel = createSegment(number);
+            } catch (IOException e) {
+                throw failed(e);
+            }
+        }
+        lock.lock();
+        try {
+            durable = written;
+            fsyncs++;
+            sinceSnapshot = 0;
+        } finally {
+            lock.unlock();
+        }
+        return number;
+    }
+
+    private FileChannel createSegment(long number) throws IOException {
+        FileChannel created = FileChannel.open(directory.resolve(name(number, ".log")),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        created.write(ByteBuffer.allocate(HEADER_SIZE).put(LOG_MAGIC).put(VERSION).flip());
+        created.force(false);
+        syncDirectory(directory);
+        return created;
+    }
+
+    private void writeSnapshot(long number, BookStore.Snapshot books, long lastId) throws IOException {
+        List<Book> sorted = books.list();
+
+        Path done = directory.resolve(name(number, ".snapshot"));
+        Path file = directory.resolve(name(number, ".snapshot.tmp"));
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.put(SNAPSHOT_MAGIC).put(VERSION).putLong(lastId).putLong(sorted.size());
+            for (Book book : sorted) {
+                ByteBuffer record = encode(PUT, book.getId(), book.version(), book.getTitle(), book.getAuthor());
+                if (buffer.remaining() < record.remaining()) {
+                    writeFully(out, buffer.flip());
+                    buffer.clear();
+                }
+                if (buffer.remaining() < record.remaining()) {
+                    writeFully(out, record);
+                } else {
+                    buffer.put(record);
+                }
+            }
+            writeFully(out, buffer.flip());
+            out.force(true);
+        }
+        Files.move(file, done, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(directory);
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "books-*")) {
+            for (Path old : files) {
+                String name = old.getFileName().toString();
+                if (name.endsWith(".log") && number(name, ".log") < number
+                        || name.endsWith(".snapshot") && number(name, ".snapshot") < number) {
+                    Files.delete(old);
+                }
+            }
+        }
+    }
+
+    private ByteBuffer encode(byte type, long id, long version, String title, String author) {
+        byte[] titleBytes = title == null ? null : title.getBytes(StandardCharsets.UTF_8);
+        byte[] authorBytes = author == null ? null : author.getBytes(StandardCharsets.UTF_8);
+        int length = MIN_LENGTH + (type == PUT ? 8 + 4 + length(titleBytes) + 4 + length(authorBytes) : 0);
+        ByteBuffer buffer = scratch.get();
+        if (buffer.capacity() < 4 + length) {
+            buffer = ByteBuffer.allocate(Integer.highestOneBit(4 + length) << 1);
+            scratch.set(buffer);
+        }
+        buffer.clear();
+        buffer.putInt(length).putInt(0).put(type).putLong(id);
+        if (type == PUT) {
+            buffer.putLong(version);
+            putBytes(buffer, titleBytes);
+            putBytes(buffer, authorBytes);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), 8, length - 4);
+        buffer.putInt(4, (int) crc.getValue());
+        return buffer.flip();
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new UncheckedIOException("Book log failed", failure);
+        }
+    }
+
+    /** Remembers the first failure, which every later write and sync reports. */
+    private UncheckedIOException failed(IOException e) {
+        lock.lock();
+        try {
+            if (failure == null) {
+                failure = e;
+            }
+            progress.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return new UncheckedIOException("Book log failed", e);
+    }
+
+    private static void readSnapshot(Path file, List<Book> books, Recovery recovery) throws IOException {
+        try (Records records = new Records(file)) {
+            ByteBuffer header = records.header(SNAPSHOT_HEADER_SIZE);
+            if (header == null || !hasMagic(header, SNAPSHOT_MAGIC)) {
+                throw new IOException("Not a book snapshot: " + file);
+            }
+            recovery.lastId = Math.max(recovery.lastId, header.getLong(HEADER_SIZE));
+            long count = header.getLong(HEADER_SIZE + 8);
+            while (records.next()) {
+                if (records.type != PUT) {
+                    throw new IOException("Delete in book snapshot " + file + " at " + records.offset);
+                }
+                books.add(recovery.observe(records.book()));
+            }
+            if (!records.atEnd() || books.size() != count) {
+                throw new IOException("Book snapshot " + file + " is damaged at " + records.offset);
+            }
+        }
+    }
+
+    /**
+     * Applies the records of a segment to {@code changes}.
+     *
+     * @return the bytes of the segment up to its last whole record
+     */
+    private static long replay(Path file, Map<Long, Book> changes, boolean last, Recovery recovery)
+            throws IOException {
+        try (Records records = new Records(file)) {
+            ByteBuffer header = records.header(HEADER_SIZE);
+            if (header == null && last) {
+                // created but its header never reached the disk
+                return 0;
+            }
+            if (header == null || !hasMagic(header, LOG_MAGIC)) {
+                throw new IOException("Not a book log: " + file);
+            }
+            while (records.next()) {
+                if (records.type == PUT) {
+                    Book book = recovery.observe(records.book());
+                    changes.put(book.getId(), book);
+                } else {
+                    recovery.lastId = Math.max(recovery.lastId, records.id);
+                    changes.put(records.id, null);
+                }
+                recovery.records++;
+            }
+            if (!records.atEnd() && !last) {
+                throw new IOException("Book log " + file + " is damaged at " + records.offset);
+            }
+            return records.offset;
+        }
+    }
+
+    private static boolean hasMagic(ByteBuffer header, byte[] magic) {
+        return Arrays.equals(Arrays.copyOf(header.array(), magic.length), magic) && header.get(magic.length) == VERSION;
+    }
+
+    private static String name(long number, String suffix) {
+        return String.format("books-%010d%s", number, suffix);
+    }
+
+    private static long number(String name, String suffix) throws IOException {
+        try {
+            return Long.parseLong(name.substring("books-".length(), name.length() - suffix.length()));
+        } catch (NumberFormatException e) {
+            throw new IOException("Unexpected file in book log: " + name);
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static void syncDirectory(Path directory) throws IOException {
+        // makes created and renamed files durable; not every platform can open a directory for this
+        try (FileChannel handle = FileChannel.open(directory, StandardOpenOption.READ)) {
+            handle.force(true);
+        } catch (IOException e) {
+            if (!System.getProperty("os.name").startsWith("Windows")) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * What {@link #recover} read back: the books in id order, the highest
+     * id and version seen, and the segment to append to.
+     */
+    static final class Recovery {
+        List<Book> books;
+        long lastId;
+        long maxVersion;
+        long segment;
+        /** Bytes of the segment up to its last whole record; 0 if it has to be created. */
+        long segmentEnd;
+        /** Records in the segments since the snapshot. */
+        long records;
+
+        Book observe(Book book) {
+            lastId = Math.max(lastId, book.getId());
+            maxVersion = Math.max(maxVersion, book.version());
+            return book;
+        }
+    }
+
+    /**
+     * Reads the records of a segment or snapshot through a buffer, checking
+     * each one; stops at the first that is cut short or damaged.
+     */
+    private static final class Records implements Closeable {
+        private final Path file;
+        private final FileChannel channel;
+        private final long size;
+        private final CRC32C crc = new CRC32C();
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).flip();
+        private boolean eof;
+        /** File offset of the next record. */
+        long offset;
+        byte type;
+        long id;
+        long version;
+        String title;
+        String author;
+
+        Records(Path file) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.size = channel.size();
+        }
+
+        /** The first {@code size} bytes, or null if the file is shorter. */
+        ByteBuffer header(int size) throws IOException {
+            if (!fill(size)) {
+                return null;
+            }
+            byte[] header = new byte[size];
+            buffer.get(header);
+            offset = size;
+            return ByteBuffer.wrap(header);
+        }
+
+        boolean next() throws IOException {
+            if (!fill(4)) {
+                return false;
+            }
+            int length = buffer.getInt(buffer.position());
+            if (length < MIN_LENGTH || length > size - offset - 4 || !fill(4 + length)) {
+                return false;
+            }
+            int start = buffer.position();
+            crc.reset();
+            crc.update(buffer.array(), start + 8, length - 4);
+            if ((int) crc.getValue() != buffer.getInt(start + 4)) {
+                return false;
+            }
+            buffer.position(start + 8);
+            type = buffer.get();
+            id = buffer.getLong();
+            int end = start + 4 + length;
+            if (type == PUT) {
+                version = buffer.getLong();
+                title = string(end);
+                author = string(end);
+            } else if (type != DELETE) {
+                throw malformed();
+            }
+            if (buffer.position() != end) {
+                throw malformed();
+            }
+            offset += 4 + length;
+            return true;
+        }
+
+        Book book() {
+            return new Book(id, title, author).withVersion(version);
+        }
+
+        /** Whether the records ended with the file rather than at a bad one. */
+        boolean atEnd() throws IOException {
+            return !fill(1);
+        }
+
+        private String string(int end) throws IOException {
+            if (end - buffer.position() < 4) {
+                throw malformed();
+            }
+            int length = buffer.getInt();
+            if (length < 0) {
+                return null;
+            }
+            if (length > end - buffer.position()) {
+                throw malformed();
+            }
+            String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+
+        /** A record whose checksum matches but whose contents do not add up, which no crash leaves behind. */
+        private IOException malformed() {
+            return new IOException("Malformed record in " + file + " at " + offset);
+        }
+
+        /** Makes at least {@code bytes} unread bytes available, unless the file ends first. */
+        private boolean fill(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return true;
+            }
+            if (eof) {
+                return false;
+            }
+            if (buffer.capacity() < bytes) {
+                buffer = ByteBuffer.allocate(Integer.highestOneBit(bytes) << 1).put(buffer).flip();
+            }
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    eof = true;
+                    break;
+                }
+            }
+            buffer.flip();
+            return buffer.remaining() >= bytes;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
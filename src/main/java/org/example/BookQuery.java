@@ -0,0 +1,123 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * A search on GET /api/books: words the author and the title must
+ * contain. Text is split into words at anything but letters and digits
+ * and compared without case, so {@code author=javed akhtar} finds
+ * "Javed Akhtar and Arvind Mandloi". With {@link #prefix()} each query
+ * word only has to start a word of the field, as in search-as-you-type.
+ *
+ * {@link #matches} checks one book directly; {@link BookStore.Snapshot#search}
+ * answers the same question from the store's index.
+ */
+public final class BookQuery {
+
+    private final List<String> author;
+    private final List<String> title;
+    private final boolean prefix;
+
+    private BookQuery(List<String> author, List<String> title, boolean prefix) {
+        this.author = author;
+        this.title = title;
+        this.prefix = prefix;
+    }
+
+    /**
+     * @param author words the author must contain, or {@code null} for any
+     * @param title words the title must contain, or {@code null} for any
+     * @throws IllegalArgumentException if author or title is given but has no words
+     */
+    public static BookQuery of(String author, String title, boolean prefix) {
+        return new BookQuery(queryWords("author", author), queryWords("title", title), prefix);
+    }
+
+    /** Every book. */
+    public static BookQuery all() {
+        return new BookQuery(List.of(), List.of(), false);
+    }
+
+    public List<String> author() {
+        return author;
+    }
+
+    public List<String> title() {
+        return title;
+    }
+
+    public boolean prefix() {
+        return prefix;
+    }
+
+    public boolean isAll() {
+        return author.isEmpty() && title.isEmpty();
+    }
+
+    public boolean matches(Book book) {
+        return matches(author, book.getAuthor()) && matches(title, book.getTitle());
+    }
+
+    /**
+     * The distinct words of a text, lower-cased, in order of appearance.
+     */
+    static List<String> words(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        forEachWord(text, words::add);
+        return new ArrayList<>(words);
+    }
+
+    /**
+     * Passes each word of a text, lower-cased, in order of appearance;
+     * repeated words are passed again.
+     */
+    static void forEachWord(String text, Consumer<String> action) {
+        if (text == null) {
+            return;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean inWord = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                action.accept(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+    }
+
+    private boolean matches(List<String> wanted, String field) {
+        if (wanted.isEmpty()) {
+            return true;
+        }
+        List<String> words = words(field);
+        for (String word : wanted) {
+            if (prefix ? words.stream().noneMatch(candidate -> candidate.startsWith(word)) : !words.contains(word)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<String> queryWords(String field, String text) {
+        if (text == null) {
+            return List.of();
+        }
+        List<String> words = words(text);
+        if (words.isEmpty()) {
+            throw new IllegalArgumentException(field + " has no words to search for");
+        }
+        return List.copyOf(words);
+    }
+
+    @Override
+    public String toString() {
+        return "author " + author + ", title " + title + (prefix ? " by prefix" : "");
+    }
+}
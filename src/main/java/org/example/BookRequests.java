@@ -0,0 +1,74 @@
+package org.example;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+
+/**
+ * The request shapes of LibraryAPITest and UpdateBookTest for
+ * {@link java.net.http.HttpClient}, shared by {@link LoadGenerator} and
+ * {@link WorkloadRunner}. The requests carry no Authorization header; the
+ * caller adds the role's.
+ */
+final class BookRequests {
+
+    private final String baseUri;
+
+    BookRequests(String baseUri) {
+        this.baseUri = baseUri.endsWith("/") ? baseUri.substring(0, baseUri.length() - 1) : baseUri;
+    }
+
+    String baseUri() {
+        return baseUri;
+    }
+
+    HttpRequest.Builder create(long id) {
+        return jsonRequest("/api/books")
+                .POST(json("{\"id\": " + id + ", \"title\": \"Jadunama\", \"author\": \"Javed Akhtar and Arvind Mandloi\"}"));
+    }
+
+    HttpRequest.Builder update(long id) {
+        return jsonRequest("/api/books/" + id)
+                .PUT(json("{\"id\": " + id + ", \"title\": \"The World: A Family History\", "
+                        + "\"author\": \"British historian Simon Sebag Montefiore\"}"));
+    }
+
+    HttpRequest.Builder list() {
+        return request("/api/books").GET();
+    }
+
+    HttpRequest.Builder get(long id) {
+        return request("/api/books/" + id).GET();
+    }
+
+    HttpRequest.Builder delete(long id) {
+        return request("/api/books/" + id).DELETE();
+    }
+
+    /**
+     * Creates the books {@code first} to {@code first + count - 1} in one
+     * NDJSON bulk request.
+     */
+    HttpRequest.Builder bulkCreate(long first, int count) {
+        StringBuilder body = new StringBuilder(count * 64);
+        for (long id = first; id < first + count; id++) {
+            body.append("{\"id\": ").append(id).append(", \"title\": \"Jadunama\", \"author\": \"Javed Akhtar\"}\n");
+        }
+        return request("/api/books/_bulk")
+                .header("Content-Type", "application/x-ndjson")
+                .POST(json(body.toString()));
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUri + path))
+                .timeout(Duration.ofSeconds(30));
+    }
+
+    private HttpRequest.Builder jsonRequest(String path) {
+        return request(path).header("Content-Type", "application/json");
+    }
+
+    private static HttpRequest.BodyPublisher json(String body) {
+        return HttpRequest.BodyPublishers.ofString(body);
+    }
+}
@@ -0,0 +1,522 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory books keyed by id.
+ *
+ * The ids are spread over independently locked stripes, like the
+ * segments of a concurrent map, by the top bits of their mixed hash. Each
+ * stripe holds its books as one {@link PersistentBookMap} behind a
+ * volatile field: a writer takes its stripe's lock, derives the stripe's
+ * new version and publishes it, so writers of different stripes never
+ * contend and a write is never built twice. Readers take no lock and see
+ * whichever version was published.
+ *
+ * A {@link Snapshot} is just the kept version of every stripe, so taking
+ * one, restoring one and forking a new store from one all take constant
+ * time however many books there are. Snapshots are consistent across
+ * stripes: the versions are read twice and kept if nothing changed in
+ * between, and only if writers keep interfering are all stripes locked
+ * for the moment it takes to read them.
+ *
+ * Each version also carries a {@link BookIndex} of its stripe's authors
+ * and titles, updated in the same write as the books, so a snapshot can
+ * {@link Snapshot#search search} without scanning and a search never
+ * sees a write the books do not.
+ *
+ * Every write stamps the stored book with a new version from a counter
+ * the store shares with its forks. The counter starts at a random point,
+ * so versions also differ from those of an earlier server run, and a
+ * version always names one representation of one book.
+ *
+ * A store {@link #open opened} on a directory is durable: a write goes to
+ * its {@link BookLog} under the stripe lock, before the new version is
+ * published, so the log has the writes of each book in the order they
+ * took effect. Writes are visible at once and durable after
+ * {@link #sync()}; the log holds the book versions too, so ETags survive
+ * a restart. Forks of a durable store live in memory only.
+ */
+public class BookStore {
+
+    /** Consistent reads of all stripes to try before locking them. */
+    private static final int SNAPSHOT_ATTEMPTS = 3;
+
+    private final Stripe[] stripes;
+    private final int stripeShift;
+    private final IdAllocator ids;
+    private final AtomicLong versions;
+    /** The log of a durable store, or null in memory. */
+    private final BookLog log;
+
+    public BookStore() {
+        this(empty(Runtime.getRuntime().availableProcessors() * 4), new IdAllocator(),
+                new AtomicLong(ThreadLocalRandom.current().nextLong(1L << 62)), null);
+    }
+
+    private BookStore(Catalog[] catalogs, IdAllocator ids, AtomicLong versions, BookLog log) {
+        this.stripes = new Stripe[catalogs.length];
+        for (int i = 0; i < catalogs.length; i++) {
+            stripes[i] = new Stripe(catalogs[i]);
+        }
+        this.stripeShift = 64 - Integer.numberOfTrailingZeros(catalogs.length);
+        this.ids = ids;
+        this.versions = versions;
+        this.log = log;
+    }
+
+    /**
+     * Opens a durable store on the log in the directory, taking a snapshot
+     * every {@value BookLog#DEFAULT_SNAPSHOT_EVERY} writes.
+     */
+    public static BookStore open(Path directory, BookLog.Fsync fsync) throws IOException {
+        return open(directory, fsync, BookLog.DEFAULT_SNAPSHOT_EVERY);
+    }
+
+    /**
+     * Opens a durable store on the log in the directory, with the books it
+     * holds, or empty if the directory has none. The books are read back
+     * into a list and the stripes' maps and indexes built from it in one
+     * go, rather than by replaying the writes one at a time.
+     *
+     * @param snapshotEvery writes after which the log snapshots the store
+     *                      and drops the segments before
+     */
+    public static BookStore open(Path directory, BookLog.Fsync fsync, int snapshotEvery) throws IOException {
+        BookLog.Recovery recovery = BookLog.recover(directory);
+        IdAllocator ids = new IdAllocator();
+        ids.observe(recovery.lastId);
+        // carry on above the recovered versions, with a gap past any of a write the crash lost
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        AtomicLong versions = new AtomicLong(Math.max(random.nextLong(1L << 62),
+                recovery.maxVersion + 1 + random.nextLong(1L << 32)));
+        Catalog[] catalogs = Catalog.of(recovery.books, Runtime.getRuntime().availableProcessors() * 4);
+        return new BookStore(catalogs, ids, versions, BookLog.open(directory, recovery, fsync, snapshotEvery));
+    }
+
+    public Book get(long id) {
+        return stripeFor(id).catalog.books.get(id);
+    }
+
+    /**
+     * Stores the book unless its id is already taken. Concurrent calls for the
+     * same id are linearized, so exactly one of them succeeds.
+     *
+     * @return {@code true} if the book was stored, {@code false} on a duplicate id
+     */
+    public boolean insertIfAbsent(Book book) {
+        checkId(book.getId());
+        Stripe stripe = stripeFor(book.getId());
+        stripe.lock.lock();
+        try {
+            Catalog current = stripe.catalog;
+            if (current.books.get(book.getId()) != null) {
+                return false;
+            }
+            Book stamped = book.withVersion(versions.incrementAndGet());
+            publish(stripe, current.plus(stamped), stamped, book.getId());
+            ids.observe(book.getId());
+        } finally {
+            stripe.lock.unlock();
+        }
+        snapshotIfDue();
+        return true;
+    }
+
+    /**
+     * Stores a book under a freshly allocated id.
+     *
+     * @return the stored book
+     */
+    public Book insertWithNewId(String title, String author) {
+        while (true) {
+            Book book = new Book(ids.next(), title, author);
+            if (insertIfAbsent(book)) {
+                return book;
+            }
+        }
+    }
+
+    /**
+     * Returns an id that is not in use and will never be allocated by
+     * {@link #insertWithNewId}, in this store or any store forked from it.
+     */
+    public long reserveId() {
+        return ids.next();
+    }
+
+    /**
+     * Replaces an existing book.
+     *
+     * @return {@code true} if a book with that id existed
+     */
+    public boolean replace(Book book) {
+        Stripe stripe = stripeFor(book.getId());
+        stripe.lock.lock();
+        try {
+            Catalog current = stripe.catalog;
+            Book previous = current.books.get(book.getId());
+            if (previous == null) {
+                return false;
+            }
+            Book stamped = book.withVersion(versions.incrementAndGet());
+            publish(stripe, current.replace(previous, stamped), stamped, book.getId());
+        } finally {
+            stripe.lock.unlock();
+        }
+        snapshotIfDue();
+        return true;
+    }
+
+    public Book remove(long id) {
+        Stripe stripe = stripeFor(id);
+        Book removed;
+        stripe.lock.lock();
+        try {
+            Catalog current = stripe.catalog;
+            removed = current.books.get(id);
+            if (removed == null) {
+                return null;
+            }
+            publish(stripe, current.minus(removed), null, id);
+        } finally {
+            stripe.lock.unlock();
+        }
+        snapshotIfDue();
+        return removed;
+    }
+
+    /** The number of books, summed over the stripes one at a time. */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.catalog.books.size();
+        }
+        return size;
+    }
+
+    /**
+     * Waits until the writes made so far are as durable as the log's
+     * {@link BookLog.Fsync} policy makes them. Returns at once for a store
+     * in memory.
+     *
+     * @throws UncheckedIOException if the log could not be written
+     */
+    public void sync() {
+        if (log != null) {
+            log.sync();
+        }
+    }
+
+    /** The log of a durable store, or {@code null} for one in memory. */
+    public BookLog log() {
+        return log;
+    }
+
+    /**
+     * Writes out and closes the log of a durable store, which takes no
+     * writes after. Does nothing for a store in memory.
+     */
+    public void close() {
+        if (log != null) {
+            try {
+                log.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not close the book log", e);
+            }
+        }
+    }
+
+    public List<Book> list() {
+        return snapshot().list();
+    }
+
+    /**
+     * The books as they are now, as of one moment across all stripes.
+     * Later writes do not affect the snapshot.
+     */
+    public Snapshot snapshot() {
+        Catalog[] read = read();
+        for (int attempt = 1; attempt < SNAPSHOT_ATTEMPTS; attempt++) {
+            // unchanged between two reads, so every stripe held its version at the moment in between
+            Catalog[] again = read();
+            if (Arrays.equals(read, again)) {
+                return new Snapshot(read);
+            }
+            read = again;
+        }
+        lockAll();
+        try {
+            return new Snapshot(read());
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Puts the books back as they were in the snapshot. Ids handed out since
+     * stay taken, so ids reserved before the restore are never reallocated.
+     * A durable store writes the books to a log snapshot before it returns,
+     * which takes time in proportion to their number.
+     */
+    public void restore(Snapshot snapshot) {
+        if (snapshot.catalogs.length != stripes.length) {
+            throw new IllegalArgumentException("Snapshot of a store with " + snapshot.catalogs.length
+                    + " stripes cannot restore one with " + stripes.length);
+        }
+        lockAll();
+        try {
+            if (log != null) {
+                log.snapshot(snapshot, ids.last(), true);
+            }
+            for (int i = 0; i < stripes.length; i++) {
+                // a new object, so a snapshot being read never mistakes the restore for no change
+                stripes[i].catalog = new Catalog(snapshot.catalogs[i].books, snapshot.catalogs[i].index);
+            }
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * A new store starting with the snapshot's books. The fork shares the
+     * id allocator of this store, so ids stay unique across all forks.
+     */
+    public BookStore fork(Snapshot snapshot) {
+        return new BookStore(snapshot.catalogs, ids, versions, null);
+    }
+
+    /**
+     * Makes {@code updated} the stripe's current version; the caller holds
+     * the stripe's lock. A durable store logs the write first.
+     *
+     * @param written the book stored, or {@code null} for a removal of {@code id}
+     */
+    private void publish(Stripe stripe, Catalog updated, Book written, long id) {
+        if (log != null) {
+            if (written != null) {
+                log.put(written);
+            } else {
+                log.delete(id);
+            }
+        }
+        stripe.catalog = updated;
+    }
+
+    /**
+     * Starts a log snapshot of a durable store if one is due. All stripes
+     * are locked so the snapshot is exactly the writes logged before the
+     * segment it starts; the caller holds none of them.
+     */
+    private void snapshotIfDue() {
+        if (log == null || !log.snapshotDue()) {
+            return;
+        }
+        lockAll();
+        try {
+            if (log.snapshotDue()) {
+                log.snapshot(new Snapshot(read()), ids.last(), false);
+            }
+        } finally {
+            unlockAll();
+        }
+    }
+
+    private Stripe stripeFor(long id) {
+        return stripes[(int) (PersistentBookMap.mix(id) >>> stripeShift)];
+    }
+
+    private Catalog[] read() {
+        Catalog[] catalogs = new Catalog[stripes.length];
+        for (int i = 0; i < stripes.length; i++) {
+            catalogs[i] = stripes[i].catalog;
+        }
+        return catalogs;
+    }
+
+    /** Locks every stripe, always in the same order. */
+    private void lockAll() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].lock.unlock();
+        }
+    }
+
+    /** A power of two of empty stripes, at least two and at least {@code concurrency}. */
+    private static Catalog[] empty(int concurrency) {
+        Catalog[] catalogs = new Catalog[stripeCount(concurrency)];
+        Arrays.fill(catalogs, Catalog.EMPTY);
+        return catalogs;
+    }
+
+    private static int stripeCount(int concurrency) {
+        return Integer.highestOneBit(Math.max(1, concurrency - 1) << 1);
+    }
+
+    private static void checkId(long id) {
+        if (id == 0) {
+            throw new IllegalArgumentException("Book id must not be 0");
+        }
+    }
+
+    /**
+     * An immutable version of a store's books: one version of each stripe.
+     */
+    public static final class Snapshot {
+        private final Catalog[] catalogs;
+
+        private Snapshot(Catalog[] catalogs) {
+            this.catalogs = catalogs;
+        }
+
+        public int size() {
+            int size = 0;
+            for (Catalog catalog : catalogs) {
+                size += catalog.books.size();
+            }
+            return size;
+        }
+
+        /**
+         * Changes with every write that went into the snapshot, see
+         * {@link PersistentBookMap#digest()}; the stripes' digests add up to
+         * what one map of all the books would have.
+         */
+        public long digest() {
+            long digest = 0;
+            for (Catalog catalog : catalogs) {
+                digest += catalog.books.digest();
+            }
+            return digest;
+        }
+
+        /** The books sorted by id. */
+        public List<Book> list() {
+            List<Book> all = new ArrayList<>(size());
+            for (Catalog catalog : catalogs) {
+                catalog.books.forEach(all::add);
+            }
+            all.sort(Comparator.comparingLong(Book::getId));
+            return all;
+        }
+
+        /**
+         * Up to {@code limit} books that match the query, in id order,
+         * starting after the id {@code after}; {@code Long.MIN_VALUE} starts
+         * at the first. Passing the last id of one page gets the next.
+         * Each stripe's matches are found as the merge asks for them, so a
+         * page costs about {@code limit} matches however many stripes there are.
+         */
+        public List<Book> search(BookQuery query, long after, int limit) {
+            PriorityQueue<Head> heads = new PriorityQueue<>(catalogs.length);
+            for (Catalog catalog : catalogs) {
+                BookIndex.Matches matches = catalog.index.matches(query, after, catalog.books);
+                Book first = matches.next();
+                if (first != null) {
+                    heads.add(new Head(first, matches));
+                }
+            }
+            List<Book> found = new ArrayList<>(Math.min(limit, 64));
+            while (found.size() < limit && !heads.isEmpty()) {
+                Head head = heads.poll();
+                found.add(head.book);
+                Book next = head.matches.next();
+                if (next != null) {
+                    heads.add(new Head(next, head.matches));
+                }
+            }
+            return found;
+        }
+    }
+
+    /** A stripe's next match in {@link Snapshot#search}. */
+    private static final class Head implements Comparable<Head> {
+        final Book book;
+        final BookIndex.Matches matches;
+
+        Head(Book book, BookIndex.Matches matches) {
+            this.book = book;
+            this.matches = matches;
+        }
+
+        @Override
+        public int compareTo(Head other) {
+            return Long.compare(book.getId(), other.book.getId());
+        }
+    }
+
+    /** The ids whose mixed hash starts with one pattern of top bits. */
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        volatile Catalog catalog;
+
+        Stripe(Catalog catalog) {
+            this.catalog = catalog;
+        }
+    }
+
+    /**
+     * A stripe's books and their index as of one write.
+     */
+    private static final class Catalog {
+        static final Catalog EMPTY = new Catalog(PersistentBookMap.EMPTY, BookIndex.EMPTY);
+
+        final PersistentBookMap books;
+        final BookIndex index;
+
+        Catalog(PersistentBookMap books, BookIndex index) {
+            this.books = books;
+            this.index = index;
+        }
+
+        /**
+         * The catalogs of the stripes of a store for {@code concurrency}
+         * writers, holding the books, which must be in id order.
+         */
+        static Catalog[] of(List<Book> books, int concurrency) {
+            int count = stripeCount(concurrency);
+            int shift = 64 - Integer.numberOfTrailingZeros(count);
+            List<List<Book>> parts = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                parts.add(new ArrayList<>(books.size() / count + 16));
+            }
+            for (Book book : books) {
+                parts.get((int) (PersistentBookMap.mix(book.getId()) >>> shift)).add(book);
+            }
+            Catalog[] catalogs = new Catalog[count];
+            for (int i = 0; i < count; i++) {
+                List<Book> part = parts.get(i);
+                catalogs[i] = new Catalog(PersistentBookMap.of(part), BookIndex.of(part));
+                parts.set(i, null);
+            }
+            return catalogs;
+        }
+
+        Catalog plus(Book book) {
+            return new Catalog(books.plus(book), index.plus(book));
+        }
+
+        Catalog replace(Book previous, Book book) {
+            return new Catalog(books.plus(book), index.replace(previous, book));
+        }
+
+        Catalog minus(Book book) {
+            return new Catalog(books.minus(book.getId()), index.minus(book));
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Cuts a bulk request body into its items in one pass over the stream.
+ *
+ * The body is either a JSON array of objects or newline-delimited JSON
+ * with one object per line, told apart by its first non-blank byte. Array
+ * elements are delimited by tracking only brackets, braces and strings,
+ * so an element that is not valid JSON is still cut out whole and can be
+ * rejected on its own while the rest of the array goes through. Blank
+ * lines and a trailing comma are skipped. Only the read buffer and the
+ * current item are held, however long the body is.
+ */
+final class BulkItems {
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[8192];
+    private int pos;
+    private int limit;
+    /** Stream offset of buffer[0], for error messages. */
+    private long base;
+
+    private byte[] item = new byte[256];
+    private int length;
+
+    private boolean started;
+    private boolean array;
+    private boolean done;
+
+    BulkItems(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Returns the next item's text, or {@code null} after the last one.
+     *
+     * @throws IllegalArgumentException if an array is not terminated or is
+     *                                  followed by anything but whitespace
+     */
+    String next() throws IOException {
+        if (!started) {
+            started = true;
+            int first = skipWhitespace();
+            array = first == '[';
+            if (array) {
+                pos++;
+            }
+        }
+        while (!done) {
+            String next = array ? nextElement() : nextLine();
+            if (next != null) {
+                return next;
+            }
+        }
+        return null;
+    }
+
+    private String nextLine() throws IOException {
+        length = 0;
+        while (true) {
+            if (pos == limit && !fill()) {
+                done = true;
+                break;
+            }
+            int c = buffer[pos++];
+            if (c == '\n') {
+                break;
+            }
+            append(c);
+        }
+        if (length > 0 && item[length - 1] == '\r') {
+            length--;
+        }
+        return isBlank() ? null : text();
+    }
+
+    private String nextElement() throws IOException {
+        length = 0;
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        while (true) {
+            if (pos == limit && !fill()) {
+                throw new IllegalArgumentException("Unterminated array at offset " + (base + pos));
+            }
+            int c = buffer[pos++];
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if ((c == '}' || c == ']') && depth > 0) {
+                depth--;
+            } else if (depth == 0 && (c == ',' || c == ']')) {
+                if (c == ']') {
+                    done = true;
+                    if (skipWhitespace() >= 0) {
+                        throw new IllegalArgumentException("Trailing data at offset " + (base + pos));
+                    }
+                    // "[]" and a trailing comma end the array without another item
+                    return isBlank() ? null : text();
+                }
+                return text();
+            }
+            append(c);
+        }
+    }
+
+    /** Skips whitespace and returns the next byte without consuming it, or -1 at the end. */
+    private int skipWhitespace() throws IOException {
+        while (pos < limit || fill()) {
+            int c = buffer[pos];
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return c & 0xff;
+            }
+            pos++;
+        }
+        return -1;
+    }
+
+    private boolean fill() throws IOException {
+        base += limit;
+        pos = 0;
+        limit = 0;
+        int read = in.read(buffer);
+        if (read <= 0) {
+            return false;
+        }
+        limit = read;
+        return true;
+    }
+
+    private void append(int c) {
+        if (length == item.length) {
+            item = Arrays.copyOf(item, item.length << 1);
+        }
+        item[length++] = (byte) c;
+    }
+
+    private boolean isBlank() {
+        for (int i = 0; i < length; i++) {
+            byte c = item[i];
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String text() {
+        return new String(item, 0, length, StandardCharsets.UTF_8);
+    }
+}
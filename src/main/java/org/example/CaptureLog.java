@@ -0,0 +1,271 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Binary log of captured request/response pairs.
+ *
+ * <pre>
+ * header:  "BKCAP" version:u8
+ * record:  length:i32 offsetNanos:i64 latencyNanos:i64 status:u16
+ *          method:i32-prefixed path:i32-prefixed authorization:i32-prefixed contentType:i32-prefixed
+ *          requestBody:i32-prefixed responseBody:i32-prefixed
+ * </pre>
+ *
+ * All numbers are big-endian and strings UTF-8. Version 1 logs, whose
+ * method and content type were u8-prefixed and path and authorization
+ * u16-prefixed, are still read; those short prefixes wrapped around for
+ * long values, which is why they were widened. {@code length} counts the
+ * bytes after itself; a length of 0, which is what the unwritten, zero
+ * filled tail of a mapped region reads as, ends the log. A log whose
+ * writer was never closed is therefore still readable up to its last
+ * complete record.
+ */
+public final class CaptureLog {
+
+    private static final byte[] MAGIC = {'B', 'K', 'C', 'A', 'P'};
+    private static final byte VERSION = 2;
+    private static final int HEADER_SIZE = MAGIC.length + 1;
+
+    private CaptureLog() {
+    }
+
+    public static Writer create(Path file) throws IOException {
+        return new Writer(file, 16 << 20);
+    }
+
+    public static Reader open(Path file) throws IOException {
+        return new Reader(Files.newInputStream(file));
+    }
+
+    /**
+     * One captured exchange. {@code offsetNanos} is when the request was sent,
+     * relative to the start of the capture; {@code path} includes the query.
+     */
+    public static final class Entry {
+        public final long offsetNanos;
+        public final long latencyNanos;
+        public final int status;
+        public final String method;
+        public final String path;
+        /** The Authorization header, or an empty string. */
+        public final String authorization;
+        /** The Content-Type header, or an empty string. */
+        public final String contentType;
+        public final byte[] requestBody;
+        public final byte[] responseBody;
+
+        public Entry(long offsetNanos, long latencyNanos, int status, String method, String path,
+                     String authorization, String contentType, byte[] requestBody, byte[] responseBody) {
+            this.offsetNanos = offsetNanos;
+            this.latencyNanos = latencyNanos;
+            this.status = status;
+            this.method = method;
+            this.path = path;
+            this.authorization = authorization == null ? "" : authorization;
+            this.contentType = contentType == null ? "" : contentType;
+            this.requestBody = requestBody == null ? new byte[0] : requestBody;
+            this.responseBody = responseBody == null ? new byte[0] : responseBody;
+        }
+
+        @Override
+        public String toString() {
+            return method + " " + path + " -> " + status;
+        }
+    }
+
+    /**
+     * Appends entries through a memory-mapped region of the file, mapping
+     * the next region when one fills up. Entries are encoded outside the
+     * lock; only the copy into the mapping is serialized. {@link #close()}
+     * trims the file to the bytes written.
+     */
+    public static final class Writer implements Closeable {
+        private final FileChannel channel;
+        private final int regionSize;
+        private final ThreadLocal<ByteBuffer> scratch = ThreadLocal.withInitial(() -> ByteBuffer.allocate(4096));
+        private MappedByteBuffer region;
+        private long written;
+        private boolean closed;
+
+        Writer(Path file, int regionSize) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.regionSize = regionSize;
+            map(0, regionSize);
+            region.put(MAGIC).put(VERSION);
+            written = HEADER_SIZE;
+        }
+
+        public void append(Entry entry) throws IOException {
+            ByteBuffer record = encode(entry);
+            synchronized (this) {
+                if (closed) {
+                    throw new IOException("Capture log is closed");
+                }
+                if (region.remaining() < record.remaining()) {
+                    map(written, Math.max(regionSize, record.remaining()));
+                }
+                region.put(record);
+                written += record.limit();
+            }
+        }
+
+        /** Bytes written so far, including the header. */
+        public synchronized long size() {
+            return written;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            region.force();
+            region = null;
+            channel.truncate(written);
+            channel.close();
+        }
+
+        private void map(long position, int size) throws IOException {
+            if (region != null) {
+                region.force();
+            }
+            region = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+        }
+
+        private ByteBuffer encode(Entry entry) {
+            byte[] method = entry.method.getBytes(StandardCharsets.US_ASCII);
+            byte[] path = entry.path.getBytes(StandardCharsets.UTF_8);
+            byte[] authorization = entry.authorization.getBytes(StandardCharsets.UTF_8);
+            byte[] contentType = entry.contentType.getBytes(StandardCharsets.UTF_8);
+            long length = 8 + 8 + 2
+                    + 4L + method.length + 4 + path.length + 4 + authorization.length + 4 + contentType.length
+                    + 4 + entry.requestBody.length + 4 + entry.responseBody.length;
+            if (length > Integer.MAX_VALUE - 4) {
+                throw new IllegalArgumentException("Entry of " + length + " bytes is too large to capture: " + entry);
+            }
+            ByteBuffer buffer = scratch.get();
+            if (buffer.capacity() < 4 + length) {
+                buffer = ByteBuffer.allocate((int) Math.min(Integer.highestOneBit((int) length + 4) * 2L,
+                        Integer.MAX_VALUE - 8));
+                scratch.set(buffer);
+            }
+            buffer.clear();
+            buffer.putInt((int) length)
+                    .putLong(entry.offsetNanos)
+                    .putLong(entry.latencyNanos)
+                    .putShort((short) entry.status);
+            buffer.putInt(method.length).put(method);
+            buffer.putInt(path.length).put(path);
+            buffer.putInt(authorization.length).put(authorization);
+            buffer.putInt(contentType.length).put(contentType);
+            buffer.putInt(entry.requestBody.length).put(entry.requestBody);
+            buffer.putInt(entry.responseBody.length).put(entry.responseBody);
+            return buffer.flip();
+        }
+    }
+
+    /**
+     * Streams entries back in the order they were written, holding one at a time.
+     */
+    public static final class Reader implements Closeable, Iterator<Entry> {
+        private final DataInputStream in;
+        private final boolean shortPrefixes;
+        private Entry next;
+        private boolean done;
+
+        Reader(InputStream in) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+            byte[] header = new byte[HEADER_SIZE];
+            this.in.readFully(header);
+            if (!Arrays.equals(Arrays.copyOf(header, MAGIC.length), MAGIC)) {
+                throw new IOException("Not a capture log");
+            }
+            if (header[MAGIC.length] != VERSION && header[MAGIC.length] != 1) {
+                throw new IOException("Unsupported capture log version " + header[MAGIC.length]);
+            }
+            this.shortPrefixes = header[MAGIC.length] == 1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                try {
+                    next = read();
+                } catch (IOException e) {
+                    throw new IllegalStateException("Corrupt capture log", e);
+                }
+                done = next == null;
+            }
+            return next != null;
+        }
+
+        @Override
+        public Entry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Entry entry = next;
+            next = null;
+            return entry;
+        }
+
+        private Entry read() throws IOException {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                return null;
+            }
+            if (length == 0) {
+                return null;
+            }
+            long offsetNanos = in.readLong();
+            long latencyNanos = in.readLong();
+            int status = in.readUnsignedShort();
+            String method = string(shortPrefixes ? in.readUnsignedByte() : in.readInt());
+            String path = string(shortPrefixes ? in.readUnsignedShort() : in.readInt());
+            String authorization = string(shortPrefixes ? in.readUnsignedShort() : in.readInt());
+            String contentType = string(shortPrefixes ? in.readUnsignedByte() : in.readInt());
+            byte[] requestBody = bytes(in.readInt());
+            byte[] responseBody = bytes(in.readInt());
+            return new Entry(offsetNanos, latencyNanos, status, method, path, authorization, contentType,
+                    requestBody, responseBody);
+        }
+
+        private String string(int length) throws IOException {
+            return new String(bytes(length), StandardCharsets.UTF_8);
+        }
+
+        private byte[] bytes(int length) throws IOException {
+            if (length < 0) {
+                throw new IOException("Negative field length " + length);
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return bytes;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package org.example;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content-coding negotiation and streaming compression of response bodies.
+ *
+ * A body is compressed when the request's Accept-Encoding allows gzip or
+ * deflate and the body is at least {@code threshold} bytes; below that
+ * the framing and the deflater's setup cost more than they save. The body
+ * is compressed as it is written, a chunk at a time, so neither the
+ * uncompressed nor the compressed whole is ever held in memory; see
+ * {@link #open}. Instances are immutable.
+ */
+final class Compression {
+
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+    static final int DEFAULT_THRESHOLD = 1024;
+    static final Compression DEFAULT = new Compression(Deflater.BEST_SPEED, DEFAULT_THRESHOLD);
+
+    /** Compressed bodies that end within this many bytes are sent with a Content-Length. */
+    static final int HELD_BACK = 64 * 1024;
+    private static final int DEFLATER_BUFFER = 8192;
+
+    final int level;
+    final int threshold;
+
+    Compression(int level, int threshold) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Compression level must be -1 to 9, not " + level);
+        }
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Compression threshold must not be negative, not " + threshold);
+        }
+        this.level = level;
+        this.threshold = threshold;
+    }
+
+    /**
+     * The coding to answer a request with: {@value #GZIP} or
+     * {@value #DEFLATE}, whichever Accept-Encoding ranks higher (gzip on a
+     * tie), or {@code null} for none. A coding with {@code q=0} is refused,
+     * and {@code *} stands for the codings not named.
+     */
+    static String negotiate(Headers requestHeaders) {
+        String acceptEncoding = requestHeaders.getFirst("Accept-Encoding");
+        if (acceptEncoding == null) {
+            return null;
+        }
+        double gzip = -1;
+        double deflate = -1;
+        double any = -1;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parameters = element.split(";");
+            double quality = 1;
+            for (int i = 1; i < parameters.length; i++) {
+                String parameter = parameters[i].trim().toLowerCase(Locale.ROOT);
+                if (parameter.startsWith("q=")) {
+                    quality = parseQuality(parameter.substring(2));
+                }
+            }
+            switch (parameters[0].trim().toLowerCase(Locale.ROOT)) {
+                case GZIP: gzip = quality; break;
+                case DEFLATE: deflate = quality; break;
+                case "*": any = quality; break;
+                default: break;
+            }
+        }
+        gzip = gzip < 0 ? any : gzip;
+        deflate = deflate < 0 ? any : deflate;
+        if (gzip > 0 && gzip >= deflate) {
+            return GZIP;
+        }
+        return deflate > 0 ? DEFLATE : null;
+    }
+
+    private static double parseQuality(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Sends the status and headers set so far for a body in the given
+     * coding, and returns the stream to write the body to; closing it
+     * completes the response.
+     *
+     * With a coding, the response gets its Content-Encoding and the ETag,
+     * if any, is suffixed with the coding, since the bytes differ from
+     * the identity representation's. The deflater's output is held back
+     * up to {@value #HELD_BACK} bytes: a body that compresses to less is
+     * sent with a Content-Length, a larger one in chunks as it comes.
+     *
+     * @param coding {@value #GZIP}, {@value #DEFLATE} or {@code null} for none
+     */
+    OutputStream open(HttpExchange exchange, int status, String coding) throws IOException {
+        OutputStream body = new HeldBackBody(exchange, status, HELD_BACK);
+        if (coding == null) {
+            return body;
+        }
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Encoding", coding);
+        String etag = headers.getFirst("ETag");
+        if (etag != null && etag.endsWith("\"")) {
+            headers.set("ETag", etag.substring(0, etag.length() - 1) + "-" + coding + "\"");
+        }
+        return coding.equals(GZIP) ? new Gzip(body, level) : new Deflating(body, level);
+    }
+
+    /**
+     * The ETag a tag sent with {@link #open} had before it was suffixed
+     * with a coding, or the tag itself.
+     */
+    static String identityTag(String etag) {
+        for (String coding : new String[] {GZIP, DEFLATE}) {
+            String suffix = "-" + coding + "\"";
+            if (etag.endsWith(suffix)) {
+                return etag.substring(0, etag.length() - suffix.length()) + "\"";
+            }
+        }
+        return etag;
+    }
+
+    private static final class Gzip extends GZIPOutputStream {
+        Gzip(OutputStream out, int level) throws IOException {
+            super(out, DEFLATER_BUFFER);
+            def.setLevel(level);
+        }
+    }
+
+    private static final class Deflating extends DeflaterOutputStream {
+        Deflating(OutputStream out, int level) {
+            super(out, new Deflater(level), DEFLATER_BUFFER);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                def.end();
+            }
+        }
+    }
+
+    /**
+     * Holds the first bytes of a body back: if the body ends within the
+     * limit it goes out with its Content-Length, otherwise the headers are
+     * sent for chunked transfer as soon as it passes the limit.
+     */
+    private static final class HeldBackBody extends OutputStream {
+        private final HttpExchange exchange;
+        private final int status;
+        private final byte[] held;
+        private int length;
+        private OutputStream out;
+
+        HeldBackBody(HttpExchange exchange, int status, int limit) {
+            this.exchange = exchange;
+            this.status = status;
+            this.held = new byte[limit];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int count) throws IOException {
+            if (out == null) {
+                if (length + count <= held.length) {
+                    System.arraycopy(bytes, offset, held, length, count);
+                    length += count;
+                    return;
+                }
+                exchange.sendResponseHeaders(status, 0);
+                out = exchange.getResponseBody();
+                out.write(held, 0, length);
+            }
+            out.write(bytes, offset, count);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (out == null) {
+                exchange.sendResponseHeaders(status, length == 0 ? -1 : length);
+                out = exchange.getResponseBody();
+                out.write(held, 0, length);
+            }
+            out.close();
+        }
+    }
+}
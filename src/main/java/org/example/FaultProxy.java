@@ -0,0 +1,570 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP/1.1 proxy in front of a books service that injects network faults
+ * on chosen routes: added latency, limited bandwidth, connection resets,
+ * responses cut off mid-body and bursts of 5xx errors.
+ *
+ * <pre>
+ * FaultProxy proxy = FaultProxy.start(server.baseUri());
+ * proxy.route("PUT", "/api/books/{id}").delay(Duration.ofMillis(200)).reset(0.05);
+ * proxy.all().bandwidth(64 * 1024);
+ * ApiSpecs api = ApiSpecs.forBaseUri(proxy.baseUri());
+ * </pre>
+ *
+ * Routes are matched on the method ({@code "*"} for any) and the path with
+ * numeric segments replaced by {@code {id}} ({@code "*"} for any), in the
+ * order they were added; the first match applies. Faults can be changed
+ * while requests are in flight.
+ *
+ * Each client connection gets its own upstream connection and is served
+ * by one thread, request by request, so keep-alive and connection pooling
+ * on the client behave as they would against the service itself. Request
+ * and response bodies must be sized by Content-Length or chunked; a
+ * response without either is read until the upstream closes.
+ */
+public final class FaultProxy implements AutoCloseable {
+
+    private static final Set<String> HOP_BY_HOP = Set.of("transfer-encoding", "keep-alive", "proxy-connection");
+
+    private final ServerSocket listener;
+    private final URI target;
+    private final ExecutorService executor;
+    private final Random random;
+    private final List<Faults> routes = new CopyOnWriteArrayList<>();
+    private final Set<Socket> open = ConcurrentHashMap.newKeySet();
+    private final LongAdder requests = new LongAdder();
+    private final Map<String, LongAdder> injected = new ConcurrentHashMap<>();
+
+    private FaultProxy(ServerSocket listener, URI target, long seed) {
+        this.listener = listener;
+        this.target = target;
+        this.random = new Random(seed);
+        this.executor = VirtualThreads.newExecutor("fault-proxy");
+        executor.execute(this::accept);
+    }
+
+    /**
+     * Starts a proxy on an ephemeral loopback port with faults drawn from a fixed seed.
+     *
+     * @param target scheme, host and port of the service to forward to
+     */
+    public static FaultProxy start(String target) {
+        return start(target, 0, 42);
+    }
+
+    /**
+     * @param port the port to bind, or 0 for an ephemeral one
+     * @param seed seed for the random draws deciding whether a fault fires
+     */
+    public static FaultProxy start(String target, int port, long seed) {
+        URI uri = URI.create(target);
+        if (!"http".equals(uri.getScheme()) || uri.getPort() < 0) {
+            throw new IllegalArgumentException("Expected http://host:port but got " + target);
+        }
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        try {
+            ServerSocket listener = new ServerSocket();
+            listener.bind(address, 1024);
+            return new FaultProxy(listener, uri, seed);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not bind " + address, e);
+        }
+    }
+
+    public String baseUri() {
+        return "http://" + listener.getInetAddress().getHostAddress() + ":" + listener.getLocalPort();
+    }
+
+    /**
+     * The faults for a route, created on first use.
+     *
+     * @param method HTTP method or {@code "*"}
+     * @param path   templated path such as {@code /api/books/{id}}, or {@code "*"}
+     */
+    public Faults route(String method, String path) {
+        for (Faults faults : routes) {
+            if (faults.method.equals(method) && faults.path.equals(path)) {
+                return faults;
+            }
+        }
+        Faults faults = new Faults(method, path);
+        routes.add(faults);
+        return faults;
+    }
+
+    /** The faults applied to requests no other route matches. */
+    public Faults all() {
+        return route("*", "*");
+    }
+
+    /** Removes all faults; the proxy then forwards transparently. */
+    public void clear() {
+        routes.clear();
+    }
+
+    /** Requests received from clients, faulted or not. */
+    public long requests() {
+        return requests.sum();
+    }
+
+    /**
+     * How often each fault fired: delay, bandwidth, reset, partial and the
+     * injected status codes.
+     */
+    public Map<String, Long> injected() {
+        Map<String, Long> counts = new TreeMap<>();
+        injected.forEach((fault, count) -> counts.put(fault, count.sum()));
+        return counts;
+    }
+
+    @Override
+    public void close() {
+        try {
+            listener.close();
+        } catch (IOException ignored) {
+            // closing anyway
+        }
+        for (Socket socket : open) {
+            closeQuietly(socket);
+        }
+        executor.shutdownNow();
+    }
+
+    private void accept() {
+        while (!listener.isClosed()) {
+            try {
+                Socket client = listener.accept();
+                client.setTcpNoDelay(true);
+                open.add(client);
+                executor.execute(() -> serve(client));
+            } catch (IOException e) {
+                if (!listener.isClosed()) {
+                    System.err.println("Fault proxy stopped accepting: " + e);
+                }
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket client) {
+        Socket upstream = null;
+        try {
+            InputStream fromClient = new BufferedInputStream(client.getInputStream());
+            OutputStream toClient = client.getOutputStream();
+            InputStream fromUpstream = null;
+            while (true) {
+                Message request = Message.read(fromClient, null);
+                if (request == null) {
+                    return;
+                }
+                requests.increment();
+                Faults faults = match(request);
+                if (faults != null && faults.delayNanos > 0) {
+                    count("delay");
+                    sleep(faults.delayNanos + (faults.jitterNanos > 0 ? (long) (draw() * faults.jitterNanos) : 0));
+                }
+                if (faults != null && faults.fires(faults.reset)) {
+                    count("reset");
+                    client.setSoLinger(true, 0);
+                    return;
+                }
+                int status = faults == null ? 0 : faults.injectedStatus();
+                if (status > 0) {
+                    count(String.valueOf(status));
+                    injectError(toClient, status);
+                    continue;
+                }
+                if (upstream == null || upstream.isClosed()) {
+                    upstream = connect();
+                    fromUpstream = new BufferedInputStream(upstream.getInputStream());
+                }
+                long bandwidth = faults == null ? 0 : faults.bytesPerSecond;
+                request.write(upstream.getOutputStream(), bandwidth);
+                Message response = Message.read(fromUpstream, request.method);
+                if (response == null) {
+                    throw new EOFException("Upstream closed the connection");
+                }
+                if (bandwidth > 0) {
+                    count("bandwidth");
+                }
+                if (faults != null && response.body.length > 0 && faults.fires(faults.partial)) {
+                    count("partial");
+                    response.writePartial(toClient);
+                    return;
+                }
+                response.write(toClient, bandwidth);
+                if (request.closes() || response.closes()) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // a client or upstream went away; drop the connection pair
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            open.remove(client);
+            closeQuietly(client);
+            if (upstream != null) {
+                open.remove(upstream);
+                closeQuietly(upstream);
+            }
+        }
+    }
+
+    private Faults match(Message request) {
+        String path = LoadReport.template(request.path());
+        for (Faults faults : routes) {
+            if ((faults.method.equals("*") || faults.method.equals(request.method))
+                    && (faults.path.equals("*") || faults.path.equals(path))) {
+                return faults;
+            }
+        }
+        return null;
+    }
+
+    private Socket connect() throws IOException {
+        Socket upstream = new Socket();
+        open.add(upstream);
+        upstream.setTcpNoDelay(true);
+        upstream.connect(new InetSocketAddress(target.getHost(), target.getPort()), 5_000);
+        return upstream;
+    }
+
+    private static void injectError(OutputStream out, int status) throws IOException {
+        byte[] body = "Injected fault".getBytes(StandardCharsets.US_ASCII);
+        String head = "HTTP/1.1 " + status + " Injected\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Length: " + body.length + "\r\n\r\n";
+        out.write(head.getBytes(StandardCharsets.US_ASCII));
+        out.write(body);
+        out.flush();
+    }
+
+    private void count(String fault) {
+        injected.computeIfAbsent(fault, f -> new LongAdder()).increment();
+    }
+
+    private double draw() {
+        synchronized (random) {
+            return random.nextDouble();
+        }
+    }
+
+    private static void sleep(long nanos) throws InterruptedException {
+        Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // already gone
+        }
+    }
+
+    /**
+     * Faults for one route. Probabilities are per request; setters return
+     * this so faults can be chained.
+     */
+    public final class Faults {
+        final String method;
+        final String path;
+        volatile long delayNanos;
+        volatile long jitterNanos;
+        volatile long bytesPerSecond;
+        volatile double reset;
+        volatile double partial;
+        volatile double errorProbability;
+        volatile int errorStatus;
+        volatile int burstLength;
+        private final AtomicInteger burstRemaining = new AtomicInteger();
+
+        Faults(String method, String path) {
+            this.method = method;
+            this.path = path;
+        }
+
+        /** Holds every request before forwarding it. */
+        public Faults delay(Duration delay) {
+            return delay(delay, Duration.ZERO);
+        }
+
+        /** Holds every request for {@code delay} plus a uniform random share of {@code jitter}. */
+        public Faults delay(Duration delay, Duration jitter) {
+            this.delayNanos = delay.toNanos();
+            this.jitterNanos = jitter.toNanos();
+            return this;
+        }
+
+        /** Paces request and response bytes to this rate; 0 removes the limit. */
+        public Faults bandwidth(long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+            return this;
+        }
+
+        /** Resets the client connection (TCP RST) instead of forwarding the request. */
+        public Faults reset(double probability) {
+            this.reset = probability;
+            return this;
+        }
+
+        /** Forwards the request but sends only the headers and half of the response body, then closes. */
+        public Faults partialBody(double probability) {
+            this.partial = probability;
+            return this;
+        }
+
+        /**
+         * With the given probability per request, starts a burst in which
+         * this and the next {@code length - 1} requests on the route are
+         * answered with {@code status} without reaching the service.
+         */
+        public Faults errorBurst(int status, double probability, int length) {
+            if (status < 500 || status > 599 || length < 1) {
+                throw new IllegalArgumentException("Expected a 5xx status and a positive length");
+            }
+            this.errorStatus = status;
+            this.burstLength = length;
+            this.errorProbability = probability;
+            return this;
+        }
+
+        boolean fires(double probability) {
+            return probability > 0 && (probability >= 1 || draw() < probability);
+        }
+
+        int injectedStatus() {
+            if (errorStatus == 0) {
+                return 0;
+            }
+            while (true) {
+                int remaining = burstRemaining.get();
+                if (remaining == 0) {
+                    break;
+                }
+                if (burstRemaining.compareAndSet(remaining, remaining - 1)) {
+                    return errorStatus;
+                }
+            }
+            if (fires(errorProbability)) {
+                burstRemaining.addAndGet(burstLength - 1);
+                return errorStatus;
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s %s: delay %d ms, bandwidth %d B/s, reset %.2f, partial %.2f, %d x%d at %.2f",
+                    method, path, delayNanos / 1_000_000, bytesPerSecond, reset, partial, errorStatus, burstLength,
+                    errorProbability);
+        }
+    }
+
+    /**
+     * One request or response: the start line, headers with chunked
+     * transfer encoding removed, and the whole body.
+     */
+    private static final class Message {
+        final String startLine;
+        final String method;
+        final List<String> headers;
+        final byte[] body;
+
+        private Message(String startLine, String method, List<String> headers, byte[] body) {
+            this.startLine = startLine;
+            this.method = method;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        /**
+         * Reads a request, or with {@code requestMethod} set the response to
+         * it. Returns null if the stream ends before a start line.
+         */
+        static Message read(InputStream in, String requestMethod) throws IOException {
+            String startLine = line(in);
+            if (startLine == null) {
+                return null;
+            }
+            List<String> headers = new ArrayList<>();
+            long length = -1;
+            boolean chunked = false;
+            boolean close = false;
+            for (String header = line(in); header != null && !header.isEmpty(); header = line(in)) {
+                int colon = header.indexOf(':');
+                String name = colon < 0 ? header : header.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                String value = colon < 0 ? "" : header.substring(colon + 1).trim();
+                if (name.equals("content-length")) {
+                    length = Long.parseLong(value);
+                } else if (name.equals("transfer-encoding")) {
+                    chunked = value.toLowerCase(Locale.ROOT).contains("chunked");
+                } else if (name.equals("connection")) {
+                    close = value.equalsIgnoreCase("close");
+                }
+                if (!HOP_BY_HOP.contains(name) && !name.equals("content-length")) {
+                    headers.add(header);
+                }
+            }
+            byte[] body;
+            String method = requestMethod == null ? startLine.substring(0, Math.max(0, startLine.indexOf(' '))) : null;
+            if (requestMethod != null && !hasBody(requestMethod, startLine)) {
+                body = new byte[0];
+            } else if (chunked) {
+                body = chunks(in);
+            } else if (length >= 0) {
+                body = in.readNBytes((int) length);
+                if (body.length < length) {
+                    throw new EOFException("Body ended after " + body.length + " of " + length + " bytes");
+                }
+            } else if (requestMethod != null && close) {
+                body = in.readAllBytes();
+            } else {
+                body = new byte[0];
+            }
+            return new Message(startLine, method, headers, body);
+        }
+
+        String path() {
+            int start = startLine.indexOf(' ') + 1;
+            int end = startLine.indexOf(' ', start);
+            String target = startLine.substring(start, end < 0 ? startLine.length() : end);
+            int query = target.indexOf('?');
+            return query < 0 ? target : target.substring(0, query);
+        }
+
+        boolean closes() {
+            for (String header : headers) {
+                if (header.regionMatches(true, 0, "connection:", 0, 11) && header.substring(11).trim().equalsIgnoreCase("close")) {
+                    return true;
+                }
+            }
+            return startLine.startsWith("HTTP/1.0");
+        }
+
+        void write(OutputStream out, long bytesPerSecond) throws IOException, InterruptedException {
+            byte[] head = head();
+            if (bytesPerSecond <= 0) {
+                out.write(head);
+                out.write(body);
+                out.flush();
+                return;
+            }
+            // about 100 writes a second, each followed by the wait that keeps the total on pace
+            int slice = (int) Math.max(1, Math.min(64 * 1024, bytesPerSecond / 100));
+            long start = System.nanoTime();
+            long sent = 0;
+            for (byte[] part : new byte[][] {head, body}) {
+                for (int offset = 0; offset < part.length; offset += slice) {
+                    int size = Math.min(slice, part.length - offset);
+                    out.write(part, offset, size);
+                    out.flush();
+                    sent += size;
+                    long wait = start + sent * 1_000_000_000L / bytesPerSecond - System.nanoTime();
+                    if (wait > 0) {
+                        sleep(wait);
+                    }
+                }
+            }
+        }
+
+        void writePartial(OutputStream out) throws IOException {
+            out.write(head());
+            out.write(body, 0, body.length / 2);
+            out.flush();
+        }
+
+        private byte[] head() {
+            StringBuilder head = new StringBuilder(startLine).append("\r\n");
+            for (String header : headers) {
+                head.append(header).append("\r\n");
+            }
+            if (body.length > 0 || method == null || method.equals("POST") || method.equals("PUT")) {
+                head.append("Content-Length: ").append(body.length).append("\r\n");
+            }
+            return head.append("\r\n").toString().getBytes(StandardCharsets.ISO_8859_1);
+        }
+
+        private static boolean hasBody(String requestMethod, String statusLine) {
+            if (requestMethod.equals("HEAD")) {
+                return false;
+            }
+            String[] parts = statusLine.split(" ", 3);
+            int status = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+            return status >= 200 && status != 204 && status != 304;
+        }
+
+        private static byte[] chunks(InputStream in) throws IOException {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            while (true) {
+                String size = line(in);
+                if (size == null) {
+                    throw new EOFException("Chunked body ended early");
+                }
+                int semicolon = size.indexOf(';');
+                int length = Integer.parseInt((semicolon < 0 ? size : size.substring(0, semicolon)).trim(), 16);
+                if (length == 0) {
+                    for (String trailer = line(in); trailer != null && !trailer.isEmpty(); trailer = line(in)) {
+                        // trailers are dropped
+                    }
+                    return body.toByteArray();
+                }
+                byte[] chunk = in.readNBytes(length);
+                if (chunk.length < length) {
+                    throw new EOFException("Chunk ended early");
+                }
+                body.write(chunk);
+                line(in);
+            }
+        }
+
+        private static String line(InputStream in) throws IOException {
+            StringBuilder line = new StringBuilder();
+            int c;
+            try {
+                while ((c = in.read()) != -1) {
+                    if (c == '\n') {
+                        int end = line.length();
+                        return end > 0 && line.charAt(end - 1) == '\r' ? line.substring(0, end - 1) : line.toString();
+                    }
+                    line.append((char) c);
+                }
+            } catch (SocketException e) {
+                if (line.length() == 0) {
+                    return null;
+                }
+                throw e;
+            }
+            return line.length() == 0 ? null : line.toString();
+        }
+    }
+}
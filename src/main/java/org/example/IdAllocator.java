@@ -0,0 +1,30 @@
+package org.example;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out ids for books created without one. Ids are never reused and
+ * always stay above the highest id that has been observed.
+ */
+public final class IdAllocator {
+
+    private final AtomicLong last = new AtomicLong();
+
+    public long next() {
+        return last.incrementAndGet();
+    }
+
+    /**
+     * Records an explicitly chosen id so later allocations skip past it.
+     */
+    public void observe(long id) {
+        long current = last.get();
+        while (id > current && !last.compareAndSet(current, id)) {
+            current = last.get();
+        }
+    }
+
+    public long last() {
+        return last.get();
+    }
+}
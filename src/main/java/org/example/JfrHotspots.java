@@ -0,0 +1,349 @@
+package org.example;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+
+/**
+ * Per-endpoint hotspot report of a Flight Recorder file from a test run.
+ *
+ * Each client call, a {@value #API_CALL} event, adds its latency, status
+ * and role to its endpoint ({@code GET /api/books/{id}}), together with
+ * what it waited on: the time its thread spent in socket reads and parked,
+ * and the time a GC pause overlapped it. The server's
+ * {@value #SERVER_PHASE} events add up per endpoint and phase, so the
+ * report shows how much of an endpoint's client time the server spent in
+ * auth, validation, the store and serialization. Endpoints are listed by
+ * total client time, the largest first.
+ *
+ * Socket reads and parks only show up as far as the recording's
+ * thresholds let them; the test run's recording keeps those from 1 ms.
+ * The async client's calls end on another thread than the one that sent
+ * them, so their waits say little.
+ *
+ * <pre>
+ * java -cp target/classes org.example.JfrHotspots --jfr=target/books-api.jfr --top=10
+ * </pre>
+ */
+public final class JfrHotspots {
+
+    static final String API_CALL = "org.example.books.ApiCall";
+    static final String SERVER_PHASE = "org.example.books.ServerPhase";
+    private static final String GC_PAUSE = "jdk.GCPhasePause";
+    private static final String SOCKET_READ = "jdk.SocketRead";
+    private static final String THREAD_PARK = "jdk.ThreadPark";
+
+    private final Map<String, Endpoint> endpoints = new HashMap<>();
+
+    private JfrHotspots() {
+    }
+
+    public static JfrHotspots read(Path recording) throws IOException {
+        JfrHotspots hotspots = new JfrHotspots();
+        List<Call> calls = new ArrayList<>();
+        Intervals pauses = new Intervals();
+        Map<Long, Intervals> socketReads = new HashMap<>();
+        Map<Long, Intervals> parks = new HashMap<>();
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent event = file.readEvent();
+                switch (event.getEventType().getName()) {
+                    case API_CALL: {
+                        Endpoint endpoint = hotspots.endpoint(event.getString("method") + " "
+                                + event.getString("endpoint"));
+                        endpoint.record(event);
+                        calls.add(new Call(endpoint, threadId(event), nanos(event.getStartTime()),
+                                nanos(event.getEndTime())));
+                        break;
+                    }
+                    case SERVER_PHASE:
+                        hotspots.endpoint(event.getString("method") + " " + event.getString("endpoint"))
+                                .phases.computeIfAbsent(event.getString("phase"), phase -> new LatencyHistogram())
+                                .record(event.getDuration().toNanos());
+                        break;
+                    case GC_PAUSE:
+                        pauses.add(event);
+                        break;
+                    case SOCKET_READ:
+                        socketReads.computeIfAbsent(threadId(event), thread -> new Intervals()).add(event);
+                        break;
+                    case THREAD_PARK:
+                        parks.computeIfAbsent(threadId(event), thread -> new Intervals()).add(event);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        pauses.sort();
+        socketReads.values().forEach(Intervals::sort);
+        parks.values().forEach(Intervals::sort);
+        for (Call call : calls) {
+            call.endpoint.gcNanos += pauses.overlap(call.start, call.end);
+            call.endpoint.socketReadNanos += socketReads.getOrDefault(call.thread, Intervals.NONE)
+                    .overlap(call.start, call.end);
+            call.endpoint.parkedNanos += parks.getOrDefault(call.thread, Intervals.NONE).overlap(call.start, call.end);
+        }
+        return hotspots;
+    }
+
+    /**
+     * The endpoints, by total client time and then by total server time,
+     * the largest first.
+     */
+    public Map<String, Endpoint> endpoints() {
+        List<Map.Entry<String, Endpoint>> entries = new ArrayList<>(endpoints.entrySet());
+        entries.sort(Comparator.comparingDouble((Map.Entry<String, Endpoint> entry) -> entry.getValue().totalNanos())
+                .thenComparingDouble(entry -> entry.getValue().serverNanos())
+                .reversed());
+        Map<String, Endpoint> sorted = new LinkedHashMap<>();
+        entries.forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+        return sorted;
+    }
+
+    public void print(PrintStream out) {
+        print(out, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Prints the {@code top} endpoints with most time, each followed by
+     * its statuses, roles and bytes and by its server phases; a phase's
+     * share is of the endpoint's client time.
+     */
+    public void print(PrintStream out, int top) {
+        out.printf("%-28s %7s %10s %9s %9s %9s %9s %10s %10s%n",
+                "endpoint", "calls", "total ms", "p50 ms", "p99 ms", "max ms", "GC ms", "socket ms", "parked ms");
+        int printed = 0;
+        for (Map.Entry<String, Endpoint> entry : endpoints().entrySet()) {
+            if (printed++ == top) {
+                break;
+            }
+            Endpoint endpoint = entry.getValue();
+            LatencyHistogram latency = endpoint.latency;
+            out.printf("%-28s %7d %10.1f %9.3f %9.3f %9.3f %9.1f %10.1f %10.1f%n",
+                    entry.getKey(), latency.count(), LatencyHistogram.millis((long) endpoint.totalNanos()),
+                    LatencyHistogram.millis(latency.valueAtPercentile(50)),
+                    LatencyHistogram.millis(latency.valueAtPercentile(99)),
+                    LatencyHistogram.millis(latency.max()),
+                    LatencyHistogram.millis(endpoint.gcNanos), LatencyHistogram.millis(endpoint.socketReadNanos),
+                    LatencyHistogram.millis(endpoint.parkedNanos));
+            if (latency.count() > 0) {
+                out.printf("  statuses %s; roles %s; %d B sent, %d B received%n",
+                        counts(endpoint.statuses), counts(endpoint.roles), endpoint.requestBytes,
+                        endpoint.responseBytes);
+            }
+            for (Map.Entry<String, LatencyHistogram> phase : endpoint.phases.entrySet()) {
+                LatencyHistogram timing = phase.getValue();
+                double total = timing.mean() * timing.count();
+                out.printf("  server %-19s %7d %10.1f %9.3f %9.3f %9.3f %8s%n",
+                        phase.getKey(), timing.count(), LatencyHistogram.millis((long) total),
+                        LatencyHistogram.millis(timing.valueAtPercentile(50)),
+                        LatencyHistogram.millis(timing.valueAtPercentile(99)),
+                        LatencyHistogram.millis(timing.max()),
+                        endpoint.totalNanos() == 0 ? "" : String.format("%.1f%%", 100 * total / endpoint.totalNanos()));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path recording = null;
+        int top = Integer.MAX_VALUE;
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            switch (option[0]) {
+                case "--jfr": recording = Path.of(option[1]); break;
+                case "--top": top = Integer.parseInt(option[1]); break;
+                default: throw new IllegalArgumentException("Unknown option " + option[0]);
+            }
+        }
+        if (recording == null) {
+            throw new IllegalArgumentException("--jfr is required");
+        }
+        read(recording).print(System.out, top);
+    }
+
+    private Endpoint endpoint(String name) {
+        return endpoints.computeIfAbsent(name, key -> new Endpoint());
+    }
+
+    private static long threadId(RecordedEvent event) {
+        RecordedThread thread = event.getThread();
+        return thread == null ? -1 : thread.getId();
+    }
+
+    private static long nanos(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    private static String counts(Map<?, Long> counts) {
+        StringJoiner joined = new StringJoiner(", ");
+        counts.forEach((key, count) -> joined.add(key + " x" + count));
+        return joined.toString();
+    }
+
+    /**
+     * What the calls to one method and templated path took and waited on,
+     * and the server's phases for it.
+     */
+    public static final class Endpoint {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final Map<Integer, Long> statuses = new TreeMap<>();
+        private final Map<String, Long> roles = new TreeMap<>();
+        private final Map<String, LatencyHistogram> phases = new TreeMap<>();
+        private long requestBytes;
+        private long responseBytes;
+        private long gcNanos;
+        private long socketReadNanos;
+        private long parkedNanos;
+
+        private void record(RecordedEvent call) {
+            latency.record(call.getDuration().toNanos());
+            statuses.merge(call.getInt("status"), 1L, Long::sum);
+            roles.merge(String.valueOf(call.getString("role")), 1L, Long::sum);
+            requestBytes += call.getLong("requestBytes");
+            responseBytes += call.getLong("responseBytes");
+        }
+
+        /** Client latency of the endpoint's calls; empty if only the server was recorded. */
+        public LatencyHistogram latency() {
+            return latency;
+        }
+
+        /** Durations of the server's phases, by phase name. */
+        public Map<String, LatencyHistogram> phases() {
+            return phases;
+        }
+
+        public Map<Integer, Long> statuses() {
+            return statuses;
+        }
+
+        public Map<String, Long> roles() {
+            return roles;
+        }
+
+        public long requestBytes() {
+            return requestBytes;
+        }
+
+        public long responseBytes() {
+            return responseBytes;
+        }
+
+        /** Time GC pauses overlapped the calls. */
+        public long gcNanos() {
+            return gcNanos;
+        }
+
+        /** Time the calling threads spent in socket reads during the calls. */
+        public long socketReadNanos() {
+            return socketReadNanos;
+        }
+
+        /** Time the calling threads were parked during the calls. */
+        public long parkedNanos() {
+            return parkedNanos;
+        }
+
+        double totalNanos() {
+            return latency.mean() * latency.count();
+        }
+
+        double serverNanos() {
+            double total = 0;
+            for (LatencyHistogram phase : phases.values()) {
+                total += phase.mean() * phase.count();
+            }
+            return total;
+        }
+    }
+
+    private static final class Call {
+        final Endpoint endpoint;
+        final long thread;
+        final long start;
+        final long end;
+
+        Call(Endpoint endpoint, long thread, long start, long end) {
+            this.endpoint = endpoint;
+            this.thread = thread;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Disjoint time intervals, such as one thread's socket reads or the
+     * GC pauses, sorted by start so that the part overlapping a call is
+     * found by binary search.
+     */
+    private static final class Intervals {
+        static final Intervals NONE = new Intervals();
+
+        private long[] starts = new long[16];
+        private long[] ends = new long[16];
+        private int size;
+
+        void add(RecordedEvent event) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            starts[size] = nanos(event.getStartTime());
+            ends[size] = nanos(event.getEndTime());
+            size++;
+        }
+
+        void sort() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingLong(i -> starts[i]));
+            long[] sortedStarts = new long[size];
+            long[] sortedEnds = new long[size];
+            for (int i = 0; i < size; i++) {
+                sortedStarts[i] = starts[order[i]];
+                sortedEnds[i] = ends[order[i]];
+            }
+            starts = sortedStarts;
+            ends = sortedEnds;
+        }
+
+        long overlap(long from, long to) {
+            // disjoint and sorted by start, so the ends are sorted too
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (ends[middle] <= from) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            long overlap = 0;
+            for (int i = low; i < size && starts[i] < to; i++) {
+                overlap += Math.min(ends[i], to) - Math.max(starts[i], from);
+            }
+            return overlap;
+        }
+    }
+}
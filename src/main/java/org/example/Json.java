@@ -0,0 +1,360 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON support for the book payloads used by /api/books.
+ *
+ * The parser is deliberately lenient in the same way the books service is:
+ * a member without a value ({@code "id": ,}) is read as {@code null} and a
+ * trailing comma before a closing brace or bracket is ignored. Objects are
+ * returned as ordered maps and arrays as lists.
+ */
+public final class Json {
+
+    /** Deepest nesting of objects and arrays, the outermost included, that the parser accepts. */
+    public static final int MAX_DEPTH = 512;
+
+    private Json() {
+    }
+
+    /**
+     * Parses a JSON object. Numbers without fraction or exponent are
+     * returned as {@link Long}, other numbers as {@link Double}.
+     *
+     * @throws IllegalArgumentException if the text is not an object
+     */
+    public static Map<String, Object> parseObject(String text) {
+        Parser parser = new Parser(text);
+        Map<String, Object> result = parser.object();
+        parser.end();
+        return result;
+    }
+
+    /**
+     * Parses any JSON value: a map, list, string, number, boolean or {@code null}.
+     *
+     * @throws IllegalArgumentException if the text is not valid JSON
+     */
+    public static Object parse(String text) {
+        Parser parser = new Parser(text);
+        parser.skipWhitespace();
+        Object result = parser.value();
+        parser.end();
+        return result;
+    }
+
+    /**
+     * Writes maps, lists, strings, numbers, booleans and nulls as JSON.
+     */
+    public static String write(Object value) {
+        StringBuilder out = new StringBuilder();
+        write(value, out);
+        return out.toString();
+    }
+
+    public static void write(Object value, StringBuilder out) {
+        if (value == null) {
+            out.append("null");
+        } else if (value instanceof String) {
+            quote((String) value, out);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.append(value);
+        } else if (value instanceof Map) {
+            out.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                quote(String.valueOf(entry.getKey()), out);
+                out.append(':');
+                write(entry.getValue(), out);
+            }
+            out.append('}');
+        } else if (value instanceof List) {
+            out.append('[');
+            boolean first = true;
+            for (Object element : (List<?>) value) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                write(element, out);
+            }
+            out.append(']');
+        } else {
+            throw new IllegalArgumentException("Cannot write " + value.getClass().getName() + " as JSON");
+        }
+    }
+
+    public static void quote(String value, StringBuilder out) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                case '\b': out.append("\\b"); break;
+                case '\f': out.append("\\f"); break;
+                default:
+                    // lone surrogates have no UTF-8 form, so they go out escaped like control characters
+                    if (c < 0x20 || Character.isSurrogate(c) && !pairedSurrogate(value, i)) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    private static boolean pairedSurrogate(String value, int i) {
+        char c = value.charAt(i);
+        return Character.isHighSurrogate(c)
+                ? i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))
+                : i > 0 && Character.isHighSurrogate(value.charAt(i - 1));
+    }
+
+    public static String quote(String value) {
+        StringBuilder out = new StringBuilder(value.length() + 2);
+        quote(value, out);
+        return out.toString();
+    }
+
+    private static final class Parser {
+        private final String text;
+        private int pos;
+        private int depth;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Map<String, Object> object() {
+            enter();
+            try {
+                skipWhitespace();
+                expect('{');
+                Map<String, Object> members = new LinkedHashMap<>();
+                skipWhitespace();
+                if (peek() == '}') {
+                    pos++;
+                    return members;
+                }
+                while (true) {
+                    skipWhitespace();
+                    if (peek() == '}') {
+                        // trailing comma
+                        pos++;
+                        return members;
+                    }
+                    String name = string();
+                    skipWhitespace();
+                    expect(':');
+                    skipWhitespace();
+                    char c = peek();
+                    Object value = (c == ',' || c == '}') ? null : value();
+                    members.put(name, value);
+                    skipWhitespace();
+                    char next = next();
+                    if (next == '}') {
+                        return members;
+                    }
+                    if (next != ',') {
+                        throw error("Expected ',' or '}'");
+                    }
+                }
+            } finally {
+                depth--;
+            }
+        }
+
+        List<Object> array() {
+            enter();
+            try {
+                expect('[');
+                List<Object> elements = new ArrayList<>();
+                while (true) {
+                    skipWhitespace();
+                    if (peek() == ']') {
+                        // empty array or trailing comma
+                        pos++;
+                        return elements;
+                    }
+                    elements.add(value());
+                    skipWhitespace();
+                    char next = next();
+                    if (next == ']') {
+                        return elements;
+                    }
+                    if (next != ',') {
+                        throw error("Expected ',' or ']'");
+                    }
+                }
+            } finally {
+                depth--;
+            }
+        }
+
+        private void enter() {
+            if (++depth > MAX_DEPTH) {
+                throw error("Nesting deeper than " + MAX_DEPTH);
+            }
+        }
+
+        Object value() {
+            char c = peek();
+            if (c == '"') {
+                return string();
+            }
+            if (c == '{') {
+                return object();
+            }
+            if (c == '[') {
+                return array();
+            }
+            if (c == '-' || (c >= '0' && c <= '9')) {
+                return number();
+            }
+            if (text.startsWith("true", pos)) {
+                pos += 4;
+                return Boolean.TRUE;
+            }
+            if (text.startsWith("false", pos)) {
+                pos += 5;
+                return Boolean.FALSE;
+            }
+            if (text.startsWith("null", pos)) {
+                pos += 4;
+                return null;
+            }
+            throw error("Unsupported value");
+        }
+
+        String string() {
+            expect('"');
+            StringBuilder out = null;
+            int start = pos;
+            while (true) {
+                if (pos >= text.length()) {
+                    throw error("Unterminated string");
+                }
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return out == null ? text.substring(start, pos - 1) : out.toString();
+                }
+                if (c == '\\') {
+                    if (out == null) {
+                        out = new StringBuilder(text.length() - start);
+                        out.append(text, start, pos - 1);
+                    }
+                    out.append(escape());
+                } else if (c < 0x20) {
+                    throw error("Control character in string");
+                } else if (out != null) {
+                    out.append(c);
+                }
+            }
+        }
+
+        private char escape() {
+            char c = next();
+            switch (c) {
+                case '"': return '"';
+                case '\\': return '\\';
+                case '/': return '/';
+                case 'b': return '\b';
+                case 'f': return '\f';
+                case 'n': return '\n';
+                case 'r': return '\r';
+                case 't': return '\t';
+                case 'u':
+                    if (pos + 4 > text.length()) {
+                        throw error("Truncated unicode escape");
+                    }
+                    try {
+                        char u = (char) Integer.parseInt(text.substring(pos, pos + 4), 16);
+                        pos += 4;
+                        return u;
+                    } catch (NumberFormatException e) {
+                        throw error("Invalid unicode escape");
+                    }
+                default:
+                    throw error("Invalid escape");
+            }
+        }
+
+        Object number() {
+            int start = pos;
+            boolean integral = true;
+            if (peek() == '-') {
+                pos++;
+            }
+            while (pos < text.length()) {
+                char c = text.charAt(pos);
+                if (c >= '0' && c <= '9') {
+                    pos++;
+                } else if (c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                    integral = false;
+                    pos++;
+                } else {
+                    break;
+                }
+            }
+            String literal = text.substring(start, pos);
+            try {
+                return integral ? (Object) Long.parseLong(literal) : (Object) Double.parseDouble(literal);
+            } catch (NumberFormatException e) {
+                throw error("Invalid number '" + literal + "'");
+            }
+        }
+
+        void end() {
+            skipWhitespace();
+            if (pos != text.length()) {
+                throw error("Unexpected trailing content");
+            }
+        }
+
+        void skipWhitespace() {
+            while (pos < text.length()) {
+                char c = text.charAt(pos);
+                if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                    return;
+                }
+                pos++;
+            }
+        }
+
+        private char peek() {
+            if (pos >= text.length()) {
+                throw error("Unexpected end of input");
+            }
+            return text.charAt(pos);
+        }
+
+        private char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        private void expect(char c) {
+            if (next() != c) {
+                throw error("Expected '" + c + "'");
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at offset " + pos);
+        }
+    }
+}
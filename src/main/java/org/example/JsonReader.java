@@ -0,0 +1,463 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Pull parser that reads one JSON token at a time from a UTF-8 stream.
+ *
+ * Only a fixed-size byte buffer and the nesting stack are held, so an array
+ * of millions of books is read in constant memory as long as the caller
+ * does not keep the values. Unlike {@link Json} the reader is strict: it is
+ * meant for responses, not for the payloads the service tolerates.
+ *
+ * Syntax errors throw {@link IllegalArgumentException} with the byte offset,
+ * calls that do not match the next token throw {@link IllegalStateException}.
+ */
+public final class JsonReader implements Closeable {
+
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    private final InputStream in;
+    private final byte[] buffer;
+    private int pos;
+    private int limit;
+    /** Stream offset of buffer[0], for error messages. */
+    private long base;
+
+    private int[] stack = new int[32];
+    private int depth = 1;
+    private Token peeked;
+
+    private byte[] scratch = new byte[64];
+
+    public JsonReader(InputStream in) {
+        this(in, 8192);
+    }
+
+    public JsonReader(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buffer = new byte[Math.max(16, bufferSize)];
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Returns the type of the next token without consuming it.
+     */
+    public Token peek() throws IOException {
+        if (peeked == null) {
+            peeked = advance();
+        }
+        return peeked;
+    }
+
+    /**
+     * Returns whether the current array or object has another element.
+     */
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_ARRAY && token != Token.END_OBJECT && token != Token.END_DOCUMENT;
+    }
+
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        depth--;
+    }
+
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        depth--;
+    }
+
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        return readString();
+    }
+
+    public String nextString() throws IOException {
+        expect(Token.STRING);
+        return readString();
+    }
+
+    /**
+     * Reads an integral number.
+     *
+     * @throws IllegalArgumentException if the number has a fraction or exponent, or overflows
+     */
+    public long nextLong() throws IOException {
+        expect(Token.NUMBER);
+        long start = base + pos;
+        boolean negative = consumeIf('-');
+        long value = 0;
+        int digits = 0;
+        while (ensure(1)) {
+            int c = buffer[pos];
+            if (c < '0' || c > '9') {
+                break;
+            }
+            try {
+                value = Math.addExact(Math.multiplyExact(value, 10), negative ? -(c - '0') : c - '0');
+            } catch (ArithmeticException e) {
+                throw syntax("Number out of range", start);
+            }
+            pos++;
+            digits++;
+        }
+        if (digits == 0) {
+            throw syntax("Invalid number", start);
+        }
+        if (ensure(1) && (buffer[pos] == '.' || buffer[pos] == 'e' || buffer[pos] == 'E')) {
+            throw syntax("Expected an integer", start);
+        }
+        return value;
+    }
+
+    public double nextDouble() throws IOException {
+        expect(Token.NUMBER);
+        long start = base + pos;
+        String literal = readNumberLiteral();
+        try {
+            return Double.parseDouble(literal);
+        } catch (NumberFormatException e) {
+            throw syntax("Invalid number '" + literal + "'", start);
+        }
+    }
+
+    public boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        if (buffer[pos] == 't') {
+            literal("true");
+            return true;
+        }
+        literal("false");
+        return false;
+    }
+
+    public void nextNull() throws IOException {
+        expect(Token.NULL);
+        literal("null");
+    }
+
+    /**
+     * Skips the next value, including everything nested in it, without building strings.
+     */
+    public void skipValue() throws IOException {
+        int nesting = 0;
+        do {
+            Token token = peek();
+            switch (token) {
+                case BEGIN_ARRAY: beginArray(); nesting++; break;
+                case BEGIN_OBJECT: beginObject(); nesting++; break;
+                case END_ARRAY: endArray(); nesting--; break;
+                case END_OBJECT: endObject(); nesting--; break;
+                case NAME: peeked = null; skipString(); break;
+                case STRING: peeked = null; skipString(); break;
+                case NUMBER: peeked = null; readNumberLiteral(); break;
+                case BOOLEAN: nextBoolean(); break;
+                case NULL: nextNull(); break;
+                default: throw new IllegalStateException("No value to skip at offset " + (base + pos));
+            }
+        } while (nesting > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private Token advance() throws IOException {
+        int context = stack[depth - 1];
+        switch (context) {
+            case EMPTY_ARRAY:
+                stack[depth - 1] = NONEMPTY_ARRAY;
+                if (nextNonWhitespace() == ']') {
+                    pos++;
+                    return Token.END_ARRAY;
+                }
+                break;
+            case NONEMPTY_ARRAY: {
+                int c = nextNonWhitespace();
+                pos++;
+                if (c == ']') {
+                    return Token.END_ARRAY;
+                }
+                if (c != ',') {
+                    throw syntax("Expected ',' or ']'", base + pos - 1);
+                }
+                break;
+            }
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT: {
+                stack[depth - 1] = DANGLING_NAME;
+                int c = nextNonWhitespace();
+                if (c == '}') {
+                    pos++;
+                    return Token.END_OBJECT;
+                }
+                if (context == NONEMPTY_OBJECT) {
+                    pos++;
+                    if (c != ',') {
+                        throw syntax("Expected ',' or '}'", base + pos - 1);
+                    }
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') {
+                    throw syntax("Expected a name", base + pos);
+                }
+                return Token.NAME;
+            }
+            case DANGLING_NAME:
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                if (nextNonWhitespace() != ':') {
+                    throw syntax("Expected ':'", base + pos);
+                }
+                pos++;
+                break;
+            case EMPTY_DOCUMENT:
+                stack[depth - 1] = NONEMPTY_DOCUMENT;
+                break;
+            default:
+                if (skipWhitespace()) {
+                    throw syntax("Unexpected trailing content", base + pos);
+                }
+                return Token.END_DOCUMENT;
+        }
+        int c = nextNonWhitespace();
+        switch (c) {
+            case '{':
+                pos++;
+                return Token.BEGIN_OBJECT;
+            case '[':
+                pos++;
+                return Token.BEGIN_ARRAY;
+            case '"':
+                return Token.STRING;
+            case 't':
+            case 'f':
+                return Token.BOOLEAN;
+            case 'n':
+                return Token.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return Token.NUMBER;
+                }
+                throw syntax("Unexpected character '" + (char) c + "'", base + pos);
+        }
+    }
+
+    private void expect(Token token) throws IOException {
+        Token next = peek();
+        if (next != token) {
+            throw new IllegalStateException("Expected " + token + " but was " + next + " at offset " + (base + pos));
+        }
+        peeked = null;
+    }
+
+    private void push(int context) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = context;
+    }
+
+    /** Reads the string starting at the opening quote under {@code pos}. */
+    private String readString() throws IOException {
+        pos++;
+        // fast path: the whole string is in the buffer and is plain ASCII
+        for (int i = pos; i < limit; i++) {
+            byte b = buffer[i];
+            if (b == '"') {
+                String value = new String(buffer, pos, i - pos, StandardCharsets.ISO_8859_1);
+                pos = i + 1;
+                return value;
+            }
+            if (b == '\\' || b < 0x20) {
+                break;
+            }
+        }
+        return readStringSlow();
+    }
+
+    private String readStringSlow() throws IOException {
+        long start = base + pos;
+        StringBuilder escaped = null;
+        int length = 0;
+        while (true) {
+            if (!ensure(1)) {
+                throw syntax("Unterminated string", start);
+            }
+            byte b = buffer[pos++];
+            if (b == '"') {
+                String raw = new String(scratch, 0, length, StandardCharsets.UTF_8);
+                return escaped == null ? raw : escaped.append(raw).toString();
+            }
+            if (b == '\\') {
+                if (escaped == null) {
+                    escaped = new StringBuilder();
+                }
+                escaped.append(new String(scratch, 0, length, StandardCharsets.UTF_8)).append(escape());
+                length = 0;
+            } else if (b >= 0 && b < 0x20) {
+                throw syntax("Control character in string", base + pos - 1);
+            } else {
+                if (length == scratch.length) {
+                    scratch = Arrays.copyOf(scratch, length * 2);
+                }
+                scratch[length++] = b;
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        long start = base + pos;
+        pos++;
+        while (true) {
+            if (!ensure(1)) {
+                throw syntax("Unterminated string", start);
+            }
+            byte b = buffer[pos++];
+            if (b == '"') {
+                return;
+            }
+            if (b == '\\') {
+                escape();
+            }
+        }
+    }
+
+    private char escape() throws IOException {
+        if (!ensure(1)) {
+            throw syntax("Unterminated escape", base + pos);
+        }
+        byte c = buffer[pos++];
+        switch (c) {
+            case '"': return '"';
+            case '\\': return '\\';
+            case '/': return '/';
+            case 'b': return '\b';
+            case 'f': return '\f';
+            case 'n': return '\n';
+            case 'r': return '\r';
+            case 't': return '\t';
+            case 'u':
+                if (!ensure(4)) {
+                    throw syntax("Truncated unicode escape", base + pos);
+                }
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(buffer[pos + i], 16);
+                    if (digit < 0) {
+                        throw syntax("Invalid unicode escape", base + pos);
+                    }
+                    value = value << 4 | digit;
+                }
+                pos += 4;
+                return (char) value;
+            default:
+                throw syntax("Invalid escape", base + pos - 1);
+        }
+    }
+
+    private String readNumberLiteral() throws IOException {
+        StringBuilder literal = new StringBuilder(20);
+        while (ensure(1)) {
+            byte c = buffer[pos];
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                literal.append((char) c);
+                pos++;
+            } else {
+                break;
+            }
+        }
+        return literal.toString();
+    }
+
+    private void literal(String expected) throws IOException {
+        long start = base + pos;
+        if (!ensure(expected.length())) {
+            throw syntax("Unexpected end of input", start);
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (buffer[pos + i] != expected.charAt(i)) {
+                throw syntax("Expected '" + expected + "'", start);
+            }
+        }
+        pos += expected.length();
+    }
+
+    private boolean consumeIf(char c) throws IOException {
+        if (ensure(1) && buffer[pos] == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        if (!skipWhitespace()) {
+            throw new EOFException("Unexpected end of input at offset " + (base + pos));
+        }
+        return buffer[pos];
+    }
+
+    /** Skips whitespace, returning false at the end of the stream. */
+    private boolean skipWhitespace() throws IOException {
+        while (ensure(1)) {
+            byte c = buffer[pos];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return true;
+            }
+            pos++;
+        }
+        return false;
+    }
+
+    /** Makes at least {@code n} bytes available from {@code pos}, returning false at the end of the stream. */
+    private boolean ensure(int n) throws IOException {
+        if (limit - pos >= n) {
+            return true;
+        }
+        if (pos > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            base += pos;
+            limit -= pos;
+            pos = 0;
+        }
+        while (limit < n) {
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                return false;
+            }
+            limit += read;
+        }
+        return true;
+    }
+
+    private static IllegalArgumentException syntax(String message, long offset) {
+        return new IllegalArgumentException(message + " at offset " + offset);
+    }
+}
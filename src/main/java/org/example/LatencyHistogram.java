@@ -0,0 +1,186 @@
+package org.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-linear latency histogram in the style of HdrHistogram.
+ *
+ * Values are bucketed by their highest bit with {@value #SUB_BUCKET_BITS}
+ * bits of mantissa, giving a fixed relative error below 0.8% over the whole
+ * positive {@code long} range with a few thousand counters. Recording is a
+ * single atomic increment and is safe from any number of threads.
+ */
+public final class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 8;
+    private static final int MAX_SHIFT = 63 - SUB_BUCKET_BITS;
+    private static final int BUCKETS = (MAX_SHIFT << (SUB_BUCKET_BITS - 1)) + (1 << SUB_BUCKET_BITS);
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+
+    /**
+     * Records one value, usually nanoseconds. Negative values are clamped to 0.
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(indexOf(v));
+        total.increment();
+        sum.add(v);
+        max.accumulate(v);
+        min.accumulate(v);
+    }
+
+    public long count() {
+        return total.sum();
+    }
+
+    public long max() {
+        return count() == 0 ? 0 : max.get();
+    }
+
+    public long min() {
+        return count() == 0 ? 0 : min.get();
+    }
+
+    public double mean() {
+        long n = count();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Returns the value at the given percentile (0-100), reported as the
+     * highest value equivalent to the bucket that holds it.
+     */
+    public long valueAtPercentile(double percentile) {
+        long n = count();
+        if (n == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestEquivalent(i), max());
+            }
+        }
+        return max();
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = other.counts.get(i);
+            if (c != 0) {
+                counts.addAndGet(i, c);
+            }
+        }
+        total.add(other.total.sum());
+        sum.add(other.sum.sum());
+        if (other.count() > 0) {
+            max.accumulate(other.max.get());
+            min.accumulate(other.min.get());
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        total.reset();
+        sum.reset();
+        max.reset();
+        min.reset();
+    }
+
+    /**
+     * The histogram as bytes for {@link #fromBytes}, to merge histograms
+     * recorded in other processes: min, max, sum and the non-empty buckets.
+     */
+    byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(min());
+            out.writeLong(max());
+            out.writeLong(sum.sum());
+            for (int i = 0; i < BUCKETS; i++) {
+                long count = counts.get(i);
+                if (count != 0) {
+                    out.writeInt(i);
+                    out.writeLong(count);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static LatencyHistogram fromBytes(byte[] bytes) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            long min = in.readLong();
+            long max = in.readLong();
+            histogram.sum.add(in.readLong());
+            while (in.available() > 0) {
+                int index = in.readInt();
+                long count = in.readLong();
+                if (index < 0 || index >= BUCKETS) {
+                    throw new IOException("Bucket " + index + " out of range");
+                }
+                histogram.counts.addAndGet(index, count);
+                histogram.total.add(count);
+            }
+            if (histogram.count() > 0) {
+                histogram.min.accumulate(min);
+                histogram.max.accumulate(max);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Not a serialized histogram", e);
+        }
+        return histogram;
+    }
+
+    /**
+     * Formats count and the usual percentiles, converting recorded nanoseconds to milliseconds.
+     */
+    public String summary() {
+        return String.format("count=%d p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f max=%.3f ms",
+                count(), millis(valueAtPercentile(50)), millis(valueAtPercentile(90)),
+                millis(valueAtPercentile(99)), millis(valueAtPercentile(99.9)), millis(max()));
+    }
+
+    static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    static int indexOf(long value) {
+        int msb = 63 - Long.numberOfLeadingZeros(value | 1);
+        if (msb < SUB_BUCKET_BITS) {
+            return (int) value;
+        }
+        int shift = msb - SUB_BUCKET_BITS + 1;
+        return (shift << (SUB_BUCKET_BITS - 1)) + (int) (value >>> shift);
+    }
+
+    static long highestEquivalent(int index) {
+        if (index < (1 << SUB_BUCKET_BITS)) {
+            return index;
+        }
+        int shift = (index >> (SUB_BUCKET_BITS - 1)) - 1;
+        long mantissa = index - ((long) shift << (SUB_BUCKET_BITS - 1));
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
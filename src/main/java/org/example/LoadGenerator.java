@@ -0,0 +1,208 @@
+package org.example;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+
+/**
+ * Open-model load generator for the /api/books CRUD endpoints.
+ *
+ * Requests are issued at a constant arrival rate regardless of how fast the
+ * server answers. Each request's latency is measured from the time it was
+ * scheduled to be sent rather than the time it actually went out, so a
+ * stalled server or a generator that falls behind shows up in the
+ * percentiles instead of silently lowering the offered load (coordinated
+ * omission).
+ *
+ * The mix cycles through the request shapes of LibraryAPITest and
+ * UpdateBookTest: create a book, update it, list all books, fetch it and
+ * delete it, each cycle on a fresh id. A request on the cycle's book is
+ * sent at its slot or once the one before it on that book has completed,
+ * whichever is later, so it never races its own create and answers 404;
+ * its latency still counts from its slot.
+ *
+ * <pre>
+ * mvn -q compile exec:java -Dexec.mainClass=org.example.LoadGenerator \
+ *     -Dexec.args="--target=local --rate=500 --warmup=5s --duration=30s"
+ * </pre>
+ *
+ * {@code --target} is {@code local} for an in-process stand-in server,
+ * {@code config} for the baseURI in config.properties, or a base URI.
+ */
+public final class LoadGenerator implements AutoCloseable {
+
+    private static final long FIRST_ID = 1_000_000L;
+    private static final int MAX_RATE = 1_000_000_000;
+
+    private final String authorization;
+    private final ExecutorService executor;
+    private final HttpClient client;
+    private final List<Operation> operations;
+    private long nextCycle;
+
+    public LoadGenerator(String baseUri, String authorization) {
+        this.authorization = authorization;
+        this.executor = VirtualThreads.newExecutor("load-client");
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(executor)
+                .build();
+        BookRequests requests = new BookRequests(baseUri);
+        this.operations = List.of(
+                new Operation("POST /api/books", true, requests::create),
+                new Operation("PUT /api/books/{id}", true, requests::update),
+                new Operation("GET /api/books", false, id -> requests.list()),
+                new Operation("GET /api/books/{id}", true, requests::get),
+                new Operation("DELETE /api/books/{id}", true, requests::delete));
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        String target = "local";
+        int rate = 200;
+        Duration warmup = Duration.ofSeconds(5);
+        Duration duration = Duration.ofSeconds(30);
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            switch (option[0]) {
+                case "--target": target = option[1]; break;
+                case "--rate": rate = Integer.parseInt(option[1]); break;
+                case "--warmup": warmup = parseDuration(option[1]); break;
+                case "--duration": duration = parseDuration(option[1]); break;
+                default: throw new IllegalArgumentException("Unknown option " + option[0]);
+            }
+        }
+
+        ApiConfig config = ApiConfig.load();
+        String authorization = ApiConfig.basicAuthorization(config.adminUsername(), config.adminPassword());
+        Main server = "local".equals(target) ? Main.start(0) : null;
+        String baseUri = server != null ? server.baseUri() : "config".equals(target) ? config.baseUri() : target;
+        try (LoadGenerator generator = new LoadGenerator(baseUri, authorization)) {
+            System.out.printf("%d req/s against %s, warm-up %s, measuring %s%n", rate, baseUri, warmup, duration);
+            generator.run(rate, warmup, duration).print(System.out);
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    /**
+     * Runs a warm-up phase whose results are discarded, then a measured phase
+     * at the same rate.
+     *
+     * @throws IllegalArgumentException unless the rate is between 1 and
+     *         10^9 requests per second, the most a nanosecond clock can pace
+     */
+    public LoadReport run(int ratePerSecond, Duration warmup, Duration duration) throws InterruptedException {
+        if (ratePerSecond <= 0 || ratePerSecond > MAX_RATE) {
+            throw new IllegalArgumentException("Rate must be between 1 and " + MAX_RATE + " but was " + ratePerSecond);
+        }
+        if (!warmup.isZero()) {
+            drive(ratePerSecond, warmup, new LoadReport());
+        }
+        LoadReport report = new LoadReport();
+        drive(ratePerSecond, duration, report);
+        return report;
+    }
+
+    private void drive(int ratePerSecond, Duration duration, LoadReport report) throws InterruptedException {
+        long interval = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long requests = duration.toNanos() / interval;
+        // counted down by completions rather than registered per request, so a
+        // stalled server can have any number of requests outstanding
+        AtomicLong outstanding = new AtomicLong(requests);
+        CompletableFuture<Void> allDone = new CompletableFuture<>();
+        // set once the report is handed back, so requests still outstanding then leave it alone
+        AtomicBoolean closed = new AtomicBoolean();
+        CompletableFuture<Void> previous = null;
+        if (requests == 0) {
+            allDone.complete(null);
+        }
+        long start = System.nanoTime();
+        for (long i = 0; i < requests; i++) {
+            long intended = start + i * interval;
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Operation operation = operations.get((int) (i % operations.size()));
+            if (i % operations.size() == 0) {
+                previous = CompletableFuture.completedFuture(null);
+            }
+            long id = FIRST_ID + nextCycle + i / operations.size();
+            HttpRequest request = operation.request.apply(id).header("Authorization", authorization).build();
+            CompletableFuture<Void> done = (operation.onBook ? previous : CompletableFuture.completedFuture(null))
+                    .thenCompose(ignored -> client.sendAsync(request, HttpResponse.BodyHandlers.discarding()))
+                    .handle((response, failure) -> {
+                        if (!closed.get()) {
+                            int status = failure == null ? response.statusCode() : 0;
+                            report.record(operation.name, status, System.nanoTime() - intended);
+                        }
+                        if (outstanding.decrementAndGet() == 0) {
+                            allDone.complete(null);
+                        }
+                        return null;
+                    });
+            if (operation.onBook) {
+                previous = done;
+            }
+        }
+        nextCycle += requests / operations.size() + 1;
+        try {
+            allDone.get(60, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            System.err.println("Gave up waiting for " + outstanding.get() + " requests");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            closed.set(true);
+        }
+        report.elapsed(System.nanoTime() - start);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    static Duration parseDuration(String text) {
+        if (text.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(text.substring(0, text.length() - 2)));
+        }
+        if (text.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(text.substring(0, text.length() - 1)));
+        }
+        if (text.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(text.substring(0, text.length() - 1)));
+        }
+        return Duration.ofSeconds(Long.parseLong(text));
+    }
+
+    private static final class Operation {
+        final String name;
+        /** Works on the cycle's book, after the cycle's previous request on it. */
+        final boolean onBook;
+        final LongFunction<HttpRequest.Builder> request;
+
+        Operation(String name, boolean onBook, LongFunction<HttpRequest.Builder> request) {
+            this.name = name;
+            this.onBook = onBook;
+            this.request = request;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.example;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latencies of a load run, per endpoint and per status code. Status 0
+ * stands for requests that failed without a response.
+ */
+public final class LoadReport {
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private volatile long elapsedNanos;
+
+    void record(String endpoint, int status, long latencyNanos) {
+        endpoints.computeIfAbsent(endpoint, name -> new Endpoint()).record(status, latencyNanos);
+    }
+
+    void elapsed(long nanos) {
+        this.elapsedNanos = nanos;
+    }
+
+    public double elapsedSeconds() {
+        return elapsedNanos / 1e9;
+    }
+
+    public Map<String, LatencyHistogram> byEndpoint() {
+        Map<String, LatencyHistogram> result = new TreeMap<>();
+        endpoints.forEach((name, endpoint) -> result.put(name, endpoint.all));
+        return result;
+    }
+
+    public Map<Integer, LatencyHistogram> byStatus(String endpoint) {
+        Endpoint stats = endpoints.get(endpoint);
+        return stats == null ? Map.of() : new TreeMap<>(stats.byStatus);
+    }
+
+    public long count() {
+        long count = 0;
+        for (Endpoint endpoint : endpoints.values()) {
+            count += endpoint.all.count();
+        }
+        return count;
+    }
+
+    public double throughput() {
+        return elapsedNanos == 0 ? 0 : count() / elapsedSeconds();
+    }
+
+    public void print(PrintStream out) {
+        out.printf("%-26s %6s %9s %10s %9s %9s %9s %9s %9s%n",
+                "endpoint", "status", "count", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<String, LatencyHistogram> entry : byEndpoint().entrySet()) {
+            printRow(out, entry.getKey(), "all", entry.getValue());
+            for (Map.Entry<Integer, LatencyHistogram> status : byStatus(entry.getKey()).entrySet()) {
+                printRow(out, "", String.valueOf(status.getKey()), status.getValue());
+            }
+        }
+        out.printf("total %d requests in %.1f s, %.1f req/s%n", count(), elapsedSeconds(), throughput());
+    }
+
+    private void printRow(PrintStream out, String endpoint, String status, LatencyHistogram histogram) {
+        out.printf("%-26s %6s %9d %10.1f %9.3f %9.3f %9.3f %9.3f %9.3f%n",
+                endpoint, status, histogram.count(),
+                elapsedNanos == 0 ? 0 : histogram.count() / elapsedSeconds(),
+                LatencyHistogram.millis(histogram.valueAtPercentile(50)),
+                LatencyHistogram.millis(histogram.valueAtPercentile(90)),
+                LatencyHistogram.millis(histogram.valueAtPercentile(99)),
+                LatencyHistogram.millis(histogram.valueAtPercentile(99.9)),
+                LatencyHistogram.millis(histogram.max()));
+    }
+
+    /**
+     * Replaces numeric path segments with {@code {id}}: /api/books/17 becomes /api/books/{id}.
+     */
+    static String template(String path) {
+        StringBuilder out = null;
+        int segment = 0;
+        for (int i = 0; i <= path.length(); i++) {
+            if (i == path.length() || path.charAt(i) == '/') {
+                if (i > segment && isDigits(path, segment, i)) {
+                    if (out == null) {
+                        out = new StringBuilder(path.length()).append(path, 0, segment);
+                    }
+                    out.append("{id}");
+                } else if (out != null) {
+                    out.append(path, segment, i);
+                }
+                if (out != null && i < path.length()) {
+                    out.append('/');
+                }
+                segment = i + 1;
+            }
+        }
+        return out == null ? path : out.toString();
+    }
+
+    private static boolean isDigits(String path, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = path.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Endpoint {
+        final LatencyHistogram all = new LatencyHistogram();
+        final Map<Integer, LatencyHistogram> byStatus = new ConcurrentHashMap<>();
+
+        void record(int status, long latencyNanos) {
+            all.record(latencyNanos);
+            byStatus.computeIfAbsent(status, code -> new LatencyHistogram()).record(latencyNanos);
+        }
+    }
+}
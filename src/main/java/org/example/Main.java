@@ -1,7 +1,955 @@
 package org.example;
 
-public class Main {
-    public static void main(String[] args) {
-        System.out.println("Hello world!");
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Embeddable stand-in for the books service the tests talk to.
+ *
+ * Serves /api/books with the same contract the suite encodes: HTTP basic
+ * auth with an admin and a user role, 201 on create, 208 on a duplicate id,
+ * 400 on invalid payloads (including "Book id is not matched" when the PUT
+ * path and body ids differ), 401 without valid credentials, 403 when a user
+ * tries to write and 404 for unknown ids.
+ *
+ * GET responses carry a strong ETag, and a GET whose If-None-Match names
+ * the current one is answered 304 without a body. A book's tag is the
+ * version its store stamped it with, the collection's the size and
+ * version digest of the store (see {@link BookStore}), so neither needs
+ * the representation to be encoded or hashed.
+ *
+ * The collection and bulk reports are compressed with gzip or deflate for
+ * clients that send Accept-Encoding, once they reach a threshold; see
+ * {@link Compression} and {@link #setCompression}. A compressed list is
+ * encoded and compressed a chunk at a time while it is sent, and its ETag
+ * carries the coding as a suffix. If-None-Match accepts a tag with or
+ * without one.
+ *
+ * {@code POST /api/books/_bulk} creates many books in one request: a JSON
+ * array of book objects or newline-delimited JSON, read in one streaming
+ * pass (see {@link BulkItems}). Each item gets the status a single create
+ * would, 201, 208 or 400, in a 200 response:
+ *
+ * <pre>
+ * {"results":[{"status":201,"id":7},{"status":208,"id":1},{"status":400,"error":"Book title is required"}],
+ *  "created":1,"existing":1,"invalid":1}
+ * </pre>
+ *
+ * A body that is cut short or is not an array or NDJSON at all ends the
+ * pass with 400 and the same report, plus an {@code "error"}, for the
+ * items before it; those are stored.
+ *
+ * GET /api/books also searches: {@code author} and {@code title} name
+ * words the field must contain ({@link BookQuery}), {@code match=prefix}
+ * lets each word start a word instead, and {@code limit} (up to
+ * {@value #MAX_LIMIT}, which is also the page size of a query without
+ * one) pages the books in id order. A page that stops short
+ * of the end carries a {@code Link} header to the next one, whose
+ * {@code cursor} is the last id of this page. Searches are answered from
+ * the store's index, and any parameter also works on its own.
+ *
+ * The handlers time their phases, authentication, body validation, store
+ * operations and response serialization, as {@link ServerPhaseEvent}s
+ * for Flight Recorder; {@link JfrHotspots} summarizes a recording.
+ *
+ * Start it from a test with {@code Main.start(0)} to get an ephemeral port
+ * and {@link #close()} it when done, or run {@link #main(String[])} to serve
+ * on port 7081. The books live in memory unless the server is started on
+ * a store {@link BookStore#open opened} on a directory, whose writes are
+ * logged there and answered once the log has synced them.
+ *
+ * Requests carrying an {@value #FORK_HEADER} header are served from the
+ * fork of that name, so tests sharing a server never see each other's
+ * books; a name no fork has is a 400. Only admins make and drop forks, and
+ * manage snapshots, under /api/admin:
+ *
+ * <pre>
+ * POST   /api/admin/snapshots               snapshot the store, 201 {"snapshot":n,"books":size}
+ * POST   /api/admin/snapshots/{n}/restore   put the store back to snapshot n (0 is the seed)
+ * DELETE /api/admin/snapshots/{n}           forget snapshot n
+ * POST   /api/admin/forks                   fork snapshot {"snapshot":n} or the seed, 201 {"fork":name}
+ * DELETE /api/admin/forks/{name}            drop a fork
+ * </pre>
+ *
+ * Snapshot and restore act on the fork named by the header, or on the
+ * default store without one. All of them take constant time; see
+ * {@link BookStore#snapshot()}.
+ */
+public class Main implements AutoCloseable {
+
+    public static final int DEFAULT_PORT = 7081;
+    public static final String BOOKS_PATH = "/api/books";
+    public static final String ADMIN_PATH = "/api/admin";
+    public static final String FORK_HEADER = "X-Books-Fork";
+    public static final String BULK_PATH = BOOKS_PATH + "/_bulk";
+    /** Largest id a client may choose, so that allocating past it cannot overflow. */
+    public static final long MAX_ID = 999_999_999_999_999_999L;
+    /** Most books on one page of a listing. */
+    public static final int MAX_LIMIT = 1000;
+
+    private static final String JSON = "application/json";
+    private static final String TEXT = "text/plain";
+    /** Bytes of a compressed list encoded at a time. */
+    private static final int LIST_CHUNK = 32 * 1024;
+
+    enum Role { ADMIN, USER }
+
+    static {
+        // The JDK server writes headers and body separately; without this
+        // Nagle's algorithm holds back the body until the client's delayed ACK.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final BookStore store;
+    private final Map<String, Role> authorizations;
+    private final BookStore.Snapshot seed;
+    private final Map<Long, BookStore.Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final AtomicLong lastSnapshot = new AtomicLong();
+    private final Map<String, BookStore> forks = new ConcurrentHashMap<>();
+    private final AtomicLong lastFork = new AtomicLong();
+    private volatile Compression compression = Compression.DEFAULT;
+
+    private Main(HttpServer server, ExecutorService executor, BookStore store, Map<String, Role> authorizations) {
+        this.server = server;
+        this.executor = executor;
+        this.store = store;
+        this.authorizations = authorizations;
+        this.seed = store.snapshot();
+        snapshots.put(0L, seed);
+    }
+
+    /**
+     * Serves on the port given first, or {@value #DEFAULT_PORT}. Options:
+     * {@code --data=dir} keeps the books in a {@link BookLog} in that
+     * directory, seeded if it is new; {@code --fsync=always|periodic|never}
+     * picks its {@link BookLog.Fsync} policy, always by default; and
+     * {@code --snapshot-every=n} the writes between its snapshots.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        Path data = null;
+        BookLog.Fsync fsync = BookLog.Fsync.ALWAYS;
+        int snapshotEvery = BookLog.DEFAULT_SNAPSHOT_EVERY;
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                port = Integer.parseInt(arg);
+                continue;
+            }
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            switch (option[0]) {
+                case "--data": data = Path.of(option[1]); break;
+                case "--fsync": fsync = BookLog.Fsync.valueOf(option[1].toUpperCase(Locale.ROOT)); break;
+                case "--snapshot-every": snapshotEvery = Integer.parseInt(option[1]); break;
+                default: throw new IllegalArgumentException("Unknown option " + option[0]);
+            }
+        }
+
+        BookStore store;
+        if (data == null) {
+            store = seeded(new BookStore());
+        } else {
+            boolean fresh = !Files.isDirectory(data) || isEmpty(data);
+            long started = System.nanoTime();
+            store = BookStore.open(data, fsync, snapshotEvery);
+            System.out.printf("Recovered %d books from %s in %d ms%n", store.size(), data,
+                    (System.nanoTime() - started) / 1_000_000);
+            if (fresh) {
+                seeded(store).sync();
+            }
+        }
+        Main main = start(new InetSocketAddress(port), store);
+        Runtime.getRuntime().addShutdownHook(new Thread(main::close));
+        System.out.println("Books API listening on " + main.baseUri() + BOOKS_PATH);
+    }
+
+    private static boolean isEmpty(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.findAny().isEmpty();
+        }
+    }
+
+    /**
+     * Starts a server on the loopback interface with the default catalog.
+     *
+     * @param port the port to bind, or 0 for an ephemeral one
+     */
+    public static Main start(int port) {
+        return start(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), seeded(new BookStore()));
+    }
+
+    public static Main start(InetSocketAddress address, BookStore store) {
+        HttpServer server;
+        try {
+            server = HttpServer.create(address, 1024);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not bind " + address, e);
+        }
+        ExecutorService executor = VirtualThreads.newExecutor("books-http");
+        Main main = new Main(server, executor, store, loadAuthorizations());
+        server.createContext(BOOKS_PATH, main::handle);
+        server.createContext(ADMIN_PATH, main::handleAdmin);
+        server.setExecutor(executor);
+        server.start();
+        return main;
+    }
+
+    /**
+     * Adds the catalog the suite expects to find on a fresh server.
+     */
+    public static BookStore seeded(BookStore store) {
+        store.insertIfAbsent(new Book(1, "The World: A Family History", "British historian Simon Sebag Montefiore"));
+        return store;
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public String baseUri() {
+        InetAddress address = server.getAddress().getAddress();
+        String host = address.isAnyLocalAddress() ? "localhost" : address.getHostAddress();
+        return "http://" + host + ":" + port();
+    }
+
+    public BookStore store() {
+        return store;
+    }
+
+    /**
+     * The store requests with this {@value #FORK_HEADER} are served from.
+     *
+     * @param fork a fork name, or {@code null} for the default store
+     * @throws IllegalArgumentException if there is no fork of that name
+     */
+    public BookStore store(String fork) {
+        BookStore forked = forkOrDefault(fork);
+        if (forked == null) {
+            throw new IllegalArgumentException("Unknown fork " + fork);
+        }
+        return forked;
+    }
+
+    /**
+     * Drops a fork and its books.
+     *
+     * @return {@code true} if the fork existed
+     */
+    public boolean dropFork(String fork) {
+        return forks.remove(fork) != null;
+    }
+
+    /**
+     * Sets how response bodies are compressed for clients that accept it.
+     * The default is level 1 from {@value Compression#DEFAULT_THRESHOLD} bytes: on book listings
+     * higher levels cost far more CPU for a few percent fewer bytes.
+     *
+     * @param level     a {@link java.util.zip.Deflater} level: 1 is fastest, 9
+     *                  smallest, 0 stores without compressing
+     * @param threshold the smallest body worth compressing, in bytes;
+     *                  {@link Integer#MAX_VALUE} turns compression off
+     */
+    public void setCompression(int level, int threshold) {
+        compression = new Compression(level, threshold);
+    }
+
+    /** Stops serving and closes the store, which for a durable one writes out its log. */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        store.close();
+    }
+
+    private static Map<String, Role> loadAuthorizations() {
+        ApiConfig config = ApiConfig.load();
+        Map<String, Role> authorizations = new HashMap<>();
+        authorizations.put(ApiConfig.basicAuthorization(config.adminUsername(), config.adminPassword()), Role.ADMIN);
+        authorizations.put(ApiConfig.basicAuthorization(config.userUsername(), config.userPassword()), Role.USER);
+        return authorizations;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            ServerPhaseEvent auth = ServerPhaseEvent.start();
+            Role role = authenticate(exchange.getRequestHeaders());
+            auth.end(exchange, ServerPhaseEvent.AUTH);
+            if (role == null) {
+                exchange.getResponseHeaders().set("WWW-Authenticate", "Basic realm=\"books\"");
+                send(exchange, 401, TEXT, "Unauthorized");
+                return;
+            }
+            route(exchange, role, requestStore(exchange));
+        } catch (BadRequest e) {
+            send(exchange, 400, TEXT, e.getMessage());
+        } catch (RuntimeException e) {
+            send(exchange, 500, TEXT, "Internal error: " + e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Role authenticate(Headers headers) {
+        String authorization = headers.getFirst("Authorization");
+        return authorization == null ? null : authorizations.get(authorization);
+    }
+
+    private void route(HttpExchange exchange, Role role, BookStore store) throws IOException {
+        String path = exchange.getRequestURI().getRawPath().substring(BOOKS_PATH.length());
+        String method = exchange.getRequestMethod();
+        String idSegment = trimSlashes(path);
+        if (idSegment.isEmpty()) {
+            switch (method) {
+                case "GET": listBooks(exchange, store); return;
+                case "POST": if (requireAdmin(exchange, role)) createBook(exchange, store); return;
+                default: methodNotAllowed(exchange, "GET, POST"); return;
+            }
+        }
+        if (BULK_PATH.equals(BOOKS_PATH + "/" + idSegment)) {
+            if (!method.equals("POST")) {
+                methodNotAllowed(exchange, "POST");
+            } else if (requireAdmin(exchange, role)) {
+                bulkCreate(exchange, store);
+            }
+            return;
+        }
+        long id = parseId(idSegment);
+        if (id < 0) {
+            send(exchange, 404, TEXT, "Book not found");
+            return;
+        }
+        switch (method) {
+            case "GET": getBook(exchange, store, id); return;
+            case "PUT": if (requireAdmin(exchange, role)) updateBook(exchange, store, id); return;
+            case "DELETE": if (requireAdmin(exchange, role)) deleteBook(exchange, store, id); return;
+            default: methodNotAllowed(exchange, "GET, PUT, DELETE");
+        }
+    }
+
+    private void handleAdmin(HttpExchange exchange) throws IOException {
+        try {
+            ServerPhaseEvent auth = ServerPhaseEvent.start();
+            Role role = authenticate(exchange.getRequestHeaders());
+            auth.end(exchange, ServerPhaseEvent.AUTH);
+            if (role == null) {
+                exchange.getResponseHeaders().set("WWW-Authenticate", "Basic realm=\"books\"");
+                send(exchange, 401, TEXT, "Unauthorized");
+                return;
+            }
+            if (requireAdmin(exchange, role)) {
+                routeAdmin(exchange);
+            }
+        } catch (BadRequest e) {
+            send(exchange, 400, TEXT, e.getMessage());
+        } catch (RuntimeException e) {
+            send(exchange, 500, TEXT, "Internal error: " + e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void routeAdmin(HttpExchange exchange) throws IOException {
+        String[] path = trimSlashes(exchange.getRequestURI().getRawPath().substring(ADMIN_PATH.length())).split("/");
+        String method = exchange.getRequestMethod();
+        if (path[0].equals("snapshots")) {
+            if (path.length == 1 && method.equals("POST")) {
+                BookStore.Snapshot snapshot = requestStore(exchange).snapshot();
+                long id = lastSnapshot.incrementAndGet();
+                snapshots.put(id, snapshot);
+                send(exchange, 201, JSON, "{\"snapshot\":" + id + ",\"books\":" + snapshot.size() + "}");
+                return;
+            }
+            long id = path.length > 1 ? parseSnapshotId(path[1]) : -1;
+            BookStore.Snapshot snapshot = id < 0 ? null : snapshots.get(id);
+            if (path.length == 3 && path[2].equals("restore") && method.equals("POST") && snapshot != null) {
+                requestStore(exchange).restore(snapshot);
+                send(exchange, 200, JSON, "{\"snapshot\":" + id + ",\"books\":" + snapshot.size() + "}");
+                return;
+            }
+            if (path.length == 2 && method.equals("DELETE") && snapshot != null) {
+                if (id == 0) {
+                    throw new BadRequest("The seed snapshot cannot be deleted");
+                }
+                snapshots.remove(id);
+                send(exchange, 200, JSON, "{\"snapshot\":" + id + "}");
+                return;
+            }
+            if (snapshot == null && path.length > 1) {
+                send(exchange, 404, TEXT, "Snapshot not found");
+                return;
+            }
+        } else if (path[0].equals("forks")) {
+            if (path.length == 1 && method.equals("POST")) {
+                Map<String, Object> body = readOptionalBody(exchange);
+                Object snapshotId = body.getOrDefault("snapshot", 0L);
+                BookStore.Snapshot snapshot = snapshotId instanceof Long ? snapshots.get(snapshotId) : null;
+                if (snapshot == null) {
+                    send(exchange, 404, TEXT, "Snapshot not found");
+                    return;
+                }
+                String name = "fork-" + lastFork.incrementAndGet();
+                forks.put(name, store.fork(snapshot));
+                send(exchange, 201, JSON, "{\"fork\":" + Json.quote(name) + "}");
+                return;
+            }
+            if (path.length == 2 && method.equals("DELETE")) {
+                if (dropFork(path[1])) {
+                    send(exchange, 200, JSON, "{\"fork\":" + Json.quote(path[1]) + "}");
+                } else {
+                    send(exchange, 404, TEXT, "Fork not found");
+                }
+                return;
+            }
+        }
+        send(exchange, 404, TEXT, "Not found");
+    }
+
+    private BookStore forkOrDefault(String fork) {
+        return fork == null ? store : forks.get(fork);
+    }
+
+    /** The store named by the request's {@value #FORK_HEADER}, if any. */
+    private BookStore requestStore(HttpExchange exchange) {
+        String fork = exchange.getRequestHeaders().getFirst(FORK_HEADER);
+        BookStore forked = forkOrDefault(fork);
+        if (forked == null) {
+            throw new BadRequest("Unknown fork " + fork);
+        }
+        return forked;
+    }
+
+    private static long parseSnapshotId(String segment) {
+        return segment.equals("0") ? 0 : parseId(segment);
+    }
+
+    private static Map<String, Object> readOptionalBody(HttpExchange exchange) throws IOException {
+        String body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        if (body.isBlank()) {
+            return Map.of();
+        }
+        try {
+            return Json.parseObject(body);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequest("Invalid JSON: " + e.getMessage());
+        }
+    }
+
+    private void listBooks(HttpExchange exchange, BookStore store) throws IOException {
+        ServerPhaseEvent phase = ServerPhaseEvent.start();
+        ListQuery query = ListQuery.parse(exchange.getRequestURI().getRawQuery());
+        BookStore.Snapshot books = store.snapshot();
+        // the tag names the store's state; the query is part of the URL it is cached under
+        String etag = "\"" + Long.toHexString(books.size()) + "-" + Long.toHexString(books.digest()) + "\"";
+        exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        if (notModified(exchange, etag)) {
+            return;
+        }
+        Compression compression = this.compression;
+        String coding = Compression.negotiate(exchange.getRequestHeaders());
+        List<Book> list;
+        if (query == null) {
+            list = books.list();
+        } else {
+            // a query without a limit still gets pages, of the largest size
+            int limit = query.limit == 0 ? MAX_LIMIT : query.limit;
+            list = books.search(query.books, query.after, limit + 1);
+            if (list.size() > limit) {
+                list = list.subList(0, limit);
+                exchange.getResponseHeaders().set("Link",
+                        "<" + BOOKS_PATH + "?" + query.next(list.get(list.size() - 1).getId()) + ">; rel=\"next\"");
+            }
+        }
+        phase.end(exchange, ServerPhaseEvent.STORE);
+        ServerPhaseEvent serialization = ServerPhaseEvent.start();
+        BookCodec.Buffer json = BookCodec.buffer();
+        try {
+            json.put('[');
+            // encode up to the threshold first: a list that ends below it is sent as is
+            int limit = coding == null ? Integer.MAX_VALUE : compression.threshold;
+            int next = encode(list, 0, json, limit);
+            if (next == list.size()) {
+                json.put(']');
+                if (json.length() < limit) {
+                    send(exchange, 200, JSON, json);
+                    serialization.end(exchange, ServerPhaseEvent.SERIALIZATION);
+                    return;
+                }
+            }
+            exchange.getResponseHeaders().set("Content-Type", JSON);
+            try (OutputStream out = compression.open(exchange, 200, coding)) {
+                json.writeTo(out);
+                while (next < list.size()) {
+                    json.reset();
+                    next = encode(list, next, json, LIST_CHUNK);
+                    if (next == list.size()) {
+                        json.put(']');
+                    }
+                    json.writeTo(out);
+                }
+            }
+        } finally {
+            BookCodec.release(json);
+        }
+        serialization.end(exchange, ServerPhaseEvent.SERIALIZATION);
+    }
+
+    /**
+     * Appends list elements from {@code from} on until the buffer holds at
+     * least {@code limit} bytes, and returns the index of the next one.
+     */
+    private static int encode(List<Book> books, int from, BookCodec.Buffer out, int limit) {
+        int next = from;
+        while (next < books.size() && out.length() < limit) {
+            if (next > 0) {
+                out.put(',');
+            }
+            BookCodec.encode(books.get(next++), out);
+        }
+        return next;
+    }
+
+    private static void getBook(HttpExchange exchange, BookStore store, long id) throws IOException {
+        ServerPhaseEvent phase = ServerPhaseEvent.start();
+        Book book = store.get(id);
+        phase.end(exchange, ServerPhaseEvent.STORE);
+        if (book == null) {
+            send(exchange, 404, TEXT, "Book not found");
+        } else if (!notModified(exchange, "\"" + Long.toHexString(book.version()) + "\"")) {
+            send(exchange, 200, JSON, book);
+        }
+    }
+
+    /**
+     * Sets the ETag and, if the request's If-None-Match names it, answers
+     * 304 and returns {@code true}.
+     */
+    private static boolean notModified(HttpExchange exchange, String etag) throws IOException {
+        exchange.getResponseHeaders().set("ETag", etag);
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            // If-None-Match compares weakly, so the coding of a compressed copy does not matter either
+            String strong = tag.startsWith("W/") ? tag.substring(2) : tag;
+            String identity = Compression.identityTag(strong);
+            if (tag.equals("*") || identity.equals(etag)) {
+                if (!identity.equals(strong)) {
+                    exchange.getResponseHeaders().set("ETag", strong);
+                }
+                exchange.sendResponseHeaders(304, -1);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void createBook(HttpExchange exchange, BookStore store) throws IOException {
+        ServerPhaseEvent phase = ServerPhaseEvent.start();
+        Map<String, Object> body = readBody(exchange);
+        Long id = readId(body);
+        String title = requireText(body, "title");
+        String author = requireText(body, "author");
+        phase.end(exchange, ServerPhaseEvent.VALIDATION);
+        phase = ServerPhaseEvent.start();
+        Book book = insert(store, id, title, author);
+        store.sync();
+        phase.end(exchange, ServerPhaseEvent.STORE);
+        if (book == null) {
+            send(exchange, 208, TEXT, "Book already exists");
+        } else {
+            send(exchange, 201, JSON, book);
+        }
+    }
+
+    private void bulkCreate(HttpExchange exchange, BookStore store) throws IOException {
+        BookCodec.Buffer report = BookCodec.buffer();
+        try {
+            report.putAscii("{\"results\":[");
+            long created = 0;
+            long existing = 0;
+            long invalid = 0;
+            String error = null;
+            try (InputStream in = exchange.getRequestBody()) {
+                BulkItems items = new BulkItems(in);
+                for (String item; (item = next(items)) != null; ) {
+                    if (created + existing + invalid > 0) {
+                        report.put(',');
+                    }
+                    try {
+                        ServerPhaseEvent phase = ServerPhaseEvent.start();
+                        Map<String, Object> body = parseBody(item);
+                        Long id = readId(body);
+                        String title = requireText(body, "title");
+                        String author = requireText(body, "author");
+                        phase.end(exchange, ServerPhaseEvent.VALIDATION);
+                        phase = ServerPhaseEvent.start();
+                        Book book = insert(store, id, title, author);
+                        phase.end(exchange, ServerPhaseEvent.STORE);
+                        if (book == null) {
+                            existing++;
+                            report.putAscii("{\"status\":208,\"id\":").putLong(id).put('}');
+                        } else {
+                            created++;
+                            report.putAscii("{\"status\":201,\"id\":").putLong(book.getId()).put('}');
+                        }
+                    } catch (BadRequest e) {
+                        invalid++;
+                        report.putAscii("{\"status\":400,\"error\":").putString(e.getMessage()).put('}');
+                    }
+                }
+            } catch (BadRequest e) {
+                error = e.getMessage();
+            }
+            // one wait for the whole batch, so its writes share fsyncs
+            store.sync();
+            report.putAscii("],\"created\":").putLong(created)
+                    .putAscii(",\"existing\":").putLong(existing)
+                    .putAscii(",\"invalid\":").putLong(invalid);
+            if (error != null) {
+                report.putAscii(",\"error\":").putString(error);
+            }
+            report.put('}');
+            int status = error == null ? 200 : 400;
+            Compression compression = this.compression;
+            String coding = Compression.negotiate(exchange.getRequestHeaders());
+            exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+            ServerPhaseEvent serialization = ServerPhaseEvent.start();
+            if (coding == null || report.length() < compression.threshold) {
+                send(exchange, status, JSON, report);
+            } else {
+                exchange.getResponseHeaders().set("Content-Type", JSON);
+                try (OutputStream out = compression.open(exchange, status, coding)) {
+                    report.writeTo(out);
+                }
+            }
+            serialization.end(exchange, ServerPhaseEvent.SERIALIZATION);
+        } finally {
+            BookCodec.release(report);
+        }
+    }
+
+    private static String next(BulkItems items) throws IOException {
+        try {
+            return items.next();
+        } catch (IllegalArgumentException e) {
+            throw new BadRequest("Invalid bulk body: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stores a new book under the given id, or under a new one if it is
+     * {@code null}.
+     *
+     * @return the stored book, or {@code null} if the id is taken
+     */
+    private static Book insert(BookStore store, Long id, String title, String author) {
+        if (id == null) {
+            return store.insertWithNewId(title, author);
+        }
+        Book book = new Book(id, title, author);
+        return store.insertIfAbsent(book) ? book : null;
+    }
+
+    private static void updateBook(HttpExchange exchange, BookStore store, long id) throws IOException {
+        ServerPhaseEvent phase = ServerPhaseEvent.start();
+        boolean exists = store.get(id) != null;
+        phase.end(exchange, ServerPhaseEvent.STORE);
+        if (!exists) {
+            drain(exchange);
+            send(exchange, 404, TEXT, "Book not found");
+            return;
+        }
+        phase = ServerPhaseEvent.start();
+        Map<String, Object> body = readBody(exchange);
+        Long bodyId = readId(body);
+        if (bodyId != null && bodyId != id) {
+            throw new BadRequest("Book id is not matched");
+        }
+        Book book = new Book(id, requireText(body, "title"), requireText(body, "author"));
+        phase.end(exchange, ServerPhaseEvent.VALIDATION);
+        phase = ServerPhaseEvent.start();
+        boolean replaced = store.replace(book);
+        store.sync();
+        phase.end(exchange, ServerPhaseEvent.STORE);
+        if (replaced) {
+            send(exchange, 200, JSON, book);
+        } else {
+            send(exchange, 404, TEXT, "Book not found");
+        }
+    }
+
+    private static void deleteBook(HttpExchange exchange, BookStore store, long id) throws IOException {
+        ServerPhaseEvent phase = ServerPhaseEvent.start();
+        Book removed = store.remove(id);
+        store.sync();
+        phase.end(exchange, ServerPhaseEvent.STORE);
+        if (removed == null) {
+            send(exchange, 404, TEXT, "Book not found");
+        } else {
+            send(exchange, 200, JSON, removed);
+        }
+    }
+
+    private boolean requireAdmin(HttpExchange exchange, Role role) throws IOException {
+        if (role == Role.ADMIN) {
+            return true;
+        }
+        drain(exchange);
+        send(exchange, 403, TEXT, "Forbidden");
+        return false;
+    }
+
+    private void methodNotAllowed(HttpExchange exchange, String allow) throws IOException {
+        exchange.getResponseHeaders().set("Allow", allow);
+        send(exchange, 405, TEXT, "Method not allowed");
+    }
+
+    private static Map<String, Object> readBody(HttpExchange exchange) throws IOException {
+        String body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        return parseBody(body);
+    }
+
+    private static Map<String, Object> parseBody(String body) {
+        try {
+            return Json.parseObject(body);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequest("Invalid JSON: " + e.getMessage());
+        }
+    }
+
+    private static void drain(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    private static Long readId(Map<String, Object> body) {
+        Object id = body.get("id");
+        if (id == null) {
+            return null;
+        }
+        if (!(id instanceof Long) || (Long) id <= 0 || (Long) id > MAX_ID) {
+            throw new BadRequest("Book id must be a positive integer of at most 18 digits");
+        }
+        return (Long) id;
+    }
+
+    private static String requireText(Map<String, Object> body, String field) {
+        Object value = body.get(field);
+        if (value == null) {
+            throw new BadRequest("Book " + field + " is required");
+        }
+        if (!(value instanceof String)) {
+            throw new BadRequest("Book " + field + " must be a string");
+        }
+        String text = (String) value;
+        if (text.isBlank()) {
+            throw new BadRequest("Book " + field + " must not be empty");
+        }
+        if (isNumeric(text)) {
+            throw new BadRequest("Book " + field + " must not be a number");
+        }
+        return text;
+    }
+
+    private static boolean isNumeric(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String trimSlashes(String path) {
+        int start = 0;
+        int end = path.length();
+        while (start < end && path.charAt(start) == '/') start++;
+        while (end > start && path.charAt(end - 1) == '/') end--;
+        return path.substring(start, end);
+    }
+
+    /**
+     * Returns the id for a path segment, or -1 if it is not a plain positive
+     * number that fits in a long.
+     */
+    private static long parseId(String segment) {
+        if (segment.isEmpty() || segment.length() > 19) {
+            return -1;
+        }
+        long id = 0;
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            id = id * 10 + (c - '0');
+        }
+        // nineteen digits above Long.MAX_VALUE wrap around to a negative number
+        return id <= 0 ? -1 : id;
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, Book book) throws IOException {
+        ServerPhaseEvent phase = ServerPhaseEvent.start();
+        BookCodec.Buffer json = BookCodec.buffer();
+        try {
+            BookCodec.encode(book, json);
+            send(exchange, status, contentType, json);
+        } finally {
+            BookCodec.release(json);
+        }
+        phase.end(exchange, ServerPhaseEvent.SERIALIZATION);
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, BookCodec.Buffer body)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length() == 0 ? -1 : body.length());
+        if (body.length() > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                body.writeTo(out);
+            }
+        }
+    }
+
+    /**
+     * The query parameters of GET /api/books, or {@code null} from
+     * {@link #parse} when there are none.
+     */
+    private static final class ListQuery {
+        final BookQuery books;
+        final long after;
+        /** Books per page, 0 if not given. */
+        final int limit;
+        /** The parameters other than the cursor, raw, for the next page's link. */
+        final String rest;
+
+        ListQuery(BookQuery books, long after, int limit, String rest) {
+            this.books = books;
+            this.after = after;
+            this.limit = limit;
+            this.rest = rest;
+        }
+
+        static ListQuery parse(String rawQuery) {
+            if (rawQuery == null || rawQuery.isEmpty()) {
+                return null;
+            }
+            String author = null;
+            String title = null;
+            boolean prefix = false;
+            long after = Long.MIN_VALUE;
+            int limit = 0;
+            StringBuilder rest = new StringBuilder();
+            for (String parameter : rawQuery.split("&")) {
+                if (parameter.isEmpty()) {
+                    continue;
+                }
+                String[] pair = parameter.split("=", 2);
+                String value = pair.length == 2 ? decode(pair[1]) : "";
+                switch (pair[0]) {
+                    case "author": author = value; break;
+                    case "title": title = value; break;
+                    case "match":
+                        if (!value.equals("token") && !value.equals("prefix")) {
+                            throw new BadRequest("match must be token or prefix");
+                        }
+                        prefix = value.equals("prefix");
+                        break;
+                    case "limit":
+                        limit = parseLimit(value);
+                        break;
+                    case "cursor":
+                        after = parseId(value);
+                        if (after < 0) {
+                            throw new BadRequest("Invalid cursor " + value);
+                        }
+                        continue;
+                    default:
+                        throw new BadRequest("Unknown query parameter " + pair[0]);
+                }
+                rest.append(parameter).append('&');
+            }
+            try {
+                return new ListQuery(BookQuery.of(author, title, prefix), after, limit, rest.toString());
+            } catch (IllegalArgumentException e) {
+                throw new BadRequest(e.getMessage());
+            }
+        }
+
+        /** The query string of the page after the book {@code lastId}. */
+        String next(long lastId) {
+            return rest + "cursor=" + lastId;
+        }
+
+        private static int parseLimit(String value) {
+            long limit = parseId(value);
+            if (limit < 1 || limit > MAX_LIMIT) {
+                throw new BadRequest("limit must be between 1 and " + MAX_LIMIT);
+            }
+            return (int) limit;
+        }
+
+        private static String decode(String value) {
+            try {
+                return URLDecoder.decode(value, StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                throw new BadRequest("Invalid query parameter value " + value);
+            }
+        }
+    }
+
+    private static final class BadRequest extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        BadRequest(String message) {
+            super(message, null, false, false);
+        }
     }
 }
@@ -0,0 +1,282 @@
+package org.example;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Immutable map from primitive {@code long} ids to books, as a hash array
+ * mapped trie: 32-way nodes indexed by five bits of the mixed id at a time,
+ * each holding only its occupied slots behind a bitmap.
+ *
+ * {@link #plus} and {@link #minus} copy just the nodes on the path to the
+ * changed book, around log32(n) of them, and share everything else with
+ * the map they were derived from. Keeping an old version is therefore
+ * free, which is what makes {@link BookStore#snapshot()} constant time.
+ *
+ * The id mixer is a bijection, so distinct ids never share a full hash
+ * and two books always part ways within the 13 levels a 64-bit hash allows.
+ *
+ * Each map also keeps a {@link #digest()} of its books' versions, adjusted
+ * by every {@code plus} and {@code minus} rather than recomputed.
+ */
+public final class PersistentBookMap {
+
+    public static final PersistentBookMap EMPTY = new PersistentBookMap(new Node(0, new Object[0]), 0, 0);
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private final Node root;
+    private final int size;
+    private final long digest;
+
+    private PersistentBookMap(Node root, int size, long digest) {
+        this.root = root;
+        this.size = size;
+        this.digest = digest;
+    }
+
+    /**
+     * The map of the books, whose ids must be distinct, built top-down: the
+     * books are sorted into the 32 slots of each node by five bits of their
+     * hash at a time, so every node is made once instead of copied on the
+     * way to each book.
+     */
+    public static PersistentBookMap of(List<Book> books) {
+        if (books.isEmpty()) {
+            return EMPTY;
+        }
+        Book[] sorted = books.toArray(new Book[0]);
+        long[] hashes = new long[sorted.length];
+        long digest = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            hashes[i] = mix(sorted[i].getId());
+            digest += mix(sorted[i].version());
+        }
+        Node root = Node.build(sorted, hashes, 0, sorted.length, 0, new Book[sorted.length], new long[sorted.length]);
+        return new PersistentBookMap(root, sorted.length, digest);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Sum of the mixed {@link Book#version() versions} of the books. Store
+     * versions are unique, so any write to a store changes the digest of
+     * its map, barring a one in 2^64 coincidence.
+     */
+    public long digest() {
+        return digest;
+    }
+
+    public Book get(long id) {
+        long hash = mix(id);
+        Node node = root;
+        for (int shift = 0; ; shift += BITS) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = node.slots[node.index(bit)];
+            if (slot instanceof Book) {
+                Book book = (Book) slot;
+                return book.getId() == id ? book : null;
+            }
+            node = (Node) slot;
+        }
+    }
+
+    /**
+     * Returns a map with the book added, or replacing the book with the same id.
+     */
+    public PersistentBookMap plus(Book book) {
+        Book[] replaced = new Book[1];
+        boolean[] added = new boolean[1];
+        Node updated = root.plus(book, mix(book.getId()), 0, added, replaced);
+        long updatedDigest = digest + mix(book.version()) - (replaced[0] == null ? 0 : mix(replaced[0].version()));
+        return new PersistentBookMap(updated, added[0] ? size + 1 : size, updatedDigest);
+    }
+
+    /**
+     * Returns a map without the book with this id, or this map if there is none.
+     */
+    public PersistentBookMap minus(long id) {
+        Book removed = get(id);
+        if (removed == null) {
+            return this;
+        }
+        Object updated = root.minus(id, mix(id), 0);
+        if (updated == null) {
+            return EMPTY;
+        }
+        long updatedDigest = digest - mix(removed.version());
+        if (updated instanceof Book) {
+            // the root never collapses into a book; wrap the survivor again
+            Book book = (Book) updated;
+            return new PersistentBookMap(Node.single(book, mix(book.getId()), 0), size - 1, updatedDigest);
+        }
+        return new PersistentBookMap((Node) updated, size - 1, updatedDigest);
+    }
+
+    public void forEach(Consumer<Book> action) {
+        root.forEach(action);
+    }
+
+    /** Stafford variant 13 of the SplitMix64 finalizer; consecutive ids spread over all branches. */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static final class Node {
+        final int bitmap;
+        /** Occupied slots in bit order, each a {@link Book} or a child {@code Node}. */
+        final Object[] slots;
+
+        Node(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        static Node single(Book book, long hash, int shift) {
+            return new Node(1 << ((hash >>> shift) & MASK), new Object[] {book});
+        }
+
+        /**
+         * The node for the books in {@code [from, to)}, which share the hash
+         * bits below {@code shift}; reorders them by slot, using the spare arrays.
+         */
+        static Node build(Book[] books, long[] hashes, int from, int to, int shift, Book[] spareBooks,
+                          long[] spareHashes) {
+            int[] starts = new int[MASK + 2];
+            for (int i = from; i < to; i++) {
+                starts[(int) (hashes[i] >>> shift & MASK) + 1]++;
+            }
+            int bitmap = 0;
+            int occupied = 0;
+            for (int slot = 0; slot <= MASK; slot++) {
+                if (starts[slot + 1] > 0) {
+                    bitmap |= 1 << slot;
+                    occupied++;
+                }
+                starts[slot + 1] += starts[slot];
+            }
+            int[] next = starts.clone();
+            for (int i = from; i < to; i++) {
+                int at = from + next[(int) (hashes[i] >>> shift & MASK)]++;
+                spareBooks[at] = books[i];
+                spareHashes[at] = hashes[i];
+            }
+            System.arraycopy(spareBooks, from, books, from, to - from);
+            System.arraycopy(spareHashes, from, hashes, from, to - from);
+
+            Object[] slots = new Object[occupied];
+            int index = 0;
+            for (int slot = 0; slot <= MASK; slot++) {
+                int start = from + starts[slot];
+                int end = from + starts[slot + 1];
+                if (end - start == 1) {
+                    slots[index++] = books[start];
+                } else if (end > start) {
+                    slots[index++] = build(books, hashes, start, end, shift + BITS, spareBooks, spareHashes);
+                }
+            }
+            return new Node(bitmap, slots);
+        }
+
+        int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        Node plus(Book book, long hash, int shift, boolean[] added, Book[] replaced) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int index = index(bit);
+            if ((bitmap & bit) == 0) {
+                added[0] = true;
+                Object[] slots = new Object[this.slots.length + 1];
+                System.arraycopy(this.slots, 0, slots, 0, index);
+                slots[index] = book;
+                System.arraycopy(this.slots, index, slots, index + 1, this.slots.length - index);
+                return new Node(bitmap | bit, slots);
+            }
+            Object slot = this.slots[index];
+            Object replacement;
+            if (slot instanceof Node) {
+                replacement = ((Node) slot).plus(book, hash, shift + BITS, added, replaced);
+            } else if (((Book) slot).getId() == book.getId()) {
+                replaced[0] = (Book) slot;
+                replacement = book;
+            } else {
+                added[0] = true;
+                Book existing = (Book) slot;
+                replacement = pair(existing, mix(existing.getId()), book, hash, shift + BITS);
+            }
+            Object[] slots = this.slots.clone();
+            slots[index] = replacement;
+            return new Node(bitmap, slots);
+        }
+
+        /**
+         * @return this node if the id is absent, null if the node became
+         *         empty, a book if only that book is left, or the new node
+         */
+        Object minus(long id, long hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int index = index(bit);
+            Object slot = slots[index];
+            Object replacement;
+            if (slot instanceof Node) {
+                replacement = ((Node) slot).minus(id, hash, shift + BITS);
+                if (replacement == slot) {
+                    return this;
+                }
+            } else if (((Book) slot).getId() == id) {
+                replacement = null;
+            } else {
+                return this;
+            }
+            if (replacement == null) {
+                if (slots.length == 1) {
+                    return null;
+                }
+                if (slots.length == 2 && slots[1 - index] instanceof Book) {
+                    return slots[1 - index];
+                }
+                Object[] remaining = new Object[slots.length - 1];
+                System.arraycopy(slots, 0, remaining, 0, index);
+                System.arraycopy(slots, index + 1, remaining, index, slots.length - index - 1);
+                return new Node(bitmap & ~bit, remaining);
+            }
+            if (replacement instanceof Book && slots.length == 1) {
+                return replacement;
+            }
+            Object[] copy = slots.clone();
+            copy[index] = replacement;
+            return new Node(bitmap, copy);
+        }
+
+        void forEach(Consumer<Book> action) {
+            for (Object slot : slots) {
+                if (slot instanceof Book) {
+                    action.accept((Book) slot);
+                } else {
+                    ((Node) slot).forEach(action);
+                }
+            }
+        }
+
+        private static Node pair(Book a, long hashA, Book b, long hashB, int shift) {
+            int slotA = (int) (hashA >>> shift) & MASK;
+            int slotB = (int) (hashB >>> shift) & MASK;
+            if (slotA == slotB) {
+                return new Node(1 << slotA, new Object[] {pair(a, hashA, b, hashB, shift + BITS)});
+            }
+            return new Node((1 << slotA) | (1 << slotB), slotA < slotB ? new Object[] {a, b} : new Object[] {b, a});
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Immutable sorted set of primitive {@code long}s, as a B+tree whose
+ * leaves are sorted arrays of up to 64 values and whose branches hold up
+ * to 32 children with the smallest value of each.
+ *
+ * Like {@link PersistentBookMap}, {@link #plus} and {@link #minus} copy
+ * only the path to the changed leaf and share the rest with the set they
+ * were derived from. Full nodes split in two; nodes that shrink are not
+ * merged, and a leaf or branch left empty is dropped. A set that has
+ * shrunk a lot may hold many small leaves, which costs space but not
+ * correctness.
+ */
+final class PersistentLongSet {
+
+    static final PersistentLongSet EMPTY = new PersistentLongSet(new long[0], 0);
+
+    /** Returned by {@link #higher} when there is no greater value. */
+    static final long NONE = Long.MIN_VALUE;
+
+    private static final int LEAF_SIZE = 64;
+    private static final int BRANCH_SIZE = 32;
+
+    /** A {@code long[]} leaf or a {@link Branch}. */
+    private final Object root;
+    private final int size;
+
+    private PersistentLongSet(Object root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * The set of the first {@code count} values, which must be strictly
+     * increasing, built bottom-up from full leaves and branches.
+     */
+    static PersistentLongSet of(long[] sorted, int count) {
+        if (count == 0) {
+            return EMPTY;
+        }
+        Object[] level = new Object[(count + LEAF_SIZE - 1) / LEAF_SIZE];
+        for (int i = 0; i < level.length; i++) {
+            level[i] = Arrays.copyOfRange(sorted, i * LEAF_SIZE, Math.min(count, (i + 1) * LEAF_SIZE));
+        }
+        while (level.length > 1) {
+            Object[] parents = new Object[(level.length + BRANCH_SIZE - 1) / BRANCH_SIZE];
+            for (int i = 0; i < parents.length; i++) {
+                Object[] children = Arrays.copyOfRange(level, i * BRANCH_SIZE,
+                        Math.min(level.length, (i + 1) * BRANCH_SIZE));
+                long[] firsts = new long[children.length];
+                for (int j = 0; j < children.length; j++) {
+                    firsts[j] = first(children[j]);
+                }
+                parents[i] = new Branch(firsts, children);
+            }
+            level = parents;
+        }
+        return new PersistentLongSet(level[0], count);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(long value) {
+        Object node = root;
+        while (node instanceof Branch) {
+            Branch branch = (Branch) node;
+            node = branch.children[branch.childFor(value)];
+        }
+        return Arrays.binarySearch((long[]) node, value) >= 0;
+    }
+
+    /**
+     * The smallest value greater than {@code value}, or {@link #NONE}.
+     * {@link #NONE} itself is never returned as an element, so a set that
+     * holds {@code Long.MIN_VALUE} cannot be walked past it.
+     */
+    long higher(long value) {
+        return higher(root, value);
+    }
+
+    PersistentLongSet plus(long value) {
+        Object[] updated = insert(root, value);
+        if (updated == null) {
+            return this;
+        }
+        Object newRoot = updated.length == 1
+                ? updated[0]
+                : new Branch(new long[] {first(updated[0]), first(updated[1])}, updated);
+        return new PersistentLongSet(newRoot, size + 1);
+    }
+
+    PersistentLongSet minus(long value) {
+        Object updated = remove(root, value);
+        if (updated == root) {
+            return this;
+        }
+        if (updated == null) {
+            return EMPTY;
+        }
+        while (updated instanceof Branch && ((Branch) updated).children.length == 1) {
+            updated = ((Branch) updated).children[0];
+        }
+        return new PersistentLongSet(updated, size - 1);
+    }
+
+    private static long higher(Object node, long value) {
+        if (node instanceof long[]) {
+            long[] leaf = (long[]) node;
+            int index = Arrays.binarySearch(leaf, value);
+            index = index >= 0 ? index + 1 : -index - 1;
+            return index < leaf.length ? leaf[index] : NONE;
+        }
+        Branch branch = (Branch) node;
+        // the answer is in the child that covers the value or starts the next one
+        for (int i = branch.childFor(value); i < branch.children.length; i++) {
+            long found = higher(branch.children[i], value);
+            if (found != NONE) {
+                return found;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * @return {@code null} if the value is already there, else the updated
+     *         node, or the two halves it split into
+     */
+    private static Object[] insert(Object node, long value) {
+        if (node instanceof long[]) {
+            long[] leaf = (long[]) node;
+            int index = Arrays.binarySearch(leaf, value);
+            if (index >= 0) {
+                return null;
+            }
+            index = -index - 1;
+            long[] grown = new long[leaf.length + 1];
+            System.arraycopy(leaf, 0, grown, 0, index);
+            grown[index] = value;
+            System.arraycopy(leaf, index, grown, index + 1, leaf.length - index);
+            if (grown.length <= LEAF_SIZE) {
+                return new Object[] {grown};
+            }
+            int half = grown.length / 2;
+            return new Object[] {Arrays.copyOfRange(grown, 0, half), Arrays.copyOfRange(grown, half, grown.length)};
+        }
+        Branch branch = (Branch) node;
+        int index = branch.childFor(value);
+        Object[] updated = insert(branch.children[index], value);
+        if (updated == null) {
+            return null;
+        }
+        int count = branch.children.length + updated.length - 1;
+        long[] firsts = new long[count];
+        Object[] children = new Object[count];
+        System.arraycopy(branch.firsts, 0, firsts, 0, index);
+        System.arraycopy(branch.children, 0, children, 0, index);
+        for (int i = 0; i < updated.length; i++) {
+            firsts[index + i] = first(updated[i]);
+            children[index + i] = updated[i];
+        }
+        int rest = branch.children.length - index - 1;
+        System.arraycopy(branch.firsts, index + 1, firsts, index + updated.length, rest);
+        System.arraycopy(branch.children, index + 1, children, index + updated.length, rest);
+        if (count <= BRANCH_SIZE) {
+            return new Object[] {new Branch(firsts, children)};
+        }
+        int half = count / 2;
+        return new Object[] {
+                new Branch(Arrays.copyOfRange(firsts, 0, half), Arrays.copyOfRange(children, 0, half)),
+                new Branch(Arrays.copyOfRange(firsts, half, count), Arrays.copyOfRange(children, half, count))};
+    }
+
+    /**
+     * @return the node itself if the value is not there, {@code null} if
+     *         the node is left empty, else the updated node
+     */
+    private static Object remove(Object node, long value) {
+        if (node instanceof long[]) {
+            long[] leaf = (long[]) node;
+            int index = Arrays.binarySearch(leaf, value);
+            if (index < 0) {
+                return node;
+            }
+            if (leaf.length == 1) {
+                return null;
+            }
+            long[] shrunk = new long[leaf.length - 1];
+            System.arraycopy(leaf, 0, shrunk, 0, index);
+            System.arraycopy(leaf, index + 1, shrunk, index, shrunk.length - index);
+            return shrunk;
+        }
+        Branch branch = (Branch) node;
+        int index = branch.childFor(value);
+        Object child = branch.children[index];
+        Object updated = remove(child, value);
+        if (updated == child) {
+            return node;
+        }
+        if (updated != null) {
+            long[] firsts = branch.firsts.clone();
+            Object[] children = branch.children.clone();
+            firsts[index] = first(updated);
+            children[index] = updated;
+            return new Branch(firsts, children);
+        }
+        if (branch.children.length == 1) {
+            return null;
+        }
+        int count = branch.children.length - 1;
+        long[] firsts = new long[count];
+        Object[] children = new Object[count];
+        System.arraycopy(branch.firsts, 0, firsts, 0, index);
+        System.arraycopy(branch.children, 0, children, 0, index);
+        System.arraycopy(branch.firsts, index + 1, firsts, index, count - index);
+        System.arraycopy(branch.children, index + 1, children, index, count - index);
+        return new Branch(firsts, children);
+    }
+
+    private static long first(Object node) {
+        return node instanceof long[] ? ((long[]) node)[0] : ((Branch) node).firsts[0];
+    }
+
+    private static final class Branch {
+        /** The smallest value under each child. */
+        final long[] firsts;
+        final Object[] children;
+
+        Branch(long[] firsts, Object[] children) {
+            this.firsts = firsts;
+            this.children = children;
+        }
+
+        /** The last child whose values start at or below the value, or the first child. */
+        int childFor(long value) {
+            int index = Arrays.binarySearch(firsts, value);
+            return index >= 0 ? index : Math.max(0, -index - 2);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package org.example;
+
+import java.util.function.Consumer;
+
+/**
+ * Immutable sorted map from index terms to the ids of the books that
+ * contain them, as an AVL tree. Updates copy the path to the changed term,
+ * about log2(terms) nodes, and share the rest, like
+ * {@link PersistentBookMap}. Being sorted, it finds all terms with a given
+ * prefix as one range.
+ */
+final class PersistentTermMap {
+
+    static final PersistentTermMap EMPTY = new PersistentTermMap(null);
+
+    private final Node root;
+
+    private PersistentTermMap(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * The map of {@code terms[i]} to {@code ids[i]}, with the terms sorted
+     * and distinct, as a perfectly balanced tree.
+     */
+    static PersistentTermMap of(String[] terms, PersistentLongSet[] ids) {
+        return new PersistentTermMap(build(terms, ids, 0, terms.length));
+    }
+
+    /** The ids of the books with the term, empty if there are none. */
+    PersistentLongSet get(String term) {
+        Node node = root;
+        while (node != null) {
+            int order = term.compareTo(node.term);
+            if (order == 0) {
+                return node.ids;
+            }
+            node = order < 0 ? node.left : node.right;
+        }
+        return PersistentLongSet.EMPTY;
+    }
+
+    /** Returns a map with the id added to the term's. */
+    PersistentTermMap plus(String term, long id) {
+        Node updated = update(root, term, id, true);
+        return updated == root ? this : new PersistentTermMap(updated);
+    }
+
+    /** Returns a map with the id taken from the term's, and the term dropped if it has no ids left. */
+    PersistentTermMap minus(String term, long id) {
+        Node updated = update(root, term, id, false);
+        return updated == root ? this : new PersistentTermMap(updated);
+    }
+
+    /** Passes the ids of every term that starts with the prefix, in term order. */
+    void forEachWithPrefix(String prefix, Consumer<PersistentLongSet> action) {
+        forEachWithPrefix(root, prefix, action);
+    }
+
+    private static void forEachWithPrefix(Node node, String prefix, Consumer<PersistentLongSet> action) {
+        if (node == null) {
+            return;
+        }
+        boolean below = node.term.compareTo(prefix) < 0;
+        boolean matches = node.term.startsWith(prefix);
+        // terms with the prefix form a range starting at the prefix itself
+        if (!below) {
+            forEachWithPrefix(node.left, prefix, action);
+        }
+        if (matches) {
+            action.accept(node.ids);
+        }
+        if (below || matches) {
+            forEachWithPrefix(node.right, prefix, action);
+        }
+    }
+
+    /**
+     * Adds the id to the term's ids, or takes it away, in one pass down the
+     * tree; returns the node itself if nothing changed.
+     */
+    private static Node update(Node node, String term, long id, boolean add) {
+        if (node == null) {
+            return add ? new Node(term, PersistentLongSet.EMPTY.plus(id), null, null) : null;
+        }
+        int order = term.compareTo(node.term);
+        if (order == 0) {
+            PersistentLongSet ids = add ? node.ids.plus(id) : node.ids.minus(id);
+            if (ids == node.ids) {
+                return node;
+            }
+            return ids.size() == 0 ? remove(node, term) : new Node(term, ids, node.left, node.right);
+        }
+        if (order < 0) {
+            Node left = update(node.left, term, id, add);
+            return left == node.left ? node : balance(node.term, node.ids, left, node.right);
+        }
+        Node right = update(node.right, term, id, add);
+        return right == node.right ? node : balance(node.term, node.ids, node.left, right);
+    }
+
+    private static Node build(String[] terms, PersistentLongSet[] ids, int from, int to) {
+        if (from == to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        return new Node(terms[middle], ids[middle], build(terms, ids, from, middle), build(terms, ids, middle + 1, to));
+    }
+
+    private static Node remove(Node node, String term) {
+        if (node == null) {
+            return null;
+        }
+        int order = term.compareTo(node.term);
+        if (order < 0) {
+            Node left = remove(node.left, term);
+            return left == node.left ? node : balance(node.term, node.ids, left, node.right);
+        }
+        if (order > 0) {
+            Node right = remove(node.right, term);
+            return right == node.right ? node : balance(node.term, node.ids, node.left, right);
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        Node successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return balance(successor.term, successor.ids, node.left, remove(node.right, successor.term));
+    }
+
+    private static Node balance(String term, PersistentLongSet ids, Node left, Node right) {
+        int difference = height(left) - height(right);
+        if (difference > 1) {
+            if (height(left.left) < height(left.right)) {
+                left = rotateLeft(left.left, left.right, left.term, left.ids);
+            }
+            return new Node(left.term, left.ids, left.left, new Node(term, ids, left.right, right));
+        }
+        if (difference < -1) {
+            if (height(right.right) < height(right.left)) {
+                right = rotateRight(right.left, right.right, right.term, right.ids);
+            }
+            return new Node(right.term, right.ids, new Node(term, ids, left, right.left), right.right);
+        }
+        return new Node(term, ids, left, right);
+    }
+
+    /** The node with the right child's term on top and the node as its left child. */
+    private static Node rotateLeft(Node left, Node right, String term, PersistentLongSet ids) {
+        return new Node(right.term, right.ids, new Node(term, ids, left, right.left), right.right);
+    }
+
+    /** The node with the left child's term on top and the node as its right child. */
+    private static Node rotateRight(Node left, Node right, String term, PersistentLongSet ids) {
+        return new Node(left.term, left.ids, left.left, new Node(term, ids, left.right, right));
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static final class Node {
+        final String term;
+        final PersistentLongSet ids;
+        final Node left;
+        final Node right;
+        final int height;
+
+        Node(String term, PersistentLongSet ids, Node left, Node right) {
+            this.term = term;
+            this.ids = ids;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+        }
+    }
+}
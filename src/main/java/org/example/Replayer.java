@@ -0,0 +1,230 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a {@link CaptureLog} against a books service and compares every
+ * response with the recorded one.
+ *
+ * With a positive speed each request is sent at its recorded offset from the
+ * first request divided by the speed, 1 being the original timing; latency is then measured from
+ * that scheduled time, as in {@link LoadGenerator}. With speed 0 requests
+ * are sent as fast as the in-flight limit allows. Entries are read from the
+ * log as they are sent, so logs of any length replay in constant memory.
+ *
+ * Responses match when the status is equal and the bodies are equal,
+ * compared as JSON values when both parse and byte for byte otherwise.
+ *
+ * <pre>
+ * mvn -q compile exec:java -Dexec.mainClass=org.example.Replayer \
+ *     -Dexec.args="--log=target/capture.bin --target=local --speed=2"
+ * </pre>
+ */
+public final class Replayer implements AutoCloseable {
+
+    private static final int MAX_EXAMPLES = 10;
+
+    private final String baseUri;
+    private final ExecutorService executor;
+    private final HttpClient client;
+
+    public Replayer(String baseUri) {
+        this.baseUri = baseUri.endsWith("/") ? baseUri.substring(0, baseUri.length() - 1) : baseUri;
+        this.executor = VirtualThreads.newExecutor("replay-client");
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(executor)
+                .build();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path log = null;
+        String target = "local";
+        double speed = 1;
+        int inFlight = 64;
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            switch (option[0]) {
+                case "--log": log = Path.of(option[1]); break;
+                case "--target": target = option[1]; break;
+                case "--speed": speed = "max".equals(option[1]) ? 0 : Double.parseDouble(option[1]); break;
+                case "--in-flight": inFlight = Integer.parseInt(option[1]); break;
+                default: throw new IllegalArgumentException("Unknown option " + option[0]);
+            }
+        }
+        if (log == null) {
+            throw new IllegalArgumentException("--log is required");
+        }
+
+        Main server = "local".equals(target) ? Main.start(0) : null;
+        String baseUri = server != null ? server.baseUri() : "config".equals(target) ? ApiConfig.load().baseUri() : target;
+        try (Replayer replayer = new Replayer(baseUri)) {
+            System.out.printf("Replaying %s against %s at %s%n", log, baseUri, speed == 0 ? "max speed" : speed + "x");
+            replayer.replay(log, speed, inFlight).print(System.out);
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    /**
+     * @param speed    multiplier of the recorded timing, or 0 to send flat out
+     * @param inFlight upper bound on concurrent requests
+     */
+    public Result replay(Path log, double speed, int inFlight) throws IOException, InterruptedException {
+        Result result = new Result();
+        Semaphore permits = new Semaphore(inFlight);
+        Phaser pending = new Phaser(1);
+        long start = System.nanoTime();
+        long first = -1;
+        try (CaptureLog.Reader reader = CaptureLog.open(log)) {
+            while (reader.hasNext()) {
+                CaptureLog.Entry entry = reader.next();
+                if (first < 0) {
+                    first = entry.offsetNanos;
+                }
+                long intended = speed > 0 ? start + (long) ((entry.offsetNanos - first) / speed) : 0;
+                long wait;
+                while (intended != 0 && (wait = intended - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                permits.acquire();
+                long sent = intended != 0 ? intended : System.nanoTime();
+                String endpoint = entry.method + " " + LoadReport.template(pathOnly(entry.path));
+                pending.register();
+                client.sendAsync(request(entry), HttpResponse.BodyHandlers.ofByteArray())
+                        .whenComplete((response, failure) -> {
+                            long latency = System.nanoTime() - sent;
+                            result.load.record(endpoint, failure == null ? response.statusCode() : 0, latency);
+                            result.compare(entry, response, failure);
+                            permits.release();
+                            pending.arriveAndDeregister();
+                        });
+            }
+        }
+        try {
+            pending.awaitAdvanceInterruptibly(pending.arrive(), 60, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            System.err.println("Gave up waiting for " + pending.getUnarrivedParties() + " requests");
+        }
+        result.load.elapsed(System.nanoTime() - start);
+        return result;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private HttpRequest request(CaptureLog.Entry entry) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUri + entry.path))
+                .timeout(Duration.ofSeconds(30));
+        if (!entry.authorization.isEmpty()) {
+            request.header("Authorization", entry.authorization);
+        }
+        if (!entry.contentType.isEmpty()) {
+            request.header("Content-Type", entry.contentType);
+        }
+        HttpRequest.BodyPublisher body = entry.requestBody.length == 0
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofByteArray(entry.requestBody);
+        return request.method(entry.method, body).build();
+    }
+
+    private static String pathOnly(String path) {
+        int query = path.indexOf('?');
+        return query < 0 ? path : path.substring(0, query);
+    }
+
+    static boolean sameBody(byte[] recorded, byte[] replayed) {
+        if (Arrays.equals(recorded, replayed)) {
+            return true;
+        }
+        try {
+            return Objects.equals(Json.parse(new String(recorded, StandardCharsets.UTF_8)),
+                    Json.parse(new String(replayed, StandardCharsets.UTF_8)));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Latencies of the replay plus the responses that differed from the recording.
+     */
+    public static final class Result {
+        private final LoadReport load = new LoadReport();
+        private final LongAdder statusMismatches = new LongAdder();
+        private final LongAdder bodyMismatches = new LongAdder();
+        private final List<String> examples = new ArrayList<>();
+
+        public LoadReport load() {
+            return load;
+        }
+
+        public long count() {
+            return load.count();
+        }
+
+        public long statusMismatches() {
+            return statusMismatches.sum();
+        }
+
+        /** Responses with the recorded status but a different body. */
+        public long bodyMismatches() {
+            return bodyMismatches.sum();
+        }
+
+        public synchronized List<String> examples() {
+            return new ArrayList<>(examples);
+        }
+
+        public void print(PrintStream out) {
+            load.print(out);
+            out.printf("%d status mismatches, %d body mismatches%n", statusMismatches(), bodyMismatches());
+            for (String example : examples()) {
+                out.println("  " + example);
+            }
+        }
+
+        private void compare(CaptureLog.Entry entry, HttpResponse<byte[]> response, Throwable failure) {
+            if (failure != null || response.statusCode() != entry.status) {
+                statusMismatches.increment();
+                example(entry + ": got " + (failure != null ? failure.toString() : String.valueOf(response.statusCode())));
+            } else if (!sameBody(entry.responseBody, response.body())) {
+                bodyMismatches.increment();
+                example(entry + ": body " + new String(response.body(), StandardCharsets.UTF_8)
+                        + " instead of " + new String(entry.responseBody, StandardCharsets.UTF_8));
+            }
+        }
+
+        private synchronized void example(String example) {
+            if (examples.size() < MAX_EXAMPLES) {
+                examples.add(example);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one phase of a request in {@link Main}:
+ * {@value #AUTH}, {@value #VALIDATION}, {@value #STORE} or
+ * {@value #SERIALIZATION}. A handler starts one before the phase and
+ * {@link #end ends} it after; a phase that throws is not recorded.
+ *
+ * Without a recording that enables the event, starting and ending one
+ * costs a couple of checks and no allocation once the JIT sees that the
+ * event does not escape, so the handlers emit them unconditionally.
+ */
+@Name(JfrHotspots.SERVER_PHASE)
+@Label("Books Server Phase")
+@Category({"Books API", "Server"})
+@Description("A phase of a request handled by the stand-in books server")
+@StackTrace(false)
+final class ServerPhaseEvent extends jdk.jfr.Event {
+
+    /** Looking up the Authorization header's role. */
+    static final String AUTH = "auth";
+    /** Reading, parsing and checking a request body. */
+    static final String VALIDATION = "validation";
+    /** Reading or writing the book store. */
+    static final String STORE = "store";
+    /** Encoding, compressing and writing a response body. */
+    static final String SERIALIZATION = "serialization";
+
+    @Label("Method")
+    String method;
+
+    @Label("Endpoint")
+    @Description("Request path with numeric segments replaced by {id}")
+    String endpoint;
+
+    @Label("Phase")
+    String phase;
+
+    static ServerPhaseEvent start() {
+        ServerPhaseEvent event = new ServerPhaseEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the phase and commits the event if a recording wants it. The
+     * endpoint is only templated then.
+     */
+    void end(HttpExchange exchange, String phase) {
+        end();
+        if (shouldCommit()) {
+            this.method = exchange.getRequestMethod();
+            this.endpoint = LoadReport.template(exchange.getRequestURI().getRawPath());
+            this.phase = phase;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.example;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-per-task executors that use virtual threads when the running JDK
+ * has them (21+) and fall back to a cached pool of daemon platform threads.
+ *
+ * The project still compiles for Java 15, so the virtual thread API is
+ * looked up reflectively.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    public static ExecutorService newExecutor(String namePrefix) {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(daemonFactory(namePrefix));
+        }
+    }
+
+    public static boolean available() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    public static ThreadFactory daemonFactory(String namePrefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
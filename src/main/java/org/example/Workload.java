@@ -0,0 +1,290 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A mixed workload for {@link WorkloadRunner}, read from a JSON file:
+ *
+ * <pre>
+ * {"duration": "60s", "warmup": "10s", "users": 64,
+ *  "operations": {"get": 80, "update": 15, "create": 4, "delete": 1},
+ *  "roles": {"admin": 90, "user": 9, "anonymous": 1},
+ *  "thinkTime": {"distribution": "exponential", "mean": "20ms"},
+ *  "ids": {"distribution": "zipfian", "books": 10000, "exponent": 0.99}}
+ * </pre>
+ *
+ * Each of the {@code users} picks an operation and a role by their weights,
+ * sends the request and then waits a think time before the next one.
+ * Operations are {@code get}, {@code list}, {@code create}, {@code update}
+ * and {@code delete}; roles are {@code admin}, {@code user} and
+ * {@code anonymous}. Think times are {@code constant}, {@code exponential}
+ * or {@code uniform} between zero and twice the mean. Gets and updates go to
+ * one of {@code books} seeded books, chosen {@code uniform}ly or
+ * {@code zipfian} with the given exponent, where the first book is the
+ * hottest. Durations are written as for {@link LoadGenerator}.
+ */
+public final class Workload {
+
+    public static final List<String> OPERATIONS = List.of("get", "list", "create", "update", "delete");
+    public static final List<String> ROLES = List.of("admin", "user", "anonymous");
+
+    private static final String CLASSPATH = "classpath:";
+
+    private final Duration duration;
+    private final Duration warmup;
+    private final int users;
+    private final Weights operations;
+    private final Weights roles;
+    private final String thinkDistribution;
+    private final long thinkMeanNanos;
+    private final int books;
+    private final double[] idCumulative;
+
+    private Workload(Duration duration, Duration warmup, int users, Weights operations, Weights roles,
+                     String thinkDistribution, long thinkMeanNanos, int books, double[] idCumulative) {
+        this.duration = duration;
+        this.warmup = warmup;
+        this.users = users;
+        this.operations = operations;
+        this.roles = roles;
+        this.thinkDistribution = thinkDistribution;
+        this.thinkMeanNanos = thinkMeanNanos;
+        this.books = books;
+        this.idCumulative = idCumulative;
+    }
+
+    /**
+     * @param location a file path, or {@code classpath:name} for a resource
+     */
+    public static Workload read(String location) throws IOException {
+        if (location.startsWith(CLASSPATH)) {
+            String name = location.substring(CLASSPATH.length());
+            try (InputStream in = Workload.class.getResourceAsStream("/" + name)) {
+                if (in == null) {
+                    throw new IOException("No classpath resource " + name);
+                }
+                return parse(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return parse(Files.readString(Path.of(location)));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the spec is not valid
+     */
+    public static Workload parse(String json) {
+        Map<String, Object> spec = Json.parseObject(json);
+        Map<String, Object> think = object(spec, "thinkTime");
+        Map<String, Object> ids = object(spec, "ids");
+
+        String thinkDistribution = text(think, "thinkTime.distribution", "constant");
+        if (!List.of("constant", "exponential", "uniform").contains(thinkDistribution)) {
+            throw new IllegalArgumentException("Unknown thinkTime.distribution " + thinkDistribution);
+        }
+        long books = number(ids, "ids.books", 1000).longValue();
+        if (books < 1 || books > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("ids.books must be positive but was " + books);
+        }
+        String idDistribution = text(ids, "ids.distribution", "uniform");
+        double[] idCumulative;
+        if ("uniform".equals(idDistribution)) {
+            idCumulative = null;
+        } else if ("zipfian".equals(idDistribution)) {
+            double exponent = number(ids, "ids.exponent", 0.99).doubleValue();
+            if (!(exponent > 0)) {
+                throw new IllegalArgumentException("ids.exponent must be positive but was " + exponent);
+            }
+            idCumulative = zipfian((int) books, exponent);
+        } else {
+            throw new IllegalArgumentException("Unknown ids.distribution " + idDistribution);
+        }
+        long users = number(spec, "users", 16).longValue();
+        if (users < 1 || users > 100_000) {
+            throw new IllegalArgumentException("users must be between 1 and 100000 but was " + users);
+        }
+        return new Workload(
+                duration(spec, "duration", "30s"),
+                duration(spec, "warmup", "0s"),
+                (int) users,
+                Weights.parse(object(spec, "operations"), "operations", OPERATIONS),
+                spec.containsKey("roles")
+                        ? Weights.parse(object(spec, "roles"), "roles", ROLES)
+                        : Weights.parse(Map.of("admin", 1L), "roles", ROLES),
+                thinkDistribution,
+                duration(think, "thinkTime.mean", "0s").toNanos(),
+                (int) books,
+                idCumulative);
+    }
+
+    public Duration duration() {
+        return duration;
+    }
+
+    public Duration warmup() {
+        return warmup;
+    }
+
+    public int users() {
+        return users;
+    }
+
+    public int books() {
+        return books;
+    }
+
+    /**
+     * The weight of each operation, in {@link #OPERATIONS} order.
+     */
+    public Map<String, Long> operations() {
+        return operations.asMap();
+    }
+
+    public Map<String, Long> roles() {
+        return roles.asMap();
+    }
+
+    public String pickOperation(Random random) {
+        return operations.pick(random);
+    }
+
+    public String pickRole(Random random) {
+        return roles.pick(random);
+    }
+
+    /**
+     * The index of a seeded book, from 0 to {@code books() - 1}.
+     */
+    public int pickBook(Random random) {
+        if (idCumulative == null) {
+            return random.nextInt(books);
+        }
+        int index = Arrays.binarySearch(idCumulative, random.nextDouble());
+        return Math.min(index < 0 ? -index - 1 : index, books - 1);
+    }
+
+    public long thinkNanos(Random random) {
+        switch (thinkDistribution) {
+            case "exponential": return (long) (-Math.log(1 - random.nextDouble()) * thinkMeanNanos);
+            case "uniform": return (long) (random.nextDouble() * 2 * thinkMeanNanos);
+            default: return thinkMeanNanos;
+        }
+    }
+
+    /**
+     * Cumulative probabilities of the ranks 1 to n with weights 1/rank^exponent.
+     */
+    private static double[] zipfian(int n, double exponent) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> object(Map<String, Object> spec, String name) {
+        Object value = spec.getOrDefault(name, Map.of());
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException(name + " must be an object");
+        }
+        return (Map<String, Object>) value;
+    }
+
+    private static String text(Map<String, Object> spec, String name, String defaultValue) {
+        Object value = spec.getOrDefault(name.substring(name.indexOf('.') + 1), defaultValue);
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException(name + " must be a string");
+        }
+        return (String) value;
+    }
+
+    private static Number number(Map<String, Object> spec, String name, Number defaultValue) {
+        Object value = spec.getOrDefault(name.substring(name.indexOf('.') + 1), defaultValue);
+        if (!(value instanceof Number)) {
+            throw new IllegalArgumentException(name + " must be a number");
+        }
+        return (Number) value;
+    }
+
+    private static Duration duration(Map<String, Object> spec, String name, String defaultValue) {
+        String value = text(spec, name, defaultValue);
+        try {
+            return LoadGenerator.parseDuration(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " is not a duration: " + value);
+        }
+    }
+
+    /**
+     * Named weights, picked with a binary search over their running totals.
+     */
+    private static final class Weights {
+        final String[] names;
+        final long[] cumulative;
+
+        Weights(String[] names, long[] cumulative) {
+            this.names = names;
+            this.cumulative = cumulative;
+        }
+
+        static Weights parse(Map<String, Object> weights, String field, List<String> known) {
+            for (String name : weights.keySet()) {
+                if (!known.contains(name)) {
+                    throw new IllegalArgumentException("Unknown " + field + " entry " + name + ", expected " + known);
+                }
+            }
+            String[] names = new String[weights.size()];
+            long[] cumulative = new long[weights.size()];
+            int count = 0;
+            long total = 0;
+            for (String name : known) {
+                if (!weights.containsKey(name)) {
+                    continue;
+                }
+                Object weight = weights.get(name);
+                if (!(weight instanceof Long) || (Long) weight < 0) {
+                    throw new IllegalArgumentException(field + "." + name + " must be a non-negative integer");
+                }
+                if ((Long) weight == 0) {
+                    continue;
+                }
+                total += (Long) weight;
+                names[count] = name;
+                cumulative[count++] = total;
+            }
+            if (total == 0) {
+                throw new IllegalArgumentException(field + " needs at least one positive weight");
+            }
+            return new Weights(Arrays.copyOf(names, count), Arrays.copyOf(cumulative, count));
+        }
+
+        String pick(Random random) {
+            long ticket = (long) (random.nextDouble() * cumulative[cumulative.length - 1]);
+            int index = Arrays.binarySearch(cumulative, ticket + 1);
+            return names[index < 0 ? -index - 1 : index];
+        }
+
+        Map<String, Long> asMap() {
+            Map<String, Long> map = new LinkedHashMap<>();
+            for (int i = 0; i < names.length; i++) {
+                map.put(names[i], cumulative[i] - (i == 0 ? 0 : cumulative[i - 1]));
+            }
+            return map;
+        }
+    }
+}
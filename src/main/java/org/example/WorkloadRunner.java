@@ -0,0 +1,227 @@
+package org.example;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Closed-model runner for a {@link Workload}: each simulated user is a
+ * virtual thread that sends one request, waits for the answer, thinks and
+ * picks the next operation. Unlike {@link LoadGenerator}, the offered load
+ * follows the server, as it does with real users.
+ *
+ * Before the run the workload's books are created with bulk requests, with
+ * ids from 1,000,000 up. Gets and updates go to those books. Creates add
+ * books after them, and deletes remove the books the run has created, oldest
+ * first, so the seeded key space stays intact; a delete with nothing left to
+ * remove is sent for an id no book has. The requests are those of
+ * {@link LoadGenerator}, sent with the picked role's credentials.
+ *
+ * The report has a row per operation, with its throughput and latency per
+ * status, so the 401s and 403s of the role mix show up separately.
+ *
+ * <pre>
+ * mvn -q compile exec:java -Dexec.mainClass=org.example.WorkloadRunner \
+ *     -Dexec.args="--workload=classpath:workload.json --target=local"
+ * </pre>
+ */
+public final class WorkloadRunner implements AutoCloseable {
+
+    private static final long FIRST_ID = 1_000_000L;
+    private static final int SEED_BATCH = 10_000;
+
+    private final BookRequests requests;
+    private final String adminAuthorization;
+    private final String userAuthorization;
+    private final ExecutorService executor;
+    private final HttpClient client;
+
+    public WorkloadRunner(String baseUri, String adminAuthorization, String userAuthorization) {
+        this.requests = new BookRequests(baseUri);
+        this.adminAuthorization = adminAuthorization;
+        this.userAuthorization = userAuthorization;
+        this.executor = VirtualThreads.newExecutor("workload-user");
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(executor)
+                .build();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String location = "classpath:workload.json";
+        String target = "local";
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            switch (option[0]) {
+                case "--workload": location = option[1]; break;
+                case "--target": target = option[1]; break;
+                default: throw new IllegalArgumentException("Unknown option " + option[0]);
+            }
+        }
+
+        Workload workload = Workload.read(location);
+        ApiConfig config = ApiConfig.load();
+        Main server = "local".equals(target) ? Main.start(0) : null;
+        String baseUri = server != null ? server.baseUri() : "config".equals(target) ? config.baseUri() : target;
+        try (WorkloadRunner runner = new WorkloadRunner(baseUri,
+                ApiConfig.basicAuthorization(config.adminUsername(), config.adminPassword()),
+                ApiConfig.basicAuthorization(config.userUsername(), config.userPassword()))) {
+            System.out.printf("%d users, operations %s, roles %s, against %s, warm-up %s, measuring %s%n",
+                    workload.users(), workload.operations(), workload.roles(), baseUri,
+                    workload.warmup(), workload.duration());
+            runner.run(workload).print(System.out);
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    /**
+     * Seeds the books, runs the warm-up, whose results are discarded, and
+     * then the measured phase with the same users.
+     */
+    public LoadReport run(Workload workload) throws IOException, InterruptedException {
+        seed(workload.books());
+        LoadReport warmup = new LoadReport();
+        LoadReport measured = new LoadReport();
+        Run run = new Run(workload, FIRST_ID + workload.books());
+        long start = System.nanoTime();
+        long measureFrom = start + workload.warmup().toNanos();
+        long end = measureFrom + workload.duration().toNanos();
+        List<Future<?>> users = new ArrayList<>(workload.users());
+        for (int i = 0; i < workload.users(); i++) {
+            users.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                think(workload, random);
+                long now;
+                while ((now = System.nanoTime()) < end) {
+                    run.step(random, now < measureFrom ? warmup : measured);
+                    think(workload, random);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> user : users) {
+            try {
+                user.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("A user failed", e.getCause());
+            }
+        }
+        measured.elapsed(Math.max(0, System.nanoTime() - Math.max(start, measureFrom)));
+        return measured;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void seed(int books) throws IOException, InterruptedException {
+        for (int first = 0; first < books; first += SEED_BATCH) {
+            HttpRequest request = requests.bulkCreate(FIRST_ID + first, Math.min(SEED_BATCH, books - first))
+                    .header("Authorization", adminAuthorization)
+                    .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Seeding books failed with " + response.statusCode() + ": "
+                        + response.body());
+            }
+        }
+    }
+
+    private static void think(Workload workload, ThreadLocalRandom random) {
+        long nanos = workload.thinkNanos(random);
+        long deadline = System.nanoTime() + nanos;
+        while (nanos > 0) {
+            LockSupport.parkNanos(nanos);
+            nanos = deadline - System.nanoTime();
+        }
+    }
+
+    /**
+     * The state the users share: the next id to create and the created
+     * books that deletes may remove.
+     */
+    private final class Run {
+        final Workload workload;
+        final AtomicLong nextId;
+        final Queue<Long> created = new ConcurrentLinkedQueue<>();
+
+        Run(Workload workload, long firstNewId) {
+            this.workload = workload;
+            this.nextId = new AtomicLong(firstNewId);
+        }
+
+        void step(ThreadLocalRandom random, LoadReport report) throws InterruptedException {
+            String operation = workload.pickOperation(random);
+            String role = workload.pickRole(random);
+            String endpoint;
+            HttpRequest.Builder request;
+            Long book = null;
+            switch (operation) {
+                case "get":
+                    endpoint = "GET /api/books/{id}";
+                    request = requests.get(FIRST_ID + workload.pickBook(random));
+                    break;
+                case "list":
+                    endpoint = "GET /api/books";
+                    request = requests.list();
+                    break;
+                case "update":
+                    endpoint = "PUT /api/books/{id}";
+                    request = requests.update(FIRST_ID + workload.pickBook(random));
+                    break;
+                case "create":
+                    endpoint = "POST /api/books";
+                    book = nextId.getAndIncrement();
+                    request = requests.create(book);
+                    break;
+                case "delete":
+                    endpoint = "DELETE /api/books/{id}";
+                    book = created.poll();
+                    request = requests.delete(book != null ? book : nextId.getAndIncrement());
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown operation " + operation);
+            }
+            if ("admin".equals(role)) {
+                request.header("Authorization", adminAuthorization);
+            } else if ("user".equals(role)) {
+                request.header("Authorization", userAuthorization);
+            }
+
+            long start = System.nanoTime();
+            int status;
+            try {
+                status = client.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+            } catch (IOException e) {
+                status = 0;
+            }
+            report.record(endpoint, status, System.nanoTime() - start);
+
+            if ("create".equals(operation) && status == 201) {
+                created.add(book);
+            } else if ("delete".equals(operation) && book != null && status != 200) {
+                created.add(book);
+            }
+        }
+    }
+}
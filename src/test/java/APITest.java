@@ -1,23 +1,33 @@
-import static io.restassured.RestAssured.*;
-
-import io.restassured.RestAssured;
 import io.restassured.response.Response;
-import org.junit.jupiter.api.BeforeEach;
+import org.example.ApiSpecs;
+import org.example.Book;
+import org.example.BookCodec;
+import org.example.BookFixtures;
+import org.example.BookPayload;
+import org.example.Main;
 import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 import static org.hamcrest.Matchers.*;
 
 public class APITest {
 
-    private static final String BASE_URI = "http://localhost:7081/api/books/";
-    private static final String ADMIN_USERNAME = "admin";
-    private static final String USER_USERNAME = "user";
-    private static final String USER_PASSWORD = "password";
-    private static final String ADMIN_PASSWORD = "password";
+    private static final String TITLE = "The World: A Family History";
+    private static final String AUTHOR = "British historian Simon Sebag Montefiore";
+
+    private static Main server;
+    private static ApiSpecs api;
 
-    @BeforeEach
+    @BeforeClass
     public void setup() {
-        RestAssured.baseURI = BASE_URI;
+        server = Main.start(0);
+        api = ApiSpecs.forServer(server);
+    }
+
+    @AfterClass
+    public void stopServer() {
+        server.close();
     }
 
     @Test
@@ -25,11 +35,10 @@ public class APITest {
 
 
         // Define the request body with valid book data
-        String requestBody = "{\"title\": \"New Book Title\", \"author\": \"Author Name\"}";
+        byte[] requestBody = BookPayload.empty().with("title", "New Book Title").with("author", "Author Name").bytes();
 
 
-        given()
-                .auth().preemptive().basic(ADMIN_USERNAME, ADMIN_PASSWORD)
+        api.asAdmin()
                 .contentType("application/json")
                 .body(requestBody)
                 .when()
@@ -42,8 +51,7 @@ public class APITest {
     }
     @Test
     void test() {
-        Response response = given()
-                .auth().preemptive().basic(ADMIN_USERNAME, ADMIN_PASSWORD)
+        Response response = api.asAdmin()
                 .get(); // You can append the endpoint to the base URL here
         Assert.assertEquals(200, response.getStatusCode());
     }
@@ -51,22 +59,15 @@ public class APITest {
     //Update an existing book with valid data
     @Test
     public void test1() {
-
-        String baseUri = "http://localhost:7081/api/books/1";
-
-        String requestBody = "{\n" +
-                "    \"id\": 1,\n" +
-                "    \"title\": \"The World: A Family History\",\n" +
-                "    \"author\": \"British historian Simon Sebag Montefiore\"\n" +
-                "}";
+        long bookId = BookFixtures.existingBook(server);
+        byte[] requestBody = BookCodec.encode(new Book(bookId, TITLE, AUTHOR));
 
         try {
-            Response response = given()
-                    .auth().preemptive().basic(ADMIN_USERNAME, ADMIN_PASSWORD)
+            Response response = api.asAdmin()
                     .header("Content-Type", "application/json")
                     .body(requestBody)
                     .when()
-                    .put("/1");
+                    .put("/" + bookId);
 
             Assert.assertEquals(200, response.getStatusCode());
         } catch (Exception e) {
@@ -77,20 +78,15 @@ public class APITest {
     //Update book without authorization
     @Test
     void test2() {
-        String baseUri = "http://localhost:7081/api/books/1";
+        long bookId = BookFixtures.existingBook(server);
+        byte[] requestBody = BookCodec.encode(new Book(bookId, TITLE, AUTHOR));
 
-        String requestBody = "{\n" +
-                "    \"id\": 1,\n" +
-                "    \"title\": \"The World: A Family History\",\n" +
-                "    \"author\": \"British historian Simon Sebag Montefiore\"\n" +
-                "}";
 
-
-        Response response = given()
+        Response response = api.anonymous()
                 .header("Content-Type", "application/json")
                 .body(requestBody)
                 .when()
-                .put(baseUri);
+                .put("/" + bookId);
 
         Assert.assertEquals(401, response.getStatusCode());
     }
@@ -99,21 +95,15 @@ public class APITest {
     //Update a book with wrong authorization
     @Test
     void test3() {
-        String baseUri = "http://localhost:7081/api/books/1"; // Update the URL with the correct resource ID
-
-        String requestBody = "{\n" +
-                "    \"id\": 1,\n" +
-                "    \"title\": \"The World: A Family History\",\n" +
-                "    \"author\": \"British historian Simon Sebag Montefiore\"\n" +
-                "}";
+        long bookId = BookFixtures.existingBook(server);
+        byte[] requestBody = BookCodec.encode(new Book(bookId, TITLE, AUTHOR));
 
 
-        Response response = given()
-                .auth().preemptive().basic("admin", "Password")
+        Response response = api.withWrongPassword()
                 .header("Content-Type", "application/json")
                 .body(requestBody) // Set the request body
                 .when()
-                .put(baseUri);
+                .put("/" + bookId);
         Assert.assertEquals(401, response.getStatusCode());
 
     }
@@ -121,43 +111,30 @@ public class APITest {
     //Update a book with user authorization
     @Test
     void test4() {
-        String baseUri = "http://localhost:7081/api/books/1"; // Update the URL with the correct resource ID
-
-        String requestBody = "{\n" +
-                "    \"id\": 1,\n" +
-                "    \"title\": \"The World: A Family History\",\n" +
-                "    \"author\": \"British historian Simon Sebag Montefiore\"\n" +
-                "}";
+        long bookId = BookFixtures.existingBook(server);
+        byte[] requestBody = BookCodec.encode(new Book(bookId, TITLE, AUTHOR));
 
 
-        Response response = given()
-                .auth().preemptive().basic("user", "password")
+        Response response = api.asUser()
                 .header("Content-Type", "application/json")
                 .body(requestBody) // Set the request body
                 .when()
-                .put(baseUri);
+                .put("/" + bookId);
         Assert.assertEquals(403, response.getStatusCode());
-                 // Log the response for debugging purposes
     }
 
     //Update a book with invalid book ID
     @Test
     void test5() {
-        String baseUri = "http://localhost:7081/api/books/3";
+        long bookId = BookFixtures.existingBook(server);
+        byte[] requestBody = BookCodec.encode(new Book(bookId, TITLE, AUTHOR));
 
-        String requestBody = "{\n" +
-                "    \"id\": 1,\n" +
-                "    \"title\": \"The World: A Family History\",\n" +
-                "    \"author\": \"British historian Simon Sebag Montefiore\"\n" +
-                "}";
 
-
-        Response response = given()
-                .auth().preemptive().basic("admin", "password")
+        Response response = api.asAdmin()
                 .header("Content-Type", "application/json")
                 .body(requestBody) // Set the request body
                 .when()
-                .put(baseUri);
+                .put("/" + BookFixtures.unusedId(server));
         Assert.assertEquals(404, response.getStatusCode());
 
     }
@@ -165,20 +142,15 @@ public class APITest {
     //Update a book with missing title
     @Test
     void test6() {
-        String baseUri = "http://localhost:7081/api/books/1";
-
-        String requestBody = "{\n" +
-                "    \"id\": 1,\n" +
-                "    \"author\": \"British historian Simon Sebag Montefiore\"\n" +
-                "}";
+        long bookId = BookFixtures.existingBook(server);
+        byte[] requestBody = BookPayload.of(bookId, TITLE, AUTHOR).without("title").bytes();
 
 
-        Response response = given()
-                .auth().preemptive().basic("admin", "password")
+        Response response = api.asAdmin()
                 .header("Content-Type", "application/json")
                 .body(requestBody) // Set the request body
                 .when()
-                .put(baseUri);
+                .put("/" + bookId);
         Assert.assertEquals(400, response.getStatusCode());
 
     }
@@ -186,20 +158,15 @@ public class APITest {
     //Update a book with missing author
     @Test
     void test7() {
-        String baseUri = "http://localhost:7081/api/books/1";
-
-        String requestBody = "{\n" +
-                "    \"id\": 1,\n" +
-                "    \"title\": \"The World: A Family History\",\n" +
-                "}";
+        long bookId = BookFixtures.existingBook(server);
+        byte[] requestBody = BookPayload.of(bookId, TITLE, AUTHOR).without("author").bytes();
 
 
-        Response response = given()
-                .auth().preemptive().basic("admin", "password")
+        Response response = api.asAdmin()
                 .header("Content-Type", "application/json")
                 .body(requestBody) // Set the request body
                 .when()
-                .put(baseUri);
+                .put("/" + bookId);
         Assert.assertEquals(400, response.getStatusCode());
     }
 
@@ -0,0 +1,108 @@
+import org.example.AsyncBooksClient;
+import org.example.Book;
+import org.example.BookFixtures;
+import org.example.BookResponse;
+import org.example.Main;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testng.Assert;
+
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncClientTest {
+
+    private static final int WORKFLOWS = 100;
+
+    private static Main server;
+    private static AsyncBooksClient client;
+
+    @BeforeAll
+    static void startServer() {
+        server = Main.start(0);
+        client = AsyncBooksClient.forServer(server);
+    }
+
+    @AfterAll
+    static void stopServer() {
+        client.close();
+        server.close();
+    }
+
+    //Create, update, get and delete as one chain per book, all chains in flight together
+    @Test
+    void testConcurrentWorkflows() throws Exception {
+        List<CompletableFuture<Long>> workflows = new ArrayList<>();
+        for (int i = 0; i < WORKFLOWS; i++) {
+            String title = "Jadunama " + i;
+            workflows.add(client.asAdmin().create(new Book(BookFixtures.unusedId(server), "Draft " + i, "Author " + i))
+                    .thenCompose(created -> {
+                        long id = created.statusCode(201).contentType("application/json").id();
+                        return client.asAdmin().update(new Book(id, title, "Javed Akhtar and Arvind Mandloi"));
+                    })
+                    .thenCompose(updated -> client.asUser().get(updated.statusCode(200).id()))
+                    .thenCompose(fetched -> {
+                        fetched.statusCode(200).field("title", title);
+                        return client.asAdmin().delete(fetched.id());
+                    })
+                    .thenApply(deleted -> deleted.statusCode(200).id()));
+        }
+
+        List<Long> ids = AsyncBooksClient.all(workflows).get(30, TimeUnit.SECONDS);
+
+        Assert.assertEquals(ids.size(), WORKFLOWS);
+        for (long id : ids) {
+            Assert.assertNull(server.store().get(id), "Book " + id + " was not deleted");
+        }
+    }
+
+    //Roles map to the same status codes as the RestAssured specs
+    @Test
+    void testRoles() {
+        long bookId = BookFixtures.existingBook(server);
+        Book book = new Book(bookId, BookFixtures.TITLE, BookFixtures.AUTHOR);
+
+        List<CompletableFuture<BookResponse>> responses = List.of(
+                client.asUser().update(book),
+                client.anonymous().get(bookId),
+                client.withWrongPassword().delete(bookId),
+                client.asAdmin().get(BookFixtures.unusedId(server)),
+                client.asUser().get(bookId));
+        List<BookResponse> completed = AsyncBooksClient.all(responses).join();
+
+        completed.get(0).statusCode(403);
+        completed.get(1).statusCode(401);
+        completed.get(2).statusCode(401);
+        completed.get(3).statusCode(404).body("Book not found");
+        Assert.assertEquals(completed.get(4).statusCode(200).book(), book);
+    }
+
+    //A failed assertion inside a chain completes the future exceptionally with the AssertionError
+    @Test
+    void testAssertionFailurePropagates() {
+        CompletableFuture<BookResponse> chain = client.asAdmin().get(BookFixtures.unusedId(server))
+                .thenApply(response -> response.statusCode(200));
+
+        CompletionException error = Assert.expectThrows(CompletionException.class, chain::join);
+        Assert.assertTrue(error.getCause() instanceof AssertionError, String.valueOf(error.getCause()));
+        Assert.assertTrue(error.getCause().getMessage().contains("expected status 200 but got 404"),
+                error.getCause().getMessage());
+    }
+
+    //Asking for HTTP/2 against the HTTP/1.1-only stand-in falls back transparently
+    @Test
+    void testHttp2FallsBackToHttp11() {
+        try (AsyncBooksClient http2 = AsyncBooksClient.forServer(server, HttpClient.Version.HTTP_2)) {
+            long bookId = BookFixtures.existingBook(server);
+            BookResponse response = http2.asAdmin().get(bookId).join();
+
+            response.statusCode(200).field("id", bookId);
+            Assert.assertEquals(response.version(), HttpClient.Version.HTTP_1_1);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+import org.example.Book;
+import org.example.BookCodec;
+import org.example.BookPayload;
+import org.example.Json;
+import org.junit.jupiter.api.Test;
+import org.testng.Assert;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BookCodecTest {
+
+    //Encoded books are the same JSON Json.write produces, and decode back to equal books
+    @Test
+    void testRoundTrip() {
+        List<Book> books = List.of(
+                new Book(1, "The World: A Family History", "Simon Sebag Montefiore"),
+                new Book(-42, "Quotes \" and \\ slashes\n\ttabs \u0001", "Ünïcödé ünd 漢字 and 🦜"),
+                new Book(Long.MAX_VALUE, "", null),
+                new Book(Long.MIN_VALUE, null, "Author"));
+        for (Book book : books) {
+            byte[] json = BookCodec.encode(book);
+            Map<String, Object> expected = new LinkedHashMap<>();
+            expected.put("id", book.getId());
+            expected.put("title", book.getTitle());
+            expected.put("author", book.getAuthor());
+            Assert.assertEquals(new String(json, StandardCharsets.UTF_8), Json.write(expected));
+            Assert.assertEquals(BookCodec.decode(json), book);
+        }
+    }
+
+    //Lone surrogates are written as \\u escapes by both encoders and decode back to the same string
+    @Test
+    void testLoneSurrogatesAreEscaped() {
+        Book book = new Book(9, "high \ud83e alone", "low \udd9c, pair \ud83e\udd9c, reversed \udd9c\ud83e");
+        String json = new String(BookCodec.encode(book), StandardCharsets.UTF_8);
+        Assert.assertEquals(json, "{\"id\":9,\"title\":\"high \\ud83e alone\","
+                + "\"author\":\"low \\udd9c, pair \ud83e\udd9c, reversed \\udd9c\\ud83e\"}");
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("id", book.getId());
+        expected.put("title", book.getTitle());
+        expected.put("author", book.getAuthor());
+        Assert.assertEquals(Json.write(expected), json);
+        Assert.assertEquals(BookCodec.decode(json.getBytes(StandardCharsets.UTF_8)), book);
+    }
+
+    //Fields come in any order with any whitespace, unknown fields of any shape are skipped
+    @Test
+    void testDecodeIsOrderAndFieldTolerant() {
+        String json = " {\n  \"author\" : \"A\\u00e9\\/\",\"extra\": {\"nested\": [1, 2.5e3, true, null, \"x\"]},"
+                + " \"title\": \"T\", \"id\": 7, \"flag\": false } ";
+        Assert.assertEquals(BookCodec.decode(json.getBytes(StandardCharsets.UTF_8)), new Book(7, "T", "Aé/"));
+        Assert.assertEquals(BookCodec.decode("{}".getBytes(StandardCharsets.UTF_8)), new Book(0, null, null));
+        Assert.assertEquals(BookCodec.decode("{\"id\":null,\"title\":null}".getBytes(StandardCharsets.UTF_8)),
+                new Book(0, null, null));
+
+        byte[] padded = "xx{\"id\":3,\"title\":\"T\",\"author\":\"A\"}yy".getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(BookCodec.decode(padded, 2, padded.length - 4), new Book(3, "T", "A"));
+    }
+
+    //Malformed input is rejected with the offset of the problem
+    @Test
+    void testDecodeRejectsMalformedJson() {
+        assertRejected("{\"id\": , \"title\": \"T\"}", "Invalid number at offset 7");
+        assertRejected("{\"id\": 1, \"title\": \"T\",}", "Expected '\"' at offset 23");
+        assertRejected("{\"id\": 1.5}", "Expected an integer at offset 7");
+        assertRejected("{\"id\": 99999999999999999999}", "Number out of range at offset 7");
+        assertRejected("{\"title\": \"T", "Unterminated string at offset 12");
+        assertRejected("{\"title\": \"T\"} {}", "Trailing data at offset 15");
+        assertRejected("[]", "Expected '{' at offset 0");
+        assertRejected("", "Unexpected end of input at offset 0");
+    }
+
+    //Encoding into a pooled buffer that is released again allocates nothing once warmed up
+    @Test
+    void testPooledEncodingDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Book book = new Book(12345, "The World: A Family History", "British historian Simon Sebag Montefiore");
+        long length = 0;
+        for (int i = 0; i < 20_000; i++) {
+            BookCodec.Buffer buffer = BookCodec.buffer();
+            BookCodec.encode(book, buffer);
+            length += buffer.length();
+            BookCodec.release(buffer);
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 10_000; i++) {
+            BookCodec.Buffer buffer = BookCodec.buffer();
+            BookCodec.encode(book, buffer);
+            length += buffer.length();
+            BookCodec.release(buffer);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        Assert.assertTrue(length > 0);
+        Assert.assertTrue(allocated < 10_000, "Allocated " + allocated + " bytes for 10000 encodes");
+    }
+
+    //Payloads leave out or retype fields as asked, and only the malformed methods break the JSON
+    @Test
+    void testPayloads() {
+        Assert.assertEquals(BookPayload.of(5, "T", "A").without("author").toString(), "{\"id\": 5, \"title\": \"T\"}");
+        Assert.assertEquals(BookPayload.of(5, "T", "A").with("title", 123).toString(),
+                "{\"id\": 5, \"title\": 123, \"author\": \"A\"}");
+        Assert.assertEquals(BookPayload.of(5, "T", "A").malformedValue("id", "").toString(),
+                "{\"id\": , \"title\": \"T\", \"author\": \"A\"}");
+        Assert.assertEquals(BookPayload.empty().with("title", "T").malformedTrailingComma().toString(),
+                "{\"title\": \"T\",}");
+    }
+
+    private static void assertRejected(String json, String message) {
+        try {
+            BookCodec.decode(json.getBytes(StandardCharsets.UTF_8));
+            Assert.fail("Accepted " + json);
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals(e.getMessage(), message);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+import io.restassured.response.Response;
+import org.example.ApiSpecs;
+import org.example.Book;
+import org.example.BookLog;
+import org.example.BookQuery;
+import org.example.BookStore;
+import org.example.Main;
+import org.junit.jupiter.api.Test;
+import org.testng.Assert;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class BookLogTest {
+
+    //Random creates, updates and removals come back after a restart, versions and all, and ids carry on
+    @Test
+    void testReopenedStoreHasTheSameBooks() throws Exception {
+        Path directory = Files.createTempDirectory("book-log");
+        Random random = new Random(42);
+        BookStore store = BookStore.open(directory, BookLog.Fsync.NEVER, 500);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3_000; i++) {
+            int operation = random.nextInt(10);
+            if (operation < 6 || ids.isEmpty()) {
+                ids.add(store.insertWithNewId("Title " + i, "Author " + random.nextInt(50)).getId());
+            } else if (operation < 8) {
+                long id = ids.get(random.nextInt(ids.size()));
+                Assert.assertTrue(store.replace(new Book(id, "Retitled " + i, "Author " + random.nextInt(50))));
+            } else {
+                Assert.assertNotNull(store.remove(ids.remove(random.nextInt(ids.size()))));
+            }
+        }
+        store.sync();
+        BookStore.Snapshot before = store.snapshot();
+        store.close();
+
+        BookStore reopened = BookStore.open(directory, BookLog.Fsync.NEVER, 500);
+        BookStore.Snapshot after = reopened.snapshot();
+        Assert.assertEquals(after.list(), before.list());
+        Assert.assertEquals(after.digest(), before.digest(), "Versions, and so ETags, must survive a restart");
+        Assert.assertTrue(reopened.insertWithNewId("Next", "Author").getId() > ids.get(ids.size() - 1));
+
+        // the map and index recovery builds in one go take writes like ones built a book at a time
+        BookStore memory = new BookStore().fork(before);
+        for (int i = 0; i < 200; i++) {
+            long id = ids.get(random.nextInt(ids.size()));
+            Book book = new Book(id, "Moved " + i, "Author " + random.nextInt(50));
+            Assert.assertEquals(reopened.replace(book), memory.replace(book));
+            long removed = ids.get(random.nextInt(ids.size()));
+            Assert.assertEquals(reopened.remove(removed), memory.remove(removed));
+        }
+        BookQuery query = BookQuery.of("author 7", "moved", false);
+        Assert.assertEquals(reopened.snapshot().search(query, Long.MIN_VALUE, 100),
+                memory.snapshot().search(query, Long.MIN_VALUE, 100));
+        Assert.assertFalse(memory.snapshot().search(query, Long.MIN_VALUE, 100).isEmpty());
+        reopened.close();
+    }
+
+    //A record cut short by a crash is dropped, and the log is appended to after the last whole one
+    @Test
+    void testCutShortRecordIsDropped() throws Exception {
+        Path directory = Files.createTempDirectory("book-log");
+        BookStore store = BookStore.open(directory, BookLog.Fsync.ALWAYS);
+        for (int i = 1; i <= 10; i++) {
+            store.insertIfAbsent(new Book(i, "Jadunama " + i, "Javed Akhtar"));
+        }
+        store.sync();
+        store.close();
+        Path segment = segments(directory).get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        BookStore reopened = BookStore.open(directory, BookLog.Fsync.ALWAYS);
+        Assert.assertEquals(reopened.size(), 9);
+        Assert.assertNull(reopened.get(10));
+        reopened.insertIfAbsent(new Book(10, "Tarkash", "Javed Akhtar"));
+        reopened.sync();
+        reopened.close();
+
+        BookStore again = BookStore.open(directory, BookLog.Fsync.ALWAYS);
+        Assert.assertEquals(again.size(), 10);
+        Assert.assertEquals(again.get(10).getTitle(), "Tarkash");
+        again.close();
+    }
+
+    //Snapshots replace the segments before them, and damage outside the last segment fails recovery
+    @Test
+    void testSnapshotsReplaceOlderSegments() throws Exception {
+        Path directory = Files.createTempDirectory("book-log");
+        BookStore store = BookStore.open(directory, BookLog.Fsync.NEVER, 100);
+        for (int i = 1; i <= 1_050; i++) {
+            store.insertIfAbsent(new Book(i, "Lava " + i, "Javed Akhtar"));
+            if (i % 3 == 0) {
+                store.remove(i - 1);
+            }
+        }
+        store.sync();
+        List<Book> before = store.list();
+        store.close();
+
+        List<String> snapshots = files(directory, ".snapshot");
+        Assert.assertEquals(snapshots.size(), 1, files(directory, "").toString());
+        Assert.assertTrue(segments(directory).size() <= 2, files(directory, "").toString());
+        BookStore reopened = BookStore.open(directory, BookLog.Fsync.NEVER, 100);
+        Assert.assertEquals(reopened.list(), before);
+        reopened.close();
+
+        Path snapshot = directory.resolve(snapshots.get(0));
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+        IOException e = Assert.expectThrows(IOException.class,
+                () -> BookStore.open(directory, BookLog.Fsync.NEVER, 100));
+        Assert.assertTrue(e.getMessage().contains("damaged"), e.getMessage());
+    }
+
+    //Writers syncing at the same time share fsyncs, and every synced write is there after a restart
+    @Test
+    void testConcurrentSyncsShareFsyncs() throws Exception {
+        Path directory = Files.createTempDirectory("book-log");
+        BookStore store = BookStore.open(directory, BookLog.Fsync.ALWAYS);
+        ExecutorService writers = Executors.newFixedThreadPool(8);
+        List<Future<?>> done = new ArrayList<>();
+        for (int w = 0; w < 8; w++) {
+            int writer = w;
+            done.add(writers.submit(() -> {
+                for (int i = 0; i < 100; i++) {
+                    store.insertWithNewId("Poems " + i, "Writer " + writer);
+                    store.sync();
+                }
+            }));
+        }
+        for (Future<?> future : done) {
+            future.get();
+        }
+        writers.shutdown();
+        long fsyncs = store.log().fsyncs();
+        store.close();
+
+        Assert.assertTrue(fsyncs < 800, "Expected group commits, got " + fsyncs + " fsyncs for 800 writes");
+        BookStore reopened = BookStore.open(directory, BookLog.Fsync.ALWAYS);
+        Assert.assertEquals(reopened.size(), 800);
+        reopened.close();
+    }
+
+    //Restoring a snapshot of a durable store is what a restart comes back to
+    @Test
+    void testRestoreSurvivesRestart() throws Exception {
+        Path directory = Files.createTempDirectory("book-log");
+        BookStore store = BookStore.open(directory, BookLog.Fsync.ALWAYS);
+        store.insertIfAbsent(new Book(1, "The World: A Family History", "Simon Sebag Montefiore"));
+        BookStore.Snapshot seed = store.snapshot();
+        store.insertIfAbsent(new Book(2, "Jadunama", "Javed Akhtar"));
+        store.restore(seed);
+        store.insertIfAbsent(new Book(3, "Tarkash", "Javed Akhtar"));
+        store.sync();
+        store.close();
+
+        BookStore reopened = BookStore.open(directory, BookLog.Fsync.ALWAYS);
+        Assert.assertEquals(reopened.list().stream().map(Book::getId).collect(Collectors.toList()), List.of(1L, 3L));
+        reopened.close();
+    }
+
+    //A server on a data directory still has book 5 after a restart
+    @Test
+    void testServerKeepsBooksAcrossRestart() throws Exception {
+        Path directory = Files.createTempDirectory("book-log");
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        Main server = Main.start(address, Main.seeded(BookStore.open(directory, BookLog.Fsync.ALWAYS)));
+        try {
+            Response created = ApiSpecs.forServer(server).asAdmin()
+                    .contentType("application/json")
+                    .body("{\"id\": 5, \"title\": \"Jadunama\", \"author\": \"Javed Akhtar and Arvind Mandloi\"}")
+                    .when()
+                    .post();
+            Assert.assertEquals(created.getStatusCode(), 201);
+        } finally {
+            server.close();
+        }
+
+        Main restarted = Main.start(address, BookStore.open(directory, BookLog.Fsync.ALWAYS));
+        try {
+            Response response = ApiSpecs.forServer(restarted).asUser().get("/5");
+            Assert.assertEquals(response.getStatusCode(), 200);
+            Assert.assertEquals(response.jsonPath().getString("title"), "Jadunama");
+            Assert.assertEquals(restarted.store().size(), 2);
+        } finally {
+            restarted.close();
+        }
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        return files(directory, ".log").stream().map(directory::resolve).collect(Collectors.toList());
+    }
+
+    private static List<String> files(Path directory, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).filter(name -> name.endsWith(suffix))
+                    .sorted().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+import org.example.Book;
+import org.example.BookQuery;
+import org.example.BookStore;
+import org.junit.jupiter.api.Test;
+import org.testng.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+public class BookSearchTest {
+
+    private static final String[] WORDS = {
+            "javed", "akhtar", "arvind", "mandloi", "simon", "sebag", "montefiore", "jadunama", "tarkash",
+            "world", "family", "history", "lava", "poems", "and", "the"};
+
+    //Random creates, updates and removals leave the index agreeing with a scan, in old snapshots too
+    @Test
+    void testIndexMatchesLinearScan() {
+        Random random = new Random(42);
+        BookStore store = new BookStore();
+        List<Long> ids = new ArrayList<>();
+        BookStore.Snapshot frozen = null;
+        for (int i = 0; i < 5_000; i++) {
+            int operation = random.nextInt(10);
+            if (operation < 6 || ids.isEmpty()) {
+                ids.add(store.insertWithNewId(text(random), text(random)).getId());
+            } else if (operation < 8) {
+                long id = ids.get(random.nextInt(ids.size()));
+                Assert.assertTrue(store.replace(new Book(id, text(random), text(random))));
+            } else {
+                Assert.assertNotNull(store.remove(ids.remove(random.nextInt(ids.size()))));
+            }
+            if (i == 2_500) {
+                frozen = store.snapshot();
+            }
+        }
+        BookStore.Snapshot current = store.snapshot();
+
+        for (int i = 0; i < 100; i++) {
+            boolean prefix = random.nextBoolean();
+            String author = random.nextInt(3) == 0 ? null : query(random, prefix);
+            String title = author != null && random.nextBoolean() ? null : query(random, prefix);
+            BookQuery query = BookQuery.of(author, title, prefix);
+            assertSearch(current, query);
+            assertSearch(frozen, query);
+        }
+        assertSearch(current, BookQuery.all());
+    }
+
+    //Pages from the cursor add up to the whole result, in id order
+    @Test
+    void testPagesJoinUp() {
+        BookStore store = new BookStore();
+        for (int i = 0; i < 1_000; i++) {
+            store.insertWithNewId("Poems " + i, i % 3 == 0 ? "Javed Akhtar" : "Arvind Mandloi");
+        }
+        BookStore.Snapshot snapshot = store.snapshot();
+        BookQuery query = BookQuery.of("akhtar", null, false);
+
+        List<Book> paged = new ArrayList<>();
+        long after = Long.MIN_VALUE;
+        for (List<Book> page; !(page = snapshot.search(query, after, 7)).isEmpty(); ) {
+            Assert.assertTrue(page.size() <= 7);
+            paged.addAll(page);
+            after = page.get(page.size() - 1).getId();
+        }
+
+        Assert.assertEquals(paged.size(), 334);
+        Assert.assertEquals(paged, snapshot.search(query, Long.MIN_VALUE, Integer.MAX_VALUE));
+    }
+
+    //Words are split at punctuation and compared without case; a query without words is refused
+    @Test
+    void testQueryWords() {
+        Book book = new Book(1, "The World: A Family History", "British historian Simon Sebag Montefiore");
+
+        Assert.assertTrue(BookQuery.of("MONTEFIORE simon", "world", false).matches(book));
+        Assert.assertTrue(BookQuery.of("sebag", "famil hist", true).matches(book));
+        Assert.assertFalse(BookQuery.of("sebag", "famil", false).matches(book));
+        Assert.assertFalse(BookQuery.of("sebag mandloi", null, false).matches(book));
+        Assert.assertEquals(BookQuery.of("Javed Akhtar and Arvind Mandloi", null, false).author(),
+                List.of("javed", "akhtar", "and", "arvind", "mandloi"));
+        IllegalArgumentException e = Assert.expectThrows(IllegalArgumentException.class,
+                () -> BookQuery.of(null, " : ", false));
+        Assert.assertEquals(e.getMessage(), "title has no words to search for");
+    }
+
+    private static void assertSearch(BookStore.Snapshot snapshot, BookQuery query) {
+        List<Long> scanned = snapshot.list().stream().filter(query::matches).map(Book::getId)
+                .collect(Collectors.toList());
+        List<Long> searched = snapshot.search(query, Long.MIN_VALUE, Integer.MAX_VALUE).stream().map(Book::getId)
+                .collect(Collectors.toList());
+        Assert.assertEquals(searched, scanned, query.toString());
+        if (scanned.size() > 2) {
+            long after = scanned.get(scanned.size() / 2);
+            Assert.assertEquals(snapshot.search(query, after, 2).stream().map(Book::getId)
+                    .collect(Collectors.toList()), scanned.subList(scanned.size() / 2 + 1,
+                    Math.min(scanned.size(), scanned.size() / 2 + 3)), query + " after " + after);
+        }
+    }
+
+    private static String text(Random random) {
+        int count = 1 + random.nextInt(4);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            text.append(i == 0 ? "" : random.nextBoolean() ? " " : ", ")
+                    .append(random.nextBoolean() ? word : word.toUpperCase());
+        }
+        return text.toString();
+    }
+
+    private static String query(Random random, boolean prefix) {
+        String word = WORDS[random.nextInt(WORDS.length)];
+        String first = prefix ? word.substring(0, 1 + random.nextInt(word.length())) : word;
+        return random.nextBoolean() ? first : first + " " + WORDS[random.nextInt(WORDS.length)];
+    }
+}
@@ -0,0 +1,125 @@
+import org.example.AsyncBooksClient;
+import org.example.Book;
+import org.example.BookFixtures;
+import org.example.BookResponse;
+import org.example.Json;
+import org.example.Main;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testng.Assert;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class BulkCreateTest {
+
+    private static final int BOOKS = 20_000;
+
+    private static Main server;
+    private static AsyncBooksClient client;
+
+    @BeforeAll
+    static void startServer() {
+        server = Main.start(0);
+        client = AsyncBooksClient.forServer(server);
+    }
+
+    @AfterAll
+    static void stopServer() {
+        client.close();
+        server.close();
+    }
+
+    //Each element of a JSON array gets the status a single POST would, and the valid ones are stored
+    @Test
+    void testJsonArrayReportsEachItem() {
+        long existing = BookFixtures.existingBook(server);
+        long unused = BookFixtures.unusedId(server);
+        String body = "[{\"id\": " + unused + ", \"title\": \"Jadunama\", \"author\": \"Javed Akhtar\"},\n"
+                + " {\"id\": " + existing + ", \"title\": \"Duplicate\", \"author\": \"Someone\"},\n"
+                + " {\"title\": \"No author, [brackets] in \\\"strings\\\"\"},\n"
+                + " {\"id\": , \"title\": \"Lenient\", \"author\": \"Like a single POST\"},\n"
+                + " {\"title\": \"Broken\" \"author\": \"x\"},\n"
+                + " {\"title\": \"Generated id\", \"author\": \"Anonymous\"},\n"
+                + "]";
+
+        BookResponse response = client.asAdmin().send("POST", "/_bulk", body).join()
+                .statusCode(200).contentType("application/json")
+                .field("created", 3).field("existing", 1).field("invalid", 2);
+
+        List<Map<String, Object>> results = results(response);
+        Assert.assertEquals(statuses(results), List.of(201L, 208L, 400L, 201L, 400L, 201L));
+        Assert.assertEquals(results.get(0).get("id"), unused);
+        Assert.assertEquals(results.get(1).get("id"), existing);
+        Assert.assertEquals(results.get(2).get("error"), "Book author is required");
+        Assert.assertTrue(((String) results.get(4).get("error")).startsWith("Invalid JSON"));
+        client.asUser().get(unused).join().statusCode(200).field("title", "Jadunama");
+        client.asUser().get((Long) results.get(5).get("id")).join().statusCode(200).field("author", "Anonymous");
+        client.asUser().get(existing).join().statusCode(200).field("title", BookFixtures.TITLE);
+    }
+
+    //The client streams a lazily generated batch as NDJSON and every book is created in order
+    @Test
+    void testClientBulkCreateStreamsNdjson() {
+        Iterable<Book> books = () -> new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < BOOKS;
+            }
+
+            @Override
+            public Book next() {
+                next++;
+                return new Book(0, "Bulk title " + next, "Bulk author " + next);
+            }
+        };
+
+        BookResponse response = client.asAdmin().bulkCreate(books).join()
+                .statusCode(200).field("created", BOOKS).field("existing", 0).field("invalid", 0);
+
+        List<Map<String, Object>> results = results(response);
+        Assert.assertEquals(results.size(), BOOKS);
+        long first = (Long) results.get(0).get("id");
+        long last = (Long) results.get(BOOKS - 1).get("id");
+        Assert.assertTrue(last > first);
+        client.asUser().get(first).join().statusCode(200).field("title", "Bulk title 1");
+        client.asUser().get(last).join().statusCode(200).field("title", "Bulk title " + BOOKS);
+    }
+
+    //A body cut short ends the pass with 400, and the items before the break are kept
+    @Test
+    void testTruncatedArrayStopsWithError() {
+        long unused = BookFixtures.unusedId(server);
+        String body = "[{\"id\": " + unused + ", \"title\": \"Kept\", \"author\": \"A\"}, {\"title\": \"Cut";
+
+        BookResponse response = client.asAdmin().send("POST", "/_bulk", body).join()
+                .statusCode(400).field("created", 1);
+
+        Assert.assertTrue(String.valueOf(Json.parseObject(response.asString()).get("error"))
+                .startsWith("Invalid bulk body: Unterminated array"), response.asString());
+        client.asUser().get(unused).join().statusCode(200).field("title", "Kept");
+    }
+
+    //Only admins may bulk create, and only with POST
+    @Test
+    void testBulkNeedsAdminAndPost() {
+        client.asUser().send("POST", "/_bulk", "[]").join().statusCode(403);
+        client.anonymous().send("POST", "/_bulk", "[]").join().statusCode(401);
+        client.asAdmin().send("GET", "/_bulk", null).join().statusCode(405);
+        client.asAdmin().send("POST", "/_bulk", "").join().statusCode(200).field("created", 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> results(BookResponse response) {
+        return (List<Map<String, Object>>) Json.parseObject(response.asString()).get("results");
+    }
+
+    private static List<Object> statuses(List<Map<String, Object>> results) {
+        return results.stream().map(result -> result.get("status")).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,148 @@
+import org.example.ApiSpecs;
+import org.example.Book;
+import org.example.BookFixtures;
+import org.example.CaptureFilter;
+import org.example.CaptureLog;
+import org.example.Main;
+import org.example.Replayer;
+import org.junit.jupiter.api.Test;
+import org.testng.Assert;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CaptureReplayTest {
+
+    //A captured CRUD sequence replays against a fresh server with identical statuses and bodies
+    @Test
+    void testReplayMatchesRecording() throws Exception {
+        Path log = Files.createTempFile("capture", ".bin");
+        long bookId;
+        try (Main recorded = Main.start(0); CaptureFilter capture = new CaptureFilter(log)) {
+            bookId = crud(ApiSpecs.forServer(recorded), capture, BookFixtures.unusedId(recorded));
+        }
+
+        List<CaptureLog.Entry> entries = read(log);
+        Assert.assertEquals(entries.size(), 6);
+        Assert.assertEquals(entries.get(0).method + " " + entries.get(0).path, "POST /api/books");
+        Assert.assertEquals(entries.get(0).status, 201);
+        Assert.assertEquals(entries.get(0).contentType, "application/json");
+        Assert.assertTrue(new String(entries.get(0).requestBody, StandardCharsets.UTF_8).contains("Jadunama"));
+        Assert.assertFalse(entries.get(0).authorization.isEmpty(), "Authorization was not captured");
+        Assert.assertEquals(entries.get(5).method + " " + entries.get(5).path, "GET /api/books/" + bookId);
+        Assert.assertEquals(new String(entries.get(5).responseBody, StandardCharsets.UTF_8), "Book not found");
+        for (int i = 1; i < entries.size(); i++) {
+            Assert.assertTrue(entries.get(i).offsetNanos >= entries.get(i - 1).offsetNanos, "Offsets out of order");
+        }
+
+        try (Main fresh = Main.start(0); Replayer replayer = new Replayer(fresh.baseUri())) {
+            Replayer.Result result = replayer.replay(log, 0, 1);
+            Assert.assertEquals(result.count(), 6);
+            Assert.assertEquals(result.statusMismatches(), 0, String.valueOf(result.examples()));
+            Assert.assertEquals(result.bodyMismatches(), 0, String.valueOf(result.examples()));
+        } finally {
+            Files.delete(log);
+        }
+    }
+
+    //Replaying against a server whose state has diverged reports the differing responses
+    @Test
+    void testReplayReportsMismatches() throws Exception {
+        Path log = Files.createTempFile("capture", ".bin");
+        long bookId;
+        try (Main recorded = Main.start(0); CaptureFilter capture = new CaptureFilter(log)) {
+            bookId = crud(ApiSpecs.forServer(recorded), capture, BookFixtures.unusedId(recorded));
+        }
+
+        try (Main fresh = Main.start(0); Replayer replayer = new Replayer(fresh.baseUri())) {
+            fresh.store().insertIfAbsent(new Book(bookId, "Already there", "Someone else"));
+            Replayer.Result diverged = replayer.replay(log, 0, 1);
+
+            Assert.assertEquals(diverged.count(), 6);
+            Assert.assertTrue(diverged.statusMismatches() > 0, "Creating an existing id should not match");
+            Assert.assertFalse(diverged.examples().isEmpty());
+            Assert.assertTrue(diverged.examples().get(0).startsWith("POST /api/books -> 201: got "),
+                    diverged.examples().get(0));
+        } finally {
+            Files.delete(log);
+        }
+    }
+
+    //At 2x the requests are spread over half the recorded time
+    @Test
+    void testReplayKeepsRecordedTiming() throws Exception {
+        Path log = Files.createTempFile("capture", ".bin");
+        try (Main recorded = Main.start(0); CaptureFilter capture = new CaptureFilter(log)) {
+            ApiSpecs api = ApiSpecs.forServer(recorded);
+            long bookId = BookFixtures.existingBook(recorded);
+            api.asUser().get("/" + bookId).then().statusCode(200);
+            for (int i = 0; i < 5; i++) {
+                api.asUser().filter(capture).get("/" + bookId).then().statusCode(200);
+                Thread.sleep(100);
+            }
+        }
+        List<CaptureLog.Entry> entries = read(log);
+        long span = entries.get(entries.size() - 1).offsetNanos - entries.get(0).offsetNanos;
+
+        try (Main fresh = Main.start(0); Replayer replayer = new Replayer(fresh.baseUri())) {
+            BookFixtures.existingBook(fresh);
+            replayer.replay(log, 0, 1);
+            Replayer.Result result = replayer.replay(log, 2, 4);
+            long elapsed = Math.round(result.load().elapsedSeconds() * 1e9);
+
+            Assert.assertEquals(result.count(), 5);
+            Assert.assertEquals(result.statusMismatches(), 0, String.valueOf(result.examples()));
+            Assert.assertTrue(elapsed >= span / 2, "Replay took " + elapsed + "ns for a " + span + "ns recording");
+            Assert.assertTrue(elapsed < span, "Replay took " + elapsed + "ns for a " + span + "ns recording");
+        } finally {
+            Files.delete(log);
+        }
+    }
+
+    private static long crud(ApiSpecs api, CaptureFilter capture, long bookId) {
+        String book = "{\"id\": %d, \"title\": \"Jadunama\", \"author\": \"Javed Akhtar\"}".formatted(bookId);
+        String updated = "{\"id\": %d, \"title\": \"Jadunama\", \"author\": \"Javed Akhtar and Arvind Mandloi\"}"
+                .formatted(bookId);
+        api.asAdmin().filter(capture).contentType("application/json").body(book).post().then().statusCode(201);
+        api.asUser().filter(capture).get("/" + bookId).then().statusCode(200);
+        api.asAdmin().filter(capture).contentType("application/json").body(updated).put("/" + bookId).then().statusCode(200);
+        api.asUser().filter(capture).get("/" + bookId).then().statusCode(200);
+        api.asAdmin().filter(capture).delete("/" + bookId).then().statusCode(200);
+        api.asUser().filter(capture).get("/" + bookId).then().statusCode(404);
+        return bookId;
+    }
+
+    //Paths, headers and content types longer than 64 KB come back whole, and so does the entry after them
+    @Test
+    void testLongFieldsRoundTrip() throws Exception {
+        Path log = Files.createTempFile("capture", ".bin");
+        String path = "/api/books?title=" + "a".repeat(70_000);
+        String authorization = "Bearer " + "t".repeat(66_000);
+        String contentType = "application/json; profile=" + "p".repeat(300);
+        try (CaptureLog.Writer writer = CaptureLog.create(log)) {
+            writer.append(new CaptureLog.Entry(1, 2, 200, "GET", path, authorization, contentType, null, new byte[] {1}));
+            writer.append(new CaptureLog.Entry(3, 4, 404, "GET", "/api/books/7", "", "", null, null));
+        }
+
+        List<CaptureLog.Entry> entries = read(log);
+        Files.delete(log);
+        Assert.assertEquals(entries.size(), 2);
+        Assert.assertEquals(entries.get(0).path, path);
+        Assert.assertEquals(entries.get(0).authorization, authorization);
+        Assert.assertEquals(entries.get(0).contentType, contentType);
+        Assert.assertEquals(entries.get(0).responseBody, new byte[] {1});
+        Assert.assertEquals(entries.get(1).path, "/api/books/7");
+        Assert.assertEquals(entries.get(1).status, 404);
+    }
+
+    private static List<CaptureLog.Entry> read(Path log) throws Exception {
+        List<CaptureLog.Entry> entries = new ArrayList<>();
+        try (CaptureLog.Reader reader = CaptureLog.open(log)) {
+            reader.forEachRemaining(entries::add);
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,187 @@
+import io.restassured.response.Response;
+import org.example.ApiConfig;
+import org.example.ApiSpecs;
+import org.example.AsyncBooksClient;
+import org.example.BookResponse;
+import org.example.BookStore;
+import org.example.Main;
+import org.example.StoreFork;
+import org.example.StreamingBookAssertions;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testng.Assert;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+public class CompressionTest {
+
+    private static Main server;
+    private static ApiSpecs api;
+    private static HttpClient raw;
+
+    @BeforeAll
+    static void startServer() {
+        server = Main.start(0);
+        api = ApiSpecs.forServer(server);
+        raw = HttpClient.newHttpClient();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.close();
+    }
+
+    @AfterEach
+    void leaveFork() {
+        StoreFork.end();
+    }
+
+    //A listing over the threshold is gzipped, with Vary and a coding-specific ETag, and inflates to the plain listing
+    @Test
+    void testLargeListingIsGzipped() throws Exception {
+        seedFork(200);
+
+        HttpResponse<byte[]> plain = get("/api/books", "identity");
+        HttpResponse<byte[]> gzipped = get("/api/books", "gzip, deflate");
+
+        Assert.assertTrue(plain.headers().firstValue("Content-Encoding").isEmpty());
+        Assert.assertEquals(gzipped.headers().firstValue("Content-Encoding").orElse(null), "gzip");
+        Assert.assertEquals(gzipped.headers().firstValue("Vary").orElse(null), "Accept-Encoding");
+        String etag = plain.headers().firstValue("ETag").orElseThrow();
+        Assert.assertEquals(gzipped.headers().firstValue("ETag").orElse(null),
+                etag.substring(0, etag.length() - 1) + "-gzip\"");
+        Assert.assertTrue(gzipped.body().length * 3 < plain.body().length,
+                gzipped.body().length + " of " + plain.body().length + " bytes");
+        Assert.assertEquals(inflate(new GZIPInputStream(new ByteArrayInputStream(gzipped.body()))), plain.body());
+    }
+
+    //Accept-Encoding is honoured by q-value, with gzip preferred on a tie and q=0 refusing a coding
+    @Test
+    void testNegotiation() throws Exception {
+        seedFork(200);
+        byte[] plain = get("/api/books", null).body();
+
+        HttpResponse<byte[]> deflated = get("/api/books", "gzip;q=0.5, deflate");
+        Assert.assertEquals(deflated.headers().firstValue("Content-Encoding").orElse(null), "deflate");
+        Assert.assertEquals(inflate(new InflaterInputStream(new ByteArrayInputStream(deflated.body()))), plain);
+
+        Assert.assertEquals(encoding("deflate;q=0.5, gzip;q=0.5"), "gzip");
+        Assert.assertEquals(encoding("*"), "gzip");
+        Assert.assertEquals(encoding("gzip;q=0, *;q=0.1"), "deflate");
+        Assert.assertNull(encoding("gzip;q=0, deflate;q=0"));
+        Assert.assertNull(encoding("br"));
+    }
+
+    //Bodies under the threshold, like a single book, are sent as they are
+    @Test
+    void testSmallBodiesAreNotCompressed() throws Exception {
+        Assert.assertNull(encoding("gzip"));
+        HttpResponse<byte[]> book = get("/api/books/1", "gzip");
+        Assert.assertEquals(book.statusCode(), 200);
+        Assert.assertTrue(book.headers().firstValue("Content-Encoding").isEmpty());
+    }
+
+    //A listing too large to hold back is streamed in chunks, and both clients inflate it as it arrives
+    @Test
+    void testLargeListingStreams() throws Exception {
+        int books = seedFork(50_000);
+
+        HttpResponse<byte[]> gzipped = get("/api/books", "gzip");
+        Assert.assertTrue(gzipped.headers().firstValue("Content-Length").isEmpty(), "chunked");
+
+        Response response = api.asUser().get().then().statusCode(200).extract().response();
+        Assert.assertEquals(response.getHeader("Content-Encoding"), "gzip");
+        Assert.assertEquals(StreamingBookAssertions.assertThatBooks(response).eachHasTitleAndAuthor().hasUniqueIds()
+                .verify(), books);
+
+        try (AsyncBooksClient client = AsyncBooksClient.forServer(server)) {
+            BookResponse listed = client.asUser().list().join().statusCode(200).size(books);
+            Assert.assertEquals(listed.header("Content-Encoding"), "gzip");
+        }
+    }
+
+    //If-None-Match with the gzip ETag gets a 304 that names it
+    @Test
+    void testCompressedETagRevalidates() {
+        seedFork(200);
+        String etag = api.asUser().get().then().statusCode(200).header("Content-Encoding", "gzip")
+                .extract().header("ETag");
+
+        Response notModified = api.asUser().header("If-None-Match", etag).get();
+        Assert.assertEquals(notModified.getStatusCode(), 304);
+        Assert.assertEquals(notModified.getHeader("ETag"), etag);
+        api.asUser().header("If-None-Match", etag.replace("-gzip", "")).get().then().statusCode(304);
+        api.asUser().header("If-None-Match", etag.replace("-gzip", "-deflate")).get().then().statusCode(304);
+    }
+
+    //Compression can be turned off, and its level changes only the size
+    @Test
+    void testCompressionSettings() throws Exception {
+        try (Main other = Main.start(0)) {
+            for (int i = 0; i < 2_000; i++) {
+                other.store().insertWithNewId("Title " + i, "Author " + i);
+            }
+            other.setCompression(1, 1024);
+            byte[] fastest = get(other, "gzip").body();
+            other.setCompression(9, 1024);
+            byte[] smallest = get(other, "gzip").body();
+            Assert.assertTrue(smallest.length < fastest.length, smallest.length + " < " + fastest.length);
+            Assert.assertEquals(inflate(new GZIPInputStream(new ByteArrayInputStream(smallest))),
+                    inflate(new GZIPInputStream(new ByteArrayInputStream(fastest))));
+
+            other.setCompression(6, Integer.MAX_VALUE);
+            Assert.assertTrue(get(other, "gzip").headers().firstValue("Content-Encoding").isEmpty());
+        }
+        Assert.assertThrows(IllegalArgumentException.class, () -> server.setCompression(10, 1024));
+    }
+
+    private static int seedFork(int books) {
+        StoreFork.begin();
+        BookStore fork = server.store(StoreFork.current(server));
+        for (int i = 0; i < books; i++) {
+            fork.insertWithNewId("Title " + i, "Author " + i);
+        }
+        return fork.size();
+    }
+
+    private static String encoding(String acceptEncoding) throws Exception {
+        return get("/api/books", acceptEncoding).headers().firstValue("Content-Encoding").orElse(null);
+    }
+
+    private static HttpResponse<byte[]> get(String path, String acceptEncoding) throws Exception {
+        return get(server.baseUri() + path, acceptEncoding, StoreFork.current(server));
+    }
+
+    private static HttpResponse<byte[]> get(Main other, String acceptEncoding) throws Exception {
+        return get(other.baseUri() + Main.BOOKS_PATH, acceptEncoding, null);
+    }
+
+    private static HttpResponse<byte[]> get(String uri, String acceptEncoding, String fork) throws Exception {
+        ApiConfig config = ApiConfig.load();
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(uri))
+                .header("Authorization", ApiConfig.basicAuthorization(config.userUsername(), config.userPassword()));
+        if (acceptEncoding != null) {
+            request.header("Accept-Encoding", acceptEncoding);
+        }
+        if (fork != null) {
+            request.header(Main.FORK_HEADER, fork);
+        }
+        return raw.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private static byte[] inflate(InputStream in) throws IOException {
+        try (in) {
+            return in.readAllBytes();
+        }
+    }
+}
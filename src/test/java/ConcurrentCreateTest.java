@@ -0,0 +1,136 @@
+import io.restassured.response.Response;
+import org.example.ApiSpecs;
+import org.example.Book;
+import org.example.BookFixtures;
+import org.example.BookStore;
+import org.example.Main;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testng.Assert;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ConcurrentCreateTest {
+
+    private static final int THREADS = 32;
+
+    private static Main server;
+    private static ApiSpecs api;
+
+    @BeforeAll
+    static void startServer() {
+        server = Main.start(0);
+        api = ApiSpecs.forServer(server);
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.close();
+    }
+
+    //N threads creating the same id get exactly one 201, the rest 208
+    @Test
+    void testConcurrentCreateWithSameId() throws Exception {
+        String requestBody = """
+        {
+            "id": %d,
+            "title": "Jadunama",
+            "author": "Javed Akhtar and Arvind Mandloi"
+        }
+        """.formatted(BookFixtures.unusedId(server));
+
+        List<Integer> statusCodes = runConcurrently(() -> {
+            Response response = api.asAdmin()
+                    .contentType("application/json")
+                    .body(requestBody)
+                    .when()
+                    .post();
+            return response.getStatusCode();
+        });
+
+        long created = statusCodes.stream().filter(code -> code == 201).count();
+        long duplicates = statusCodes.stream().filter(code -> code == 208).count();
+        Assert.assertEquals(created, 1, "Expected exactly one 201 but got " + statusCodes);
+        Assert.assertEquals(duplicates, THREADS - 1, "Expected the rest to be 208 but got " + statusCodes);
+    }
+
+    //Concurrent creates without an id never hand out the same id twice
+    @Test
+    void testConcurrentCreateWithoutId() throws Exception {
+        String requestBody = "{\"title\": \"New Book Title\", \"author\": \"Author Name\"}";
+
+        List<Integer> ids = runConcurrently(() -> api.asAdmin()
+                .contentType("application/json")
+                .body(requestBody)
+                .when()
+                .post()
+                .then()
+                .statusCode(201)
+                .extract().path("id"));
+
+        Assert.assertEquals(new HashSet<>(ids).size(), THREADS, "Duplicate ids allocated: " + ids);
+    }
+
+    //Store level: racing inserts over many ids, each id is won by exactly one thread
+    @Test
+    void testStoreInsertIfAbsentUnderContention() throws Exception {
+        BookStore store = new BookStore();
+        int idsPerThread = 20_000;
+
+        List<Integer> wins = runConcurrently(() -> {
+            int won = 0;
+            for (long id = 1; id <= idsPerThread; id++) {
+                if (store.insertIfAbsent(new Book(id, "Title " + id, "Author"))) {
+                    won++;
+                }
+            }
+            return won;
+        });
+
+        Assert.assertEquals(wins.stream().mapToInt(Integer::intValue).sum(), idsPerThread);
+        Assert.assertEquals(store.size(), idsPerThread);
+        Set<Long> seen = new HashSet<>();
+        for (Book book : store.list()) {
+            Assert.assertTrue(seen.add(book.getId()), "Listed twice: " + book);
+            Assert.assertEquals(store.get(book.getId()), book);
+        }
+        for (long id = 1; id <= idsPerThread; id += 2) {
+            Assert.assertNotNull(store.remove(id));
+        }
+        Assert.assertEquals(store.size(), idsPerThread / 2);
+        for (long id = 1; id <= idsPerThread; id++) {
+            Assert.assertEquals(store.get(id) != null, id % 2 == 0, "Lookup after removal of " + id);
+        }
+    }
+
+    private static <T> List<T> runConcurrently(Callable<T> task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+import io.restassured.response.Response;
+import org.example.ApiSpecs;
+import org.example.Book;
+import org.example.BookCodec;
+import org.example.BookFixtures;
+import org.example.Main;
+import org.example.ResponseCache;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testng.Assert;
+
+public class ConditionalGetTest {
+
+    private static Main server;
+    private static ApiSpecs api;
+
+    @BeforeAll
+    static void startServer() {
+        server = Main.start(0);
+        api = ApiSpecs.forServer(server);
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.close();
+    }
+
+    //A book's ETag holds until the book is written, and If-None-Match with it gets an empty 304
+    @Test
+    void testBookETagRevalidation() {
+        long bookId = BookFixtures.existingBook(server);
+        String etag = api.asUser().get("/" + bookId).then().statusCode(200).extract().header("ETag");
+        Assert.assertTrue(etag.matches("\"[0-9a-f]+\""), etag);
+
+        Response notModified = api.asUser().header("If-None-Match", etag).get("/" + bookId);
+        Assert.assertEquals(notModified.getStatusCode(), 304);
+        Assert.assertEquals(notModified.asByteArray().length, 0);
+        Assert.assertEquals(notModified.getHeader("ETag"), etag);
+        api.asUser().header("If-None-Match", "\"0\", W/" + etag).get("/" + bookId).then().statusCode(304);
+        api.asUser().header("If-None-Match", "*").get("/" + bookId).then().statusCode(304);
+
+        api.asAdmin().contentType("application/json")
+                .body(BookCodec.encode(new Book(bookId, "Revised", BookFixtures.AUTHOR)))
+                .put("/" + bookId).then().statusCode(200);
+        Response changed = api.asUser().header("If-None-Match", etag).get("/" + bookId);
+        Assert.assertEquals(changed.getStatusCode(), 200);
+        Assert.assertNotEquals(changed.getHeader("ETag"), etag);
+        Assert.assertEquals(changed.jsonPath().getString("title"), "Revised");
+    }
+
+    //The collection's ETag changes with every create, update and delete, and only then
+    @Test
+    void testCollectionETagTracksWrites() {
+        String etag = api.asUser().get().then().statusCode(200).extract().header("ETag");
+        long bookId = BookFixtures.existingBook(server);
+        String afterCreate = api.asUser().header("If-None-Match", etag).get().then().statusCode(200)
+                .extract().header("ETag");
+        Assert.assertNotEquals(afterCreate, etag);
+        api.asUser().header("If-None-Match", afterCreate).get().then().statusCode(304);
+
+        server.store().replace(new Book(bookId, "Revised", BookFixtures.AUTHOR));
+        String afterUpdate = api.asUser().header("If-None-Match", afterCreate).get().then().statusCode(200)
+                .extract().header("ETag");
+        server.store().remove(bookId);
+        String afterDelete = api.asUser().header("If-None-Match", afterUpdate).get().then().statusCode(200)
+                .extract().header("ETag");
+        Assert.assertNotEquals(afterDelete, afterUpdate);
+        Assert.assertNotEquals(afterDelete, afterCreate);
+    }
+
+    //Repeated reads are served from the cache after a 304, and a write is seen on the next read
+    @Test
+    void testClientCacheRevalidates() {
+        long bookId = BookFixtures.existingBook(server);
+        ResponseCache cache = new ResponseCache(100, 1 << 20);
+        ApiSpecs cached = ApiSpecs.forServer(server).withCache(cache);
+
+        String body = cached.asUser().get("/" + bookId).then().statusCode(200).extract().asString();
+        for (int i = 0; i < 3; i++) {
+            Response response = cached.asUser().get("/" + bookId);
+            Assert.assertEquals(response.getStatusCode(), 200);
+            Assert.assertEquals(response.asString(), body);
+            Assert.assertEquals(response.jsonPath().getString("title"), BookFixtures.TITLE);
+        }
+        Assert.assertEquals(cache.lookups(), 4, "the first read is a lookup that misses");
+        Assert.assertEquals(cache.hits(), 3);
+        Assert.assertEquals(cache.bytesSaved(), 3L * body.length());
+
+        server.store().replace(new Book(bookId, "Revised", BookFixtures.AUTHOR));
+        Assert.assertEquals(cached.asUser().get("/" + bookId).jsonPath().getString("title"), "Revised");
+        Assert.assertEquals(cached.asUser().get("/" + bookId).jsonPath().getString("title"), "Revised");
+        Assert.assertEquals(cache.hits(), 4);
+        Assert.assertEquals(cache.hitRatio(), 4 / 6.0, 1e-9);
+
+        // entries are per role: the admin's first read is a miss
+        cached.asAdmin().get("/" + bookId).then().statusCode(200);
+        Assert.assertEquals(cache.lookups(), 7);
+        Assert.assertEquals(cache.size(), 2);
+    }
+
+    //Least recently used entries go first when the cache is over its entry or byte bound
+    @Test
+    void testCacheEviction() {
+        long[] ids = {BookFixtures.existingBook(server), BookFixtures.existingBook(server),
+                BookFixtures.existingBook(server)};
+        ResponseCache cache = new ResponseCache(2, 1 << 20);
+        ApiSpecs cached = ApiSpecs.forServer(server).withCache(cache);
+
+        cached.asUser().get("/" + ids[0]);
+        cached.asUser().get("/" + ids[1]);
+        cached.asUser().get("/" + ids[0]);
+        cached.asUser().get("/" + ids[2]);
+        Assert.assertEquals(cache.size(), 2);
+        cached.asUser().get("/" + ids[0]);
+        cached.asUser().get("/" + ids[1]);
+        Assert.assertEquals(cache.hits(), 2, "book 0 stays cached, book 1 was evicted");
+
+        int bookBytes = BookCodec.encode(server.store().get(ids[0])).length;
+        ResponseCache small = new ResponseCache(100, bookBytes * 2L + 4);
+        ApiSpecs smallCached = ApiSpecs.forServer(server).withCache(small);
+        for (long id : ids) {
+            smallCached.asUser().get("/" + id);
+        }
+        Assert.assertEquals(small.size(), 2);
+        Assert.assertTrue(small.bytes() <= bookBytes * 2L + 4);
+    }
+}
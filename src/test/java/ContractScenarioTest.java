@@ -0,0 +1,88 @@
+import org.example.Main;
+import org.example.Scenario;
+import org.example.ScenarioRunner;
+import org.example.ScenarioSource;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Contract cases streamed from a JSONL file, see {@link Scenario} for the format.
+ *
+ * <pre>
+ * mvn test -Ptestng -Dscenarios=/path/to/cases.jsonl -Dscenarios.batch=1000 -Dscenarios.inflight=128
+ * </pre>
+ *
+ * The file is read a batch at a time and each batch is one test
+ * invocation whose requests run concurrently, so memory stays flat however
+ * long the file is.
+ */
+public class ContractScenarioTest {
+
+    private static final String SCENARIOS = System.getProperty("scenarios", "classpath:contract-scenarios.jsonl");
+    private static final int BATCH_SIZE = Integer.getInteger("scenarios.batch", 500);
+    private static final int MAX_IN_FLIGHT = Integer.getInteger("scenarios.inflight", 64);
+
+    private static Main server;
+    private static ScenarioRunner runner;
+
+    @BeforeClass
+    public void setUp() {
+        server = Main.start(0);
+        runner = ScenarioRunner.forServer(server, MAX_IN_FLIGHT);
+    }
+
+    @AfterClass
+    public void tearDown() {
+        runner.close();
+        server.close();
+    }
+
+    //Lazy provider: TestNG pulls one batch per invocation, the source is closed after the last one
+    @DataProvider(name = "scenarios")
+    public Iterator<Object[]> scenarios() throws IOException {
+        ScenarioSource source = ScenarioSource.open(SCENARIOS);
+        Iterator<List<Scenario>> batches = source.batches(BATCH_SIZE);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                boolean more = batches.hasNext();
+                if (!more) {
+                    try {
+                        source.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return more;
+            }
+
+            @Override
+            public Object[] next() {
+                List<Scenario> batch = batches.next();
+                String lines = "lines " + batch.get(0).line() + "-" + batch.get(batch.size() - 1).line();
+                return new Object[] {lines, batch};
+            }
+        };
+    }
+
+    @Test(dataProvider = "scenarios")
+    public void testScenarios(String lines, List<Scenario> batch) throws InterruptedException {
+        List<String> failures;
+        try {
+            failures = runner.run(batch);
+        } finally {
+            //TestNG keeps the parameters of every invocation for its reports, so release the scenarios
+            batch.clear();
+        }
+        Assert.assertTrue(failures.isEmpty(), failures.size() + " scenarios failed in "
+                + lines + ":\n" + String.join("\n", failures));
+    }
+}
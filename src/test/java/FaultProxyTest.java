@@ -0,0 +1,171 @@
+import io.restassured.response.Response;
+import org.example.ApiSpecs;
+import org.example.BookFixtures;
+import org.example.ClientPolicy;
+import org.example.FaultProxy;
+import org.example.LatencyHistogram;
+import org.example.Main;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Isolated;
+import org.testng.Assert;
+
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+
+//Timing assertions, so not run next to other tests
+@Isolated
+public class FaultProxyTest {
+
+    private static final ClientPolicy NO_RETRIES = ClientPolicy.defaults().withRetries(0, Duration.ZERO);
+
+    private static Main server;
+    private static FaultProxy proxy;
+
+    @BeforeAll
+    static void startServer() {
+        server = Main.start(0);
+        // uncompressed, so the bandwidth test paces the bytes it reads
+        server.setCompression(6, Integer.MAX_VALUE);
+        proxy = FaultProxy.start(server.baseUri());
+    }
+
+    @AfterAll
+    static void stopServer() {
+        proxy.close();
+        server.close();
+    }
+
+    @AfterEach
+    void clearFaults() {
+        proxy.clear();
+    }
+
+    //Without faults the proxy is transparent
+    @Test
+    void testForwardsUnchanged() {
+        ApiSpecs api = ApiSpecs.forBaseUri(proxy.baseUri(), NO_RETRIES);
+        long bookId = BookFixtures.existingBook(server);
+
+        api.asUser().get("/" + bookId).then().statusCode(200).contentType("application/json");
+        String update = "{\"id\": %d, \"title\": \"Jadunama\", \"author\": \"Javed Akhtar\"}".formatted(bookId);
+        api.asAdmin().contentType("application/json").body(update).put("/" + bookId).then().statusCode(200);
+        api.asUser().get("/" + BookFixtures.unusedId(server)).then().statusCode(404);
+        Assert.assertEquals(server.store().get(bookId).getTitle(), "Jadunama");
+    }
+
+    //A delay on one route slows only that route
+    @Test
+    void testDelayOnRoute() {
+        ApiSpecs api = ApiSpecs.forBaseUri(proxy.baseUri(), NO_RETRIES);
+        long bookId = BookFixtures.existingBook(server);
+        proxy.route("GET", "/api/books/{id}").delay(Duration.ofMillis(300));
+
+        long start = System.nanoTime();
+        api.asUser().get().then().statusCode(200);
+        long list = System.nanoTime() - start;
+        start = System.nanoTime();
+        api.asUser().get("/" + bookId).then().statusCode(200);
+        long get = System.nanoTime() - start;
+
+        Assert.assertTrue(get >= 300_000_000L, "GET by id took " + get / 1_000_000 + " ms");
+        Assert.assertTrue(list < 300_000_000L, "Listing took " + list / 1_000_000 + " ms");
+    }
+
+    //Response bytes are paced to the configured bandwidth
+    @Test
+    void testBandwidthLimit() {
+        ApiSpecs api = ApiSpecs.forBaseUri(proxy.baseUri(), NO_RETRIES);
+        for (int i = 0; i < 300; i++) {
+            BookFixtures.existingBook(server);
+        }
+        proxy.route("GET", "/api/books").bandwidth(50_000);
+
+        long start = System.nanoTime();
+        Response response = api.asUser().get();
+        long elapsed = System.nanoTime() - start;
+
+        int bytes = response.then().statusCode(200).extract().asByteArray().length;
+        long expected = bytes * 1_000_000_000L / 50_000;
+        Assert.assertTrue(elapsed >= expected * 8 / 10, bytes + " bytes took " + elapsed / 1_000_000 + " ms");
+    }
+
+    //A reset PUT fails without retries; a 503 burst is ridden out by the retries of the spec
+    @Test
+    void testResetAndErrorBurst() {
+        long bookId = BookFixtures.existingBook(server);
+        String update = "{\"id\": %d, \"title\": \"Jadunama\", \"author\": \"Javed Akhtar\"}".formatted(bookId);
+
+        proxy.route("PUT", "/api/books/{id}").reset(1);
+        ApiSpecs fragile = ApiSpecs.forBaseUri(proxy.baseUri(), NO_RETRIES);
+        Assert.expectThrows(Exception.class,
+                () -> fragile.asAdmin().contentType("application/json").body(update).put("/" + bookId));
+
+        proxy.clear();
+        proxy.route("PUT", "/api/books/{id}").errorBurst(503, 1, 3);
+        fragile.asAdmin().contentType("application/json").body(update).put("/" + bookId).then().statusCode(503);
+        proxy.route("PUT", "/api/books/{id}").errorBurst(503, 0, 3);
+        ApiSpecs resilient = ApiSpecs.forBaseUri(proxy.baseUri(),
+                ClientPolicy.defaults().withRetries(2, Duration.ofMillis(10)));
+        resilient.asAdmin().contentType("application/json").body(update).put("/" + bookId).then().statusCode(200);
+
+        Assert.assertEquals(resilient.retries().retried(), 2);
+        Assert.assertEquals(proxy.injected().get("503"), Long.valueOf(3), String.valueOf(proxy.injected()));
+    }
+
+    //A response cut off mid-body fails the request and is retried for GET
+    @Test
+    void testPartialBody() {
+        long bookId = BookFixtures.existingBook(server);
+        proxy.route("GET", "/api/books/{id}").partialBody(1);
+        ApiSpecs fragile = ApiSpecs.forBaseUri(proxy.baseUri(), NO_RETRIES);
+        Assert.expectThrows(Exception.class, () -> fragile.asUser().get("/" + bookId).asByteArray());
+
+        proxy.route("GET", "/api/books/{id}").partialBody(0.5);
+        ApiSpecs resilient = ApiSpecs.forBaseUri(proxy.baseUri(),
+                ClientPolicy.defaults().withRetries(10, Duration.ZERO));
+        for (int i = 0; i < 20; i++) {
+            resilient.asUser().get("/" + bookId).then().statusCode(200);
+        }
+        Assert.assertTrue(resilient.retries().retried() > 0, "no retries for 20 requests at 50% partial bodies");
+    }
+
+    //The read timeout of the policy cuts a slow response short
+    @Test
+    void testReadTimeout() {
+        long bookId = BookFixtures.existingBook(server);
+        proxy.route("GET", "/api/books/{id}").delay(Duration.ofSeconds(2));
+        ApiSpecs impatient = ApiSpecs.forBaseUri(proxy.baseUri(),
+                NO_RETRIES.withTimeouts(Duration.ofSeconds(1), Duration.ofMillis(200)));
+
+        long start = System.nanoTime();
+        Exception error = Assert.expectThrows(Exception.class, () -> impatient.asUser().get("/" + bookId));
+        long elapsed = System.nanoTime() - start;
+
+        Assert.assertTrue(error instanceof SocketTimeoutException, String.valueOf(error));
+        Assert.assertTrue(elapsed < 1_500_000_000L, "Timed out after " + elapsed / 1_000_000 + " ms");
+    }
+
+    //Under 10% resets on GET the retrying client still gets every answer, at a cost in tail latency
+    @Test
+    void testDegradationUnderResets() {
+        long bookId = BookFixtures.existingBook(server);
+        proxy.route("GET", "/api/books/{id}").reset(0.1).delay(Duration.ofMillis(1), Duration.ofMillis(4));
+        ApiSpecs api = ApiSpecs.forBaseUri(proxy.baseUri(), ClientPolicy.defaults().withRetries(5, Duration.ofMillis(5)));
+        LatencyHistogram latency = new LatencyHistogram();
+        long resetsBefore = proxy.injected().getOrDefault("reset", 0L);
+
+        for (int i = 0; i < 200; i++) {
+            long start = System.nanoTime();
+            api.asUser().get("/" + bookId).then().statusCode(200);
+            latency.record(System.nanoTime() - start);
+        }
+
+        long resets = proxy.injected().getOrDefault("reset", 0L) - resetsBefore;
+        Assert.assertTrue(resets > 0, "no resets in 200 requests at 10%");
+        Assert.assertEquals(api.retries().retried(), resets);
+        Assert.assertTrue(latency.valueAtPercentile(99) > latency.valueAtPercentile(50));
+    }
+}
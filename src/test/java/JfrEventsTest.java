@@ -0,0 +1,143 @@
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.example.ApiSpecs;
+import org.example.AsyncBooksClient;
+import org.example.JfrHotspots;
+import org.example.JfrRecordingListener;
+import org.example.Main;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testng.Assert;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class JfrEventsTest {
+
+    private static Main server;
+    private static ApiSpecs api;
+
+    @BeforeAll
+    static void startServer() {
+        server = Main.start(0);
+        api = ApiSpecs.forServer(server);
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.close();
+    }
+
+    //Client calls are recorded with method, templated path, role, status and bytes, from both clients
+    @Test
+    void testClientEvents() throws Exception {
+        List<RecordedEvent> events = RecordingFile.readAllEvents(record(() -> {
+            api.asUser().get("/1").then().statusCode(200);
+            api.anonymous().get("/2").then().statusCode(401);
+            api.asAdmin().body("{\"title\":\"Recorded\",\"author\":\"Flight\"}").contentType("application/json")
+                    .post().then().statusCode(201);
+            try (AsyncBooksClient client = AsyncBooksClient.forServer(server)) {
+                client.asUser().get(123456789).join().statusCode(404);
+            }
+        }));
+        List<RecordedEvent> calls = named(events, "org.example.books.ApiCall");
+
+        RecordedEvent get = find(calls, "GET", "/api/books/{id}", "user", 200);
+        Assert.assertTrue(get.getLong("responseBytes") > 0);
+        Assert.assertEquals(get.getLong("requestBytes"), 0);
+        find(calls, "GET", "/api/books/{id}", "anonymous", 401);
+        find(calls, "POST", "/api/books", "admin", 201);
+        // other tests post while recording, so look for this test's 38-byte body among them
+        Assert.assertTrue(calls.stream().anyMatch(call -> call.getString("method").equals("POST")
+                && call.getInt("status") == 201 && call.getLong("requestBytes") == 38
+                && call.getDuration().toNanos() > 0), String.valueOf(calls));
+        find(calls, "GET", "/api/books/{id}", "user", 404);
+    }
+
+    //The server records auth, validation, store and serialization phases per endpoint
+    @Test
+    void testServerPhases() throws Exception {
+        List<RecordedEvent> events = RecordingFile.readAllEvents(record(() -> {
+            api.asAdmin().body("{\"title\":\"Phased\",\"author\":\"Server\"}").contentType("application/json")
+                    .post().then().statusCode(201);
+            api.asUser().get().then().statusCode(200);
+        }));
+        List<RecordedEvent> phases = named(events, "org.example.books.ServerPhase");
+
+        Assert.assertEquals(phasesOf(phases, "POST", "/api/books"),
+                Set.of("auth", "validation", "store", "serialization"));
+        Assert.assertEquals(phasesOf(phases, "GET", "/api/books"), Set.of("auth", "store", "serialization"));
+    }
+
+    //The summarizer reports each endpoint's calls with the server phases under it
+    @Test
+    void testHotspotReport() throws Exception {
+        Path file = record(() -> {
+            for (int i = 0; i < 50; i++) {
+                api.asUser().get("/1").then().statusCode(200);
+            }
+            api.asUser().get("/999999").then().statusCode(404);
+        });
+
+        JfrHotspots hotspots = JfrHotspots.read(file);
+        JfrHotspots.Endpoint book = hotspots.endpoints().get("GET /api/books/{id}");
+        Assert.assertNotNull(book, String.valueOf(hotspots.endpoints().keySet()));
+        Assert.assertTrue(book.latency().count() >= 51, book.latency().summary());
+        Assert.assertTrue(book.statuses().get(200) >= 50);
+        Assert.assertTrue(book.statuses().get(404) >= 1);
+        Assert.assertTrue(book.roles().get("user") >= 51);
+        Assert.assertTrue(book.phases().keySet().containsAll(Set.of("auth", "store", "serialization")),
+                String.valueOf(book.phases().keySet()));
+        Assert.assertTrue(book.phases().get("store").count() >= 51);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        hotspots.print(new PrintStream(out, true, StandardCharsets.UTF_8));
+        String report = out.toString(StandardCharsets.UTF_8);
+        Assert.assertTrue(report.startsWith("endpoint "), report);
+        Assert.assertTrue(report.matches("(?s).*\\nGET /api/books/\\{id\\} +\\d+ .*"), report);
+        Assert.assertTrue(report.matches("(?s).*\\n  server store +\\d+ .*"), report);
+        Assert.assertTrue(report.contains("200 x"), report);
+    }
+
+    private static Path record(Runnable calls) throws Exception {
+        Path file = Files.createTempDirectory("jfr").resolve("books-api.jfr");
+        try (Recording recording = JfrRecordingListener.newRecording("default")) {
+            recording.start();
+            calls.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return file;
+    }
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(name))
+                .collect(Collectors.toList());
+    }
+
+    private static RecordedEvent find(List<RecordedEvent> calls, String method, String endpoint, String role,
+                                      int status) {
+        return calls.stream()
+                .filter(call -> call.getString("method").equals(method) && call.getString("endpoint").equals(endpoint)
+                        && call.getString("role").equals(role) && call.getInt("status") == status)
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No " + method + " " + endpoint + " as " + role + " with "
+                        + status + " in " + calls));
+    }
+
+    private static Set<String> phasesOf(List<RecordedEvent> phases, String method, String endpoint) {
+        return phases.stream()
+                .filter(phase -> phase.getString("method").equals(method)
+                        && phase.getString("endpoint").equals(endpoint))
+                .map(phase -> phase.getString("phase"))
+                .collect(Collectors.toSet());
+    }
+}
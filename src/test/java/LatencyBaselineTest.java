@@ -0,0 +1,100 @@
+import org.example.LatencyBaseline;
+import org.junit.jupiter.api.Test;
+import org.testng.Assert;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class LatencyBaselineTest {
+
+    private static final LatencyBaseline.Tolerance TOLERANCE = new LatencyBaseline.Tolerance(0.25, 3, 1.0, 1.0);
+
+    //Median, p99 and MAD are taken from the measured wall times
+    @Test
+    void testStats() {
+        long[] nanos = new long[1000];
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i] = (i + 1) * 100_000L;
+        }
+        LatencyBaseline.Stats stats = LatencyBaseline.Stats.of(nanos);
+
+        Assert.assertEquals(stats.medianMs, 50.05, 1e-9);
+        Assert.assertEquals(stats.p99Ms, 99.0, 1e-9);
+        Assert.assertEquals(stats.madMs, 25.0, 1e-9);
+        Assert.assertEquals(stats.samples, 1000);
+    }
+
+    //Below 1000 samples p99 is left out rather than taken from the slowest few runs
+    @Test
+    void testNoP99FromFewSamples() {
+        long[] nanos = new long[100];
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i] = (i + 1) * 1_000_000L;
+        }
+        LatencyBaseline.Stats stats = LatencyBaseline.Stats.of(nanos);
+
+        Assert.assertEquals(stats.medianMs, 50.5, 1e-9);
+        Assert.assertTrue(Double.isNaN(stats.p99Ms), stats.toString());
+        Assert.assertEquals(stats.toString(), "median 50.500 ms, MAD 25.000 ms (n=100)");
+    }
+
+    //Drift within the tolerance passes, a median ten times slower fails
+    @Test
+    void testRegressions() {
+        LatencyBaseline.Stats baseline = new LatencyBaseline.Stats(10, 20, 0.5, 1000);
+
+        Assert.assertEquals(TOLERANCE.regressions(baseline, new LatencyBaseline.Stats(12, 30, 0.5, 1000)), List.of());
+        List<String> slower = TOLERANCE.regressions(baseline, new LatencyBaseline.Stats(100, 200, 0.5, 1000));
+        Assert.assertEquals(slower.size(), 2, slower.toString());
+        Assert.assertTrue(slower.get(0).startsWith("median 100.000 ms exceeds baseline 10.000 ms"), slower.get(0));
+        Assert.assertTrue(slower.get(1).startsWith("p99 200.000 ms exceeds baseline 20.000 ms"), slower.get(1));
+    }
+
+    //With too few samples to estimate it, a slow p99 alone is not a regression
+    @Test
+    void testP99NeedsEnoughSamples() {
+        LatencyBaseline.Stats baseline = new LatencyBaseline.Stats(10, 20, 0.5, 50);
+        Assert.assertEquals(TOLERANCE.regressions(baseline, new LatencyBaseline.Stats(10, 200, 0.5, 50)), List.of());
+
+        LatencyBaseline.Stats large = new LatencyBaseline.Stats(10, 20, 0.5, 1000);
+        List<String> slower = TOLERANCE.regressions(large, new LatencyBaseline.Stats(10, 200, 0.5, 1000));
+        Assert.assertEquals(slower.size(), 1, slower.toString());
+        Assert.assertTrue(slower.get(0).startsWith("p99 "), slower.get(0));
+    }
+
+    //A noisy baseline widens the median limit, a sub-millisecond one gets the absolute slack
+    @Test
+    void testNoiseAndMinimumDelta() {
+        LatencyBaseline.Stats noisy = new LatencyBaseline.Stats(10, 40, 2, 50);
+        Assert.assertEquals(TOLERANCE.regressions(noisy, new LatencyBaseline.Stats(18, 40, 2, 50)), List.of());
+        Assert.assertEquals(TOLERANCE.regressions(noisy, new LatencyBaseline.Stats(19, 40, 2, 50)).size(), 1);
+
+        LatencyBaseline.Stats fast = new LatencyBaseline.Stats(0.2, 0.4, 0.01, 50);
+        Assert.assertEquals(TOLERANCE.regressions(fast, new LatencyBaseline.Stats(1.1, 1.3, 0.01, 50)), List.of());
+        Assert.assertEquals(TOLERANCE.regressions(fast, new LatencyBaseline.Stats(1.3, 1.3, 0.01, 50)).size(), 1);
+    }
+
+    //The baseline file round-trips and rejects other versions
+    @Test
+    void testSaveAndLoad() throws Exception {
+        Path file = Files.createTempDirectory("perf").resolve("latency-baseline.json");
+        LatencyBaseline baseline = new LatencyBaseline();
+        baseline.put("LibraryAPITest.updateBook", new LatencyBaseline.Stats(7.5, 20.1, 1.8, 50));
+        baseline.put("APITest.test1", new LatencyBaseline.Stats(16.38, 25.5, 2.6, 1000));
+        baseline.put("APITest.test2", new LatencyBaseline.Stats(9.1, Double.NaN, 0.9, 50));
+        baseline.save(file);
+
+        LatencyBaseline loaded = LatencyBaseline.load(file);
+        Assert.assertEquals(loaded.tests().keySet().toString(), "[APITest.test1, APITest.test2, LibraryAPITest.updateBook]");
+        Assert.assertEquals(loaded.get("APITest.test1").medianMs, 16.38, 1e-9);
+        Assert.assertEquals(loaded.get("APITest.test1").p99Ms, 25.5, 1e-9);
+        Assert.assertTrue(Files.readString(file).contains("\"APITest.test2\": {\"medianMs\":9.1,\"madMs\":0.9,"));
+        Assert.assertTrue(Double.isNaN(loaded.get("APITest.test2").p99Ms));
+        Assert.assertEquals(loaded.get("LibraryAPITest.updateBook").samples, 50);
+        Assert.assertTrue(LatencyBaseline.load(file.resolveSibling("missing.json")).tests().isEmpty());
+
+        Files.writeString(file, Files.readString(file).replace("\"version\": 1", "\"version\": 0"));
+        Assert.expectThrows(java.io.IOException.class, () -> LatencyBaseline.load(file));
+    }
+}
@@ -1,82 +1,70 @@
-import io.restassured.RestAssured;
 import io.restassured.response.Response;
+import org.example.ApiSpecs;
+import org.example.Book;
+import org.example.BookCodec;
+import org.example.BookFixtures;
+import org.example.BookPayload;
+import org.example.Main;
+import org.example.StreamingBookAssertions;
 import org.testng.Assert;
+import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.util.Properties;
-
-import static io.restassured.RestAssured.*;
 import static org.testng.Assert.fail;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 
 public class LibraryAPITest {
 
-    private static Properties properties;
+    private static Main server;
+    private static ApiSpecs api;
 
     @BeforeClass
     public void setUp() {
-        // Load configuration from properties file
-        properties = new Properties();
-        try {
-            properties.load(new FileInputStream("config.properties"));
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        server = Main.start(0);
+        api = ApiSpecs.forServer(server);
+    }
 
-        RestAssured.baseURI = properties.getProperty("baseURI");
-        RestAssured.authentication = RestAssured.preemptive().basic(
-                properties.getProperty("adminUsername"),
-                properties.getProperty("adminPassword")
-        );
+    @AfterClass
+    public void tearDown() {
+        server.close();
     }
+
     //1
     @Test
     public void testUnauthorizedCreateBook() {
-        String requestBody = """
-        {
-            "id": 130,
-            "title": "Unauthorized Book",
-            "author": "Author Name -1"
-        }
-        """;
+        byte[] requestBody = BookCodec.encode(new Book(BookFixtures.unusedId(server),
+                "Unauthorized Book", "Author Name -1"));
 
-        Response response = given()
+        Response response = api.anonymous()
                 .contentType("application/json")
                 .body(requestBody)
                 .when()
-                .post("/api/books");
+                .post();
 
         int statusCode = response.getStatusCode();
-        assertStatusCodeAndPrintResponse(401, "Expected status code 401 (Unauthorized)", response);
+        assertStatusCode(401, "Expected status code 401 (Unauthorized)", response);
     }
     //2
     @Test
     void createNewBook() {
-        String requestBody = """
-        {
-            "id": 6,
-            "title": "Jadunama",
-            "author": "Javed Akhtar and Arvind Mandloi"
-        }
-        """;
+        byte[] requestBody = BookCodec.encode(new Book(BookFixtures.unusedId(server),
+                "Jadunama", "Javed Akhtar and Arvind Mandloi"));
 
-        Response response = given()
+        Response response = api.asAdmin()
                 .contentType("application/json")
                 .body(requestBody)
                 .when()
-                .post("/api/books");
+                .post();
 
         int statusCode = response.getStatusCode();
 
         if (statusCode == 208) {
-            assertStatusCodeAndPrintResponse(208, "Expected status code 208", response);
+            assertStatusCode(208, "Expected status code 208", response);
         } else if (statusCode == 201) {
-            assertStatusCodeAndPrintResponse(201, "Expected status code 201", response);
+            assertStatusCode(201, "Expected status code 201", response);
         } else {
             fail("Failed to create a book : " + statusCode);
         }
@@ -84,25 +72,18 @@ public class LibraryAPITest {
     //3
     @Test
     void createNewBookWithEmptyTitle() {
-        String requestBody = """
-        {
-            "id": 7,
-            "title": "",
-            "author": "BBB Name"
-        }
-        """;
+        byte[] requestBody = BookCodec.encode(new Book(BookFixtures.unusedId(server), "", "BBB Name"));
 
-        Response response = given()
+        Response response = api.asAdmin()
                 .contentType("application/json")
                 .body(requestBody)
                 .when()
-                .post("/api/books");
+                .post();
 
         int statusCode = response.getStatusCode();
-        System.out.println(statusCode);
 
         if (statusCode == 400) {
-            assertStatusCodeAndPrintResponse(400, "Expected status code 400", response);
+            assertStatusCode(400, "Expected status code 400", response);
         }else {
             fail("Failed to create a book with empty title: " + statusCode);
         }
@@ -110,24 +91,19 @@ public class LibraryAPITest {
     //4
     @Test
     void createDuplicateBook() {
-        String requestBody = """
-        {
-            "id": 6,
-            "title": "Jadunama",
-            "author": "Javed Akhtar and Arvind Mandloi"
-        }
-        """;
+        byte[] requestBody = BookCodec.encode(new Book(BookFixtures.existingBook(server),
+                "Jadunama", "Javed Akhtar and Arvind Mandloi"));
 
-        Response response = given()
+        Response response = api.asAdmin()
                 .contentType("application/json")
                 .body(requestBody)
                 .when()
-                .post("/api/books");
+                .post();
 
         int statusCode = response.getStatusCode();
 
         if (statusCode == 208) {
-            assertStatusCodeAndPrintResponse(208, "Expected status code 208", response);
+            assertStatusCode(208, "Expected status code 208", response);
         } else {
             fail("Failed to create a duplicate book: " + statusCode);
         }
@@ -136,26 +112,18 @@ public class LibraryAPITest {
     //5
     @Test
     void createBookWithMissingAuthor() {
-        String requestBody = """
-        {
-            "id": 8000,
-            "title": "Book Title3",
-            "author": ""
-        }
-        """;
+        byte[] requestBody = BookCodec.encode(new Book(BookFixtures.unusedId(server), "Book Title3", ""));
 
-        Response response = given()
+        Response response = api.asAdmin()
                 .contentType("application/json")
                 .body(requestBody)
                 .when()
-                .post("/api/books");
+                .post();
 
         int statusCode = response.getStatusCode();
 
-        System.out.println(statusCode);
-
         if (statusCode == 400) {
-            assertStatusCodeAndPrintResponse(400, "Expected status code 400", response);
+            assertStatusCode(400, "Expected status code 400", response);
         } else {
             fail("Failed to create a book with missing author: " + statusCode);
         }
@@ -164,24 +132,18 @@ public class LibraryAPITest {
     //6
     @Test
     void createBookWithMissingId() {
-        String requestBody = """
-        {
-            "id": ,
-            "title": "Valid Book",
-            "author": "Author Name"
-        }
-        """;
+        byte[] requestBody = BookPayload.of(0, "Valid Book", "Author Name").without("id").bytes();
 
-        Response response = given()
+        Response response = api.asAdmin()
                 .contentType("application/json")
                 .body(requestBody)
                 .when()
-                .post("/api/books");
+                .post();
 
         int statusCode = response.getStatusCode();
 
         if (statusCode == 201) {
-            assertStatusCodeAndPrintResponse(201, "Expected status code 201", response);
+            assertStatusCode(201, "Expected status code 201", response);
         } else {
             fail("Failed to create a book with valid data: " + statusCode);
         }
@@ -192,25 +154,19 @@ public class LibraryAPITest {
 
     @Test
     public void updateBook() {
-        String requestBody = """
-    {
-        "id": 1,
-        "title": "Jadma",
-        "author": "Javed Akhtar and Arvind Mandloi"
-    }
-    """;
+        long bookId = BookFixtures.existingBook(server);
+        byte[] requestBody = BookCodec.encode(new Book(BookFixtures.unusedId(server),
+                "Jadma", "Javed Akhtar and Arvind Mandloi"));
 
-        Response response = RestAssured.given()
+        Response response = api.asAdmin()
                 .contentType("application/json")
                 .body(requestBody)
                 .when()
-                .put("/api/books/10");
+                .put("/" + bookId);
 
         int statusCode = response.getStatusCode();
         String responseBody = response.asString();
 
-        System.out.println("Response : " + responseBody); // Print the response body
-
         if (statusCode == 200) {
             Assert.assertEquals(statusCode, 200, "Expected status code 200");
         } else if (statusCode == 208) {
@@ -229,12 +185,12 @@ public class LibraryAPITest {
 
     @Test
     public void deleteBook() {
-        Response response = RestAssured.given()
+        long bookId = BookFixtures.existingBook(server);
+        Response response = api.asAdmin()
                 .when()
-                .delete("/api/books/1");
+                .delete("/" + bookId);
 
         int statusCode = response.getStatusCode();
-        String responseBody = response.asString();
 
         if (statusCode == 200) {
             Assert.assertEquals(statusCode, 200, "Expected status code 200");
@@ -244,24 +200,25 @@ public class LibraryAPITest {
             Assert.fail("Failed to delete book with status code: " + statusCode);
         }
 
-        System.out.println("Response : " + responseBody);
     }
 
     @Test
     public void getAllBooks() {
-        Response response = RestAssured.get("/api/books");
+        Response response = api.asAdmin().get();
         int statusCode = response.getStatusCode();
-        String responseBody = response.asString();
 
         Assert.assertEquals(statusCode, 200, "Expected status code 200");
-        System.out.println("Response : " + responseBody);
+        StreamingBookAssertions.assertThatBooks(response)
+                .eachHasTitleAndAuthor()
+                .hasUniqueIds()
+                .verify();
     }
 
     @Test
     public void getBookByID() {
-        Response response = RestAssured.get("/api/books/5");
+        long bookId = BookFixtures.existingBook(server);
+        Response response = api.asAdmin().get("/" + bookId);
         int statusCode = response.getStatusCode();
-        String responseBody = response.asString();
 
         if (statusCode == 200) {
             Assert.assertEquals(statusCode, 200, "Expected status code 200");
@@ -271,11 +228,9 @@ public class LibraryAPITest {
             Assert.fail("Failed to get book by ID with status code: " + statusCode);
         }
 
-        System.out.println("Response : " + responseBody);
     }
 
-    private void assertStatusCodeAndPrintResponse(int expectedStatusCode, String assertionMessage, Response response) {
+    private void assertStatusCode(int expectedStatusCode, String assertionMessage, Response response) {
         Assert.assertEquals(response.getStatusCode(), expectedStatusCode, assertionMessage);
-        System.out.println("Response : " + response.asString());
     }
 }
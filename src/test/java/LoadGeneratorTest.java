@@ -0,0 +1,87 @@
+import org.example.ApiConfig;
+import org.example.LatencyHistogram;
+import org.example.LoadGenerator;
+import org.example.LoadReport;
+import org.example.Main;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testng.Assert;
+
+import java.time.Duration;
+import java.util.Set;
+
+public class LoadGeneratorTest {
+
+    private static Main server;
+
+    @BeforeAll
+    static void startServer() {
+        server = Main.start(0);
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.close();
+    }
+
+    //Every CRUD endpoint is driven at the requested rate and answered
+    @Test
+    void testConstantRateRunCoversAllEndpoints() throws InterruptedException {
+        String authorization = ApiConfig.basicAuthorization("admin", "password");
+        LoadReport report;
+        try (LoadGenerator generator = new LoadGenerator(server.baseUri(), authorization)) {
+            report = generator.run(100, Duration.ZERO, Duration.ofSeconds(1));
+        }
+
+        Assert.assertEquals(report.count(), 100);
+        Assert.assertEquals(report.byEndpoint().keySet().size(), 5, "Endpoints: " + report.byEndpoint().keySet());
+        for (String endpoint : report.byEndpoint().keySet()) {
+            Assert.assertFalse(report.byStatus(endpoint).containsKey(0), endpoint + " had failed requests");
+        }
+        Assert.assertTrue(report.byStatus("POST /api/books").containsKey(201));
+    }
+
+    //At a rate faster than the server answers, a book's update, fetch and delete still find it created
+    @Test
+    void testBookRequestsWaitForTheirCreate() throws InterruptedException {
+        String authorization = ApiConfig.basicAuthorization("admin", "password");
+        LoadReport report;
+        // its own server, so the other run's books and connections stay out of the way
+        try (Main own = Main.start(0); LoadGenerator generator = new LoadGenerator(own.baseUri(), authorization)) {
+            report = generator.run(2_000, Duration.ZERO, Duration.ofSeconds(1));
+        }
+
+        Assert.assertEquals(report.count(), 2_000);
+        for (String endpoint : new String[] {"PUT /api/books/{id}", "GET /api/books/{id}", "DELETE /api/books/{id}"}) {
+            Assert.assertEquals(report.byStatus(endpoint).keySet(), Set.of(200), endpoint + ": " + report.byStatus(endpoint).keySet());
+        }
+    }
+
+    //A rate the generator cannot pace is rejected before anything is sent
+    @Test
+    void testRateOutOfRangeIsRejected() {
+        String authorization = ApiConfig.basicAuthorization("admin", "password");
+        try (LoadGenerator generator = new LoadGenerator(server.baseUri(), authorization)) {
+            for (int rate : new int[] {0, -5, 1_000_000_001}) {
+                Assert.expectThrows(IllegalArgumentException.class,
+                        () -> generator.run(rate, Duration.ZERO, Duration.ofSeconds(1)));
+            }
+        }
+    }
+
+    //Percentiles stay within the histogram's relative error
+    @Test
+    void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1_000);
+        }
+
+        Assert.assertEquals(histogram.count(), 100_000);
+        Assert.assertEquals(histogram.max(), 100_000_000);
+        Assert.assertEquals(histogram.valueAtPercentile(50), 50_000_000, 50_000_000 * 0.008);
+        Assert.assertEquals(histogram.valueAtPercentile(99), 99_000_000, 99_000_000 * 0.008);
+        Assert.assertEquals(histogram.valueAtPercentile(99.9), 99_900_000, 99_900_000 * 0.008);
+    }
+}
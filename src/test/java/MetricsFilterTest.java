@@ -0,0 +1,73 @@
+import org.example.ApiMetrics;
+import org.example.ApiSpecs;
+import org.example.BookFixtures;
+import org.example.Main;
+import org.example.MetricsFilter;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testng.Assert;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+public class MetricsFilterTest {
+
+    private static Main server;
+    private static ApiSpecs api;
+
+    @BeforeAll
+    static void startServer() {
+        server = Main.start(0);
+        api = ApiSpecs.forServer(server);
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.close();
+    }
+
+    //Requests are grouped by method and templated path, with status codes and bytes
+    @Test
+    void testRecordsPerEndpoint() throws Exception {
+        ApiMetrics metrics = new ApiMetrics();
+        MetricsFilter filter = new MetricsFilter(metrics);
+        long bookId = BookFixtures.existingBook(server);
+
+        for (int i = 0; i < 3; i++) {
+            api.asUser().filter(filter).get("/" + bookId).then().statusCode(200);
+        }
+        api.asUser().filter(filter).get("/" + BookFixtures.unusedId(server)).then().statusCode(404);
+        String requestBody = "{\"id\": %d, \"title\": \"Jadunama\", \"author\": \"Javed Akhtar\"}"
+                .formatted(BookFixtures.unusedId(server));
+        api.asAdmin().filter(filter).contentType("application/json").body(requestBody).post().then().statusCode(201);
+
+        List<ApiMetrics.EndpointStats> stats = metrics.snapshot();
+        Assert.assertEquals(stats.size(), 2, "Endpoints: " + stats.size());
+
+        ApiMetrics.EndpointStats create = stats.get(0);
+        Assert.assertEquals(create.method + " " + create.path, "POST /api/books");
+        Assert.assertEquals(create.statuses, Map.of(201, 1L));
+        Assert.assertEquals(create.requestBytes, requestBody.length());
+        Assert.assertTrue(create.responseBytes > 0);
+
+        ApiMetrics.EndpointStats get = stats.get(1);
+        Assert.assertEquals(get.method + " " + get.path, "GET /api/books/{id}");
+        Assert.assertEquals(get.statuses, Map.of(200, 3L, 404, 1L));
+        Assert.assertEquals(get.latency.count(), 4);
+        Assert.assertTrue(get.latency.valueAtPercentile(50) > 0);
+
+        Path directory = Files.createTempDirectory("api-metrics");
+        metrics.export(directory);
+        String prometheus = Files.readString(directory.resolve("api-metrics.prom"));
+        Assert.assertTrue(prometheus.contains("api_requests_total{method=\"GET\",path=\"/api/books/{id}\",status=\"404\"} 1\n"),
+                prometheus);
+        Assert.assertTrue(prometheus.contains("api_request_duration_seconds_count{method=\"POST\",path=\"/api/books\"} 1\n"),
+                prometheus);
+        String json = Files.readString(directory.resolve("api-metrics.json"));
+        Assert.assertTrue(json.contains("\"path\":\"/api/books/{id}\""), json);
+        Assert.assertTrue(json.contains("\"status\":{\"200\":3,\"404\":1}"), json);
+    }
+}
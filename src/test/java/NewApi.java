@@ -1,7 +1,13 @@
-import io.restassured.RestAssured;
 import io.restassured.response.Response;
 import io.restassured.specification.RequestSpecification;
+import org.example.ApiSpecs;
+import org.example.Book;
+import org.example.BookCodec;
+import org.example.BookFixtures;
+import org.example.Main;
 //import org.junit.Test;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.CoreMatchers.equalTo;
@@ -9,23 +15,33 @@ import static org.hamcrest.MatcherAssert.assertThat;
 
 public class NewApi {
 
+    private static Main server;
+    private static ApiSpecs api;
+
+    @BeforeAll
+    static void startServer() {
+        server = Main.start(0);
+        api = ApiSpecs.forServer(server);
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.close();
+    }
+
     @Test
     public void testPutBook() {
+        long bookId = BookFixtures.existingBook(server);
+
         // Create a RequestSpecification object
-        RequestSpecification request = RestAssured.given()
-                .auth().preemptive().basic("admin", "password")
-                .baseUri("http://localhost:7081")
+        RequestSpecification request = api.asAdmin()
                 .header("Content-Type", "application/json");
 
         // Set the request body
-        String requestBody = "{\n" +
-                "  \"id\": 1,\n" +
-                "  \"title\": \"The Lord of the Rings\",\n" +
-                "  \"author\": \"J.R.R. Tolkien\"\n" +
-                "}";
+        byte[] requestBody = BookCodec.encode(new Book(bookId, "The Lord of the Rings", "J.R.R. Tolkien"));
 
         // Make the PUT request and get the response
-        Response response = request.put("/api/books/1", requestBody);
+        Response response = request.body(requestBody).put("/" + bookId);
 
         // Validate the response status code
         assertThat(response.statusCode(), equalTo(200));
@@ -0,0 +1,81 @@
+import org.example.Main;
+import org.example.PayloadFuzzer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testng.Assert;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Generated POST and PUT bodies against the contract, see {@link PayloadFuzzer}.
+ *
+ * The seed defaults to the UTC day, so a failure reproduces for the rest
+ * of the day without any setting and every day still fuzzes new cases. A
+ * failing run's message names the seed.
+ *
+ * <pre>
+ * mvn test -Dtest=PayloadFuzzTest -Dfuzz.cases=200000 -Dfuzz.inflight=128
+ * mvn test -Dtest=PayloadFuzzTest -Dfuzz.seed=-4127394650131513219   # replay a reported seed
+ * </pre>
+ */
+public class PayloadFuzzTest {
+
+    private static final int CASES = Integer.getInteger("fuzz.cases", 2_000);
+    private static final int MAX_IN_FLIGHT = Integer.getInteger("fuzz.inflight", 64);
+    private static final long SEED = Long.getLong("fuzz.seed", LocalDate.now(ZoneOffset.UTC).toEpochDay());
+
+    private static Main server;
+
+    // a server of its own: read-backs run on client threads, outside any store fork
+    @BeforeAll
+    static void startServer() {
+        server = Main.start(0);
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.close();
+    }
+
+    //No generated body gets a 5xx, invalid ones get 400, and valid ones are stored as sent
+    @Test
+    void testPostAndPutHoldTheContract() throws InterruptedException {
+        PayloadFuzzer.Result result;
+        try (PayloadFuzzer fuzzer = PayloadFuzzer.forServer(server, MAX_IN_FLIGHT)) {
+            result = fuzzer.run(SEED, CASES);
+        }
+
+        Assert.assertEquals(result.failed(), 0L, result.toString());
+        Assert.assertTrue(result.count(400) > 0 && result.count(201) > 0 && result.count(200) > 0, result.toString());
+    }
+
+    //The same seed and index always give the same case
+    @Test
+    void testCasesAreReproducible() {
+        for (long index = 0; index < 1_000; index++) {
+            Assert.assertEquals(PayloadFuzzer.generate(SEED, index).toString(),
+                    PayloadFuzzer.generate(SEED, index).toString());
+        }
+    }
+
+    //Shrinking keeps only what makes the case fail
+    @Test
+    void testShrinkFindsMinimalCase() {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("id", 123456L);
+        fields.put("title", "Ünïcödé title with \"quotes\"");
+        fields.put("author", "x".repeat(10_000) + "\u0000");
+        fields.put("extra", Map.of("nested", true));
+        PayloadFuzzer.Case fuzzCase = new PayloadFuzzer.Case("POST", PayloadFuzzer.Target.COLLECTION, fields, null);
+
+        // stands in for a server that fails on control characters in the author
+        PayloadFuzzer.Case shrunk = PayloadFuzzer.shrink(fuzzCase,
+                candidate -> String.valueOf(candidate.fields.get("author")).contains("\u0000"));
+
+        Assert.assertEquals(shrunk.fields, Map.of("author", "\u0000"));
+    }
+}
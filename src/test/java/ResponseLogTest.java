@@ -0,0 +1,115 @@
+import org.example.ApiSpecs;
+import org.example.Main;
+import org.example.ResponseLog;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testng.Assert;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class ResponseLogTest {
+
+    private static Main server;
+    private static ApiSpecs api;
+
+    @BeforeAll
+    static void startServer() {
+        server = Main.start(0);
+        api = ApiSpecs.forServer(server);
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.close();
+    }
+
+    //Each exchange is one line naming its test, with the body cut to the configured length
+    @Test
+    void testLinesAreTruncated() throws IOException {
+        Path file = Files.createTempDirectory("response-log").resolve("responses.log");
+        ResponseLog log = new ResponseLog(file, ResponseLog.Options.defaults().withMaxBodyBytes(16));
+
+        log.startTest("ResponseLogTest.truncated");
+        api.asUser().filter(log).get("/1").then().statusCode(200);
+        api.anonymous().filter(log).get("/1").then().statusCode(401);
+        log.finishTest(false);
+        log.close();
+
+        List<String> lines = Files.readAllLines(file);
+        Assert.assertEquals(lines.size(), 2, String.valueOf(lines));
+        Assert.assertTrue(lines.get(0).matches("\\S+ ResponseLogTest.truncated GET \\S+/api/books/1 200 \\d+us "
+                + "\\d+B \\{\"id\":1,\"title\":\\.\\.\\."), lines.get(0));
+        Assert.assertTrue(lines.get(1).matches(".* GET \\S+/api/books/1 401 \\d+us 12B Unauthorized"), lines.get(1));
+        Assert.assertEquals(log.written(), 2);
+    }
+
+    //A sample rate logs about that fraction of exchanges, and 0 logs none
+    @Test
+    void testSampling() throws IOException {
+        Path directory = Files.createTempDirectory("response-log");
+        ResponseLog half = new ResponseLog(directory.resolve("half.log"),
+                ResponseLog.Options.defaults().withSampleRate(0.5));
+        ResponseLog none = new ResponseLog(directory.resolve("none.log"),
+                ResponseLog.Options.defaults().withSampleRate(0));
+
+        for (int i = 0; i < 400; i++) {
+            api.asUser().filter(half).filter(none).get("/1");
+        }
+        half.close();
+        none.close();
+
+        Assert.assertTrue(half.written() > 120 && half.written() < 280, half.written() + " of 400");
+        Assert.assertEquals(Files.readAllLines(directory.resolve("half.log")).size(), half.written());
+        Assert.assertEquals(none.written(), 0);
+        Assert.assertEquals(Files.size(directory.resolve("none.log")), 0);
+    }
+
+    //With only failures, a passing test's exchanges are forgotten and a failing test's are all logged
+    @Test
+    void testOnlyFailures() throws IOException {
+        Path file = Files.createTempDirectory("response-log").resolve("failures.log");
+        ResponseLog log = new ResponseLog(file, ResponseLog.Options.defaults().onlyFailures(true).withSampleRate(0));
+
+        api.asUser().filter(log).get("/1");
+        log.startTest("Passing.test");
+        api.asUser().filter(log).get("/1");
+        log.finishTest(false);
+        log.startTest("Failing.test");
+        api.asUser().filter(log).get("/1");
+        api.asUser().filter(log).get("/999");
+        log.finishTest(true);
+        log.close();
+
+        List<String> lines = Files.readAllLines(file);
+        Assert.assertEquals(lines.size(), 2, String.valueOf(lines));
+        Assert.assertTrue(lines.stream().allMatch(line -> line.contains(" Failing.test GET ")), String.valueOf(lines));
+        Assert.assertTrue(lines.get(1).contains("/api/books/999 404 "), lines.get(1));
+    }
+
+    //The file rotates at its size limit, keeping the configured number of older files
+    @Test
+    void testRotation() throws IOException {
+        Path directory = Files.createTempDirectory("response-log");
+        Path file = directory.resolve("rotating.log");
+        ResponseLog log = new ResponseLog(file, ResponseLog.Options.defaults().withRotation(300, 2));
+
+        for (int i = 0; i < 20; i++) {
+            api.asUser().filter(log).get("/1");
+        }
+        log.close();
+
+        Assert.assertTrue(Files.exists(directory.resolve("rotating.log.1")));
+        Assert.assertTrue(Files.exists(directory.resolve("rotating.log.2")));
+        Assert.assertFalse(Files.exists(directory.resolve("rotating.log.3")));
+        Assert.assertTrue(Files.size(directory.resolve("rotating.log.1")) >= 300);
+        Assert.assertEquals(log.written(), 20);
+
+        // a closed log drops records instead of blocking the request
+        api.asUser().filter(log).get("/1").then().statusCode(200);
+        Assert.assertEquals(log.dropped(), 1);
+    }
+}
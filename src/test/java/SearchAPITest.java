@@ -0,0 +1,263 @@
+import io.restassured.response.Response;
+import org.example.ApiSpecs;
+import org.example.Book;
+import org.example.BookCodec;
+import org.example.BookPayload;
+import org.example.BookStore;
+import org.example.Main;
+import org.example.StoreFork;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class SearchAPITest {
+
+    private static Main server;
+    private static ApiSpecs api;
+
+    @BeforeClass
+    public void setUp() {
+        server = Main.start(0);
+        api = ApiSpecs.forServer(server);
+    }
+
+    @AfterClass
+    public void tearDown() {
+        server.close();
+    }
+
+    //1
+    @Test
+    public void searchByAuthor() {
+        long jadunama = createBook("Jadunama", "Javed Akhtar and Arvind Mandloi");
+        createBook("Tarkash", "Javed Akhtar");
+        createBook("Lava", "Arvind Mandloi");
+
+        Response response = api.asUser()
+                .queryParam("author", "Javed Akhtar and Arvind Mandloi")
+                .when()
+                .get();
+
+        assertStatusCode(200, "Expected status code 200", response);
+        assertEquals(ids(response), List.of(jadunama));
+        assertEquals(response.jsonPath().getString("[0].title"), "Jadunama");
+    }
+
+    //2
+    @Test
+    public void searchIgnoresCaseAndWordOrder() {
+        long jadunama = createBook("Jadunama", "Javed Akhtar and Arvind Mandloi");
+        long tarkash = createBook("Tarkash", "Javed Akhtar");
+
+        Response response = api.asUser()
+                .queryParam("author", "AKHTAR, javed")
+                .when()
+                .get();
+
+        assertStatusCode(200, "Expected status code 200", response);
+        assertEquals(ids(response), List.of(jadunama, tarkash));
+    }
+
+    //3
+    @Test
+    public void searchTitleByPrefix() {
+        long jadunama = createBook("Jadunama", "Javed Akhtar and Arvind Mandloi");
+        createBook("Tarkash", "Javed Akhtar");
+
+        Response byPrefix = api.asUser()
+                .queryParam("title", "jadu")
+                .queryParam("match", "prefix")
+                .when()
+                .get();
+        Response byToken = api.asUser()
+                .queryParam("title", "jadu")
+                .when()
+                .get();
+
+        assertStatusCode(200, "Expected status code 200", byPrefix);
+        assertEquals(ids(byPrefix), List.of(jadunama));
+        assertStatusCode(200, "Expected status code 200", byToken);
+        assertEquals(ids(byToken), List.of(), "A whole-word search must not match part of a word");
+    }
+
+    //4
+    @Test
+    public void searchByAuthorAndTitle() {
+        createBook("Jadunama", "Javed Akhtar and Arvind Mandloi");
+        long tarkash = createBook("Tarkash", "Javed Akhtar");
+
+        Response response = api.asUser()
+                .queryParam("author", "javed")
+                .queryParam("title", "tarkash")
+                .when()
+                .get();
+
+        assertStatusCode(200, "Expected status code 200", response);
+        assertEquals(ids(response), List.of(tarkash));
+    }
+
+    //5
+    @Test
+    public void pageThroughResultsWithCursor() {
+        List<Long> created = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            created.add(createBook("Poems " + i, "Javed Akhtar"));
+        }
+
+        List<Long> paged = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            Response response = api.asUser()
+                    .queryParam("author", "akhtar")
+                    .queryParam("limit", 2)
+                    .queryParams(cursor == null ? Map.of() : Map.of("cursor", cursor))
+                    .when()
+                    .get();
+            assertStatusCode(200, "Expected status code 200", response);
+            List<Long> page = ids(response);
+            assertTrue(page.size() <= 2, "Page larger than the limit: " + page);
+            paged.addAll(page);
+            cursor = nextCursor(response.getHeader("Link"));
+            pages++;
+        } while (cursor != null && pages < 10);
+
+        assertEquals(paged, created);
+        assertEquals(pages, 3);
+    }
+
+    //6
+    @Test
+    public void updateMovesBookInIndex() {
+        long bookId = createBook("Jadunama", "Javed Akhtar and Arvind Mandloi");
+
+        Response update = api.asAdmin()
+                .contentType("application/json")
+                .body(BookCodec.encode(new Book(bookId, "Jadunama", "Simon Sebag Montefiore")))
+                .when()
+                .put("/" + bookId);
+        assertStatusCode(200, "Expected status code 200", update);
+
+        assertEquals(ids(api.asUser().queryParam("author", "javed").get()), List.of());
+        assertEquals(ids(api.asUser().queryParam("author", "montefiore").get()), List.of(1L, bookId));
+    }
+
+    //7
+    @Test
+    public void deleteRemovesBookFromIndex() {
+        long bookId = createBook("Jadunama", "Javed Akhtar and Arvind Mandloi");
+
+        Response delete = api.asAdmin()
+                .when()
+                .delete("/" + bookId);
+        assertStatusCode(200, "Expected status code 200", delete);
+
+        assertEquals(ids(api.asUser().queryParam("title", "jadunama").get()), List.of());
+    }
+
+    //8
+    @Test
+    public void invalidSearchParameters() {
+        assertBadRequest("limit", "0", "limit must be between 1 and " + Main.MAX_LIMIT);
+        assertBadRequest("limit", "1001", "limit must be between 1 and " + Main.MAX_LIMIT);
+        assertBadRequest("match", "fuzzy", "match must be token or prefix");
+        assertBadRequest("cursor", "abc", "Invalid cursor abc");
+        assertBadRequest("author", " - ", "author has no words to search for");
+        assertBadRequest("publisher", "x", "Unknown query parameter publisher");
+    }
+
+    //9
+    @Test
+    public void testUnauthorizedSearch() {
+        Response response = api.anonymous()
+                .queryParam("author", "javed")
+                .when()
+                .get();
+
+        assertStatusCode(401, "Expected status code 401 (Unauthorized)", response);
+    }
+
+    //10
+    @Test
+    public void limitWithoutSearchPagesAllBooks() {
+        long second = createBook("Jadunama", "Javed Akhtar and Arvind Mandloi");
+        createBook("Tarkash", "Javed Akhtar");
+
+        Response response = api.asUser()
+                .queryParam("limit", 2)
+                .when()
+                .get();
+
+        assertStatusCode(200, "Expected status code 200", response);
+        assertEquals(ids(response), List.of(1L, second));
+        assertEquals(nextCursor(response.getHeader("Link")), String.valueOf(second));
+        Response last = api.asUser().queryParam("limit", 2).queryParam("cursor", second).get();
+        assertEquals(ids(last).size(), 1);
+        assertNull(last.getHeader("Link"));
+    }
+
+    //11
+    @Test
+    public void searchWithoutLimitIsPaged() {
+        BookStore store = server.store(StoreFork.current(server));
+        List<Long> created = new ArrayList<>();
+        for (int i = 0; i <= Main.MAX_LIMIT; i++) {
+            created.add(store.insertWithNewId("Ghazal " + i, "Mirza Ghalib").getId());
+        }
+
+        Response first = api.asUser().queryParam("author", "ghalib").get();
+        assertStatusCode(200, "Expected status code 200", first);
+        assertEquals(ids(first), created.subList(0, Main.MAX_LIMIT));
+        String cursor = nextCursor(first.getHeader("Link"));
+        assertEquals(cursor, String.valueOf(created.get(Main.MAX_LIMIT - 1)));
+
+        Response last = api.asUser().queryParam("author", "ghalib").queryParam("cursor", cursor).get();
+        assertEquals(ids(last), created.subList(Main.MAX_LIMIT, created.size()));
+        assertNull(last.getHeader("Link"));
+    }
+
+    private long createBook(String title, String author) {
+        Response response = api.asAdmin()
+                .contentType("application/json")
+                .body(BookPayload.empty().with("title", title).with("author", author).bytes())
+                .when()
+                .post();
+        assertStatusCode(201, "Expected status code 201", response);
+        return response.jsonPath().getLong("id");
+    }
+
+    private static List<Long> ids(Response response) {
+        return response.jsonPath().getList("id", Long.class);
+    }
+
+    /** The cursor of a {@code Link: </api/books?...&cursor=n>; rel="next"} header. */
+    private static String nextCursor(String link) {
+        if (link == null) {
+            return null;
+        }
+        Assert.assertTrue(link.startsWith("<" + Main.BOOKS_PATH + "?") && link.endsWith(">; rel=\"next\""), link);
+        return link.substring(link.indexOf("cursor=") + "cursor=".length(), link.indexOf('>'));
+    }
+
+    private void assertBadRequest(String parameter, String value, String message) {
+        Response response = api.asUser()
+                .queryParam(parameter, value)
+                .when()
+                .get();
+        assertStatusCode(400, "Expected status code 400 for " + parameter + "=" + value, response);
+        assertEquals(response.asString(), message);
+    }
+
+    private void assertStatusCode(int expectedStatusCode, String assertionMessage, Response response) {
+        Assert.assertEquals(response.getStatusCode(), expectedStatusCode, assertionMessage);
+    }
+}
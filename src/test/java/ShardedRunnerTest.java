@@ -0,0 +1,73 @@
+import org.example.ShardedRunner;
+import org.junit.jupiter.api.Test;
+import org.testng.Assert;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class ShardedRunnerTest {
+
+    //A worker with an empty deque steals half of another's, and the report and metrics merge both workers
+    @Test
+    void testWorkStealingAndMerge() throws Exception {
+        Path output = Files.createTempDirectory("sharded");
+        ShardedRunner.Report report = ShardedRunner.run(ShardedRunner.Options.defaults()
+                .withWorkers(2)
+                .withClasses(List.of("UpdateBookTest"))
+                .withScenarios(null)
+                .withOutput(output));
+
+        Assert.assertEquals(report.results().size(), 13);
+        Assert.assertEquals(report.passed(), 13, String.valueOf(report.results()));
+        // the whole class is dealt to one worker, so the other starts by stealing
+        Assert.assertTrue(report.stolen(1) > 0, String.valueOf(report.stolen(1)));
+        Assert.assertEquals(report.results().stream().map(ShardedRunner.Result::worker).distinct().count(), 2);
+
+        long calls = report.metrics().snapshot().stream().mapToLong(stats -> stats.latency.count()).sum();
+        Assert.assertTrue(calls >= 13, String.valueOf(calls));
+        Assert.assertTrue(report.metrics().snapshot().stream()
+                .anyMatch(stats -> stats.method.equals("PUT") && stats.path.equals("/api/books/{id}")));
+
+        String xml = Files.readString(output.resolve("testng-results.xml"));
+        Assert.assertTrue(xml.contains("<testng-results ignored=\"0\" total=\"13\" passed=\"13\" failed=\"0\""), xml);
+        Assert.assertTrue(xml.contains("<test name=\"worker-0\"") && xml.contains("<test name=\"worker-1\""));
+        Assert.assertTrue(Files.exists(output.resolve("api-metrics/api-metrics.json")));
+    }
+
+    //Scenario batches are read from their offsets with the file's line numbers, and a failing one is reported
+    @Test
+    void testScenarioBatches() throws Exception {
+        Path directory = Files.createTempDirectory("sharded");
+        Path scenarios = directory.resolve("cases.jsonl");
+        Files.writeString(scenarios, String.join("\n",
+                "{\"name\": \"list\", \"method\": \"GET\", \"path\": \"\", \"role\": \"user\", \"expectStatus\": 200}",
+                "{\"name\": \"anonymous\", \"method\": \"GET\", \"path\": \"\", \"role\": \"anonymous\", "
+                        + "\"expectStatus\": 401}",
+                "",
+                "{\"name\": \"get\", \"method\": \"GET\", \"path\": \"/{id}\", \"role\": \"user\", \"expectStatus\": 200}",
+                "{\"name\": \"wrong\", \"method\": \"GET\", \"path\": \"/{unusedId}\", \"role\": \"user\", "
+                        + "\"expectStatus\": 200}",
+                "{\"name\": \"user delete\", \"method\": \"DELETE\", \"path\": \"/{id}\", \"role\": \"user\", "
+                        + "\"expectStatus\": 403}"));
+
+        ShardedRunner.Report report = ShardedRunner.run(ShardedRunner.Options.defaults()
+                .withWorkers(2)
+                .withClasses(List.of())
+                .withScenarios(scenarios.toString())
+                .withBatch(2)
+                .withOutput(directory.resolve("out")));
+
+        Assert.assertEquals(report.results().size(), 3);
+        Assert.assertEquals(report.failed(), 1);
+        ShardedRunner.Result failed = report.results().stream()
+                .filter(result -> result.status().equals("FAIL")).findFirst().orElseThrow();
+        Assert.assertTrue(failed.message().contains("line 5 (wrong)"), failed.message());
+        String xml = Files.readString(directory.resolve("out/testng-results.xml"));
+        List<String> batches = report.results().stream().map(result -> result.className() + "." + result.method())
+                .distinct().collect(Collectors.toList());
+        Assert.assertEquals(batches, List.of("ContractScenarioTest.testScenarios"));
+        Assert.assertTrue(xml.contains("lines 1-2") && xml.contains("lines 4-5") && xml.contains("lines 6-6"), xml);
+    }
+}
@@ -0,0 +1,246 @@
+import io.restassured.response.Response;
+import org.example.ApiSpecs;
+import org.example.Book;
+import org.example.BookStore;
+import org.example.FaultProxy;
+import org.example.Main;
+import org.example.PersistentBookMap;
+import org.example.StoreFork;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testng.Assert;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class StoreSnapshotTest {
+
+    private static Main server;
+    private static ApiSpecs api;
+
+    @BeforeAll
+    static void startServer() {
+        server = Main.start(0);
+        api = ApiSpecs.forServer(server);
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.close();
+    }
+
+    @AfterEach
+    void leaveFork() {
+        StoreFork.end();
+    }
+
+    //Random inserts, replacements and removals agree with a HashMap, and old versions never change
+    @Test
+    void testPersistentMapMatchesHashMap() {
+        Random random = new Random(42);
+        PersistentBookMap map = PersistentBookMap.EMPTY;
+        Map<Long, Book> expected = new HashMap<>();
+        PersistentBookMap frozen = null;
+        Map<Long, Book> frozenExpected = null;
+        for (int i = 0; i < 20_000; i++) {
+            long id = random.nextBoolean() ? random.nextInt(2_000) : random.nextLong();
+            if (random.nextInt(3) == 0) {
+                map = map.minus(id);
+                expected.remove(id);
+            } else {
+                Book book = new Book(id, "Title " + i, "Author " + i);
+                map = map.plus(book);
+                expected.put(id, book);
+            }
+            if (i == 10_000) {
+                frozen = map;
+                frozenExpected = new HashMap<>(expected);
+            }
+        }
+
+        assertSameBooks(map, expected);
+        assertSameBooks(frozen, frozenExpected);
+        for (long id : new ArrayList<>(expected.keySet())) {
+            map = map.minus(id);
+        }
+        Assert.assertEquals(map.size(), 0);
+        Assert.assertNull(map.get(1));
+    }
+
+    //Writes after a snapshot stay out of it, and restoring brings the old books back
+    @Test
+    void testSnapshotAndRestore() {
+        BookStore store = new BookStore();
+        Book kept = store.insertWithNewId("Kept", "Author");
+        Book removed = store.insertWithNewId("Removed", "Author");
+        BookStore.Snapshot snapshot = store.snapshot();
+
+        store.remove(removed.getId());
+        store.replace(new Book(kept.getId(), "Changed", "Author"));
+        Book added = store.insertWithNewId("Added", "Author");
+        Assert.assertEquals(snapshot.size(), 2);
+
+        store.restore(snapshot);
+        Assert.assertEquals(store.list(), List.of(kept, removed));
+        Assert.assertNull(store.get(added.getId()));
+        Assert.assertTrue(store.insertWithNewId("After restore", "Author").getId() > added.getId(),
+                "Restore must not hand out ids again");
+    }
+
+    //A fork starts from the snapshot, is independent of its parent, and never reuses the parent's ids
+    @Test
+    void testForkIsIndependent() {
+        BookStore store = new BookStore();
+        Book shared = store.insertWithNewId("Shared", "Author");
+        BookStore fork = store.fork(store.snapshot());
+
+        fork.remove(shared.getId());
+        long forkId = fork.insertWithNewId("Fork only", "Author").getId();
+        long parentId = store.insertWithNewId("Parent only", "Author").getId();
+
+        Assert.assertEquals(store.get(shared.getId()), shared);
+        Assert.assertNotEquals(forkId, parentId);
+        Assert.assertNull(store.get(forkId));
+        Assert.assertNull(fork.get(parentId));
+    }
+
+    //Snapshots taken while books go in one after another hold a gap-free run of them, whichever stripes they fall in
+    @Test
+    void testSnapshotIsOneMomentAcrossStripes() throws Exception {
+        BookStore store = new BookStore();
+        int books = 200_000;
+        Thread writer = new Thread(() -> {
+            for (int id = 1; id <= books; id++) {
+                store.insertIfAbsent(new Book(id, "Title " + id, "Author"));
+            }
+        });
+        writer.start();
+        int snapshots = 0;
+        while (writer.isAlive() || snapshots == 0) {
+            BookStore.Snapshot snapshot = store.snapshot();
+            List<Book> list = snapshot.list();
+            for (int i = 0; i < list.size(); i++) {
+                Assert.assertEquals(list.get(i).getId(), i + 1L, "Book " + (i + 1) + " missing from a snapshot");
+            }
+            snapshots++;
+        }
+        writer.join();
+        Assert.assertEquals(store.size(), books);
+    }
+
+    //Requests in a fork see the seeded book, and their writes are invisible outside the fork
+    @Test
+    void testForkHeaderIsolatesRequests() {
+        StoreFork.begin();
+        api.asAdmin().delete("/1").then().statusCode(200);
+        long bookId = api.asAdmin()
+                .header("Content-Type", "application/json")
+                .body("{\"title\": \"Fork book\", \"author\": \"Author\"}")
+                .post()
+                .then().statusCode(201)
+                .extract().jsonPath().getLong("id");
+        api.asUser().get("/" + bookId).then().statusCode(200);
+
+        String first = StoreFork.current(server);
+        StoreFork.begin();
+        Assert.assertNotEquals(StoreFork.current(server), first);
+        api.asUser().get("/1").then().statusCode(200);
+        api.asUser().get("/" + bookId).then().statusCode(404);
+
+        StoreFork.end();
+        api.asUser().get("/1").then().statusCode(200);
+        api.asUser().get("/" + bookId).then().statusCode(404);
+    }
+
+    //Admins snapshot a fork, change it, and restore it; users may not
+    @Test
+    void testAdminSnapshotEndpoints() {
+        StoreFork.begin();
+        Response snapshot = api.asAdmin().basePath(Main.ADMIN_PATH).post("/snapshots");
+        Assert.assertEquals(snapshot.getStatusCode(), 201, snapshot.asString());
+        Assert.assertEquals(snapshot.jsonPath().getInt("books"), 1);
+        long id = snapshot.jsonPath().getLong("snapshot");
+
+        api.asAdmin().delete("/1").then().statusCode(200);
+        api.asUser().get("/1").then().statusCode(404);
+        api.asAdmin().basePath(Main.ADMIN_PATH).post("/snapshots/" + id + "/restore").then().statusCode(200);
+        api.asUser().get("/1").then().statusCode(200);
+
+        api.asUser().basePath(Main.ADMIN_PATH).post("/snapshots").then().statusCode(403);
+        api.asAdmin().basePath(Main.ADMIN_PATH).post("/snapshots/999999/restore").then().statusCode(404);
+        api.asAdmin().basePath(Main.ADMIN_PATH).delete("/snapshots/0").then().statusCode(400);
+        api.asAdmin().basePath(Main.ADMIN_PATH).delete("/snapshots/" + id).then().statusCode(200);
+    }
+
+    //A fork created from a snapshot holds the snapshot's books and is dropped on delete
+    @Test
+    void testAdminForkEndpoints() {
+        long bookId = server.store().insertWithNewId("Before snapshot", "Author").getId();
+        long id = api.asAdmin().basePath(Main.ADMIN_PATH).post("/snapshots")
+                .then().statusCode(201)
+                .extract().jsonPath().getLong("snapshot");
+        server.store().remove(bookId);
+
+        String fork = api.asAdmin().basePath(Main.ADMIN_PATH)
+                .header("Content-Type", "application/json")
+                .body("{\"snapshot\":" + id + "}")
+                .post("/forks")
+                .then().statusCode(201)
+                .extract().jsonPath().getString("fork");
+        StoreFork.join(fork);
+        api.asUser().get("/" + bookId).then().statusCode(200);
+        StoreFork.end();
+        api.asUser().get("/" + bookId).then().statusCode(404);
+
+        api.asAdmin().basePath(Main.ADMIN_PATH).delete("/forks/" + fork).then().statusCode(200);
+        api.asAdmin().basePath(Main.ADMIN_PATH).delete("/forks/" + fork).then().statusCode(404);
+    }
+
+    //Forks are made only by admins, an unknown fork is refused, and a test's fork is dropped when it ends
+    @Test
+    void testForksAreMadeExplicitly() {
+        api.asUser().header(Main.FORK_HEADER, "never-made").get("/1").then().statusCode(400);
+        api.asAdmin().basePath(Main.ADMIN_PATH).header(Main.FORK_HEADER, "never-made").post("/snapshots")
+                .then().statusCode(400);
+        api.asUser().basePath(Main.ADMIN_PATH).post("/forks").then().statusCode(403);
+        Assert.assertThrows(IllegalArgumentException.class, () -> server.store("never-made"));
+
+        StoreFork.begin();
+        String fork = StoreFork.current(server);
+        Assert.assertNotNull(fork);
+        api.asUser().get("/1").then().statusCode(200);
+        StoreFork.end();
+        Assert.assertFalse(server.dropFork(fork), "The fork should be dropped when the test ends");
+    }
+
+    //A refused fork fails the request with the admin status instead of falling back to the default store
+    @Test
+    void testRefusedForkFailsTheRequest() {
+        try (FaultProxy proxy = FaultProxy.start(server.baseUri())) {
+            proxy.route("POST", Main.ADMIN_PATH + "/forks").errorBurst(503, 1.0, 1);
+            StoreFork.begin();
+            IllegalStateException refused = Assert.expectThrows(IllegalStateException.class,
+                    () -> StoreFork.current(proxy.baseUri()));
+            Assert.assertTrue(refused.getMessage().contains("returned 503"), refused.getMessage());
+
+            proxy.clear();
+            Assert.assertNotNull(StoreFork.current(proxy.baseUri()), "A refused fork should not be remembered");
+            StoreFork.end();
+        }
+    }
+
+    private static void assertSameBooks(PersistentBookMap map, Map<Long, Book> expected) {
+        Assert.assertEquals(map.size(), expected.size());
+        for (Map.Entry<Long, Book> entry : expected.entrySet()) {
+            Assert.assertEquals(map.get(entry.getKey()), entry.getValue());
+        }
+        Map<Long, Book> iterated = new HashMap<>();
+        map.forEach(book -> iterated.put(book.getId(), book));
+        Assert.assertEquals(iterated, expected);
+    }
+}
@@ -0,0 +1,128 @@
+import io.restassured.response.Response;
+import org.example.ApiSpecs;
+import org.example.JsonReader;
+import org.example.Main;
+import org.example.StreamingBookAssertions;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testng.Assert;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+public class StreamingAssertionsTest {
+
+    private static Main server;
+    private static ApiSpecs api;
+
+    @BeforeAll
+    static void startServer() {
+        server = Main.start(0);
+        api = ApiSpecs.forServer(server);
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.close();
+    }
+
+    //The listing streamed from the server passes every check and counts all books
+    @Test
+    void testListingFromServer() {
+        for (int i = 0; i < 5_000; i++) {
+            server.store().insertWithNewId("Title " + i, "Author " + i);
+        }
+        int expected = server.store().size();
+
+        Response response = api.asAdmin()
+                .get()
+                .then()
+                .statusCode(200)
+                .extract().response();
+
+        long books = StreamingBookAssertions.assertThatBooks(response)
+                .eachHasTitleAndAuthor()
+                .hasUniqueIds()
+                .hasCount(expected)
+                .each("positive id", book -> book.getId() > 0)
+                .verify();
+        Assert.assertEquals(books, expected);
+    }
+
+    //Every failed check is reported together, with examples
+    @Test
+    void testFailuresAreReported() {
+        String listing = "[{\"id\":1,\"title\":\"A\",\"author\":\"B\"},"
+                + "{\"id\":2,\"title\":\" \",\"author\":\"B\"},"
+                + "{\"id\":1,\"title\":\"C\",\"author\":null}]";
+
+        AssertionError error = Assert.expectThrows(AssertionError.class, () ->
+                StreamingBookAssertions.assertThatBooks(stream(listing))
+                        .eachHasTitleAndAuthor()
+                        .hasUniqueIds()
+                        .hasCount(2)
+                        .verify());
+
+        Assert.assertTrue(error.getMessage().contains("expected 2 books but got 3"), error.getMessage());
+        Assert.assertTrue(error.getMessage().contains("1 duplicate ids"), error.getMessage());
+        Assert.assertTrue(error.getMessage().contains("2 books without non-blank title and author"), error.getMessage());
+    }
+
+    //Tokens spanning buffer refills, escapes, multi-byte characters and skipped nested values
+    @Test
+    void testJsonReaderWithSmallBuffer() throws Exception {
+        String json = "{\"name\": \"café \\\"quoted\\\" \\u00e9\\n\", \"skip\": {\"a\": [1, 2.5e3, true, null, \"x\"]},"
+                + " \"count\": -9223372036854775808, \"ratio\": 0.25, \"ok\": false, \"none\": null, \"empty\": []}";
+
+        try (JsonReader reader = new JsonReader(stream(json), 16)) {
+            reader.beginObject();
+            Assert.assertEquals(reader.nextName(), "name");
+            Assert.assertEquals(reader.nextString(), "café \"quoted\" é\n");
+            Assert.assertEquals(reader.nextName(), "skip");
+            reader.skipValue();
+            Assert.assertEquals(reader.nextName(), "count");
+            Assert.assertEquals(reader.nextLong(), Long.MIN_VALUE);
+            Assert.assertEquals(reader.nextName(), "ratio");
+            Assert.assertEquals(reader.nextDouble(), 0.25);
+            Assert.assertEquals(reader.nextName(), "ok");
+            Assert.assertFalse(reader.nextBoolean());
+            Assert.assertEquals(reader.nextName(), "none");
+            Assert.assertEquals(reader.peek(), JsonReader.Token.NULL);
+            reader.nextNull();
+            Assert.assertEquals(reader.nextName(), "empty");
+            reader.beginArray();
+            Assert.assertFalse(reader.hasNext());
+            reader.endArray();
+            Assert.assertFalse(reader.hasNext());
+            reader.endObject();
+            Assert.assertEquals(reader.peek(), JsonReader.Token.END_DOCUMENT);
+        }
+    }
+
+    //Malformed input fails with the offset instead of being guessed at
+    @Test
+    void testJsonReaderRejectsMalformedInput() throws Exception {
+        try (JsonReader reader = new JsonReader(stream("[{\"id\": 1,}]"))) {
+            reader.beginArray();
+            reader.beginObject();
+            Assert.assertEquals(reader.nextName(), "id");
+            Assert.assertEquals(reader.nextLong(), 1);
+            IllegalArgumentException error = Assert.expectThrows(IllegalArgumentException.class, reader::hasNext);
+            Assert.assertTrue(error.getMessage().contains("offset 10"), error.getMessage());
+        }
+        try (JsonReader reader = new JsonReader(stream("[1.5]"))) {
+            reader.beginArray();
+            Assert.expectThrows(IllegalArgumentException.class, reader::nextLong);
+        }
+        try (JsonReader reader = new JsonReader(stream("[\"a\"]"))) {
+            reader.beginArray();
+            Assert.expectThrows(IllegalStateException.class, reader::nextLong);
+        }
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
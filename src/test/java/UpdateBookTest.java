@@ -1,27 +1,45 @@
-import io.restassured.RestAssured;
 import io.restassured.response.Response;
+import org.example.ApiSpecs;
+import org.example.Book;
+import org.example.BookCodec;
+import org.example.BookFixtures;
+import org.example.BookPayload;
+import org.example.Main;
+import org.example.ResponseLogListener;
+import org.example.StoreForkListener;
+import org.example.StreamingBookAssertions;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
 import org.testng.Assert;
 
-import static io.restassured.RestAssured.*;
-import static org.hamcrest.Matchers.*;
+@ExtendWith({StoreForkListener.class, ResponseLogListener.class})
 public class UpdateBookTest {
 
-    private static final String BASE_URI = "http://127.0.0.1:7081/api/books/";
-    private static final String ADMIN_USERNAME = "admin";
-    private static final String USER_USERNAME = "user";
-    private static final String USER_PASSWORD = "password";
-    private static final String ADMIN_PASSWORD = "password";
+    private static Main server;
+    private static ApiSpecs api;
 
-    private static final int bookId = 1;
+    private long bookId;
 
     private static final String title = "The World: A Family History";
     private static final String author = "British historian Simon Sebag Montefiore";
 
+    @BeforeAll
+    static void startServer() {
+        server = Main.start(0);
+        api = ApiSpecs.forServer(server);
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.close();
+    }
+
     @BeforeEach
-    public void setup() {
-        RestAssured.baseURI = BASE_URI;
+    void createBook() {
+        bookId = BookFixtures.existingBook(server);
     }
 
     @Test
@@ -30,15 +48,12 @@ public class UpdateBookTest {
         String requestBody = "{\"title\": \"New Book Title\", \"author\": \"Author Name\"}";
 
 
-        Response response = given()
-                .auth().preemptive().basic(ADMIN_USERNAME, ADMIN_PASSWORD)
+        Response response = api.asAdmin()
                 .contentType("application/json")
                 .body(requestBody)
                 .when()
                 .post();
 
-        System.out.println("Input: "+response.asString());
-        System.out.println("Status Code: "+response.statusCode());
         Assert.assertEquals(response.getStatusCode(), 201);
 
     }
@@ -47,13 +62,14 @@ public class UpdateBookTest {
     void testGetAPI() {
 
         //Check get API
-        Response response = given()
-                .auth().preemptive().basic(ADMIN_USERNAME, ADMIN_PASSWORD)
+        Response response = api.asAdmin()
                 .get();
 
-        System.out.println("Input: "+response.asString());
-        System.out.println("Status Code: "+response.statusCode());
         Assert.assertEquals(response.getStatusCode(), 200);
+        StreamingBookAssertions.assertThatBooks(response)
+                .eachHasTitleAndAuthor()
+                .hasUniqueIds()
+                .verify();
     }
 
     //Update an existing book with valid data
@@ -61,22 +77,14 @@ public class UpdateBookTest {
     public void testUpdatebookwithvaliddata() {
 
 
-        String requestBody = String.format("{\n" +
-                "    \"id\": %d,\n" +
-                "    \"title\": \"%s\",\n" +
-                "    \"author\": \"%s\"\n" +
-                "}", bookId, title, author);
+        byte[] requestBody = BookCodec.encode(new Book(bookId, title, author));
 
-            Response response = given()
-                    .auth().preemptive().basic(ADMIN_USERNAME, ADMIN_PASSWORD)
+            Response response = api.asAdmin()
                     .contentType("application/json")
                     .body(requestBody)
                     .when()
                     .put("/" + bookId);
 
-        System.out.println("Input: "+response.asString());
-        System.out.println("Status Code: "+response.statusCode());
-
             Assert.assertEquals( response.getStatusCode(), 200);
 
     }
@@ -85,22 +93,15 @@ public class UpdateBookTest {
     @Test
     void testUpdatebookwithoutauthorization() {
 
-        String requestBody = String.format("{\n" +
-                "    \"id\": %d,\n" +
-                "    \"title\": \"%s\",\n" +
-                "    \"author\": \"%s\"\n" +
-                "}", bookId, title, author);
+        byte[] requestBody = BookCodec.encode(new Book(bookId, title, author));
 
 
-        Response response = given()
+        Response response = api.anonymous()
                 .contentType("application/json")
                 .body(requestBody)
                 .when()
                 .put("/" + bookId);
 
-        System.out.println("Input: "+response.asString());
-        System.out.println("Status Code: "+response.statusCode());
-
         Assert.assertEquals(response.getStatusCode(), 401);
     }
 
@@ -108,22 +109,15 @@ public class UpdateBookTest {
     @Test
     void testUpdateabookwithwrongauthorization() {
 
-        String requestBody = String.format("{\n" +
-                "    \"id\": %d,\n" +
-                "    \"title\": \"%s\",\n" +
-                "    \"author\": \"%s\"\n" +
-                "}", bookId, title, author);
+        byte[] requestBody = BookCodec.encode(new Book(bookId, title, author));
 
 
-        Response response = given()
-                .auth().preemptive().basic(ADMIN_USERNAME, "Password")
+        Response response = api.withWrongPassword()
                 .contentType("application/json")
                 .body(requestBody) // Set the request body
                 .when()
                 .put("/" + bookId);
 
-        System.out.println("Input: "+response.asString());
-        System.out.println("Status Code: "+response.statusCode());
         Assert.assertEquals(response.getStatusCode(), 401);
 
     }
@@ -132,46 +126,33 @@ public class UpdateBookTest {
     @Test
     void testUpdateabookwithuserauthorization() {
 
-        String requestBody = String.format("{\n" +
-                "    \"id\": %d,\n" +
-                "    \"title\": \"%s\",\n" +
-                "    \"author\": \"%s\"\n" +
-                "}", bookId, title, author);
+        byte[] requestBody = BookCodec.encode(new Book(bookId, title, author));
 
 
-        Response response = given()
-                .auth().preemptive().basic(USER_USERNAME, USER_PASSWORD)
+        Response response = api.asUser()
                 .contentType("application/json")
                 .body(requestBody) // Set the request body
                 .when()
                 .put("/" + bookId);
 
-        System.out.println("Input: "+response.asString());
-        System.out.println("Status Code: "+response.statusCode());
         Assert.assertEquals(response.getStatusCode(), 403);
-        // Log the response for debugging purposes
     }
 
     //Update a book with invalid book ID
     @Test
     void testUpdateabookwithinvalidbookID() {
 
-        String requestBody = "{\n" +
-                "    \"id\": 5,\n" +
-                "    \"title\": \"Family History\",\n" +
-                "    \"author\": \"British historian Simon Sebag Montefiore\"\n" +
-                "}";
+        long unknownId = BookFixtures.unusedId(server);
+        byte[] requestBody = BookCodec.encode(new Book(unknownId,
+                "Family History", "British historian Simon Sebag Montefiore"));
 
 
-        Response response = given()
-                .auth().preemptive().basic(ADMIN_USERNAME, ADMIN_PASSWORD)
+        Response response = api.asAdmin()
                 .contentType("application/json")
                 .body(requestBody) // Set the request body
                 .when()
-                .put("/5");
+                .put("/" + unknownId);
 
-        System.out.println("Input: "+response.asString());
-        System.out.println("Status Code: "+response.statusCode());
         Assert.assertEquals(response.getStatusCode(),404);
 
     }
@@ -180,21 +161,15 @@ public class UpdateBookTest {
     @Test
     void testUpdateabookwithmissingtitle() {
 
-        String requestBody = String.format("{\n" +
-                "    \"id\": %d,\n" +
-                "    \"author\": \"%s\"\n" +
-                "}", bookId, author);
+        byte[] requestBody = BookPayload.of(bookId, title, author).without("title").bytes();
 
 
-        Response response = given()
-                .auth().preemptive().basic(ADMIN_USERNAME, ADMIN_PASSWORD)
+        Response response = api.asAdmin()
                 .contentType("application/json")
                 .body(requestBody) // Set the request body
                 .when()
                 .put("/" + bookId);;
 
-        System.out.println("Input: "+response.asString());
-        System.out.println("Status Code: "+response.statusCode());
         Assert.assertEquals(response.getStatusCode(), 400);
 
     }
@@ -203,45 +178,61 @@ public class UpdateBookTest {
     @Test
     void testUpdateabookwithmissingauthor() {
 
-        String requestBody = String.format("{\n" +
-                "    \"id\": %d,\n" +
-                "    \"title\": \"%s\",\n" +
-                "}", bookId, title);
+        byte[] requestBody = BookPayload.of(bookId, title, author).without("author").bytes();
 
 
-        Response response = given()
-                .auth().preemptive().basic(ADMIN_USERNAME, ADMIN_PASSWORD)
+        Response response = api.asAdmin()
                 .contentType("application/json")
                 .body(requestBody) // Set the request body
                 .when()
                 .put("/" + bookId);
 
-        System.out.println("Input: "+response.asString());
-        System.out.println("Status Code: "+response.statusCode());
         Assert.assertEquals(response.getStatusCode(), 400);
     }
 
+    //The server reads a trailing comma and a valueless id leniently, but a valueless title is still missing
+    @Test
+    void testMalformedPayloadsAreReadLeniently() {
+        byte[] trailingComma = BookPayload.of(bookId, title, "Jams Jackub").malformedTrailingComma().bytes();
+        Response updated = api.asAdmin()
+                .contentType("application/json")
+                .body(trailingComma)
+                .when()
+                .put("/" + bookId);
+        Assert.assertEquals(updated.getStatusCode(), 200);
+        Assert.assertEquals(updated.jsonPath().getString("author"), "Jams Jackub");
+
+        byte[] noIdValue = BookPayload.of(bookId, title, author).malformedValue("id", "").bytes();
+        Response created = api.asAdmin()
+                .contentType("application/json")
+                .body(noIdValue)
+                .when()
+                .post();
+        Assert.assertEquals(created.getStatusCode(), 201, "a valueless id reads as null, so the server picks one");
+        Assert.assertNotEquals(created.jsonPath().getLong("id"), bookId);
+
+        byte[] noTitleValue = BookPayload.of(bookId, title, author).malformedValue("title", "").bytes();
+        Response rejected = api.asAdmin()
+                .contentType("application/json")
+                .body(noTitleValue)
+                .when()
+                .put("/" + bookId);
+        Assert.assertEquals(rejected.getStatusCode(), 400);
+    }
+
     //Update an integer value for the "title" parameter
     @Test
     public void testUpdateanIntegervalueforTitle() {
 
 
-        String requestBody = String.format("{\n" +
-                "    \"id\": %d,\n" +
-                "    \"title\": \"%d\",\n" +
-                "    \"author\": \"%s\"\n" +
-                "}", bookId, 123, author);
+        byte[] requestBody = BookPayload.of(bookId, title, author).with("title", "123").bytes();
 
-        Response response = given()
-                .auth().preemptive().basic(ADMIN_USERNAME, ADMIN_PASSWORD)
+        Response response = api.asAdmin()
                 .contentType("application/json")
                 .body(requestBody)
                 .when()
                 .put("/" + bookId);
 
-        System.out.println("Input: "+response.asString());
-        System.out.println("Status Code: "+response.statusCode());
-
         Assert.assertEquals(response.getStatusCode(), 400);
 
     }
@@ -251,22 +242,14 @@ public class UpdateBookTest {
     public void testUpdateanIntegervalueforAthour() {
 
 
-        String requestBody = String.format("{\n" +
-                "    \"id\": %d,\n" +
-                "    \"title\": \"%s\",\n" +
-                "    \"author\": \"%d\"\n" +
-                "}", bookId, title, 123);
+        byte[] requestBody = BookPayload.of(bookId, title, author).with("author", "123").bytes();
 
-        Response response = given()
-                .auth().preemptive().basic(ADMIN_USERNAME, ADMIN_PASSWORD)
+        Response response = api.asAdmin()
                 .contentType("application/json")
                 .body(requestBody)
                 .when()
                 .put("/" + bookId);;
 
-        System.out.println("Input: "+response.asString());
-        System.out.println("Status Code: "+response.statusCode());
-
         Assert.assertEquals(response.getStatusCode(), 400);
 
     }
@@ -275,22 +258,14 @@ public class UpdateBookTest {
     @Test
     public void testUpdateaAthouronlywithsameIdandTitle() {
 
-        String requestBody = String.format("{\n" +
-                "    \"id\": %d,\n" +
-                "    \"title\": \"%s\",\n" +
-                "    \"author\": \"Jams Jackub\"\n" +
-                "}", bookId, title);
+        byte[] requestBody = BookCodec.encode(new Book(bookId, title, "Jams Jackub"));
 
-        Response response = given()
-                .auth().preemptive().basic(ADMIN_USERNAME, ADMIN_PASSWORD)
+        Response response = api.asAdmin()
                 .contentType("application/json")
                 .body(requestBody)
                 .when()
                 .put("/" + bookId);;
 
-        System.out.println("Input: "+response.asString());
-        System.out.println("Status Code: "+response.statusCode());
-
         Assert.assertEquals(response.getStatusCode(), 200);
 
     }
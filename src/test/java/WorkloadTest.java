@@ -0,0 +1,102 @@
+import org.example.ApiConfig;
+import org.example.LoadReport;
+import org.example.Main;
+import org.example.Workload;
+import org.example.WorkloadRunner;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testng.Assert;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+public class WorkloadTest {
+
+    private static Main server;
+
+    @BeforeAll
+    static void startServer() {
+        server = Main.start(0);
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.close();
+    }
+
+    //Operations and roles are picked by weight, and zipfian ids concentrate on the first books
+    @Test
+    void testWeightedPicks() {
+        Workload workload = Workload.parse("{\"operations\": {\"get\": 80, \"update\": 15, \"create\": 4, "
+                + "\"delete\": 1}, \"roles\": {\"admin\": 3, \"user\": 1}, "
+                + "\"ids\": {\"distribution\": \"zipfian\", \"books\": 1000, \"exponent\": 0.99}}");
+        Random random = new Random(42);
+        Map<String, Integer> operations = new HashMap<>();
+        Map<String, Integer> roles = new HashMap<>();
+        int[] books = new int[workload.books()];
+        int picks = 100_000;
+        for (int i = 0; i < picks; i++) {
+            operations.merge(workload.pickOperation(random), 1, Integer::sum);
+            roles.merge(workload.pickRole(random), 1, Integer::sum);
+            books[workload.pickBook(random)]++;
+        }
+
+        Assert.assertEquals(operations.get("get") / (double) picks, 0.80, 0.01);
+        Assert.assertEquals(operations.get("update") / (double) picks, 0.15, 0.01);
+        Assert.assertEquals(operations.get("create") / (double) picks, 0.04, 0.005);
+        Assert.assertEquals(operations.get("delete") / (double) picks, 0.01, 0.003);
+        Assert.assertFalse(operations.containsKey("list"));
+        Assert.assertEquals(roles.get("admin") / (double) picks, 0.75, 0.01);
+        Assert.assertFalse(roles.containsKey("anonymous"));
+        // with exponent 0.99 over 1000 books the hottest gets 12.9%, 95 times the 100th
+        Assert.assertEquals(books[0] / (double) picks, 0.129, 0.01);
+        Assert.assertTrue(books[0] > 8 * books[99], books[0] + " vs " + books[99]);
+    }
+
+    //An invalid spec is rejected with the field it is about
+    @Test
+    void testInvalidSpec() {
+        assertRejected("{\"operations\": {\"read\": 1}}", "Unknown operations entry read");
+        assertRejected("{\"operations\": {\"get\": 0}}", "operations needs at least one positive weight");
+        assertRejected("{\"operations\": {\"get\": 1}, \"ids\": {\"distribution\": \"hot\"}}",
+                "Unknown ids.distribution hot");
+        assertRejected("{\"operations\": {\"get\": 1}, \"thinkTime\": {\"mean\": \"soon\"}}",
+                "thinkTime.mean is not a duration: soon");
+    }
+
+    //A mixed run reports every operation, with anonymous and user writes rejected by the server
+    @Test
+    void testMixedRun() throws Exception {
+        Workload workload = Workload.parse("{\"duration\": \"3s\", \"users\": 16, "
+                + "\"operations\": {\"get\": 30, \"update\": 30, \"create\": 20, \"delete\": 20}, "
+                + "\"roles\": {\"admin\": 6, \"user\": 2, \"anonymous\": 2}, "
+                + "\"thinkTime\": {\"distribution\": \"exponential\", \"mean\": \"1ms\"}, "
+                + "\"ids\": {\"distribution\": \"zipfian\", \"books\": 100}}");
+        LoadReport report;
+        try (WorkloadRunner runner = new WorkloadRunner(server.baseUri(),
+                ApiConfig.basicAuthorization("admin", "password"), ApiConfig.basicAuthorization("user", "password"))) {
+            report = runner.run(workload);
+        }
+
+        Assert.assertEquals(report.byEndpoint().keySet(), Set.of("GET /api/books/{id}",
+                "PUT /api/books/{id}", "POST /api/books", "DELETE /api/books/{id}"));
+        Assert.assertTrue(report.throughput() > 0);
+        for (String endpoint : report.byEndpoint().keySet()) {
+            Assert.assertFalse(report.byStatus(endpoint).containsKey(0), endpoint + " had failed requests");
+            Assert.assertTrue(report.byStatus(endpoint).containsKey(401), endpoint + " had no anonymous calls");
+        }
+        Assert.assertTrue(report.byStatus("GET /api/books/{id}").containsKey(200));
+        Assert.assertFalse(report.byStatus("GET /api/books/{id}").containsKey(404));
+        Assert.assertTrue(report.byStatus("PUT /api/books/{id}").containsKey(403));
+        Assert.assertTrue(report.byStatus("POST /api/books").containsKey(201));
+        Assert.assertTrue(report.byStatus("DELETE /api/books/{id}").containsKey(200));
+    }
+
+    private static void assertRejected(String spec, String message) {
+        IllegalArgumentException e = Assert.expectThrows(IllegalArgumentException.class, () -> Workload.parse(spec));
+        Assert.assertTrue(e.getMessage().startsWith(message), e.getMessage());
+    }
+}
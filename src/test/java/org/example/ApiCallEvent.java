@@ -0,0 +1,90 @@
+package org.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.Map;
+
+/**
+ * Flight Recorder event for one call of the test clients, from sending the
+ * request to its response; {@link MetricsFilter} emits it for
+ * {@link ApiSpecs} and {@link AsyncBooksClient} for its own calls. The
+ * endpoint is templated like the metrics' ({@code /api/books/{id}}) and
+ * the role is the name scenario files use: admin, user, anonymous,
+ * wrongPassword, or other for credentials of none of them.
+ *
+ * The fields are only filled in once {@link #shouldCommit()} says a
+ * recording wants the event, so without one a call pays for little more
+ * than the event's begin and end.
+ */
+@Name(JfrHotspots.API_CALL)
+@Label("Books API Call")
+@Category({"Books API", "Client"})
+@Description("A request of the test client and its response")
+@StackTrace(false)
+final class ApiCallEvent extends jdk.jfr.Event {
+
+    private static final Map<String, String> ROLES = roles();
+
+    @Label("Method")
+    String method;
+
+    @Label("Endpoint")
+    @Description("Request path with numeric segments replaced by {id}")
+    String endpoint;
+
+    @Label("Role")
+    String role;
+
+    @Label("Status")
+    @Description("Response status, or 0 if the call failed without one")
+    int status;
+
+    @Label("Request Bytes")
+    @DataAmount
+    long requestBytes;
+
+    @Label("Response Bytes")
+    @DataAmount
+    long responseBytes;
+
+    static ApiCallEvent start() {
+        ApiCallEvent event = new ApiCallEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Fills in and commits an event that a recording wants.
+     *
+     * @param path the request path, templated here
+     */
+    void commit(String method, String path, String role, int status, long requestBytes, long responseBytes) {
+        this.method = method;
+        this.endpoint = LoadReport.template(path);
+        this.role = role;
+        this.status = status;
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+        commit();
+    }
+
+    /**
+     * The role whose credentials an Authorization header carries.
+     */
+    static String role(String authorization) {
+        return authorization == null ? "anonymous" : ROLES.getOrDefault(authorization, "other");
+    }
+
+    private static Map<String, String> roles() {
+        ApiConfig config = ApiConfig.load();
+        return Map.of(
+                ApiConfig.basicAuthorization(config.adminUsername(), config.adminPassword()), "admin",
+                ApiConfig.basicAuthorization(config.userUsername(), config.userPassword()), "user",
+                ApiConfig.basicAuthorization(config.adminUsername(), "Password"), "wrongPassword");
+    }
+}
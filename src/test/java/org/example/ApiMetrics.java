@@ -0,0 +1,247 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request metrics per endpoint, where an endpoint is the method plus the
+ * path with numeric segments replaced by {@code {id}}: latency histogram,
+ * request and response bytes, and the status-code distribution.
+ *
+ * Recording never locks. Each endpoint keeps several histograms and picks
+ * one by thread, so threads of a parallel run rarely increment the same
+ * counters; they are merged only when a snapshot is taken.
+ *
+ * {@link #global()} is the registry every {@link ApiSpecs} spec records
+ * into. {@link MetricsExportListener} writes it to {@code api-metrics.json}
+ * and {@code api-metrics.prom} (Prometheus text format) in
+ * {@code target/api-metrics}, or {@code -Dapi.metrics.dir}, at the end of
+ * the run.
+ */
+public final class ApiMetrics {
+
+    private static final ApiMetrics GLOBAL = new ApiMetrics();
+    private static final int STRIPES = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1) << 1);
+    private static final int MAX_STATUS = 600;
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    public static ApiMetrics global() {
+        return GLOBAL;
+    }
+
+    public void record(String method, String path, int status, long latencyNanos, long requestBytes, long responseBytes) {
+        String template = LoadReport.template(path);
+        String key = method + " " + template;
+        Endpoint endpoint = endpoints.get(key);
+        if (endpoint == null) {
+            endpoint = endpoints.computeIfAbsent(key, k -> new Endpoint(method, template));
+        }
+        endpoint.record(status, latencyNanos, requestBytes, responseBytes);
+    }
+
+    /**
+     * Adds statistics taken elsewhere, such as another JVM's snapshot, to
+     * their endpoint.
+     */
+    public void add(EndpointStats stats) {
+        endpoints.computeIfAbsent(stats.method + " " + stats.path, k -> new Endpoint(stats.method, stats.path))
+                .add(stats);
+    }
+
+    /**
+     * Merged statistics per endpoint, ordered by path and method.
+     */
+    public List<EndpointStats> snapshot() {
+        Map<String, EndpointStats> sorted = new TreeMap<>();
+        for (Endpoint endpoint : endpoints.values()) {
+            sorted.put(endpoint.template + " " + endpoint.method, endpoint.snapshot());
+        }
+        return new ArrayList<>(sorted.values());
+    }
+
+    public void reset() {
+        endpoints.clear();
+    }
+
+    /**
+     * Writes {@code api-metrics.json} and {@code api-metrics.prom} into the directory.
+     */
+    public void export(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        List<EndpointStats> stats = snapshot();
+        Files.writeString(directory.resolve("api-metrics.json"), toJson(stats), StandardCharsets.UTF_8);
+        Files.writeString(directory.resolve("api-metrics.prom"), toPrometheus(stats), StandardCharsets.UTF_8);
+    }
+
+    static String toJson(List<EndpointStats> stats) {
+        List<Object> endpoints = new ArrayList<>();
+        for (EndpointStats endpoint : stats) {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("method", endpoint.method);
+            json.put("path", endpoint.path);
+            json.put("count", endpoint.latency.count());
+            json.put("meanMs", round(endpoint.latency.mean() / 1e6));
+            json.put("p50Ms", millis(endpoint.latency.valueAtPercentile(50)));
+            json.put("p90Ms", millis(endpoint.latency.valueAtPercentile(90)));
+            json.put("p99Ms", millis(endpoint.latency.valueAtPercentile(99)));
+            json.put("p999Ms", millis(endpoint.latency.valueAtPercentile(99.9)));
+            json.put("maxMs", millis(endpoint.latency.max()));
+            json.put("requestBytes", endpoint.requestBytes);
+            json.put("responseBytes", endpoint.responseBytes);
+            Map<String, Object> statuses = new LinkedHashMap<>();
+            endpoint.statuses.forEach((status, count) -> statuses.put(String.valueOf(status), count));
+            json.put("status", statuses);
+            endpoints.add(json);
+        }
+        return Json.write(Map.of("endpoints", endpoints)) + "\n";
+    }
+
+    static String toPrometheus(List<EndpointStats> stats) {
+        StringBuilder out = new StringBuilder();
+        out.append("# HELP api_requests_total Requests by endpoint and status code.\n");
+        out.append("# TYPE api_requests_total counter\n");
+        for (EndpointStats endpoint : stats) {
+            endpoint.statuses.forEach((status, count) ->
+                    out.append("api_requests_total").append(labels(endpoint, "status", String.valueOf(status)))
+                            .append(' ').append(count).append('\n'));
+        }
+        out.append("# HELP api_request_duration_seconds Request latency by endpoint.\n");
+        out.append("# TYPE api_request_duration_seconds summary\n");
+        for (EndpointStats endpoint : stats) {
+            LatencyHistogram latency = endpoint.latency;
+            for (double quantile : new double[] {0.5, 0.9, 0.99, 0.999}) {
+                out.append("api_request_duration_seconds")
+                        .append(labels(endpoint, "quantile", String.valueOf(quantile)))
+                        .append(' ').append(seconds(latency.valueAtPercentile(quantile * 100))).append('\n');
+            }
+            out.append("api_request_duration_seconds_sum").append(labels(endpoint, null, null))
+                    .append(' ').append(seconds(Math.round(latency.mean() * latency.count()))).append('\n');
+            out.append("api_request_duration_seconds_count").append(labels(endpoint, null, null))
+                    .append(' ').append(latency.count()).append('\n');
+        }
+        out.append("# HELP api_request_bytes_total Request body bytes by endpoint.\n");
+        out.append("# TYPE api_request_bytes_total counter\n");
+        for (EndpointStats endpoint : stats) {
+            out.append("api_request_bytes_total").append(labels(endpoint, null, null))
+                    .append(' ').append(endpoint.requestBytes).append('\n');
+        }
+        out.append("# HELP api_response_bytes_total Response body bytes by endpoint.\n");
+        out.append("# TYPE api_response_bytes_total counter\n");
+        for (EndpointStats endpoint : stats) {
+            out.append("api_response_bytes_total").append(labels(endpoint, null, null))
+                    .append(' ').append(endpoint.responseBytes).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static String labels(EndpointStats endpoint, String name, String value) {
+        StringBuilder out = new StringBuilder("{method=\"").append(escape(endpoint.method))
+                .append("\",path=\"").append(escape(endpoint.path)).append('"');
+        if (name != null) {
+            out.append(',').append(name).append("=\"").append(value).append('"');
+        }
+        return out.append('}').toString();
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static double millis(long nanos) {
+        return round(LatencyHistogram.millis(nanos));
+    }
+
+    private static double round(double millis) {
+        return Math.round(millis * 1000) / 1000.0;
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    /**
+     * Merged statistics of one endpoint.
+     */
+    public static final class EndpointStats {
+        public final String method;
+        public final String path;
+        public final LatencyHistogram latency;
+        public final long requestBytes;
+        public final long responseBytes;
+        /** Count per status code, 0 for requests that failed without a response. */
+        public final Map<Integer, Long> statuses;
+
+        EndpointStats(String method, String path, LatencyHistogram latency, long requestBytes, long responseBytes,
+                      Map<Integer, Long> statuses) {
+            this.method = method;
+            this.path = path;
+            this.latency = latency;
+            this.requestBytes = requestBytes;
+            this.responseBytes = responseBytes;
+            this.statuses = statuses;
+        }
+    }
+
+    private static final class Endpoint {
+        final String method;
+        final String template;
+        final LatencyHistogram[] latency = new LatencyHistogram[STRIPES];
+        final AtomicLongArray statuses = new AtomicLongArray(MAX_STATUS);
+        final LongAdder requestBytes = new LongAdder();
+        final LongAdder responseBytes = new LongAdder();
+
+        Endpoint(String method, String template) {
+            this.method = method;
+            this.template = template;
+            for (int i = 0; i < STRIPES; i++) {
+                latency[i] = new LatencyHistogram();
+            }
+        }
+
+        void record(int status, long latencyNanos, long requestBytes, long responseBytes) {
+            latency[(int) Thread.currentThread().getId() & (STRIPES - 1)].record(latencyNanos);
+            statuses.incrementAndGet(status > 0 && status < MAX_STATUS ? status : 0);
+            if (requestBytes > 0) {
+                this.requestBytes.add(requestBytes);
+            }
+            if (responseBytes > 0) {
+                this.responseBytes.add(responseBytes);
+            }
+        }
+
+        void add(EndpointStats stats) {
+            latency[0].add(stats.latency);
+            stats.statuses.forEach((status, count) ->
+                    statuses.addAndGet(status > 0 && status < MAX_STATUS ? status : 0, count));
+            requestBytes.add(stats.requestBytes);
+            responseBytes.add(stats.responseBytes);
+        }
+
+        EndpointStats snapshot() {
+            LatencyHistogram merged = new LatencyHistogram();
+            for (LatencyHistogram stripe : latency) {
+                merged.add(stripe);
+            }
+            Map<Integer, Long> counts = new TreeMap<>();
+            for (int status = 0; status < MAX_STATUS; status++) {
+                long count = statuses.get(status);
+                if (count > 0) {
+                    counts.put(status, count);
+                }
+            }
+            return new EndpointStats(method, template, merged, requestBytes.sum(), responseBytes.sum(), counts);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package org.example;
+
+import io.restassured.builder.RequestSpecBuilder;
+import io.restassured.config.HttpClientConfig;
+import io.restassured.config.RestAssuredConfig;
+import io.restassured.filter.Filter;
+import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.params.HttpConnectionParams;
+
+import static io.restassured.RestAssured.given;
+import static io.restassured.RestAssured.preemptive;
+
+/**
+ * Request specifications for /api/books, one per role.
+ *
+ * Every spec targets the same normalized base URI and base path, so tests
+ * only pass the part after /api/books ("/1", or nothing for the
+ * collection). The specs are built once and never mutated; each accessor
+ * returns a fresh {@code given()} merged from them, which makes an
+ * instance safe to share between threads.
+ *
+ * All specs share one pooled Apache connection manager. RestAssured
+ * otherwise builds a new HttpClient, and so opens a new socket, for every
+ * request. Timeouts and retries follow a {@link ClientPolicy}. Requests
+ * go to the calling thread's {@link StoreFork}, if it has one. Every
+ * request is recorded in {@link ApiMetrics#global()}. With {@code -Dcapture}
+ * it is also captured for replay, and with {@code -Dresponse.log} logged by
+ * a {@link ResponseLog}. GETs can be served
+ * from a {@link ResponseCache}, see {@link #withCache}.
+ */
+public final class ApiSpecs {
+
+    private static final int MAX_CONNECTIONS = 200;
+    static final long EAGER_BODY_LIMIT = 1 << 20;
+
+    private static final Filter METRICS = new MetricsFilter(ApiMetrics.global());
+
+    /**
+     * Reads bodies up to 1 MB as soon as they arrive. A pooled connection is
+     * only returned once its body has been read, and many tests check just
+     * the status code. Larger bodies stay streaming for
+     * {@link StreamingBookAssertions} and are released when read or closed.
+     */
+    private static final Filter RELEASE_CONNECTION = (request, response, context) -> {
+        Response result = context.next(request, response);
+        String length = result.getHeader("Content-Length");
+        if (length != null && Long.parseLong(length) <= EAGER_BODY_LIMIT) {
+            result.asByteArray();
+        }
+        return result;
+    };
+
+    @SuppressWarnings("deprecation")
+    private static final PoolingClientConnectionManager CONNECTIONS = newConnectionManager();
+
+    private static final RestAssuredConfig DEFAULT_CONFIG = config(ClientPolicy.defaults());
+
+    private final String baseUri;
+    private final ClientPolicy policy;
+    private final RestAssuredConfig config;
+    private final RetryFilter retry;
+    private final ResponseCache cache;
+    private final RequestSpecification admin;
+    private final RequestSpecification user;
+    private final RequestSpecification anonymous;
+    private final RequestSpecification wrongPassword;
+
+    private ApiSpecs(String baseUri, ClientPolicy policy, ResponseCache cache) {
+        this.baseUri = baseUri;
+        this.policy = policy;
+        this.config = policy == ClientPolicy.defaults() ? DEFAULT_CONFIG : config(policy);
+        this.retry = new RetryFilter(policy);
+        this.cache = cache;
+        ApiConfig config = ApiConfig.load();
+        this.anonymous = base().build();
+        this.admin = base().setAuth(preemptive().basic(config.adminUsername(), config.adminPassword())).build();
+        this.user = base().setAuth(preemptive().basic(config.userUsername(), config.userPassword())).build();
+        this.wrongPassword = base().setAuth(preemptive().basic(config.adminUsername(), "Password")).build();
+    }
+
+    public static ApiSpecs forServer(Main server) {
+        return forBaseUri(server.baseUri());
+    }
+
+    /**
+     * @param baseUri scheme, host and port of the books service; a trailing
+     *                slash or /api/books suffix is ignored
+     */
+    public static ApiSpecs forBaseUri(String baseUri) {
+        return forBaseUri(baseUri, ClientPolicy.defaults());
+    }
+
+    /**
+     * Specs with their own timeouts and retries, for example against a {@link FaultProxy}.
+     */
+    public static ApiSpecs forBaseUri(String baseUri, ClientPolicy policy) {
+        String normalized = baseUri;
+        while (normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        if (normalized.endsWith(Main.BOOKS_PATH)) {
+            normalized = normalized.substring(0, normalized.length() - Main.BOOKS_PATH.length());
+        }
+        return new ApiSpecs(normalized, policy, null);
+    }
+
+    /**
+     * Specs like these whose GETs go through the cache, revalidated with
+     * If-None-Match. The wire response, 304 or not, is what the metrics and
+     * capture filters see.
+     */
+    public ApiSpecs withCache(ResponseCache cache) {
+        return new ApiSpecs(baseUri, policy, cache);
+    }
+
+    public String baseUri() {
+        return baseUri;
+    }
+
+    /** The retry filter of these specs, to see how many retries a run needed. */
+    public RetryFilter retries() {
+        return retry;
+    }
+
+    public RequestSpecification asAdmin() {
+        return given().spec(admin);
+    }
+
+    public RequestSpecification asUser() {
+        return given().spec(user);
+    }
+
+    public RequestSpecification anonymous() {
+        return given().spec(anonymous);
+    }
+
+    public RequestSpecification withWrongPassword() {
+        return given().spec(wrongPassword);
+    }
+
+    private RequestSpecBuilder base() {
+        RequestSpecBuilder builder = new RequestSpecBuilder()
+                .setConfig(config)
+                .setBaseUri(baseUri)
+                .setBasePath(Main.BOOKS_PATH)
+                .addFilter(StoreFork.HEADER);
+        if (ResponseLog.global() != null) {
+            builder.addFilter(ResponseLog.global());
+        }
+        if (cache != null) {
+            builder.addFilter(cache);
+        }
+        builder.addFilter(METRICS)
+                .addFilter(RELEASE_CONNECTION);
+        if (CaptureFilter.global() != null) {
+            builder.addFilter(CaptureFilter.global());
+        }
+        return builder.addFilter(retry);
+    }
+
+    /**
+     * One HttpClient per policy, all on the shared connection pool.
+     */
+    @SuppressWarnings("deprecation")
+    private static RestAssuredConfig config(ClientPolicy policy) {
+        return RestAssuredConfig.config()
+                .httpClient(HttpClientConfig.httpClientConfig()
+                        .reuseHttpClientInstance()
+                        .httpClientFactory(() -> {
+                            DefaultHttpClient client = new DefaultHttpClient(CONNECTIONS);
+                            // retries are up to the policy's RetryFilter, not HttpClient's silent resends
+                            client.setHttpRequestRetryHandler(new DefaultHttpRequestRetryHandler(0, false));
+                            HttpConnectionParams.setConnectionTimeout(client.getParams(),
+                                    (int) policy.connectTimeout().toMillis());
+                            HttpConnectionParams.setSoTimeout(client.getParams(), (int) policy.readTimeout().toMillis());
+                            return client;
+                        }));
+    }
+
+    @SuppressWarnings("deprecation")
+    private static PoolingClientConnectionManager newConnectionManager() {
+        PoolingClientConnectionManager manager = new PoolingClientConnectionManager();
+        manager.setMaxTotal(MAX_CONNECTIONS);
+        manager.setDefaultMaxPerRoute(MAX_CONNECTIONS);
+        return manager;
+    }
+}
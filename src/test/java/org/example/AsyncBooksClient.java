@@ -0,0 +1,304 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Non-blocking counterpart of {@link ApiSpecs} on the JDK HTTP client.
+ *
+ * Every operation returns immediately with a future, so independent
+ * workflows overlap their round trips instead of queueing behind each
+ * other, and each workflow is written as a chain:
+ *
+ * <pre>
+ * client.asAdmin().create(book)
+ *         .thenCompose(created -> client.asAdmin().get(created.statusCode(201).id()))
+ *         .thenApply(fetched -> fetched.statusCode(200).field("title", book.getTitle()));
+ * </pre>
+ *
+ * Created with {@code HttpClient.Version.HTTP_2} the client multiplexes
+ * requests over one connection where the server supports it; the JDK
+ * stand-in server does not, and the client then falls back to HTTP/1.1
+ * over concurrent connections. Instances are thread-safe; close them to
+ * stop the client's threads. Each request goes to the {@link StoreFork}
+ * of the thread that sends it.
+ *
+ * Each call is an {@link ApiCallEvent} for Flight Recorder.
+ *
+ * Requests accept gzip and deflate. A compressed body is inflated as it
+ * arrives, so a large listing is never held compressed and decompressed
+ * at once.
+ */
+public final class AsyncBooksClient implements AutoCloseable {
+
+    private static final int INFLATE_BUFFER = 8192;
+
+    private final String booksUri;
+    private final ExecutorService executor;
+    private final HttpClient client;
+    private final Role admin;
+    private final Role user;
+    private final Role anonymous;
+    private final Role wrongPassword;
+
+    private AsyncBooksClient(String baseUri, HttpClient.Version version) {
+        this.booksUri = ApiSpecs.forBaseUri(baseUri).baseUri() + Main.BOOKS_PATH;
+        this.executor = VirtualThreads.newExecutor("books-client");
+        this.client = HttpClient.newBuilder()
+                .version(version)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(executor)
+                .build();
+        ApiConfig config = ApiConfig.load();
+        this.admin = new Role("admin", ApiConfig.basicAuthorization(config.adminUsername(), config.adminPassword()));
+        this.user = new Role("user", ApiConfig.basicAuthorization(config.userUsername(), config.userPassword()));
+        this.anonymous = new Role("anonymous", null);
+        this.wrongPassword = new Role("wrongPassword",
+                ApiConfig.basicAuthorization(config.adminUsername(), "Password"));
+    }
+
+    public static AsyncBooksClient forServer(Main server) {
+        return forBaseUri(server.baseUri(), HttpClient.Version.HTTP_1_1);
+    }
+
+    public static AsyncBooksClient forServer(Main server, HttpClient.Version version) {
+        return forBaseUri(server.baseUri(), version);
+    }
+
+    /**
+     * @param baseUri scheme, host and port of the books service; a trailing
+     *                slash or /api/books suffix is ignored
+     * @param version the protocol to offer; HTTP_2 falls back to HTTP/1.1
+     *                when the server does not upgrade
+     */
+    public static AsyncBooksClient forBaseUri(String baseUri, HttpClient.Version version) {
+        return new AsyncBooksClient(baseUri, version);
+    }
+
+    public Role asAdmin() {
+        return admin;
+    }
+
+    public Role asUser() {
+        return user;
+    }
+
+    public Role anonymous() {
+        return anonymous;
+    }
+
+    public Role withWrongPassword() {
+        return wrongPassword;
+    }
+
+    /**
+     * Looks a role up by the names used in scenario files: admin, user, anonymous or wrongPassword.
+     */
+    public Role role(String name) {
+        switch (name) {
+            case "admin": return admin;
+            case "user": return user;
+            case "anonymous": return anonymous;
+            case "wrongPassword": return wrongPassword;
+            default: throw new IllegalArgumentException("Unknown role " + name);
+        }
+    }
+
+    /**
+     * Completes when every future has, with their results in order, or
+     * exceptionally with the first failure.
+     */
+    public static <T> CompletableFuture<List<T>> all(List<CompletableFuture<T>> futures) {
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> {
+                    List<T> results = new ArrayList<>(futures.size());
+                    for (CompletableFuture<T> future : futures) {
+                        results.add(future.join());
+                    }
+                    return results;
+                });
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * The book operations with one role's credentials.
+     */
+    public final class Role {
+        private final String name;
+        private final String authorization;
+
+        private Role(String name, String authorization) {
+            this.name = name;
+            this.authorization = authorization;
+        }
+
+        public CompletableFuture<BookResponse> list() {
+            return send("GET", "", null);
+        }
+
+        public CompletableFuture<BookResponse> get(long id) {
+            return send("GET", "/" + id, null);
+        }
+
+        public CompletableFuture<BookResponse> create(Book book) {
+            return sendBytes("POST", "", BookCodec.encode(book));
+        }
+
+        public CompletableFuture<BookResponse> create(String json) {
+            return send("POST", "", json);
+        }
+
+        public CompletableFuture<BookResponse> update(Book book) {
+            return sendBytes("PUT", "/" + book.getId(), BookCodec.encode(book));
+        }
+
+        public CompletableFuture<BookResponse> update(long id, String json) {
+            return send("PUT", "/" + id, json);
+        }
+
+        public CompletableFuture<BookResponse> delete(long id) {
+            return send("DELETE", "/" + id, null);
+        }
+
+        /**
+         * Creates the books with one {@code POST /api/books/_bulk}. They are
+         * encoded as NDJSON while the body is sent, a chunk at a time, so
+         * the iterable may be lazy and larger than memory. Books with id 0
+         * are sent without one and get a new id. The response reports each
+         * book's status in order.
+         */
+        public CompletableFuture<BookResponse> bulkCreate(Iterable<Book> books) {
+            return sendBody("POST", Main.BULK_PATH.substring(Main.BOOKS_PATH.length()), "application/x-ndjson",
+                    HttpRequest.BodyPublishers.ofByteArrays(() -> new NdjsonChunks(books.iterator())));
+        }
+
+        /**
+         * Sends any request below /api/books.
+         *
+         * @param path the part after /api/books, e.g. "/1" or "" for the collection
+         * @param json the request body, or {@code null} for none
+         */
+        public CompletableFuture<BookResponse> send(String method, String path, String json) {
+            return sendBytes(method, path, json == null ? null : json.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private CompletableFuture<BookResponse> sendBytes(String method, String path, byte[] json) {
+            return json == null ? sendBody(method, path, null, HttpRequest.BodyPublishers.noBody())
+                    : sendBody(method, path, "application/json", HttpRequest.BodyPublishers.ofByteArray(json));
+        }
+
+        private CompletableFuture<BookResponse> sendBody(String method, String path, String contentType,
+                                                         HttpRequest.BodyPublisher body) {
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(booksUri + path))
+                    .timeout(Duration.ofSeconds(30));
+            if (authorization != null) {
+                request.header("Authorization", authorization);
+            }
+            String fork = StoreFork.current(booksUri);
+            if (fork != null) {
+                request.header(Main.FORK_HEADER, fork);
+            }
+            if (contentType != null) {
+                request.header("Content-Type", contentType);
+            }
+            request.header("Accept-Encoding", "gzip, deflate");
+            String description = method + " " + Main.BOOKS_PATH + path;
+            ApiCallEvent event = ApiCallEvent.start();
+            return client.sendAsync(request.method(method, body).build(), AsyncBooksClient::decodedBody)
+                    // reading a compressed body blocks, so it must not run on the thread delivering it
+                    .thenApplyAsync(response -> {
+                        BookResponse read = new BookResponse(description, response, response.body().get());
+                        event.end();
+                        if (event.shouldCommit()) {
+                            event.commit(method, Main.BOOKS_PATH + path, name, response.statusCode(),
+                                    body.contentLength() < 0 ? 0 : body.contentLength(),
+                                    response.headers().firstValueAsLong("Content-Length").orElse(0));
+                        }
+                        return read;
+                    }, executor);
+        }
+    }
+
+    /**
+     * Reads plain bodies as strings. Compressed ones are read through an
+     * inflating stream when the body is asked for, to be pulled on another
+     * thread while the bytes still arrive.
+     */
+    private static HttpResponse.BodySubscriber<Supplier<String>> decodedBody(HttpResponse.ResponseInfo info) {
+        String coding = info.headers().firstValue("Content-Encoding").orElse("identity");
+        if (coding.equalsIgnoreCase("identity")) {
+            return HttpResponse.BodySubscribers.mapping(
+                    HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8), body -> () -> body);
+        }
+        return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofInputStream(), in -> () -> {
+            try (InputStream inflating = inflate(coding, in)) {
+                return new String(inflating.readAllBytes(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not inflate a " + coding + " body", e);
+            }
+        });
+    }
+
+    private static InputStream inflate(String coding, InputStream in) throws IOException {
+        switch (coding.toLowerCase(Locale.ROOT)) {
+            case "gzip": return new GZIPInputStream(in, INFLATE_BUFFER);
+            case "deflate": return new InflaterInputStream(in);
+            default:
+                in.close();
+                throw new IOException("Unsupported Content-Encoding " + coding);
+        }
+    }
+
+    /** Books encoded one per line into chunks of about 64 KB. */
+    private static final class NdjsonChunks implements Iterator<byte[]> {
+        private static final int CHUNK = 64 * 1024;
+
+        private final Iterator<Book> books;
+        private final BookCodec.Buffer buffer = new BookCodec.Buffer(CHUNK + 1024);
+
+        NdjsonChunks(Iterator<Book> books) {
+            this.books = books;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return books.hasNext();
+        }
+
+        @Override
+        public byte[] next() {
+            buffer.reset();
+            while (buffer.length() < CHUNK && books.hasNext()) {
+                Book book = books.next();
+                if (book.getId() == 0) {
+                    buffer.putAscii("{\"title\":").putString(book.getTitle())
+                            .putAscii(",\"author\":").putString(book.getAuthor()).put('}');
+                } else {
+                    BookCodec.encode(book, buffer);
+                }
+                buffer.put('\n');
+            }
+            return buffer.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.example;
+
+/**
+ * Per-test data on a stand-in server, so tests never share ids and can run
+ * in any order or in parallel. Books go into the current thread's
+ * {@link StoreFork}, or the default store outside of one.
+ */
+public final class BookFixtures {
+
+    public static final String TITLE = "The World: A Family History";
+    public static final String AUTHOR = "British historian Simon Sebag Montefiore";
+
+    private BookFixtures() {
+    }
+
+    /**
+     * Stores a new book directly in the test's store and returns its id.
+     */
+    public static long existingBook(Main server) {
+        return server.store(StoreFork.current(server)).insertWithNewId(TITLE, AUTHOR).getId();
+    }
+
+    /**
+     * Returns an id no book has and no create will hand out.
+     */
+    public static long unusedId(Main server) {
+        return server.store(StoreFork.current(server)).reserveId();
+    }
+}
@@ -0,0 +1,127 @@
+package org.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Request bodies for negative tests: a book's fields with some left out,
+ * replaced by values of the wrong type, or deliberately broken.
+ *
+ * <pre>
+ * BookPayload.of(bookId, title, author).without("author").bytes()
+ * BookPayload.of(bookId, title, author).with("title", 123).bytes()
+ * BookPayload.of(bookId, title, author).malformedValue("id", "").bytes()   // "id": ,
+ * </pre>
+ *
+ * A payload is checked to be valid JSON when it is built unless one of the
+ * {@code malformed} methods was called, so a test can only send broken JSON
+ * on purpose. Well-formed books need no builder: use
+ * {@link BookCodec#encode(Book)}.
+ *
+ * The server parses these two breakages leniently, like {@link Json}: a
+ * member without a value reads as {@code null} and a trailing comma is
+ * ignored. So a malformed payload is not by itself a 400. The status is
+ * whatever the contract gives a body with that member {@code null}, e.g.
+ * 201 for a create without an id but 400 for an update without a title.
+ */
+public final class BookPayload {
+
+    private final List<String> names = new ArrayList<>();
+    private final List<String> values = new ArrayList<>();
+    private boolean trailingComma;
+    private boolean malformed;
+
+    private BookPayload() {
+    }
+
+    public static BookPayload of(long id, String title, String author) {
+        return new BookPayload().with("id", id).with("title", title).with("author", author);
+    }
+
+    /** A payload with no fields, to add them one by one. */
+    public static BookPayload empty() {
+        return new BookPayload();
+    }
+
+    /**
+     * Sets a field to any value {@link Json#write} accepts, in place if the
+     * field is already there and at the end otherwise.
+     */
+    public BookPayload with(String name, Object value) {
+        return put(name, Json.write(value));
+    }
+
+    public BookPayload without(String name) {
+        int index = names.indexOf(name);
+        if (index >= 0) {
+            names.remove(index);
+            values.remove(index);
+        }
+        return this;
+    }
+
+    /** Writes the value verbatim, e.g. an empty string for {@code "id": ,}. */
+    public BookPayload malformedValue(String name, String raw) {
+        malformed = true;
+        return put(name, raw);
+    }
+
+    /** Adds a comma after the last field. */
+    public BookPayload malformedTrailingComma() {
+        malformed = true;
+        trailingComma = true;
+        return this;
+    }
+
+    public byte[] bytes() {
+        return toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder json = new StringBuilder("{");
+        for (int i = 0; i < names.size(); i++) {
+            if (i > 0) {
+                json.append(", ");
+            }
+            Json.quote(names.get(i), json);
+            json.append(": ").append(values.get(i));
+        }
+        if (trailingComma) {
+            json.append(',');
+        }
+        String payload = json.append('}').toString();
+        if (!malformed) {
+            requireValid(payload);
+        }
+        return payload;
+    }
+
+    private BookPayload put(String name, String value) {
+        int index = names.indexOf(name);
+        if (index >= 0) {
+            values.set(index, value);
+        } else {
+            names.add(name);
+            values.add(value);
+        }
+        return this;
+    }
+
+    private static void requireValid(String payload) {
+        try (JsonReader reader = new JsonReader(new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8)))) {
+            reader.skipValue();
+            if (reader.peek() != JsonReader.Token.END_DOCUMENT) {
+                throw new IllegalStateException("Unintentionally malformed payload " + payload);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Unintentionally malformed payload " + payload, e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
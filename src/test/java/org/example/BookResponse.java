@@ -0,0 +1,143 @@
+package org.example;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A completed response from {@link AsyncBooksClient} with fluent
+ * assertions in the manner of RestAssured's {@code then()}. Each assertion
+ * throws {@link AssertionError} naming the request and body, or returns
+ * the response so checks chain inside a future pipeline.
+ */
+public final class BookResponse {
+
+    private final String request;
+    private final HttpResponse<?> response;
+    private final String body;
+    private Object json;
+
+    /**
+     * @param body the response body, decoded from its Content-Encoding
+     */
+    BookResponse(String request, HttpResponse<?> response, String body) {
+        this.request = request;
+        this.response = response;
+        this.body = body;
+    }
+
+    public int getStatusCode() {
+        return response.statusCode();
+    }
+
+    public String asString() {
+        return body;
+    }
+
+    public String header(String name) {
+        return response.headers().firstValue(name).orElse(null);
+    }
+
+    /**
+     * The protocol the exchange actually used, e.g. to see whether HTTP/2 was negotiated.
+     */
+    public HttpClient.Version version() {
+        return response.version();
+    }
+
+    public BookResponse statusCode(int expected) {
+        if (response.statusCode() != expected) {
+            throw failure("expected status " + expected + " but got " + response.statusCode());
+        }
+        return this;
+    }
+
+    public BookResponse contentType(String expected) {
+        String actual = header("Content-Type");
+        if (!expected.equals(actual)) {
+            throw failure("expected Content-Type " + expected + " but got " + actual);
+        }
+        return this;
+    }
+
+    public BookResponse body(String expected) {
+        if (!expected.equals(body)) {
+            throw failure("expected body " + expected);
+        }
+        return this;
+    }
+
+    /**
+     * Asserts a top-level field of a JSON object body. Numbers compare by
+     * value, so {@code field("id", 3)} matches {@code "id": 3}.
+     */
+    public BookResponse field(String name, Object expected) {
+        Object actual = object().get(name);
+        boolean matches = expected instanceof Number && actual instanceof Number
+                ? ((Number) expected).longValue() == ((Number) actual).longValue()
+                : Objects.equals(expected, actual);
+        if (!matches) {
+            throw failure("expected " + name + "=" + expected + " but got " + actual);
+        }
+        return this;
+    }
+
+    /**
+     * Asserts the number of elements of a JSON array body.
+     */
+    public BookResponse size(int expected) {
+        Object parsed = json();
+        if (!(parsed instanceof List) || ((List<?>) parsed).size() != expected) {
+            throw failure("expected an array of " + expected + " elements");
+        }
+        return this;
+    }
+
+    /**
+     * The {@code id} of a book body.
+     */
+    public long id() {
+        Object id = object().get("id");
+        if (!(id instanceof Long)) {
+            throw failure("expected a numeric id");
+        }
+        return (Long) id;
+    }
+
+    public Book book() {
+        Map<String, Object> fields = object();
+        return new Book(id(), (String) fields.get("title"), (String) fields.get("author"));
+    }
+
+    private Map<String, Object> object() {
+        Object parsed = json();
+        if (!(parsed instanceof Map)) {
+            throw failure("expected a JSON object");
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Object> fields = (Map<String, Object>) parsed;
+        return fields;
+    }
+
+    private Object json() {
+        if (json == null) {
+            try {
+                json = Json.parse(body);
+            } catch (IllegalArgumentException e) {
+                throw failure("expected JSON: " + e.getMessage());
+            }
+        }
+        return json;
+    }
+
+    private AssertionError failure(String message) {
+        return new AssertionError(request + ": " + message + "\nResponse: " + response.statusCode() + " " + body);
+    }
+
+    @Override
+    public String toString() {
+        return request + " -> " + response.statusCode();
+    }
+}
@@ -0,0 +1,107 @@
+package org.example;
+
+import io.restassured.authentication.AuthenticationScheme;
+import io.restassured.authentication.PreemptiveBasicAuthScheme;
+import io.restassured.filter.Filter;
+import io.restassured.filter.FilterContext;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Appends every request and its response to a {@link CaptureLog} for
+ * {@link Replayer}. The recorded call pays for reading the response body,
+ * which {@link ApiSpecs} does anyway for bodies up to 1 MB, and one copy
+ * into the mapped log.
+ *
+ * Running the suite with {@code -Dcapture=target/capture.bin} installs one
+ * on every {@link ApiSpecs} spec; it is closed when the JVM exits.
+ */
+public final class CaptureFilter implements Filter, Closeable {
+
+    private static final CaptureFilter GLOBAL = fromSystemProperty();
+
+    private final CaptureLog.Writer log;
+    private final long start = System.nanoTime();
+
+    public CaptureFilter(Path file) throws IOException {
+        this.log = CaptureLog.create(file);
+    }
+
+    /**
+     * The filter for {@code -Dcapture}, or {@code null} when capture is off.
+     */
+    static CaptureFilter global() {
+        return GLOBAL;
+    }
+
+    @Override
+    public Response filter(FilterableRequestSpecification request, FilterableResponseSpecification response,
+                           FilterContext context) {
+        long sent = System.nanoTime();
+        Response result = context.next(request, response);
+        long latency = System.nanoTime() - sent;
+        URI uri = URI.create(request.getURI());
+        String path = uri.getRawQuery() == null ? uri.getRawPath() : uri.getRawPath() + "?" + uri.getRawQuery();
+        try {
+            log.append(new CaptureLog.Entry(sent - start, latency, result.getStatusCode(), request.getMethod(), path,
+                    authorization(request), request.getContentType(), body(request), result.asByteArray()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+
+    static String authorization(FilterableRequestSpecification request) {
+        String header = request.getHeaders().getValue("Authorization");
+        if (header != null) {
+            return header;
+        }
+        AuthenticationScheme scheme = request.getAuthenticationScheme();
+        if (scheme instanceof PreemptiveBasicAuthScheme) {
+            PreemptiveBasicAuthScheme basic = (PreemptiveBasicAuthScheme) scheme;
+            return ApiConfig.basicAuthorization(basic.getUserName(), basic.getPassword());
+        }
+        return null;
+    }
+
+    private static byte[] body(FilterableRequestSpecification request) {
+        Object body = request.getBody();
+        if (body instanceof byte[]) {
+            return (byte[]) body;
+        }
+        return body == null ? null : body.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static CaptureFilter fromSystemProperty() {
+        String file = System.getProperty("capture");
+        if (file == null || file.isBlank()) {
+            return null;
+        }
+        try {
+            CaptureFilter filter = new CaptureFilter(Path.of(file));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    filter.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }, "capture-close"));
+            return filter;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
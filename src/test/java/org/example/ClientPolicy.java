@@ -0,0 +1,70 @@
+package org.example;
+
+import java.time.Duration;
+
+/**
+ * Timeouts and retries for the {@link ApiSpecs} specs.
+ *
+ * The defaults come from {@code -Dapi.connect.timeout.ms} (5000),
+ * {@code -Dapi.read.timeout.ms} (30000), {@code -Dapi.retries} (2) and
+ * {@code -Dapi.retry.backoff.ms} (50). Only idempotent requests are
+ * retried; see {@link RetryFilter}.
+ */
+public final class ClientPolicy {
+
+    private static final ClientPolicy DEFAULTS = new ClientPolicy(
+            Duration.ofMillis(Long.getLong("api.connect.timeout.ms", 5_000)),
+            Duration.ofMillis(Long.getLong("api.read.timeout.ms", 30_000)),
+            Integer.getInteger("api.retries", 2),
+            Duration.ofMillis(Long.getLong("api.retry.backoff.ms", 50)));
+
+    private final Duration connectTimeout;
+    private final Duration readTimeout;
+    private final int retries;
+    private final Duration backoff;
+
+    private ClientPolicy(Duration connectTimeout, Duration readTimeout, int retries, Duration backoff) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.retries = retries;
+        this.backoff = backoff;
+    }
+
+    public static ClientPolicy defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * @param read longest wait for the next response bytes, not for the whole response
+     */
+    public ClientPolicy withTimeouts(Duration connect, Duration read) {
+        return new ClientPolicy(connect, read, retries, backoff);
+    }
+
+    /**
+     * @param backoff delay before the first retry; each further retry waits
+     *                up to twice as long, with full jitter
+     */
+    public ClientPolicy withRetries(int retries, Duration backoff) {
+        if (retries < 0) {
+            throw new IllegalArgumentException("retries must not be negative");
+        }
+        return new ClientPolicy(connectTimeout, readTimeout, retries, backoff);
+    }
+
+    public Duration connectTimeout() {
+        return connectTimeout;
+    }
+
+    public Duration readTimeout() {
+        return readTimeout;
+    }
+
+    public int retries() {
+        return retries;
+    }
+
+    public Duration backoff() {
+        return backoff;
+    }
+}
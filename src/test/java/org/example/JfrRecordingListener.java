@@ -0,0 +1,103 @@
+package org.example;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestPlan;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+
+/**
+ * Records a test run with Flight Recorder when it is run with
+ * {@code -Djfr=target/books-api.jfr}: the recording starts with a JUnit
+ * Platform run or a TestNG suite and is written to the file when it
+ * finishes, for {@link JfrHotspots}. Registered like
+ * {@link MetricsExportListener}.
+ *
+ * The recording uses the JDK's {@code profile} settings, or those named by
+ * {@code -Djfr.settings}, plus the client's {@link ApiCallEvent}s and the
+ * server's phases, and keeps socket reads and thread parks from 1 ms so
+ * that the report can say what the calls waited on.
+ */
+public final class JfrRecordingListener implements TestExecutionListener, ISuiteListener {
+
+    private static final Duration WAIT_THRESHOLD = Duration.ofMillis(1);
+
+    private static Recording recording;
+
+    @Override
+    public void testPlanExecutionStarted(TestPlan testPlan) {
+        start();
+    }
+
+    @Override
+    public void testPlanExecutionFinished(TestPlan testPlan) {
+        stop();
+    }
+
+    @Override
+    public void onStart(ISuite suite) {
+        start();
+    }
+
+    @Override
+    public void onFinish(ISuite suite) {
+        stop();
+    }
+
+    /**
+     * A recording with the given JDK settings and this run's events, not
+     * yet started.
+     */
+    public static Recording newRecording(String settings) throws IOException, ParseException {
+        Recording configured = new Recording(Configuration.getConfiguration(settings));
+        configured.setName("books-api");
+        configured.enable(JfrHotspots.API_CALL).withThreshold(Duration.ZERO);
+        configured.enable(JfrHotspots.SERVER_PHASE).withThreshold(Duration.ZERO);
+        configured.enable("jdk.SocketRead").withThreshold(WAIT_THRESHOLD);
+        configured.enable("jdk.ThreadPark").withThreshold(WAIT_THRESHOLD);
+        return configured;
+    }
+
+    private static synchronized void start(Path file, String settings) throws IOException, ParseException {
+        if (recording != null) {
+            return;
+        }
+        Recording started = newRecording(settings);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        started.setDestination(file);
+        started.start();
+        recording = started;
+    }
+
+    private static synchronized void stop() {
+        if (recording != null) {
+            recording.stop();
+            recording.close();
+            recording = null;
+        }
+    }
+
+    private static void start() {
+        String file = System.getProperty("jfr");
+        if (file == null || file.isBlank()) {
+            return;
+        }
+        try {
+            start(Path.of(file), System.getProperty("jfr.settings", "profile"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Invalid Flight Recorder settings " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per-test latency baseline: median, p99 and median absolute deviation of
+ * the wall time of each test method, in milliseconds, as stored in
+ * perf/latency-baseline.json.
+ *
+ * A run regresses when its median exceeds the baseline median by more than
+ * the largest of the relative {@code tolerance}, {@code noise} times the
+ * baseline's standard deviation as estimated from its MAD, and
+ * {@code minDeltaMs}. The MAD term keeps tests with naturally jittery
+ * latency from failing on noise, the absolute term keeps sub-millisecond
+ * tests from failing on scheduler hiccups.
+ *
+ * p99 is only taken from runs of at least {@value #MIN_P99_SAMPLES}
+ * samples, the default, so that it rests on the slowest ten or more of
+ * them: out of 50 it would simply be the slowest run, and one GC pause or
+ * scheduler stall would fail the build. Smaller runs leave it out, as NaN
+ * in {@link Stats} and absent from the file, and are gated on the median
+ * alone.
+ */
+public final class LatencyBaseline {
+
+    static final int VERSION = 1;
+    static final int MIN_P99_SAMPLES = 1000;
+    private static final double MAD_TO_SIGMA = 1.4826;
+
+    private final Map<String, Stats> tests = new TreeMap<>();
+
+    public static LatencyBaseline load(Path file) throws IOException {
+        LatencyBaseline baseline = new LatencyBaseline();
+        if (!Files.exists(file)) {
+            return baseline;
+        }
+        Map<String, Object> json = Json.parseObject(Files.readString(file, StandardCharsets.UTF_8));
+        Object version = json.get("version");
+        if (!(version instanceof Number) || ((Number) version).intValue() != VERSION) {
+            throw new IOException(file + " has baseline version " + version + ", expected " + VERSION
+                    + "; re-record it with -Dperf.mode=record");
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Object> tests = (Map<String, Object>) json.get("tests");
+        for (Map.Entry<String, Object> test : tests.entrySet()) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> stats = (Map<String, Object>) test.getValue();
+            double p99 = stats.containsKey("p99Ms") ? number(stats, "p99Ms") : Double.NaN;
+            baseline.put(test.getKey(), new Stats(number(stats, "medianMs"), p99,
+                    number(stats, "madMs"), (int) number(stats, "samples")));
+        }
+        return baseline;
+    }
+
+    /**
+     * Writes one test per line, sorted by name, so re-recording shows up as a readable diff.
+     */
+    public void save(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        StringBuilder out = new StringBuilder("{\n  \"version\": ").append(VERSION).append(",\n  \"tests\": {");
+        String separator = "\n";
+        for (Map.Entry<String, Stats> test : tests.entrySet()) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("medianMs", round(test.getValue().medianMs));
+            if (!Double.isNaN(test.getValue().p99Ms)) {
+                stats.put("p99Ms", round(test.getValue().p99Ms));
+            }
+            stats.put("madMs", round(test.getValue().madMs));
+            stats.put("samples", test.getValue().samples);
+            out.append(separator).append("    ").append(Json.quote(test.getKey())).append(": ").append(Json.write(stats));
+            separator = ",\n";
+        }
+        out.append("\n  }\n}\n");
+        Files.writeString(file, out, StandardCharsets.UTF_8);
+    }
+
+    public Stats get(String test) {
+        return tests.get(test);
+    }
+
+    public void put(String test, Stats stats) {
+        tests.put(test, stats);
+    }
+
+    public Map<String, Stats> tests() {
+        return tests;
+    }
+
+    /**
+     * Median, p99 and MAD of one test's wall times; p99 is NaN below
+     * {@value LatencyBaseline#MIN_P99_SAMPLES} samples.
+     */
+    public static final class Stats {
+        public final double medianMs;
+        public final double p99Ms;
+        public final double madMs;
+        public final int samples;
+
+        public Stats(double medianMs, double p99Ms, double madMs, int samples) {
+            this.medianMs = medianMs;
+            this.p99Ms = p99Ms;
+            this.madMs = madMs;
+            this.samples = samples;
+        }
+
+        public static Stats of(long[] nanos) {
+            if (nanos.length == 0) {
+                throw new IllegalArgumentException("No samples");
+            }
+            double[] millis = new double[nanos.length];
+            for (int i = 0; i < nanos.length; i++) {
+                millis[i] = nanos[i] / 1e6;
+            }
+            Arrays.sort(millis);
+            double median = median(millis);
+            double[] deviations = new double[millis.length];
+            for (int i = 0; i < millis.length; i++) {
+                deviations[i] = Math.abs(millis[i] - median);
+            }
+            Arrays.sort(deviations);
+            double p99 = millis.length < MIN_P99_SAMPLES ? Double.NaN
+                    : millis[(int) Math.ceil(millis.length * 0.99) - 1];
+            return new Stats(median, p99, median(deviations), millis.length);
+        }
+
+        @Override
+        public String toString() {
+            String p99 = Double.isNaN(p99Ms) ? "" : String.format(Locale.ROOT, ", p99 %.3f ms", p99Ms);
+            return String.format(Locale.ROOT, "median %.3f ms%s, MAD %.3f ms (n=%d)", medianMs, p99, madMs, samples);
+        }
+
+        private static double median(double[] sorted) {
+            int middle = sorted.length / 2;
+            return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+        }
+    }
+
+    /**
+     * How far a run may drift from the baseline before it counts as a regression.
+     */
+    public static final class Tolerance {
+        final double tolerance;
+        final double noise;
+        final double p99Tolerance;
+        final double minDeltaMs;
+
+        /**
+         * @param tolerance    allowed relative increase of the median, 0.25 for 25%
+         * @param noise        allowed increase of the median in baseline standard deviations
+         * @param p99Tolerance allowed relative increase of p99, checked only
+         *                     with {@value LatencyBaseline#MIN_P99_SAMPLES} samples or more
+         * @param minDeltaMs   increase that never counts as a regression
+         */
+        public Tolerance(double tolerance, double noise, double p99Tolerance, double minDeltaMs) {
+            this.tolerance = tolerance;
+            this.noise = noise;
+            this.p99Tolerance = p99Tolerance;
+            this.minDeltaMs = minDeltaMs;
+        }
+
+        public static Tolerance fromSystemProperties() {
+            return new Tolerance(
+                    Double.parseDouble(System.getProperty("perf.tolerance", "0.5")),
+                    Double.parseDouble(System.getProperty("perf.noise", "3")),
+                    Double.parseDouble(System.getProperty("perf.p99.tolerance", "3.0")),
+                    Double.parseDouble(System.getProperty("perf.min.delta.ms", "2.0")));
+        }
+
+        /**
+         * Describes each way {@code current} regressed from {@code baseline}; empty when it did not.
+         */
+        public List<String> regressions(Stats baseline, Stats current) {
+            List<String> regressions = new ArrayList<>();
+            double medianLimit = baseline.medianMs + Math.max(minDeltaMs,
+                    Math.max(tolerance * baseline.medianMs, noise * MAD_TO_SIGMA * baseline.madMs));
+            if (current.medianMs > medianLimit) {
+                regressions.add(String.format(Locale.ROOT, "median %.3f ms exceeds baseline %.3f ms (limit %.3f ms)",
+                        current.medianMs, baseline.medianMs, medianLimit));
+            }
+            if (Math.min(baseline.samples, current.samples) < MIN_P99_SAMPLES
+                    || Double.isNaN(baseline.p99Ms) || Double.isNaN(current.p99Ms)) {
+                return regressions;
+            }
+            double p99Limit = baseline.p99Ms * (1 + p99Tolerance) + minDeltaMs;
+            if (current.p99Ms > p99Limit) {
+                regressions.add(String.format(Locale.ROOT, "p99 %.3f ms exceeds baseline %.3f ms (limit %.3f ms)",
+                        current.p99Ms, baseline.p99Ms, p99Limit));
+            }
+            return regressions;
+        }
+    }
+
+    private static double number(Map<String, Object> stats, String name) {
+        Object value = stats.get(name);
+        if (!(value instanceof Number)) {
+            throw new IllegalArgumentException("Baseline entry is missing " + name + ": " + stats);
+        }
+        return ((Number) value).doubleValue();
+    }
+
+    private static double round(double millis) {
+        return Math.round(millis * 1000) / 1000.0;
+    }
+}
@@ -0,0 +1,155 @@
+package org.example;
+
+import org.testng.IAnnotationTransformer;
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestResult;
+import org.testng.Reporter;
+import org.testng.annotations.ITestAnnotation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Turns a TestNG suite into a latency regression gate. Every test method is
+ * invoked {@code perf.warmup} (20) plus {@code perf.iterations} (1000, enough
+ * for a p99) times; the wall time of the measured invocations, less the
+ * time {@link StoreFork} spent making and dropping forks for them, is
+ * summarized as {@link LatencyBaseline.Stats}.
+ *
+ * With {@code -Dperf.mode=check}, the default, the last invocation of a
+ * test that regressed from {@code perf.file} is failed with the
+ * regressions as the message, so the build fails like on any assertion.
+ * Tests missing from the baseline are reported and pass. With
+ * {@code -Dperf.mode=record} the baseline is rewritten at the end of the
+ * suite, keeping entries for tests that did not run. Each test's numbers
+ * and its baseline go to the TestNG reporter output of its last
+ * invocation, not to stdout.
+ *
+ * Registered in perf.xml, which runs the contract classes one method at a
+ * time so tests do not skew each other's latency.
+ */
+public final class LatencyBaselineListener implements IAnnotationTransformer, IInvokedMethodListener, ISuiteListener {
+
+    private static final String STARTED = "perf.started";
+    private static final String FORK_NANOS = "perf.forkNanos";
+
+    private final boolean record = "record".equals(System.getProperty("perf.mode", "check"));
+    private final Path file = Path.of(System.getProperty("perf.file", "perf/latency-baseline.json"));
+    private final int warmup = Integer.getInteger("perf.warmup", 20);
+    private final int iterations = Integer.getInteger("perf.iterations", LatencyBaseline.MIN_P99_SAMPLES);
+    private final LatencyBaseline.Tolerance tolerance = LatencyBaseline.Tolerance.fromSystemProperties();
+    private final Map<String, Samples> samples = new ConcurrentHashMap<>();
+    private final LatencyBaseline measured = new LatencyBaseline();
+    private LatencyBaseline baseline;
+
+    @Override
+    @SuppressWarnings("rawtypes") // TestNG declares the raw types
+    public void transform(ITestAnnotation annotation, Class testClass, Constructor testConstructor, Method testMethod) {
+        if (testMethod != null) {
+            annotation.setInvocationCount(warmup + iterations);
+        }
+    }
+
+    @Override
+    public void onStart(ISuite suite) {
+        try {
+            baseline = LatencyBaseline.load(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void beforeInvocation(IInvokedMethod method, ITestResult result) {
+        if (method.isTestMethod()) {
+            result.setAttribute(FORK_NANOS, StoreFork.adminNanos());
+            result.setAttribute(STARTED, System.nanoTime());
+        }
+    }
+
+    @Override
+    public void afterInvocation(IInvokedMethod method, ITestResult result) {
+        Object started = result.getAttribute(STARTED);
+        if (!method.isTestMethod() || started == null || result.getStatus() != ITestResult.SUCCESS) {
+            return;
+        }
+        long elapsed = System.nanoTime() - (Long) started;
+        // the fork is the test's fixture, not part of the calls under test
+        elapsed -= StoreFork.adminNanos() - (Long) result.getAttribute(FORK_NANOS);
+        String test = name(result);
+        long[] complete = samples.computeIfAbsent(test, t -> new Samples(warmup, iterations)).add(elapsed);
+        if (complete == null) {
+            return;
+        }
+        LatencyBaseline.Stats stats = LatencyBaseline.Stats.of(complete);
+        synchronized (measured) {
+            measured.put(test, stats);
+        }
+        LatencyBaseline.Stats expected = baseline.get(test);
+        // logged with the test's last invocation, which TestNG's reports show it under
+        Reporter.log(test + ": " + stats + (record ? "  (recorded)"
+                : expected == null ? "  (no baseline)" : "  baseline " + expected));
+        if (record || expected == null) {
+            return;
+        }
+        List<String> regressions = tolerance.regressions(expected, stats);
+        if (!regressions.isEmpty()) {
+            result.setStatus(ITestResult.FAILURE);
+            result.setThrowable(new AssertionError(test + " regressed: " + String.join("; ", regressions)
+                    + " [" + stats + " vs baseline " + expected + "]"));
+        }
+    }
+
+    @Override
+    public void onFinish(ISuite suite) {
+        if (!record) {
+            return;
+        }
+        synchronized (measured) {
+            baseline.tests().putAll(measured.tests());
+        }
+        try {
+            baseline.save(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String name(ITestResult result) {
+        String name = result.getTestClass().getRealClass().getSimpleName() + "." + result.getMethod().getMethodName();
+        return result.getParameters().length == 0 ? name : name + Arrays.toString(result.getParameters());
+    }
+
+    /**
+     * Wall times of one test; returns all measured samples once the last one is added.
+     */
+    private static final class Samples {
+        private final int warmup;
+        private final long[] nanos;
+        private int seen;
+
+        Samples(int warmup, int iterations) {
+            this.warmup = warmup;
+            this.nanos = new long[iterations];
+        }
+
+        synchronized long[] add(long elapsed) {
+            int index = seen++ - warmup;
+            if (index < 0 || index >= nanos.length) {
+                return null;
+            }
+            nanos[index] = elapsed;
+            return index == nanos.length - 1 ? nanos.clone() : null;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.example;
+
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestPlan;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * Writes {@link ApiMetrics#global()} when a JUnit Platform run or a TestNG
+ * suite finishes. Registered for JUnit through
+ * META-INF/services/org.junit.platform.launcher.TestExecutionListener and
+ * for TestNG in testng.xml. The directory is {@code -Dapi.metrics.dir},
+ * by default target/api-metrics.
+ */
+public final class MetricsExportListener implements TestExecutionListener, ISuiteListener {
+
+    @Override
+    public void testPlanExecutionFinished(TestPlan testPlan) {
+        export();
+    }
+
+    @Override
+    public void onFinish(ISuite suite) {
+        export();
+    }
+
+    private static void export() {
+        Path directory = Path.of(System.getProperty("api.metrics.dir", "target/api-metrics"));
+        try {
+            ApiMetrics.global().export(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
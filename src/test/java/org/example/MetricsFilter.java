@@ -0,0 +1,77 @@
+package org.example;
+
+import io.restassured.filter.Filter;
+import io.restassured.filter.FilterContext;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Records every request into {@link ApiMetrics}. Install it for all of
+ * RestAssured with {@code RestAssured.filters(new MetricsFilter(metrics))}
+ * or per spec with {@code addFilter}; the {@link ApiSpecs} specs carry one
+ * for {@link ApiMetrics#global()}.
+ *
+ * Response bytes come from Content-Length so the body is never read here.
+ * A request that fails without a response is recorded with status 0.
+ * Each request is also an {@link ApiCallEvent} for Flight Recorder.
+ */
+public final class MetricsFilter implements Filter {
+
+    private final ApiMetrics metrics;
+
+    public MetricsFilter(ApiMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Response filter(FilterableRequestSpecification request, FilterableResponseSpecification response,
+                           FilterContext context) {
+        String path = request.getBasePath() + request.getUserDefinedPath();
+        ApiCallEvent event = ApiCallEvent.start();
+        long start = System.nanoTime();
+        Response result;
+        try {
+            result = context.next(request, response);
+        } catch (RuntimeException e) {
+            metrics.record(request.getMethod(), path, 0, System.nanoTime() - start, requestBytes(request), 0);
+            emit(event, request, path, 0, 0);
+            throw e;
+        }
+        long latency = System.nanoTime() - start;
+        String length = result.getHeader("Content-Length");
+        long responseBytes = length == null ? 0 : Long.parseLong(length);
+        metrics.record(request.getMethod(), path, result.getStatusCode(), latency, requestBytes(request),
+                responseBytes);
+        emit(event, request, path, result.getStatusCode(), responseBytes);
+        return result;
+    }
+
+    private static void emit(ApiCallEvent event, FilterableRequestSpecification request, String path, int status,
+                             long responseBytes) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.commit(request.getMethod(), path, ApiCallEvent.role(CaptureFilter.authorization(request)), status,
+                    requestBytes(request), responseBytes);
+        }
+    }
+
+    private static long requestBytes(FilterableRequestSpecification request) {
+        Object body = request.getBody();
+        if (body instanceof byte[]) {
+            return ((byte[]) body).length;
+        }
+        if (body instanceof String) {
+            String text = (String) body;
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) >= 0x80) {
+                    return text.getBytes(StandardCharsets.UTF_8).length;
+                }
+            }
+            return text.length();
+        }
+        return 0;
+    }
+}
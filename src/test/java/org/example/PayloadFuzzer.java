@@ -0,0 +1,652 @@
+package org.example;
+
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Property-based fuzzing of the POST and PUT contracts of /api/books.
+ *
+ * Case {@code i} of a run is generated from the seed and {@code i} alone,
+ * when it is sent, so any case can be regenerated from the two numbers and
+ * a run of millions holds no more than the in-flight cases in memory. A
+ * case starts as a valid create or update and gets up to three mutations:
+ * an omitted field, a value of the wrong type, unicode, escapes, blank or
+ * numeric text, a string of up to 300k characters, an id at or beyond a
+ * boundary, a body id that differs from the path, an unknown field, deep
+ * nesting, or a body that is not a JSON object at all.
+ *
+ * Every response must have the status {@link #expectedStatus} derives from
+ * the contract, which also means it is never a 5xx and always 400 for
+ * invalid input. A 200 or 201 must echo the book, and reading it back must
+ * return the same book. Failing cases are shrunk, by dropping fields and
+ * simplifying values while the case still fails, to a minimal reproducer.
+ */
+public final class PayloadFuzzer implements AutoCloseable {
+
+    private static final int MAX_FAILURES = 5;
+    private static final int MAX_SHRINK_RUNS = 500;
+    private static final int MAX_HUGE = 300_000;
+
+    private final AsyncBooksClient client;
+    private final LongSupplier existingBook;
+    private final LongSupplier unusedId;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+
+    /**
+     * @param existingBook creates a book and returns its id
+     * @param unusedId     returns an id no book has
+     */
+    public PayloadFuzzer(String baseUri, LongSupplier existingBook, LongSupplier unusedId, int maxInFlight) {
+        this.client = AsyncBooksClient.forBaseUri(baseUri, HttpClient.Version.HTTP_1_1);
+        this.existingBook = existingBook;
+        this.unusedId = unusedId;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.maxInFlight = maxInFlight;
+    }
+
+    public static PayloadFuzzer forServer(Main server, int maxInFlight) {
+        return new PayloadFuzzer(server.baseUri(),
+                () -> BookFixtures.existingBook(server), () -> BookFixtures.unusedId(server), maxInFlight);
+    }
+
+    /**
+     * Runs cases {@code 0..cases-1} of the seed concurrently, then shrinks
+     * the first few failures one request at a time.
+     */
+    public Result run(long seed, int cases) throws InterruptedException {
+        Result result = new Result(seed);
+        long start = System.nanoTime();
+        for (int index = 0; index < cases; index++) {
+            Case fuzzCase = generate(seed, index);
+            inFlight.acquire();
+            int caseIndex = index;
+            CompletableFuture<String> outcome;
+            try {
+                outcome = execute(fuzzCase, result.statuses);
+            } catch (RuntimeException e) {
+                outcome = CompletableFuture.failedFuture(e);
+            }
+            outcome.whenComplete((failure, error) -> {
+                if (error != null) {
+                    result.fail(caseIndex, fuzzCase, String.valueOf(error.getCause() != null ? error.getCause() : error));
+                } else if (failure != null) {
+                    result.fail(caseIndex, fuzzCase, failure);
+                }
+                inFlight.release();
+            });
+        }
+        inFlight.acquire(maxInFlight);
+        inFlight.release(maxInFlight);
+        result.cases = cases;
+        result.elapsedNanos = System.nanoTime() - start;
+        for (Failure failure : result.failures()) {
+            failure.shrunk = shrink(failure.original, this::fails);
+        }
+        return result;
+    }
+
+    /**
+     * Case {@code index} of the seed; the same pair always gives the same case.
+     */
+    public static Case generate(long seed, long index) {
+        SplittableRandom random = new SplittableRandom(PersistentBookMap.mix(seed ^ PersistentBookMap.mix(index)));
+        boolean post = random.nextBoolean();
+        Target target = post ? Target.COLLECTION : random.nextInt(100) < 85 ? Target.EXISTING : Target.UNUSED;
+        Map<String, Object> fields = new LinkedHashMap<>();
+        int id = random.nextInt(100);
+        if (post && id < 35) {
+            fields.put("id", Ref.UNUSED_ID);
+        } else if (post && id < 50) {
+            fields.put("id", Ref.EXISTING_ID);
+        } else if (!post && id < 60) {
+            fields.put("id", Ref.PATH_ID);
+        }
+        fields.put("title", words(random));
+        fields.put("author", words(random));
+        String raw = null;
+        int mutations = random.nextInt(4);
+        for (int i = 0; i < mutations && raw == null; i++) {
+            String field = pick(random, "id", "title", "author");
+            switch (random.nextInt(12)) {
+                case 0: fields.remove(field); break;
+                case 1: fields.put(field, otherType(random)); break;
+                case 2: fields.put(field, unicode(random, 1 + random.nextInt(40))); break;
+                case 3: fields.put(field, escapes(random)); break;
+                case 4: fields.put(field, pick(random, "", " ", "\t\n", " ", "123", "0", "007")); break;
+                case 5: fields.put(field, random.nextInt(10) == 0 ? huge(random) : words(random)); break;
+                case 6: fields.put("id", idBoundary(random)); break;
+                case 7: fields.put("id", post ? Ref.EXISTING_ID : Ref.UNUSED_ID); break;
+                case 8: fields.put(pick(random, "isbn", "ID", "title ", "é", ""), otherType(random)); break;
+                case 9: fields.put("extra", nested(random.nextInt(20) == 0 ? 20_000 : 1 + random.nextInt(2 * Json.MAX_DEPTH))); break;
+                case 10: fields.put(field, random.nextBoolean() ? Collections.emptyList() : List.of(words(random))); break;
+                default: raw = notAnObject(random, new Case(post ? "POST" : "PUT", target, fields, null));
+            }
+        }
+        return new Case(post ? "POST" : "PUT", target, fields, raw);
+    }
+
+    /**
+     * The status the contract requires for the case with its ids resolved:
+     * 404 for an update of an unknown book, whatever its body, then 400 for
+     * anything but an object with a valid id, a title and an author, then
+     * 201 or 208 for a create and 200 for an update. A create with a literal
+     * id may also get 208 where this says 201, as an earlier case can have
+     * taken the id.
+     */
+    public static int expectedStatus(Case fuzzCase, Map<Ref, Long> refs) {
+        if (fuzzCase.target == Target.UNUSED) {
+            return 404;
+        }
+        if (fuzzCase.raw != null || depth(fuzzCase.fields) > Json.MAX_DEPTH) {
+            return 400;
+        }
+        Object id = fuzzCase.fields.get("id");
+        Object value = id instanceof Ref ? refs.get(id) : id;
+        boolean validId = value == null || value instanceof Long && (Long) value > 0 && (Long) value <= Main.MAX_ID
+                && (fuzzCase.target == Target.COLLECTION || value.equals(refs.get(Ref.PATH_ID)));
+        if (!validId) {
+            return 400;
+        }
+        if (!validText(fuzzCase.fields.get("title")) || !validText(fuzzCase.fields.get("author"))) {
+            return 400;
+        }
+        if (fuzzCase.target == Target.EXISTING) {
+            return 200;
+        }
+        return id == Ref.EXISTING_ID ? 208 : 201;
+    }
+
+    /**
+     * Greedily applies the first simplification that still fails until none
+     * does, or the budget of test runs is spent.
+     */
+    public static Case shrink(Case fuzzCase, Predicate<Case> fails) {
+        Case smallest = fuzzCase;
+        int runs = 0;
+        boolean progress = true;
+        while (progress && runs < MAX_SHRINK_RUNS) {
+            progress = false;
+            for (Case candidate : simplifications(smallest)) {
+                if (++runs > MAX_SHRINK_RUNS) {
+                    break;
+                }
+                if (fails.test(candidate)) {
+                    smallest = candidate;
+                    progress = true;
+                    break;
+                }
+            }
+        }
+        return smallest;
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+
+    private boolean fails(Case fuzzCase) {
+        try {
+            return execute(fuzzCase, new AtomicLongArray(600)).join() != null;
+        } catch (RuntimeException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Sends the case and checks the response.
+     *
+     * @return a description of the violated property, or {@code null}
+     */
+    private CompletableFuture<String> execute(Case fuzzCase, AtomicLongArray statuses) {
+        long pathId = fuzzCase.target == Target.EXISTING ? existingBook.getAsLong()
+                : fuzzCase.target == Target.UNUSED ? unusedId.getAsLong() : 0;
+        Map<Ref, Long> refs = new EnumMap<>(Ref.class);
+        refs.put(Ref.PATH_ID, pathId);
+        refs.put(Ref.UNUSED_ID, fuzzCase.fields.containsValue(Ref.UNUSED_ID) ? unusedId.getAsLong() : 0);
+        refs.put(Ref.EXISTING_ID, fuzzCase.fields.containsValue(Ref.EXISTING_ID) ? existingBook.getAsLong() : 0);
+        String body = fuzzCase.raw != null ? fuzzCase.raw : render(fuzzCase.fields, refs);
+        String path = fuzzCase.target == Target.COLLECTION ? "" : "/" + pathId;
+        int expected = expectedStatus(fuzzCase, refs);
+        Object id = fuzzCase.fields.get("id");
+        AsyncBooksClient.Role admin = client.asAdmin();
+        return admin.send(fuzzCase.method, path, body).thenCompose(response -> {
+            int status = response.getStatusCode();
+            statuses.incrementAndGet(status > 0 && status < 600 ? status : 0);
+            if (status != expected && !(expected == 201 && status == 208 && id instanceof Long)) {
+                return CompletableFuture.completedFuture("expected status " + expected + " but got " + status
+                        + " " + abbreviate(response.asString(), 200));
+            }
+            if (status != 200 && status != 201) {
+                return CompletableFuture.completedFuture(null);
+            }
+            Book echoed;
+            try {
+                echoed = BookCodec.decode(response.asString().getBytes(StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                return CompletableFuture.completedFuture("response is not a book: " + e.getMessage());
+            }
+            long expectedId = status == 200 ? pathId : id instanceof Long ? (Long) id
+                    : id instanceof Ref ? refs.get(id) : echoed.getId();
+            Book sent = new Book(expectedId, (String) fuzzCase.fields.get("title"), (String) fuzzCase.fields.get("author"));
+            if (!sent.equals(echoed) || echoed.getId() <= 0) {
+                return CompletableFuture.completedFuture("echoed " + abbreviate(echoed.toJson(), 200));
+            }
+            return admin.get(echoed.getId()).thenApply(read -> read.getStatusCode() == 200
+                    && read.asString().equals(echoed.toJson()) ? null
+                    : "read back " + read.getStatusCode() + " " + abbreviate(read.asString(), 200));
+        });
+    }
+
+    private static List<Case> simplifications(Case fuzzCase) {
+        List<Case> candidates = new ArrayList<>();
+        if (fuzzCase.raw != null) {
+            String raw = fuzzCase.raw;
+            for (String shorter : new String[] {"", raw.substring(0, raw.length() / 2), raw.substring(raw.length() / 2),
+                    raw.substring(0, Math.max(0, raw.length() - 1))}) {
+                if (shorter.length() < raw.length()) {
+                    candidates.add(fuzzCase.withRaw(shorter));
+                }
+            }
+            candidates.add(fuzzCase.withRaw(null));
+        }
+        for (String name : fuzzCase.fields.keySet()) {
+            Map<String, Object> without = new LinkedHashMap<>(fuzzCase.fields);
+            without.remove(name);
+            candidates.add(fuzzCase.withFields(without));
+        }
+        for (Map.Entry<String, Object> field : fuzzCase.fields.entrySet()) {
+            for (Object simpler : simpler(field.getValue())) {
+                if (Objects.equals(simpler, field.getValue())) {
+                    continue;
+                }
+                Map<String, Object> replaced = new LinkedHashMap<>(fuzzCase.fields);
+                replaced.put(field.getKey(), simpler);
+                candidates.add(fuzzCase.withFields(replaced));
+            }
+        }
+        return candidates;
+    }
+
+    private static List<Object> simpler(Object value) {
+        List<Object> simpler = new ArrayList<>();
+        if (value instanceof String) {
+            String text = (String) value;
+            if (!text.isEmpty()) {
+                simpler.add(text.substring(0, text.length() / 2));
+                simpler.add(text.substring(text.length() / 2));
+                simpler.add(text.substring(1));
+            }
+            String ascii = text.codePoints().map(c -> c < 0x20 || c >= 0x7f ? 'a' : c)
+                    .collect(StringBuilder::new, StringBuilder::appendCodePoint, StringBuilder::append).toString();
+            if (!ascii.equals(text)) {
+                simpler.add(ascii);
+            }
+        } else if (value instanceof Long) {
+            long number = (Long) value;
+            if (number != 0) {
+                simpler.add(0L);
+                simpler.add(number / 2);
+            }
+            if (number != 1) {
+                simpler.add(1L);
+            }
+        } else if (value instanceof List && !((List<?>) value).isEmpty()) {
+            simpler.add(Collections.emptyList());
+            simpler.add(((List<?>) value).get(0));
+        } else if (value instanceof Map && !((Map<?, ?>) value).isEmpty()) {
+            simpler.add(Collections.emptyMap());
+        } else if (value instanceof Raw) {
+            int depth = ((Raw) value).depth;
+            if (depth > 0) {
+                simpler.add(nested(depth / 2));
+                simpler.add(nested(depth - 1));
+            }
+        } else if (value instanceof Ref || value instanceof Double || value instanceof Boolean) {
+            simpler.add(null);
+            simpler.add(1L);
+        }
+        if (value != null) {
+            simpler.add("a");
+        }
+        return simpler;
+    }
+
+    private static String render(Map<String, Object> fields, Map<Ref, Long> refs) {
+        StringBuilder json = new StringBuilder("{");
+        for (Map.Entry<String, Object> field : fields.entrySet()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            Json.quote(field.getKey(), json);
+            json.append(':');
+            Object value = field.getValue();
+            if (value instanceof Ref) {
+                json.append(refs.get(value));
+            } else if (value instanceof Raw) {
+                json.append(((Raw) value).text);
+            } else {
+                Json.write(value, json);
+            }
+        }
+        return json.append('}').toString();
+    }
+
+    private static int depth(Object value) {
+        if (value instanceof Raw) {
+            return ((Raw) value).depth;
+        }
+        int deepest = 0;
+        if (value instanceof Map) {
+            for (Object member : ((Map<?, ?>) value).values()) {
+                deepest = Math.max(deepest, depth(member));
+            }
+            return 1 + deepest;
+        }
+        if (value instanceof List) {
+            for (Object element : (List<?>) value) {
+                deepest = Math.max(deepest, depth(element));
+            }
+            return 1 + deepest;
+        }
+        return 0;
+    }
+
+    private static boolean validText(Object value) {
+        if (!(value instanceof String) || ((String) value).isBlank()) {
+            return false;
+        }
+        String text = (String) value;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) < '0' || text.charAt(i) > '9') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String words(SplittableRandom random) {
+        StringBuilder words = new StringBuilder(pick(random, "The", "A", "Jadunama", "Family", "History"));
+        for (int i = random.nextInt(4); i > 0; i--) {
+            words.append(' ').append(pick(random, "World", "of", "Books", "Author", "Simon", "Montefiore", "42"));
+        }
+        return words.toString();
+    }
+
+    private static String unicode(SplittableRandom random, int length) {
+        int[][] ranges = {{0xa0, 0x24f}, {0x391, 0x3c9}, {0x5d0, 0x5ea}, {0x300, 0x36f}, {0x4e00, 0x9fff},
+                {0x1f300, 0x1f64f}, {0x2000, 0x206f}, {0xfff0, 0xfffd}};
+        StringBuilder text = new StringBuilder(length * 2);
+        for (int i = 0; i < length; i++) {
+            int[] range = ranges[random.nextInt(ranges.length)];
+            text.appendCodePoint(range[0] + random.nextInt(range[1] - range[0] + 1));
+        }
+        return text.toString();
+    }
+
+    private static String escapes(SplittableRandom random) {
+        StringBuilder text = new StringBuilder("x");
+        for (int i = random.nextInt(1, 10); i > 0; i--) {
+            text.append(pick(random, "\"", "\\", "/", "\n", "\t", "\u0000", "\u001f", "\\u0041", "'", "</script>"));
+        }
+        return text.toString();
+    }
+
+    private static String huge(SplittableRandom random) {
+        int length = 10_000 + random.nextInt(MAX_HUGE - 10_000);
+        return random.nextBoolean() ? "x".repeat(length) : unicode(random, length / 2);
+    }
+
+    private static Object otherType(SplittableRandom random) {
+        switch (random.nextInt(8)) {
+            case 0: return random.nextLong(-1000, 1000);
+            case 1: return random.nextDouble() * 1000;
+            case 2: return random.nextBoolean();
+            case 3: return null;
+            case 4: return List.of(1L, "two");
+            case 5: return Map.of("title", "nested");
+            case 6: return String.valueOf(random.nextInt(1000));
+            default: return new Raw("1e3", 0);
+        }
+    }
+
+    private static Object idBoundary(SplittableRandom random) {
+        switch (random.nextInt(11)) {
+            case 0: return 0L;
+            case 1: return -1L;
+            case 2: return Long.MIN_VALUE;
+            case 3: return Long.MAX_VALUE;
+            case 4: return Main.MAX_ID;
+            case 5: return Main.MAX_ID + 1;
+            case 6: return new Raw("9223372036854775808", 0);
+            case 7: return new Raw("-0", 0);
+            case 8: return 1.0;
+            case 9: return "1";
+            default: return null;
+        }
+    }
+
+    private static String notAnObject(SplittableRandom random, Case valid) {
+        Map<Ref, Long> refs = new EnumMap<>(Ref.class);
+        for (Ref ref : Ref.values()) {
+            refs.put(ref, 1L);
+        }
+        String json = render(valid.fields, refs);
+        switch (random.nextInt(4)) {
+            case 0: return json.substring(0, random.nextInt(json.length()));
+            case 1: return pick(random, "", "[]", "null", "42", "\"book\"", "[" + json + "]");
+            case 2: return json + pick(random, "}", "{}", ",", " x");
+            default: return json.replace(':', '=');
+        }
+    }
+
+    private static Raw nested(int depth) {
+        return new Raw("[".repeat(depth) + "]".repeat(depth), depth);
+    }
+
+    @SafeVarargs
+    private static <T> T pick(SplittableRandom random, T... choices) {
+        return choices[random.nextInt(choices.length)];
+    }
+
+    private static String abbreviate(String text, int max) {
+        return text.length() <= max ? text : text.substring(0, max) + "... (" + text.length() + " chars)";
+    }
+
+    public enum Target {
+        /** POST /api/books */
+        COLLECTION,
+        /** PUT to a book that exists */
+        EXISTING,
+        /** PUT to an id no book has */
+        UNUSED
+    }
+
+    /** Ids resolved when the case is sent. */
+    public enum Ref {
+        PATH_ID, UNUSED_ID, EXISTING_ID
+    }
+
+    /** A value written verbatim: a number Java cannot hold, or {@code depth} levels of nested arrays. */
+    public static final class Raw {
+        final String text;
+        final int depth;
+
+        Raw(String text, int depth) {
+            this.text = text;
+            this.depth = depth;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Raw && ((Raw) o).text.equals(text);
+        }
+
+        @Override
+        public int hashCode() {
+            return text.hashCode();
+        }
+    }
+
+    /**
+     * One request: the method, which path it targets, and either body fields
+     * or a raw body that is not a JSON object.
+     */
+    public static final class Case {
+        public final String method;
+        public final Target target;
+        public final Map<String, Object> fields;
+        public final String raw;
+
+        public Case(String method, Target target, Map<String, Object> fields, String raw) {
+            this.method = method;
+            this.target = target;
+            this.fields = Collections.unmodifiableMap(new LinkedHashMap<>(fields));
+            this.raw = raw;
+        }
+
+        Case withFields(Map<String, Object> fields) {
+            return new Case(method, target, fields, raw);
+        }
+
+        Case withRaw(String raw) {
+            return new Case(method, target, fields, raw);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(method).append(' ').append(Main.BOOKS_PATH);
+            if (target != Target.COLLECTION) {
+                text.append(target == Target.EXISTING ? "/{existing}" : "/{unused}");
+            }
+            text.append(' ');
+            if (raw != null) {
+                return text.append(abbreviate(raw, 300)).toString();
+            }
+            return text.append(abbreviate(describe(), 300)).toString();
+        }
+
+        private String describe() {
+            StringBuilder json = new StringBuilder("{");
+            for (Map.Entry<String, Object> field : fields.entrySet()) {
+                if (json.length() > 1) {
+                    json.append(',');
+                }
+                Json.quote(field.getKey(), json);
+                json.append(':');
+                Object value = field.getValue();
+                if (value instanceof Ref) {
+                    json.append('{').append(value.toString().toLowerCase(Locale.ROOT)).append('}');
+                } else if (value instanceof Raw) {
+                    json.append(abbreviate(((Raw) value).text, 40));
+                } else if (value instanceof String && ((String) value).length() > 60) {
+                    json.append('"').append(abbreviate((String) value, 40)).append('"');
+                } else {
+                    Json.write(value, json);
+                }
+            }
+            return json.append('}').toString();
+        }
+    }
+
+    /** A failing case as generated and as shrunk. */
+    public static final class Failure {
+        public final long index;
+        public final Case original;
+        public final String message;
+        volatile Case shrunk;
+
+        Failure(long index, Case original, String message) {
+            this.index = index;
+            this.original = original;
+            this.message = message;
+        }
+
+        public Case shrunk() {
+            return shrunk;
+        }
+
+        @Override
+        public String toString() {
+            return "case " + index + ": " + message + "\n    generated: " + original + "\n    shrunk:    " + shrunk;
+        }
+    }
+
+    /** Outcome of a run: status counts and the first few failures. */
+    public static final class Result {
+        public final long seed;
+        final AtomicLongArray statuses = new AtomicLongArray(600);
+        private final List<Failure> failures = new ArrayList<>();
+        private long failed;
+        int cases;
+        long elapsedNanos;
+
+        Result(long seed) {
+            this.seed = seed;
+        }
+
+        public int cases() {
+            return cases;
+        }
+
+        public double casesPerSecond() {
+            return cases / (elapsedNanos / 1e9);
+        }
+
+        public long count(int status) {
+            return statuses.get(status);
+        }
+
+        public synchronized long failed() {
+            return failed;
+        }
+
+        public synchronized List<Failure> failures() {
+            return new ArrayList<>(failures);
+        }
+
+        /** Counts per status, e.g. {@code 201=410 400=1203}. */
+        public String statuses() {
+            StringBuilder text = new StringBuilder();
+            for (int status = 0; status < statuses.length(); status++) {
+                if (statuses.get(status) > 0) {
+                    text.append(text.length() == 0 ? "" : " ").append(status).append('=').append(statuses.get(status));
+                }
+            }
+            return text.toString();
+        }
+
+        @Override
+        public synchronized String toString() {
+            StringBuilder text = new StringBuilder(String.format(Locale.ROOT,
+                    "%d cases with seed %d in %.1f s (%.0f/s), %d failed; %s",
+                    cases, seed, elapsedNanos / 1e9, casesPerSecond(), failed, statuses()));
+            for (Failure failure : failures) {
+                text.append("\n  ").append(failure);
+            }
+            return text.toString();
+        }
+
+        private synchronized void fail(long index, Case fuzzCase, String message) {
+            failed++;
+            if (failures.size() < MAX_FAILURES) {
+                failures.add(new Failure(index, fuzzCase, message));
+            }
+        }
+    }
+}
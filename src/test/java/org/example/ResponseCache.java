@@ -0,0 +1,145 @@
+package org.example;
+
+import io.restassured.builder.ResponseBuilder;
+import io.restassured.filter.Filter;
+import io.restassured.filter.FilterContext;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client-side cache of GET responses that revalidates every read with the
+ * response's ETag.
+ *
+ * A GET whose URI, credentials and {@link StoreFork} match a cached 200 is
+ * sent with If-None-Match. On 304 the caller gets the cached body as a 200,
+ * without it crossing the wire again; any other answer replaces or drops
+ * the entry. Entries are evicted least recently used first once there are
+ * more than {@code maxEntries} or their bodies add up to more than
+ * {@code maxBytes}. Bodies over {@link ApiSpecs#EAGER_BODY_LIMIT}, which
+ * are read as a stream, are not cached.
+ *
+ * <pre>
+ * ResponseCache cache = new ResponseCache(1_000, 16 << 20);
+ * ApiSpecs api = ApiSpecs.forServer(server).withCache(cache);
+ * </pre>
+ */
+public final class ResponseCache implements Filter {
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    public ResponseCache(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /** GETs the cache could have answered, whether or not it held an entry for them. */
+    public long lookups() {
+        return lookups.sum();
+    }
+
+    /** Revalidations answered 304, served from the cache. */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /** Hits over all lookups, misses included, or 0 before the first. */
+    public double hitRatio() {
+        long lookups = lookups();
+        return lookups == 0 ? 0 : (double) hits() / lookups;
+    }
+
+    /** Body bytes served from the cache instead of downloaded. */
+    public long bytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** Bytes of all cached bodies. */
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    @Override
+    public Response filter(FilterableRequestSpecification request, FilterableResponseSpecification response,
+                           FilterContext context) {
+        if (!request.getMethod().equals("GET") || request.getHeaders().hasHeaderWithName("If-None-Match")) {
+            return context.next(request, response);
+        }
+        String key = CaptureFilter.authorization(request) + " " + request.getHeaders().getValue(Main.FORK_HEADER)
+                + " " + request.getURI();
+        lookups.increment();
+        Entry cached = get(key);
+        if (cached != null) {
+            request.header("If-None-Match", cached.etag);
+        }
+        Response result = context.next(request, response);
+        if (cached != null && result.getStatusCode() == 304) {
+            hits.increment();
+            bytesSaved.add(cached.body.length);
+            return new ResponseBuilder().clone(result)
+                    .setStatusCode(200)
+                    .setStatusLine("HTTP/1.1 200 OK")
+                    .setContentType(cached.contentType)
+                    .setBody(cached.body)
+                    .build();
+        }
+        String etag = result.getHeader("ETag");
+        String length = result.getHeader("Content-Length");
+        if (result.getStatusCode() == 200 && etag != null && length != null
+                && Long.parseLong(length) <= Math.min(maxBytes, ApiSpecs.EAGER_BODY_LIMIT)) {
+            put(key, new Entry(etag, result.getContentType(), result.asByteArray()));
+        } else if (cached != null) {
+            remove(key);
+        }
+        return result;
+    }
+
+    private synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        bytes += entry.body.length - (previous == null ? 0 : previous.body.length);
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries || bytes > maxBytes) {
+            bytes -= eldest.next().body.length;
+            eldest.remove();
+        }
+    }
+
+    private synchronized void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            bytes -= removed.body.length;
+        }
+    }
+
+    private static final class Entry {
+        final String etag;
+        final String contentType;
+        final byte[] body;
+
+        Entry(String etag, String contentType, byte[] body) {
+            this.etag = etag;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+}
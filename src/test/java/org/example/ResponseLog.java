@@ -0,0 +1,438 @@
+package org.example;
+
+import io.restassured.filter.Filter;
+import io.restassured.filter.FilterContext;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Logs responses to a file from a background thread, in place of printing
+ * them from the tests.
+ *
+ * As a filter it records each exchange's test, method, URI, status,
+ * latency and the first bytes of the body, and hands the record to a
+ * writer thread through a lock-free ring. The request path never waits
+ * for a lock or for I/O; when the ring is full the record is dropped and
+ * counted instead. Bodies are only taken if {@link ApiSpecs} already read
+ * them, so a streamed listing is logged by its headers alone.
+ *
+ * {@link Options} sets the fraction of exchanges sampled, how much of a
+ * body is kept, whether only the exchanges of failed tests are logged,
+ * and when the file rotates. Records name the test that made them when
+ * a {@link ResponseLogListener} runs the tests.
+ *
+ * Running the suite with {@code -Dresponse.log=target/responses.log}
+ * installs one on every {@link ApiSpecs} spec; it is closed when the JVM
+ * exits.
+ */
+public final class ResponseLog implements Filter, Closeable {
+
+    private static final ResponseLog GLOBAL = fromSystemProperty();
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+
+    private final Path file;
+    private final Options options;
+    private final Ring ring;
+    private final ThreadLocal<Test> tests = new ThreadLocal<>();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong written = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean closed;
+
+    private OutputStream out;
+    private long fileBytes;
+
+    public ResponseLog(Path file, Options options) throws IOException {
+        this.file = file;
+        this.options = options;
+        this.ring = new Ring(options.capacity);
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        open();
+        this.writer = new Thread(this::drain, "response-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * The log for {@code -Dresponse.log}, or {@code null} when logging is off.
+     */
+    public static ResponseLog global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Attributes the exchanges this thread makes from now on to a test.
+     */
+    public void startTest(String name) {
+        tests.set(new Test(name));
+    }
+
+    /**
+     * Ends the thread's test. Unless only failures are logged its records
+     * are already on their way; otherwise they are logged now if it failed,
+     * and forgotten if it passed.
+     */
+    public void finishTest(boolean failed) {
+        Test test = tests.get();
+        tests.remove();
+        if (test != null && failed) {
+            for (Entry entry : test.held) {
+                publish(entry);
+            }
+        }
+    }
+
+    /** Records written to the file so far. */
+    public long written() {
+        return written.get();
+    }
+
+    /** Records lost because the writer fell behind by more than the ring holds. */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    @Override
+    public Response filter(FilterableRequestSpecification request, FilterableResponseSpecification response,
+                           FilterContext context) {
+        long sent = System.nanoTime();
+        Response result = context.next(request, response);
+        long latency = System.nanoTime() - sent;
+        Test test = tests.get();
+        if (options.onlyFailures ? test == null : !sampled()) {
+            return result;
+        }
+        Entry entry = new Entry(System.currentTimeMillis(), test == null ? "-" : test.name, request.getMethod(),
+                request.getURI(), result.getStatusCode(), latency);
+        String length = result.getHeader("Content-Length");
+        if (length != null && Long.parseLong(length) <= ApiSpecs.EAGER_BODY_LIMIT) {
+            // a body this size was already read by ApiSpecs, so this does not wait for the network
+            byte[] body = result.asByteArray();
+            entry.bodyLength = body.length;
+            entry.body = Arrays.copyOf(body, Math.min(body.length, options.maxBodyBytes));
+        }
+        if (options.onlyFailures) {
+            test.held.add(entry);
+        } else {
+            publish(entry);
+        }
+        return result;
+    }
+
+    private boolean sampled() {
+        return options.sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < options.sampleRate;
+    }
+
+    private void publish(Entry entry) {
+        if (closed || !ring.offer(entry)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Stops taking records, writes out the ones in the ring and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        try {
+            StringBuilder line = new StringBuilder(256);
+            while (true) {
+                Entry entry = ring.poll();
+                if (entry == null) {
+                    out.flush();
+                    if (closed && ring.isEmpty()) {
+                        break;
+                    }
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+                line.setLength(0);
+                byte[] bytes = format(entry, line).toString().getBytes(StandardCharsets.UTF_8);
+                out.write(bytes);
+                fileBytes += bytes.length;
+                written.incrementAndGet();
+                if (fileBytes >= options.maxFileBytes) {
+                    rotate();
+                }
+            }
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write " + file, e);
+        }
+    }
+
+    private static StringBuilder format(Entry entry, StringBuilder line) {
+        line.append(Instant.ofEpochMilli(entry.epochMillis)).append(' ')
+                .append(entry.test).append(' ')
+                .append(entry.method).append(' ')
+                .append(entry.uri).append(' ')
+                .append(entry.status).append(' ')
+                .append(entry.latencyNanos / 1_000).append("us");
+        if (entry.body == null) {
+            line.append(" (body streamed, not logged)");
+        } else {
+            line.append(' ').append(entry.bodyLength).append("B ");
+            String body = new String(entry.body, StandardCharsets.UTF_8);
+            for (int i = 0; i < body.length(); i++) {
+                char c = body.charAt(i);
+                if (c == '\n') {
+                    line.append("\\n");
+                } else if (c != '\r') {
+                    line.append(c);
+                }
+            }
+            if (entry.body.length < entry.bodyLength) {
+                line.append("...");
+            }
+        }
+        return line.append('\n');
+    }
+
+    /** Moves the file to name.1, name.1 to name.2 and so on, dropping the oldest. */
+    private void rotate() throws IOException {
+        out.close();
+        for (int i = options.files - 1; i >= 1; i--) {
+            Path older = rotated(i);
+            if (Files.exists(older)) {
+                Files.move(older, rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (options.files > 0) {
+            Files.move(file, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        open();
+    }
+
+    private Path rotated(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    private void open() throws IOException {
+        out = new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE), 64 * 1024);
+        fileBytes = 0;
+    }
+
+    private static ResponseLog fromSystemProperty() {
+        String file = System.getProperty("response.log");
+        if (file == null || file.isBlank()) {
+            return null;
+        }
+        try {
+            ResponseLog log = new ResponseLog(Path.of(file), Options.defaults());
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    log.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }, "response-log-close"));
+            return log;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * What a {@link ResponseLog} keeps. The defaults come from
+     * {@code -Dresponse.log.sample} (1.0, every exchange),
+     * {@code -Dresponse.log.body} (512 bytes of each body),
+     * {@code -Dresponse.log.failuresOnly} (false),
+     * {@code -Dresponse.log.maxBytes} (16 MB per file) and
+     * {@code -Dresponse.log.files} (4 rotated files kept).
+     */
+    public static final class Options {
+
+        private static final Options DEFAULTS = new Options(
+                Double.parseDouble(System.getProperty("response.log.sample", "1")),
+                Integer.getInteger("response.log.body", 512),
+                Boolean.getBoolean("response.log.failuresOnly"),
+                Long.getLong("response.log.maxBytes", 16 << 20),
+                Integer.getInteger("response.log.files", 4),
+                8192);
+
+        private final double sampleRate;
+        private final int maxBodyBytes;
+        private final boolean onlyFailures;
+        private final long maxFileBytes;
+        private final int files;
+        private final int capacity;
+
+        private Options(double sampleRate, int maxBodyBytes, boolean onlyFailures, long maxFileBytes, int files,
+                        int capacity) {
+            this.sampleRate = sampleRate;
+            this.maxBodyBytes = maxBodyBytes;
+            this.onlyFailures = onlyFailures;
+            this.maxFileBytes = maxFileBytes;
+            this.files = files;
+            this.capacity = capacity;
+        }
+
+        public static Options defaults() {
+            return DEFAULTS;
+        }
+
+        /**
+         * @param rate the fraction of exchanges logged, from 0 to 1
+         */
+        public Options withSampleRate(double rate) {
+            if (rate < 0 || rate > 1) {
+                throw new IllegalArgumentException("sample rate must be between 0 and 1");
+            }
+            return new Options(rate, maxBodyBytes, onlyFailures, maxFileBytes, files, capacity);
+        }
+
+        /**
+         * @param bytes how much of each body to keep; longer ones end in "..."
+         */
+        public Options withMaxBodyBytes(int bytes) {
+            return new Options(sampleRate, bytes, onlyFailures, maxFileBytes, files, capacity);
+        }
+
+        /**
+         * Holds each test's records until it ends and logs them only if it
+         * failed. Exchanges outside a test are not logged.
+         */
+        public Options onlyFailures(boolean onlyFailures) {
+            return new Options(sampleRate, maxBodyBytes, onlyFailures, maxFileBytes, files, capacity);
+        }
+
+        /**
+         * @param maxFileBytes size at which the file is rotated
+         * @param files        rotated files kept next to it, name.1 being the newest
+         */
+        public Options withRotation(long maxFileBytes, int files) {
+            return new Options(sampleRate, maxBodyBytes, onlyFailures, maxFileBytes, files, capacity);
+        }
+
+        /**
+         * @param records how many records may wait for the writer; rounded up to a power of two
+         */
+        public Options withCapacity(int records) {
+            return new Options(sampleRate, maxBodyBytes, onlyFailures, maxFileBytes, files, records);
+        }
+    }
+
+    private static final class Test {
+        final String name;
+        final List<Entry> held = new ArrayList<>();
+
+        Test(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final class Entry {
+        final long epochMillis;
+        final String test;
+        final String method;
+        final String uri;
+        final int status;
+        final long latencyNanos;
+        long bodyLength;
+        byte[] body;
+
+        Entry(long epochMillis, String test, String method, String uri, int status, long latencyNanos) {
+            this.epochMillis = epochMillis;
+            this.test = test;
+            this.method = method;
+            this.uri = uri;
+            this.status = status;
+            this.latencyNanos = latencyNanos;
+        }
+    }
+
+    /**
+     * Bounded multi-producer, single-consumer queue. Each slot carries a
+     * sequence number: a producer claims a position with one CAS and
+     * publishes the slot by advancing its sequence, which is what the
+     * consumer waits for.
+     */
+    private static final class Ring {
+        private final Entry[] slots;
+        private final AtomicLongArray sequences;
+        private final AtomicLong tail = new AtomicLong();
+        private final int mask;
+        private long head;
+
+        Ring(int capacity) {
+            int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+            slots = new Entry[size];
+            sequences = new AtomicLongArray(size);
+            mask = size - 1;
+            for (int i = 0; i < size; i++) {
+                sequences.set(i, i);
+            }
+        }
+
+        boolean offer(Entry entry) {
+            long position = tail.get();
+            while (true) {
+                int index = (int) (position & mask);
+                long difference = sequences.get(index) - position;
+                if (difference == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        slots[index] = entry;
+                        sequences.set(index, position + 1);
+                        return true;
+                    }
+                    position = tail.get();
+                } else if (difference < 0) {
+                    return false;
+                } else {
+                    position = tail.get();
+                }
+            }
+        }
+
+        Entry poll() {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) {
+                return null;
+            }
+            Entry entry = slots[index];
+            slots[index] = null;
+            sequences.set(index, head + slots.length);
+            head++;
+            return entry;
+        }
+
+        boolean isEmpty() {
+            return sequences.get((int) (head & mask)) != head + 1;
+        }
+    }
+}
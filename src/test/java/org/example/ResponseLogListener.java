@@ -0,0 +1,51 @@
+package org.example;
+
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.ITestResult;
+
+/**
+ * Tells {@link ResponseLog#global()} which test is running, so its records
+ * name the test and, with {@code -Dresponse.log.failuresOnly}, are logged
+ * only when the test fails. Does nothing without {@code -Dresponse.log}.
+ *
+ * Register it in testng.xml for TestNG suites, or with
+ * {@code @ExtendWith(ResponseLogListener.class)} on a JUnit class.
+ */
+public final class ResponseLogListener implements IInvokedMethodListener, BeforeEachCallback, AfterEachCallback {
+
+    @Override
+    public void beforeInvocation(IInvokedMethod method, ITestResult result) {
+        ResponseLog log = ResponseLog.global();
+        if (log != null && method.isTestMethod()) {
+            log.startTest(result.getTestClass().getRealClass().getSimpleName() + "." + result.getMethod().getMethodName());
+        }
+    }
+
+    @Override
+    public void afterInvocation(IInvokedMethod method, ITestResult result) {
+        ResponseLog log = ResponseLog.global();
+        if (log != null && method.isTestMethod()) {
+            log.finishTest(!result.isSuccess());
+        }
+    }
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        ResponseLog log = ResponseLog.global();
+        if (log != null) {
+            log.startTest(context.getRequiredTestClass().getSimpleName() + "." + context.getRequiredTestMethod().getName());
+        }
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        ResponseLog log = ResponseLog.global();
+        if (log != null) {
+            log.finishTest(context.getExecutionException().isPresent());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.example;
+
+import io.restassured.filter.Filter;
+import io.restassured.filter.FilterContext;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.restassured.RestAssured.given;
+
+/**
+ * Retries idempotent requests (GET, HEAD, PUT, DELETE, OPTIONS) that fail
+ * with an I/O error, such as a reset, a timeout or a truncated body,
+ * or that are answered with 502, 503 or 504. POST is never retried, since
+ * the service may already have created the book.
+ *
+ * Waits between attempts grow exponentially from the policy's backoff with
+ * full jitter, so clients that failed together do not retry together.
+ * {@link ApiSpecs} adds it last, so the other filters see one request with
+ * the latency of all its attempts.
+ */
+public final class RetryFilter implements Filter {
+
+    private static final Set<String> IDEMPOTENT = Set.of("GET", "HEAD", "PUT", "DELETE", "OPTIONS");
+    private static final Set<Integer> RETRIED_STATUSES = Set.of(502, 503, 504);
+
+    private final int retries;
+    private final long backoffNanos;
+    private final LongAdder retried = new LongAdder();
+
+    public RetryFilter(ClientPolicy policy) {
+        this.retries = policy.retries();
+        this.backoffNanos = policy.backoff().toNanos();
+    }
+
+    /** Attempts made beyond the first, over all requests. */
+    public long retried() {
+        return retried.sum();
+    }
+
+    @Override
+    public Response filter(FilterableRequestSpecification request, FilterableResponseSpecification response,
+                           FilterContext context) {
+        if (retries == 0 || !IDEMPOTENT.contains(request.getMethod())) {
+            return context.next(request, response);
+        }
+        for (int attempt = 0; ; attempt++) {
+            Response result;
+            try {
+                // the filter chain can only be walked once; later attempts send a copy
+                // of the request past the remaining filters
+                result = attempt == 0 ? context.next(request, response) : context.send(given().spec(request).noFilters());
+                readBody(result);
+            } catch (Exception e) {
+                if (attempt == retries || !isIoFailure(e)) {
+                    throw e;
+                }
+                pause(attempt);
+                continue;
+            }
+            if (attempt == retries || !RETRIED_STATUSES.contains(result.getStatusCode())) {
+                return result;
+            }
+            pause(attempt);
+        }
+    }
+
+    /**
+     * Reads bodies up to {@link ApiSpecs#EAGER_BODY_LIMIT} within the attempt,
+     * so a response cut off mid-body is retried like a reset, and a discarded
+     * response returns its connection to the pool.
+     */
+    private static void readBody(Response result) {
+        String length = result.getHeader("Content-Length");
+        if (length != null && Long.parseLong(length) <= ApiSpecs.EAGER_BODY_LIMIT) {
+            result.asByteArray();
+        }
+    }
+
+    private void pause(int attempt) {
+        retried.increment();
+        long ceiling = backoffNanos << Math.min(attempt, 20);
+        long nanos = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        try {
+            Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted between retries", e);
+        }
+    }
+
+    private static boolean isIoFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,104 @@
+package org.example;
+
+import java.util.Map;
+
+/**
+ * One contract case from a JSONL scenario file, for example
+ *
+ * <pre>
+ * {"name": "user cannot update", "method": "PUT", "path": "/{id}", "role": "user",
+ *  "body": {"id": "{id}", "title": "T", "author": "A"}, "expectStatus": 403}
+ * </pre>
+ *
+ * {@code path} is relative to /api/books. {@code role} is one of admin, user,
+ * anonymous or wrongPassword. {@code body} is either a JSON value, sent as
+ * is, or a string sent verbatim so malformed payloads can be expressed.
+ * {@code expectFields} lists top-level response fields and their expected
+ * values. The placeholders {@code {id}} (a freshly created book) and
+ * {@code {unusedId}} (an id no book has) may appear in the path, body and
+ * expected values; a quoted placeholder in a JSON body becomes a number.
+ */
+public final class Scenario {
+
+    private final int line;
+    private final String name;
+    private final String method;
+    private final String path;
+    private final String role;
+    private final String body;
+    private final int expectedStatus;
+    private final Map<String, Object> expectedFields;
+
+    private Scenario(int line, String name, String method, String path, String role, String body,
+                     int expectedStatus, Map<String, Object> expectedFields) {
+        this.line = line;
+        this.name = name;
+        this.method = method;
+        this.path = path;
+        this.role = role;
+        this.body = body;
+        this.expectedStatus = expectedStatus;
+        this.expectedFields = expectedFields;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Scenario parse(int line, String json) {
+        Map<String, Object> fields;
+        try {
+            fields = Json.parseObject(json);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Line " + line + ": " + e.getMessage(), e);
+        }
+        Object body = fields.get("body");
+        Object status = fields.get("expectStatus");
+        if (!(status instanceof Long)) {
+            throw new IllegalArgumentException("Line " + line + ": expectStatus is required");
+        }
+        Object expected = fields.getOrDefault("expectFields", Map.of());
+        return new Scenario(line,
+                String.valueOf(fields.getOrDefault("name", "line " + line)),
+                String.valueOf(fields.getOrDefault("method", "GET")),
+                String.valueOf(fields.getOrDefault("path", "")),
+                String.valueOf(fields.getOrDefault("role", "admin")),
+                body == null ? null : body instanceof String ? (String) body : Json.write(body),
+                ((Long) status).intValue(),
+                (Map<String, Object>) expected);
+    }
+
+    public int line() {
+        return line;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public String method() {
+        return method;
+    }
+
+    public String path() {
+        return path;
+    }
+
+    public String role() {
+        return role;
+    }
+
+    public String body() {
+        return body;
+    }
+
+    public int expectedStatus() {
+        return expectedStatus;
+    }
+
+    public Map<String, Object> expectedFields() {
+        return expectedFields;
+    }
+
+    @Override
+    public String toString() {
+        return "line " + line + " (" + name + "): " + method + " " + path;
+    }
+}
@@ -0,0 +1,149 @@
+package org.example;
+
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.function.LongSupplier;
+
+/**
+ * Sends scenarios to the books service through {@link AsyncBooksClient}.
+ *
+ * A semaphore caps the number of requests in flight across every caller
+ * of the runner, so concurrent batches share one bound and a slow server
+ * applies back-pressure to the reader instead of growing a queue.
+ */
+public final class ScenarioRunner implements AutoCloseable {
+
+    private final AsyncBooksClient client;
+    private final LongSupplier existingBook;
+    private final LongSupplier unusedId;
+    private final Semaphore inFlight;
+
+    /**
+     * @param baseUri      scheme, host and port of the books service
+     * @param existingBook creates a book and returns its id, for {@code {id}}
+     * @param unusedId     returns an id no book has, for {@code {unusedId}}
+     * @param maxInFlight  upper bound on concurrent requests
+     */
+    public ScenarioRunner(String baseUri, LongSupplier existingBook, LongSupplier unusedId, int maxInFlight) {
+        this.client = AsyncBooksClient.forBaseUri(baseUri, HttpClient.Version.HTTP_1_1);
+        this.existingBook = existingBook;
+        this.unusedId = unusedId;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    public static ScenarioRunner forServer(Main server, int maxInFlight) {
+        return new ScenarioRunner(server.baseUri(),
+                () -> BookFixtures.existingBook(server), () -> BookFixtures.unusedId(server), maxInFlight);
+    }
+
+    /**
+     * Runs the scenarios concurrently and waits for all of them.
+     *
+     * @return one message per scenario that did not behave as expected
+     */
+    public List<String> run(List<Scenario> scenarios) throws InterruptedException {
+        List<CompletableFuture<String>> results = new ArrayList<>(scenarios.size());
+        for (Scenario scenario : scenarios) {
+            inFlight.acquire();
+            CompletableFuture<String> result;
+            try {
+                result = send(scenario);
+            } catch (RuntimeException e) {
+                result = CompletableFuture.failedFuture(e);
+            }
+            results.add(result.whenComplete((message, failure) -> inFlight.release()));
+        }
+        List<String> failures = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            String failure;
+            try {
+                failure = results.get(i).join();
+            } catch (RuntimeException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                failure = scenarios.get(i) + ": " + cause;
+            }
+            if (failure != null) {
+                failures.add(failure);
+            }
+        }
+        return failures;
+    }
+
+    private CompletableFuture<String> send(Scenario scenario) {
+        Placeholders placeholders = new Placeholders();
+        String path = placeholders.resolve(scenario.path(), false);
+        String body = scenario.body() == null ? null : placeholders.resolve(scenario.body(), true);
+        return client.role(scenario.role())
+                .send(scenario.method(), path, body)
+                .thenApply(response -> check(scenario, placeholders, response));
+    }
+
+    private static String check(Scenario scenario, Placeholders placeholders, BookResponse response) {
+        if (response.getStatusCode() != scenario.expectedStatus()) {
+            return scenario + ": expected status " + scenario.expectedStatus()
+                    + " but got " + response.getStatusCode() + " " + response.asString();
+        }
+        if (scenario.expectedFields().isEmpty()) {
+            return null;
+        }
+        Object parsed;
+        try {
+            parsed = Json.parse(response.asString());
+        } catch (IllegalArgumentException e) {
+            return scenario + ": response is not JSON: " + response.asString();
+        }
+        if (!(parsed instanceof Map)) {
+            return scenario + ": expected a JSON object but got " + response.asString();
+        }
+        Map<?, ?> fields = (Map<?, ?>) parsed;
+        for (Map.Entry<String, Object> expected : scenario.expectedFields().entrySet()) {
+            String want = placeholders.resolve(String.valueOf(expected.getValue()), false);
+            Object actual = fields.get(expected.getKey());
+            if (!Objects.equals(want, String.valueOf(actual))) {
+                return scenario + ": expected " + expected.getKey() + "=" + want + " but got " + actual;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+
+    /** Fixture ids for one scenario, created on first use and reused for every occurrence. */
+    private final class Placeholders {
+        private long id;
+        private long unused;
+
+        String resolve(String text, boolean json) {
+            String result = text;
+            if (result.contains("{id}")) {
+                if (id == 0) {
+                    id = existingBook.getAsLong();
+                }
+                result = replace(result, "{id}", id, json);
+            }
+            if (result.contains("{unusedId}")) {
+                if (unused == 0) {
+                    unused = unusedId.getAsLong();
+                }
+                result = replace(result, "{unusedId}", unused, json);
+            }
+            return result;
+        }
+
+        private String replace(String text, String placeholder, long value, boolean json) {
+            String result = text;
+            if (json) {
+                result = result.replace('"' + placeholder + '"', Long.toString(value));
+            }
+            return result.replace(placeholder, Long.toString(value));
+        }
+    }
+}
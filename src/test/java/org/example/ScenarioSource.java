@@ -0,0 +1,191 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads scenarios from a JSONL file one line at a time. Only the lines of
+ * the batch being handed out are held in memory, so files of any size run
+ * in constant space.
+ */
+public final class ScenarioSource implements Closeable {
+
+    private static final String CLASSPATH = "classpath:";
+
+    private final BufferedReader reader;
+    private int lineNumber;
+
+    private ScenarioSource(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * @param location a file path, or {@code classpath:name} for a test resource
+     */
+    public static ScenarioSource open(String location) throws IOException {
+        return open(location, new Batch(0, 1, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Opens the file at a batch found by {@link #split}; its lines are
+     * numbered as in the whole file.
+     */
+    public static ScenarioSource open(String location, Batch batch) throws IOException {
+        InputStream in = openStream(location);
+        try {
+            in.skipNBytes(batch.offset);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        ScenarioSource source = new ScenarioSource(
+                new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+        source.lineNumber = batch.firstLine - 1;
+        return source;
+    }
+
+    /**
+     * Scans the file's bytes once for where each batch of {@code size}
+     * scenarios starts, without parsing them, so that batches can be read
+     * independently, for example by the workers of a {@link ShardedRunner}.
+     */
+    public static List<Batch> split(String location, int size) throws IOException {
+        List<Batch> batches = new ArrayList<>();
+        try (InputStream in = new BufferedInputStream(openStream(location), 64 * 1024)) {
+            long offset = 0;
+            long lineStart = 0;
+            int line = 1;
+            boolean blank = true;
+            Batch batch = null;
+            for (int b; ; offset++) {
+                b = in.read();
+                if (b == '\n' || b < 0) {
+                    if (!blank) {
+                        if (batch == null || batch.count == size) {
+                            batch = new Batch(lineStart, line, 0);
+                            batches.add(batch);
+                        }
+                        batch.count++;
+                    }
+                    if (b < 0) {
+                        return batches;
+                    }
+                    line++;
+                    lineStart = offset + 1;
+                    blank = true;
+                } else if (b != ' ' && b != '\t' && b != '\r') {
+                    blank = false;
+                }
+            }
+        }
+    }
+
+    private static InputStream openStream(String location) throws IOException {
+        if (location.startsWith(CLASSPATH)) {
+            String resource = location.substring(CLASSPATH.length());
+            InputStream in = ScenarioSource.class.getClassLoader().getResourceAsStream(resource);
+            if (in == null) {
+                throw new FileNotFoundException(location);
+            }
+            return in;
+        }
+        return Files.newInputStream(Path.of(location));
+    }
+
+    /**
+     * Returns the next scenario, or {@code null} at the end of the file. Blank lines are skipped.
+     */
+    public Scenario next() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (!line.isBlank()) {
+                return Scenario.parse(lineNumber, line);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Groups the remaining scenarios into lists of up to {@code size}, read on demand.
+     */
+    public Iterator<List<Scenario>> batches(int size) {
+        return new Iterator<>() {
+            private List<Scenario> pending = read();
+
+            @Override
+            public boolean hasNext() {
+                return !pending.isEmpty();
+            }
+
+            @Override
+            public List<Scenario> next() {
+                if (pending.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                List<Scenario> batch = pending;
+                pending = read();
+                return batch;
+            }
+
+            private List<Scenario> read() {
+                List<Scenario> batch = new ArrayList<>(size);
+                try {
+                    Scenario scenario;
+                    while (batch.size() < size && (scenario = ScenarioSource.this.next()) != null) {
+                        batch.add(scenario);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return batch;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Where a run of scenarios starts in a file: the byte offset and
+     * number of its first line, and how many scenarios it holds.
+     */
+    public static final class Batch {
+        final long offset;
+        final int firstLine;
+        int count;
+
+        public Batch(long offset, int firstLine, int count) {
+            this.offset = offset;
+            this.firstLine = firstLine;
+            this.count = count;
+        }
+
+        public long offset() {
+            return offset;
+        }
+
+        public int firstLine() {
+            return firstLine;
+        }
+
+        public int count() {
+            return count;
+        }
+    }
+}
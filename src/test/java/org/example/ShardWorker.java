@@ -0,0 +1,304 @@
+package org.example;
+
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.engine.discovery.DiscoverySelectors;
+import org.junit.platform.engine.support.descriptor.MethodSource;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.core.LauncherConfig;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.testng.ITestListener;
+import org.testng.ITestResult;
+import org.testng.TestNG;
+import org.testng.xml.XmlClass;
+import org.testng.xml.XmlInclude;
+import org.testng.xml.XmlSuite;
+import org.testng.xml.XmlTest;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A worker JVM of a {@link ShardedRunner}: asks the coordinator for a
+ * chunk, runs it and sends the results with its next request, until the
+ * coordinator says the work is done; then it sends its
+ * {@link ApiMetrics#global()} and exits.
+ *
+ * A chunk of TestNG methods runs as one TestNG suite with the listeners
+ * of testng.xml, JUnit Jupiter methods as one launcher request, so a
+ * class's setup runs once per chunk. Scenario batches run on one
+ * {@link ScenarioRunner} and stand-in server per worker, read straight
+ * from their offset in the file. Every item gets a result: one that the
+ * framework did not report fails with its class's setup error, if there
+ * was one, and is skipped otherwise.
+ */
+public final class ShardWorker {
+
+    private final int worker;
+    private final int threads;
+    private final int inFlight;
+    private Main scenarioServer;
+    private ScenarioRunner scenarios;
+
+    private ShardWorker(int worker, int threads, int inFlight) {
+        this.worker = worker;
+        this.threads = threads;
+        this.inFlight = inFlight;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2 || !option[0].startsWith("--")) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            options.put(option[0].substring(2), option[1]);
+        }
+        ShardWorker worker = new ShardWorker(Integer.parseInt(options.get("worker")),
+                Integer.parseInt(options.getOrDefault("threads", "1")),
+                Integer.parseInt(options.getOrDefault("inflight", "64")));
+        try {
+            worker.serve(Integer.parseInt(options.get("port")));
+        } finally {
+            worker.close();
+        }
+        // tests may leave non-daemon threads behind
+        System.exit(0);
+    }
+
+    private void serve(int port) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                     StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                     StandardCharsets.UTF_8))) {
+            ShardedRunner.send(out, Map.of("type", "hello", "worker", (long) worker));
+            List<Object> results = List.of();
+            while (true) {
+                ShardedRunner.send(out, Map.of("type", "next", "results", results));
+                Map<String, Object> message = ShardedRunner.receive(in);
+                if (message == null || message.get("type").equals("done")) {
+                    break;
+                }
+                List<ShardedRunner.Item> items = new ArrayList<>();
+                for (Object item : (List<?>) message.get("items")) {
+                    items.add(ShardedRunner.Item.fromJson(ShardedRunner.castMap(item)));
+                }
+                results = new ArrayList<>();
+                for (ShardedRunner.Result result : run(items)) {
+                    results.add(result.toJson());
+                }
+            }
+            ShardedRunner.send(out, ShardedRunner.metricsMessage(ApiMetrics.global().snapshot()));
+        }
+    }
+
+    private List<ShardedRunner.Result> run(List<ShardedRunner.Item> chunk) {
+        switch (chunk.get(0).kind) {
+            case ShardedRunner.Item.TESTNG: return runTestNg(chunk);
+            case ShardedRunner.Item.JUNIT: return runJUnit(chunk);
+            case ShardedRunner.Item.SCENARIOS: return runScenarios(chunk);
+            default: throw new IllegalArgumentException("Unknown item kind " + chunk.get(0).kind);
+        }
+    }
+
+    private List<ShardedRunner.Result> runTestNg(List<ShardedRunner.Item> chunk) {
+        XmlSuite suite = new XmlSuite();
+        suite.setName("worker-" + worker);
+        if (threads > 1) {
+            suite.setParallel(XmlSuite.ParallelMode.METHODS);
+            suite.setThreadCount(threads);
+        }
+        XmlTest test = new XmlTest(suite);
+        test.setName(chunk.get(0).className);
+        XmlClass testClass = new XmlClass(chunk.get(0).className);
+        List<XmlInclude> methods = new ArrayList<>();
+        chunk.forEach(item -> methods.add(new XmlInclude(item.method)));
+        testClass.setIncludedMethods(methods);
+        test.setXmlClasses(List.of(testClass));
+
+        Map<String, ShardedRunner.Item> byMethod = byMethod(chunk);
+        List<ShardedRunner.Result> results = Collections.synchronizedList(new ArrayList<>());
+        Throwable[] setupFailure = new Throwable[1];
+        TestNG testng = new TestNG(false);
+        testng.setVerbose(0);
+        testng.setXmlSuites(List.of(suite));
+        testng.addListener(new StoreForkListener());
+        testng.addListener(new ResponseLogListener());
+        testng.addListener(new ITestListener() {
+            @Override
+            public void onTestSuccess(ITestResult result) {
+                add(result, ShardedRunner.Result.PASS);
+            }
+
+            @Override
+            public void onTestFailure(ITestResult result) {
+                add(result, ShardedRunner.Result.FAIL);
+            }
+
+            @Override
+            public void onTestSkipped(ITestResult result) {
+                add(result, ShardedRunner.Result.SKIP);
+            }
+
+            @Override
+            public void onTestFailedWithTimeout(ITestResult result) {
+                add(result, ShardedRunner.Result.FAIL);
+            }
+
+            private void add(ITestResult result, String status) {
+                ShardedRunner.Item item = byMethod.get(result.getMethod().getMethodName());
+                if (item != null) {
+                    results.add(ShardedRunner.Result.of(item, status, result.getStartMillis(),
+                            result.getEndMillis() - result.getStartMillis(), result.getThrowable()));
+                }
+            }
+        });
+        testng.addListener(new org.testng.IConfigurationListener() {
+            @Override
+            public void onConfigurationFailure(ITestResult result) {
+                setupFailure[0] = result.getThrowable();
+            }
+        });
+        testng.run();
+        return complete(chunk, results, setupFailure[0]);
+    }
+
+    private List<ShardedRunner.Result> runJUnit(List<ShardedRunner.Item> chunk) {
+        LauncherDiscoveryRequestBuilder request = LauncherDiscoveryRequestBuilder.request()
+                .configurationParameter("junit.jupiter.execution.parallel.enabled", String.valueOf(threads > 1))
+                .configurationParameter("junit.jupiter.execution.parallel.mode.default", "concurrent")
+                .configurationParameter("junit.jupiter.execution.parallel.config.strategy", "fixed")
+                .configurationParameter("junit.jupiter.execution.parallel.config.fixed.parallelism",
+                        String.valueOf(threads));
+        chunk.forEach(item -> request.selectors(DiscoverySelectors.selectMethod(item.className, item.method)));
+        LauncherDiscoveryRequest discovery = request.build();
+        // the service-registered listeners export metrics and recordings for a whole run, not a chunk
+        Launcher launcher = LauncherFactory.create(LauncherConfig.builder()
+                .enableTestExecutionListenerAutoRegistration(false)
+                .build());
+
+        Map<String, ShardedRunner.Item> byMethod = byMethod(chunk);
+        List<ShardedRunner.Result> results = Collections.synchronizedList(new ArrayList<>());
+        Map<String, Long> started = new ConcurrentHashMap<>();
+        Throwable[] setupFailure = new Throwable[1];
+        launcher.execute(discovery, new TestExecutionListener() {
+            @Override
+            public void executionStarted(TestIdentifier test) {
+                started.put(test.getUniqueId(), System.currentTimeMillis());
+            }
+
+            @Override
+            public void executionSkipped(TestIdentifier test, String reason) {
+                ShardedRunner.Item item = item(test);
+                if (item != null) {
+                    ShardedRunner.Result skipped = ShardedRunner.Result.notRun(item, reason);
+                    results.add(skipped);
+                }
+            }
+
+            @Override
+            public void executionFinished(TestIdentifier test, TestExecutionResult result) {
+                Throwable failure = result.getThrowable().orElse(null);
+                ShardedRunner.Item item = item(test);
+                if (item == null) {
+                    if (failure != null) {
+                        setupFailure[0] = failure;
+                    }
+                    return;
+                }
+                long start = started.getOrDefault(test.getUniqueId(), System.currentTimeMillis());
+                String status = result.getStatus() == TestExecutionResult.Status.SUCCESSFUL ? ShardedRunner.Result.PASS
+                        : result.getStatus() == TestExecutionResult.Status.FAILED ? ShardedRunner.Result.FAIL
+                        : ShardedRunner.Result.SKIP;
+                results.add(ShardedRunner.Result.of(item, status, start, System.currentTimeMillis() - start,
+                        failure));
+            }
+
+            private ShardedRunner.Item item(TestIdentifier test) {
+                return test.isTest() && test.getSource().orElse(null) instanceof MethodSource
+                        ? byMethod.get(((MethodSource) test.getSource().get()).getMethodName())
+                        : null;
+            }
+        });
+        return complete(chunk, results, setupFailure[0]);
+    }
+
+    private List<ShardedRunner.Result> runScenarios(List<ShardedRunner.Item> chunk) {
+        List<ShardedRunner.Result> results = new ArrayList<>();
+        for (ShardedRunner.Item item : chunk) {
+            long start = System.currentTimeMillis();
+            ShardedRunner.Result result;
+            try {
+                if (scenarios == null) {
+                    scenarioServer = Main.start(0);
+                    scenarios = ScenarioRunner.forServer(scenarioServer, inFlight);
+                }
+                List<Scenario> batch = new ArrayList<>(item.batch.count());
+                try (ScenarioSource source = ScenarioSource.open(item.location, item.batch)) {
+                    for (Scenario scenario; batch.size() < item.batch.count() && (scenario = source.next()) != null; ) {
+                        batch.add(scenario);
+                    }
+                }
+                List<String> failures = scenarios.run(batch);
+                AssertionError failure = failures.isEmpty() ? null : new AssertionError(failures.size()
+                        + " scenarios failed:\n" + String.join("\n", failures));
+                result = ShardedRunner.Result.of(item, failure == null ? ShardedRunner.Result.PASS
+                        : ShardedRunner.Result.FAIL, start, System.currentTimeMillis() - start, failure);
+                result.parameter = "lines " + batch.get(0).line() + "-" + batch.get(batch.size() - 1).line();
+            } catch (Exception e) {
+                result = ShardedRunner.Result.of(item, ShardedRunner.Result.FAIL, start,
+                        System.currentTimeMillis() - start, e);
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    private static Map<String, ShardedRunner.Item> byMethod(List<ShardedRunner.Item> chunk) {
+        Map<String, ShardedRunner.Item> byMethod = new HashMap<>();
+        chunk.forEach(item -> byMethod.put(item.method, item));
+        return byMethod;
+    }
+
+    /**
+     * The reported results plus one for every item without any.
+     */
+    private static List<ShardedRunner.Result> complete(List<ShardedRunner.Item> chunk,
+                                                        List<ShardedRunner.Result> results, Throwable setupFailure) {
+        List<ShardedRunner.Result> complete = new ArrayList<>(results);
+        for (ShardedRunner.Item item : chunk) {
+            if (complete.stream().noneMatch(result -> result.method.equals(item.method))) {
+                complete.add(setupFailure == null
+                        ? ShardedRunner.Result.notRun(item, "Not run by the test framework")
+                        : ShardedRunner.Result.of(item, ShardedRunner.Result.FAIL, System.currentTimeMillis(), 0,
+                                setupFailure));
+            }
+        }
+        return complete;
+    }
+
+    private void close() {
+        if (scenarios != null) {
+            scenarios.close();
+            scenarioServer.close();
+        }
+    }
+}
@@ -0,0 +1,830 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs test classes and contract scenarios across worker JVMs, each a
+ * {@link ShardWorker} with its own heap, GC and connection pool.
+ *
+ * The coordinator splits the run into items, a test method or a batch of
+ * scenarios, and deals whole classes out to one deque per worker, the
+ * largest first, so a class's setup mostly runs once. Workers ask for work
+ * over a loopback socket, once all of them have connected, and get a chunk
+ * from the head of their own deque: up to half of it, of one class. A worker whose deque is empty steals the
+ * later half of the fullest one, so no worker sits idle while another
+ * still has a queue, whatever the static split got wrong.
+ *
+ * Each worker reports its results with its next request and its
+ * {@link ApiMetrics} when it is told the work is done. The coordinator
+ * merges them into one testng-results.xml, in TestNG's format with one
+ * {@code <test>} per worker, and one api-metrics export whose histograms
+ * are the sum of the workers'. A worker that dies fails the items it held;
+ * the rest of its deque is stolen by the others.
+ *
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.example.ShardedRunner \
+ *     -Dexec.args="--workers=4 --scenarios=/path/to/cases.jsonl --batch=1000"
+ * </pre>
+ *
+ * {@code --workers=1,2,4,8} runs everything once per count and prints the
+ * wall-clock scaling.
+ */
+public final class ShardedRunner {
+
+    static final List<String> DEFAULT_CLASSES = List.of("APITest", "LibraryAPITest", "UpdateBookTest", "NewApi");
+    private static final int MAX_CHUNK = 16;
+    private static final int ACCEPT_TIMEOUT_MILLIS = 60_000;
+    private static final DateTimeFormatter TIMESTAMP =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss 'UTC'").withZone(ZoneOffset.UTC);
+
+    private final Options options;
+    private final List<Deque<Item>> deques;
+    private final List<Result> results = new ArrayList<>();
+    private final long[] chunks;
+    private final long[] stolen;
+    private final long[] busyNanos;
+    private final ApiMetrics metrics = new ApiMetrics();
+    private final CountDownLatch connected;
+
+    private ShardedRunner(Options options) {
+        this.options = options;
+        this.deques = new ArrayList<>(options.workers);
+        for (int i = 0; i < options.workers; i++) {
+            deques.add(new ArrayDeque<>());
+        }
+        this.chunks = new long[options.workers];
+        this.stolen = new long[options.workers];
+        this.busyNanos = new long[options.workers];
+        this.connected = new CountDownLatch(options.workers);
+    }
+
+    /**
+     * Runs the classes and scenarios of the options on their workers and
+     * writes testng-results.xml and the merged api-metrics to the output
+     * directory.
+     */
+    public static Report run(Options options) throws IOException, InterruptedException {
+        return new ShardedRunner(options).run();
+    }
+
+    private Report run() throws IOException, InterruptedException {
+        deal(plan());
+        Files.createDirectories(options.output);
+        long start = System.nanoTime();
+        Instant started = Instant.now();
+        List<Process> processes = new ArrayList<>();
+        List<Thread> handlers = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket(0, options.workers, InetAddress.getLoopbackAddress())) {
+            for (int worker = 0; worker < options.workers; worker++) {
+                processes.add(launch(worker, server.getLocalPort()));
+            }
+            server.setSoTimeout(ACCEPT_TIMEOUT_MILLIS);
+            for (int i = 0; i < options.workers; i++) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException e) {
+                    System.err.printf("Only %d of %d workers connected, see their logs in %s%n",
+                            i, options.workers, options.output);
+                    while (connected.getCount() > 0) {
+                        connected.countDown();
+                    }
+                    break;
+                }
+                Thread handler = new Thread(() -> serve(socket), "shard-coordinator-" + i);
+                handler.start();
+                handlers.add(handler);
+            }
+            for (Thread handler : handlers) {
+                handler.join();
+            }
+        } finally {
+            for (Process process : processes) {
+                if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            }
+        }
+        synchronized (this) {
+            for (Deque<Item> deque : deques) {
+                for (Item item : deque) {
+                    results.add(Result.notRun(item, "No worker was left to run it"));
+                }
+                deque.clear();
+            }
+        }
+        Report report = new Report(options.workers, new ArrayList<>(results), started, System.nanoTime() - start,
+                chunks.clone(), stolen.clone(), busyNanos.clone(), metrics);
+        report.writeTestNgResults(options.output.resolve("testng-results.xml"));
+        metrics.export(options.output.resolve("api-metrics"));
+        return report;
+    }
+
+    /**
+     * The items of the run: every test method of the classes, by name,
+     * then the scenario batches.
+     */
+    private List<Item> plan() throws IOException {
+        List<Item> items = new ArrayList<>();
+        for (String className : options.classes) {
+            items.addAll(testMethods(className));
+        }
+        if (options.scenarios != null) {
+            for (ScenarioSource.Batch batch : ScenarioSource.split(options.scenarios, options.batch)) {
+                items.add(Item.scenarios(options.scenarios, batch));
+            }
+        }
+        return items;
+    }
+
+    static List<Item> testMethods(String className) {
+        Class<?> type;
+        try {
+            type = Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Unknown test class " + className, e);
+        }
+        List<Item> items = new ArrayList<>();
+        for (Method method : type.getDeclaredMethods()) {
+            if (method.isAnnotationPresent(org.junit.jupiter.api.Test.class)) {
+                items.add(new Item(Item.JUNIT, className, method.getName(), null, null));
+            } else if (method.isAnnotationPresent(org.testng.annotations.Test.class)) {
+                items.add(new Item(Item.TESTNG, className, method.getName(), null, null));
+            }
+        }
+        // getDeclaredMethods has no order, so sort for a repeatable split
+        items.sort(Comparator.comparing(item -> item.method));
+        return items;
+    }
+
+    /**
+     * Deals the items out by class, the largest first, each to the deque
+     * with the fewest items.
+     */
+    private void deal(List<Item> items) {
+        Map<String, List<Item>> groups = new LinkedHashMap<>();
+        for (Item item : items) {
+            groups.computeIfAbsent(item.group(), group -> new ArrayList<>()).add(item);
+        }
+        List<List<Item>> bySize = new ArrayList<>(groups.values());
+        bySize.sort(Comparator.comparingInt((List<Item> group) -> group.size()).reversed());
+        for (List<Item> group : bySize) {
+            Deque<Item> smallest = deques.get(0);
+            for (Deque<Item> deque : deques) {
+                if (deque.size() < smallest.size()) {
+                    smallest = deque;
+                }
+            }
+            smallest.addAll(group);
+        }
+    }
+
+    /**
+     * The next chunk for a worker: items of one class from the head of its
+     * deque, up to half of it, after stealing if the deque is empty.
+     */
+    private synchronized List<Item> take(int worker) {
+        Deque<Item> own = deques.get(worker);
+        if (own.isEmpty()) {
+            steal(worker);
+        }
+        List<Item> chunk = new ArrayList<>();
+        int limit = Math.max(1, Math.min(MAX_CHUNK, own.size() / 2));
+        while (!own.isEmpty() && chunk.size() < limit
+                && (chunk.isEmpty() || own.peekFirst().group().equals(chunk.get(0).group()))) {
+            chunk.add(own.pollFirst());
+        }
+        if (!chunk.isEmpty()) {
+            chunks[worker]++;
+        }
+        return chunk;
+    }
+
+    private void steal(int thief) {
+        Deque<Item> victim = null;
+        for (int i = 0; i < deques.size(); i++) {
+            if (i != thief && (victim == null || deques.get(i).size() > victim.size())) {
+                victim = deques.get(i);
+            }
+        }
+        if (victim == null || victim.isEmpty()) {
+            return;
+        }
+        int count = (victim.size() + 1) / 2;
+        for (int i = 0; i < count; i++) {
+            deques.get(thief).addFirst(victim.pollLast());
+        }
+        stolen[thief] += count;
+    }
+
+    /**
+     * Talks to one worker until it has sent its metrics or its connection
+     * is lost.
+     */
+    private void serve(Socket socket) {
+        int worker = -1;
+        List<Item> held = List.of();
+        long chunkStart = 0;
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                     StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                     StandardCharsets.UTF_8))) {
+            worker = ((Long) receive(in).get("worker")).intValue();
+            // a worker that starts first would otherwise run what the others are dealt before they can steal it
+            connected.countDown();
+            connected.await();
+            for (Map<String, Object> message; (message = receive(in)) != null; ) {
+                if (message.get("type").equals("metrics")) {
+                    addMetrics(message);
+                    return;
+                }
+                List<Result> reported = new ArrayList<>();
+                for (Object result : (List<?>) message.get("results")) {
+                    reported.add(Result.fromJson(worker, castMap(result)));
+                }
+                synchronized (this) {
+                    results.addAll(reported);
+                    if (!held.isEmpty()) {
+                        busyNanos[worker] += System.nanoTime() - chunkStart;
+                    }
+                }
+                held = take(worker);
+                chunkStart = System.nanoTime();
+                if (held.isEmpty()) {
+                    send(out, Map.of("type", "done"));
+                } else {
+                    List<Object> items = new ArrayList<>();
+                    held.forEach(item -> items.add(item.toJson()));
+                    send(out, Map.of("type", "run", "items", items));
+                }
+            }
+            failHeld(worker, held, "Worker " + worker + " closed its connection");
+        } catch (IOException | RuntimeException e) {
+            failHeld(worker, held, "Worker " + worker + " failed: " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void failHeld(int worker, List<Item> held, String reason) {
+        for (Item item : held) {
+            Result result = Result.notRun(item, reason);
+            result.status = Result.FAIL;
+            result.worker = worker;
+            results.add(result);
+        }
+    }
+
+    private synchronized void addMetrics(Map<String, Object> message) {
+        for (Object value : (List<?>) message.get("endpoints")) {
+            Map<String, Object> endpoint = castMap(value);
+            Map<Integer, Long> statuses = new TreeMap<>();
+            castMap(endpoint.get("statuses")).forEach((status, count) -> statuses.put(Integer.valueOf(status),
+                    (Long) count));
+            metrics.add(new ApiMetrics.EndpointStats((String) endpoint.get("method"), (String) endpoint.get("path"),
+                    LatencyHistogram.fromBytes(Base64.getDecoder().decode((String) endpoint.get("latency"))),
+                    (Long) endpoint.get("requestBytes"), (Long) endpoint.get("responseBytes"), statuses));
+        }
+    }
+
+    /**
+     * A worker's metrics as the message the coordinator merges.
+     */
+    static Map<String, Object> metricsMessage(List<ApiMetrics.EndpointStats> snapshot) {
+        List<Object> endpoints = new ArrayList<>();
+        for (ApiMetrics.EndpointStats stats : snapshot) {
+            Map<String, Object> endpoint = new LinkedHashMap<>();
+            endpoint.put("method", stats.method);
+            endpoint.put("path", stats.path);
+            endpoint.put("latency", Base64.getEncoder().encodeToString(stats.latency.toBytes()));
+            endpoint.put("requestBytes", stats.requestBytes);
+            endpoint.put("responseBytes", stats.responseBytes);
+            Map<String, Object> statuses = new LinkedHashMap<>();
+            stats.statuses.forEach((status, count) -> statuses.put(String.valueOf(status), count));
+            endpoint.put("statuses", statuses);
+            endpoints.add(endpoint);
+        }
+        return Map.of("type", "metrics", "endpoints", endpoints);
+    }
+
+    private Process launch(int worker, int port) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(options.jvmArgs);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ShardWorker.class.getName());
+        command.add("--port=" + port);
+        command.add("--worker=" + worker);
+        command.add("--threads=" + options.threads);
+        command.add("--inflight=" + options.inFlight);
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(options.output.resolve("worker-" + worker + ".log").toFile())
+                .start();
+    }
+
+    static void send(Writer out, Map<String, Object> message) throws IOException {
+        out.write(Json.write(message));
+        out.write('\n');
+        out.flush();
+    }
+
+    /**
+     * The next message, or {@code null} when the other side has closed.
+     */
+    static Map<String, Object> receive(BufferedReader in) throws IOException {
+        String line = in.readLine();
+        return line == null ? null : Json.parseObject(line);
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> castMap(Object value) {
+        return (Map<String, Object>) value;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Options options = Options.defaults();
+        List<Integer> workerCounts = List.of(options.workers);
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            switch (option[0]) {
+                case "--workers":
+                    workerCounts = new ArrayList<>();
+                    for (String count : option[1].split(",")) {
+                        workerCounts.add(Integer.parseInt(count.trim()));
+                    }
+                    break;
+                case "--classes": options = options.withClasses(Arrays.asList(option[1].split(","))); break;
+                case "--scenarios": options = options.withScenarios(option[1].isEmpty() ? null : option[1]); break;
+                case "--batch": options = options.withBatch(Integer.parseInt(option[1])); break;
+                case "--inflight": options = options.withInFlight(Integer.parseInt(option[1])); break;
+                case "--threads": options = options.withThreads(Integer.parseInt(option[1])); break;
+                case "--jvm-args": options = options.withJvmArgs(Arrays.asList(option[1].split(" "))); break;
+                case "--out": options = options.withOutput(Path.of(option[1])); break;
+                default: throw new IllegalArgumentException("Unknown option " + option[0]);
+            }
+        }
+        boolean failed = false;
+        if (workerCounts.size() == 1) {
+            Report report = run(options.withWorkers(workerCounts.get(0)));
+            report.print(System.out);
+            failed = report.failed() > 0;
+        } else {
+            List<Report> reports = new ArrayList<>();
+            for (int workers : workerCounts) {
+                Report report = run(options.withWorkers(workers)
+                        .withOutput(options.output.resolve("workers-" + workers)));
+                report.print(System.out);
+                reports.add(report);
+                failed |= report.failed() > 0;
+            }
+            Report.printScaling(System.out, reports);
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    /**
+     * What to run and how. Instances are immutable.
+     */
+    public static final class Options {
+        private static final Options DEFAULTS = new Options(Runtime.getRuntime().availableProcessors(),
+                DEFAULT_CLASSES, "classpath:contract-scenarios.jsonl", 500, 64, 1, List.of(),
+                Path.of("target/sharded"));
+
+        final int workers;
+        final List<String> classes;
+        final String scenarios;
+        final int batch;
+        final int inFlight;
+        final int threads;
+        final List<String> jvmArgs;
+        final Path output;
+
+        private Options(int workers, List<String> classes, String scenarios, int batch, int inFlight, int threads,
+                        List<String> jvmArgs, Path output) {
+            if (workers < 1 || batch < 1 || inFlight < 1 || threads < 1) {
+                throw new IllegalArgumentException("Workers, batch, in-flight and threads must be positive");
+            }
+            this.workers = workers;
+            this.classes = List.copyOf(classes);
+            this.scenarios = scenarios;
+            this.batch = batch;
+            this.inFlight = inFlight;
+            this.threads = threads;
+            this.jvmArgs = List.copyOf(jvmArgs);
+            this.output = output;
+        }
+
+        /**
+         * One worker per processor, the four contract classes, the default
+         * scenarios in batches of 500 with 64 in flight, one test thread
+         * per worker, and output in target/sharded.
+         */
+        public static Options defaults() {
+            return DEFAULTS;
+        }
+
+        public Options withWorkers(int workers) {
+            return new Options(workers, classes, scenarios, batch, inFlight, threads, jvmArgs, output);
+        }
+
+        /** Test classes by name, TestNG or JUnit Jupiter. */
+        public Options withClasses(List<String> classes) {
+            return new Options(workers, classes, scenarios, batch, inFlight, threads, jvmArgs, output);
+        }
+
+        /**
+         * A scenario file as {@link ScenarioSource#open(String)} takes it,
+         * or {@code null} for none.
+         */
+        public Options withScenarios(String scenarios) {
+            return new Options(workers, classes, scenarios, batch, inFlight, threads, jvmArgs, output);
+        }
+
+        public Options withBatch(int batch) {
+            return new Options(workers, classes, scenarios, batch, inFlight, threads, jvmArgs, output);
+        }
+
+        /** Scenario requests each worker keeps in flight. */
+        public Options withInFlight(int inFlight) {
+            return new Options(workers, classes, scenarios, batch, inFlight, threads, jvmArgs, output);
+        }
+
+        /** Threads each worker runs a chunk's test methods on. */
+        public Options withThreads(int threads) {
+            return new Options(workers, classes, scenarios, batch, inFlight, threads, jvmArgs, output);
+        }
+
+        /** Extra options for the worker JVMs, such as {@code -Xmx512m}. */
+        public Options withJvmArgs(List<String> jvmArgs) {
+            return new Options(workers, classes, scenarios, batch, inFlight, threads, jvmArgs, output);
+        }
+
+        public Options withOutput(Path output) {
+            return new Options(workers, classes, scenarios, batch, inFlight, threads, jvmArgs, output);
+        }
+    }
+
+    /**
+     * One unit of work: a test method, or a batch of scenarios.
+     */
+    static final class Item {
+        static final String TESTNG = "testng";
+        static final String JUNIT = "junit";
+        static final String SCENARIOS = "scenarios";
+
+        final String kind;
+        final String className;
+        final String method;
+        final String location;
+        final ScenarioSource.Batch batch;
+
+        Item(String kind, String className, String method, String location, ScenarioSource.Batch batch) {
+            this.kind = kind;
+            this.className = className;
+            this.method = method;
+            this.location = location;
+            this.batch = batch;
+        }
+
+        static Item scenarios(String location, ScenarioSource.Batch batch) {
+            return new Item(SCENARIOS, "ContractScenarioTest", "testScenarios", location, batch);
+        }
+
+        /** Items of a group are run together, so a class is set up once per chunk. */
+        String group() {
+            return batch == null ? className : className + "@" + batch.offset();
+        }
+
+        String label() {
+            return batch == null ? null : "from line " + batch.firstLine();
+        }
+
+        Map<String, Object> toJson() {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("kind", kind);
+            json.put("class", className);
+            json.put("method", method);
+            if (batch != null) {
+                json.put("location", location);
+                json.put("offset", batch.offset());
+                json.put("line", (long) batch.firstLine());
+                json.put("count", (long) batch.count());
+            }
+            return json;
+        }
+
+        static Item fromJson(Map<String, Object> json) {
+            ScenarioSource.Batch batch = json.containsKey("offset")
+                    ? new ScenarioSource.Batch((Long) json.get("offset"), ((Long) json.get("line")).intValue(),
+                            ((Long) json.get("count")).intValue())
+                    : null;
+            return new Item((String) json.get("kind"), (String) json.get("class"), (String) json.get("method"),
+                    (String) json.get("location"), batch);
+        }
+    }
+
+    /**
+     * The outcome of one test method or scenario batch.
+     */
+    public static final class Result {
+        public static final String PASS = "PASS";
+        public static final String FAIL = "FAIL";
+        public static final String SKIP = "SKIP";
+
+        String className;
+        String method;
+        String parameter;
+        String status;
+        long startedMillis;
+        long durationMillis;
+        String exception;
+        String message;
+        String stackTrace;
+        int worker;
+
+        static Result of(Item item, String status, long startedMillis, long durationMillis, Throwable failure) {
+            Result result = new Result();
+            result.className = item.className;
+            result.method = item.method;
+            result.parameter = item.label();
+            result.status = status;
+            result.startedMillis = startedMillis;
+            result.durationMillis = durationMillis;
+            if (failure != null) {
+                result.exception = failure.getClass().getName();
+                result.message = failure.getMessage();
+                StringWriter trace = new StringWriter();
+                failure.printStackTrace(new PrintWriter(trace));
+                result.stackTrace = trace.toString();
+            }
+            return result;
+        }
+
+        static Result notRun(Item item, String reason) {
+            Result result = of(item, SKIP, System.currentTimeMillis(), 0, null);
+            result.message = reason;
+            return result;
+        }
+
+        public String className() {
+            return className;
+        }
+
+        public String method() {
+            return method;
+        }
+
+        public String status() {
+            return status;
+        }
+
+        public String message() {
+            return message;
+        }
+
+        /** The worker that ran it, or -1 if none did. */
+        public int worker() {
+            return worker;
+        }
+
+        Map<String, Object> toJson() {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("class", className);
+            json.put("method", method);
+            json.put("parameter", parameter);
+            json.put("status", status);
+            json.put("started", startedMillis);
+            json.put("duration", durationMillis);
+            json.put("exception", exception);
+            json.put("message", message);
+            json.put("stack", stackTrace);
+            return json;
+        }
+
+        static Result fromJson(int worker, Map<String, Object> json) {
+            Result result = new Result();
+            result.className = (String) json.get("class");
+            result.method = (String) json.get("method");
+            result.parameter = (String) json.get("parameter");
+            result.status = (String) json.get("status");
+            result.startedMillis = (Long) json.get("started");
+            result.durationMillis = (Long) json.get("duration");
+            result.exception = (String) json.get("exception");
+            result.message = (String) json.get("message");
+            result.stackTrace = (String) json.get("stack");
+            result.worker = worker;
+            return result;
+        }
+    }
+
+    /**
+     * The merged outcome of a sharded run.
+     */
+    public static final class Report {
+        private final int workers;
+        private final List<Result> results;
+        private final Instant started;
+        private final long wallNanos;
+        private final long[] chunks;
+        private final long[] stolen;
+        private final long[] busyNanos;
+        private final ApiMetrics metrics;
+
+        Report(int workers, List<Result> results, Instant started, long wallNanos, long[] chunks, long[] stolen,
+               long[] busyNanos, ApiMetrics metrics) {
+            this.workers = workers;
+            this.results = results;
+            this.started = started;
+            this.wallNanos = wallNanos;
+            this.chunks = chunks;
+            this.stolen = stolen;
+            this.busyNanos = busyNanos;
+            this.metrics = metrics;
+        }
+
+        public List<Result> results() {
+            return Collections.unmodifiableList(results);
+        }
+
+        public int workers() {
+            return workers;
+        }
+
+        public long passed() {
+            return count(Result.PASS);
+        }
+
+        public long failed() {
+            return count(Result.FAIL);
+        }
+
+        public long skipped() {
+            return count(Result.SKIP);
+        }
+
+        /** Items each worker took from another's deque. */
+        public long stolen(int worker) {
+            return stolen[worker];
+        }
+
+        public double wallSeconds() {
+            return wallNanos / 1e9;
+        }
+
+        /** The workers' request metrics, merged. */
+        public ApiMetrics metrics() {
+            return metrics;
+        }
+
+        private long count(String status) {
+            return results.stream().filter(result -> result.status.equals(status)).count();
+        }
+
+        public void print(PrintStream out) {
+            out.printf("%-8s %7s %7s %7s %9s%n", "worker", "chunks", "results", "stolen", "busy s");
+            for (int worker = 0; worker < workers; worker++) {
+                int index = worker;
+                long ran = results.stream().filter(result -> result.worker == index).count();
+                out.printf("%-8d %7d %7d %7d %9.1f%n", worker, chunks[worker], ran, stolen[worker],
+                        busyNanos[worker] / 1e9);
+            }
+            out.printf("%d passed, %d failed, %d skipped in %.1f s with %d workers%n",
+                    passed(), failed(), skipped(), wallSeconds(), workers);
+            for (Result result : results) {
+                if (!result.status.equals(Result.PASS)) {
+                    out.printf("  %s %s.%s%s: %s%n", result.status, result.className, result.method,
+                            result.parameter == null ? "" : " (" + result.parameter + ")", result.message);
+                }
+            }
+        }
+
+        /**
+         * Speedup and efficiency of each run against the first.
+         */
+        static void printScaling(PrintStream out, List<Report> reports) {
+            Report base = reports.get(0);
+            out.printf("%-8s %9s %8s %10s%n", "workers", "wall s", "speedup", "efficiency");
+            for (Report report : reports) {
+                double speedup = base.wallSeconds() / report.wallSeconds();
+                out.printf("%-8d %9.1f %8.2f %9.0f%%%n", report.workers(), report.wallSeconds(), speedup,
+                        100 * speedup * base.workers() / report.workers());
+            }
+        }
+
+        /**
+         * Writes the results as TestNG's testng-results.xml, one
+         * {@code <test>} per worker, so the usual report tooling reads a
+         * sharded run like any other.
+         */
+        void writeTestNgResults(Path file) throws IOException {
+            StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            xml.append("<testng-results ignored=\"0\" total=\"").append(results.size())
+                    .append("\" passed=\"").append(passed()).append("\" failed=\"").append(failed())
+                    .append("\" skipped=\"").append(skipped()).append("\">\n");
+            xml.append("  <reporter-output>\n  </reporter-output>\n");
+            Instant finished = started.plusNanos(wallNanos);
+            xml.append("  <suite name=\"books-api-sharded\"").append(times(started, finished, wallNanos / 1_000_000))
+                    .append(">\n    <groups>\n    </groups>\n");
+            for (int worker = -1; worker < workers; worker++) {
+                Map<String, List<Result>> byClass = new TreeMap<>();
+                for (Result result : results) {
+                    if (result.worker == worker) {
+                        byClass.computeIfAbsent(result.className, name -> new ArrayList<>()).add(result);
+                    }
+                }
+                if (byClass.isEmpty()) {
+                    continue;
+                }
+                xml.append("    <test name=\"").append(worker < 0 ? "not-run" : "worker-" + worker).append('"')
+                        .append(times(started, finished, wallNanos / 1_000_000)).append(">\n");
+                byClass.forEach((className, classResults) -> {
+                    xml.append("      <class name=\"").append(escape(className)).append("\">\n");
+                    classResults.sort(Comparator.comparingLong(result -> result.startedMillis));
+                    classResults.forEach(result -> appendMethod(xml, result));
+                    xml.append("      </class> <!-- ").append(escape(className)).append(" -->\n");
+                });
+                xml.append("    </test>\n");
+            }
+            xml.append("  </suite>\n</testng-results>\n");
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, xml, StandardCharsets.UTF_8);
+        }
+
+        private static void appendMethod(StringBuilder xml, Result result) {
+            Instant start = Instant.ofEpochMilli(result.startedMillis);
+            xml.append("        <test-method status=\"").append(result.status).append("\" signature=\"")
+                    .append(escape(result.method)).append("()\" name=\"").append(escape(result.method)).append('"')
+                    .append(times(start, start.plusMillis(result.durationMillis), result.durationMillis))
+                    .append(">\n");
+            if (result.parameter != null) {
+                xml.append("          <params>\n            <param index=\"0\">\n              <value>\n")
+                        .append("                ").append(cdata(result.parameter)).append('\n')
+                        .append("              </value>\n            </param>\n          </params>\n");
+            }
+            if (result.exception != null || result.message != null && !result.status.equals(Result.PASS)) {
+                xml.append("          <exception class=\"")
+                        .append(escape(result.exception == null ? "org.testng.SkipException" : result.exception))
+                        .append("\">\n            <message>\n              ").append(cdata(result.message))
+                        .append("\n            </message>\n");
+                if (result.stackTrace != null) {
+                    xml.append("            <full-stacktrace>\n              ").append(cdata(result.stackTrace))
+                            .append("\n            </full-stacktrace>\n");
+                }
+                xml.append("          </exception>\n");
+            }
+            xml.append("          <reporter-output>\n          </reporter-output>\n");
+            xml.append("        </test-method> <!-- ").append(escape(result.method)).append(" -->\n");
+        }
+
+        private static String times(Instant start, Instant finish, long durationMillis) {
+            return " started-at=\"" + TIMESTAMP.format(start) + "\" finished-at=\"" + TIMESTAMP.format(finish)
+                    + "\" duration-ms=\"" + durationMillis + "\"";
+        }
+
+        private static String escape(String text) {
+            return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+        }
+
+        private static String cdata(String text) {
+            return "<![CDATA[" + String.valueOf(text).replace("]]>", "]]]]><![CDATA[>") + "]]>";
+        }
+    }
+}
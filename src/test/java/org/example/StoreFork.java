@@ -0,0 +1,173 @@
+package org.example;
+
+import io.restassured.filter.Filter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The server-side store fork the current thread's test works in.
+ *
+ * Between {@link #begin()} and {@link #end()}, every {@link ApiSpecs}
+ * request and every {@link AsyncBooksClient} send from this thread carries
+ * a fork in the {@value Main#FORK_HEADER} header, and {@link BookFixtures}
+ * write into the same fork. The fork is created through POST
+ * /api/admin/forks on the first request to each server, so a test starts
+ * from exactly book 1 however many tests ran before it, and {@link #end()}
+ * drops it again. If the server cannot make the fork, the request that
+ * needed it throws with the admin response status instead of letting the
+ * test run on the default store.
+ *
+ * The fork is captured when a request is sent. Requests sent from a
+ * future's callback on another thread go to the default store.
+ * {@link #adminNanos()} tells timings how long making and dropping forks
+ * took, so they can leave it out.
+ */
+public final class StoreFork {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<long[]> ADMIN_NANOS = ThreadLocal.withInitial(() -> new long[1]);
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    static final Filter HEADER = (request, response, context) -> {
+        String fork = current(request.getURI());
+        if (fork != null) {
+            request.header(Main.FORK_HEADER, fork);
+        }
+        return context.next(request, response);
+    };
+
+    private StoreFork() {
+    }
+
+    /** Works in a fresh fork of each server from now until {@link #end()}. */
+    public static void begin() {
+        end();
+        CURRENT.set(new Scope(null));
+    }
+
+    /**
+     * Works in an existing fork, made through the admin endpoint, until
+     * {@link #end()}, which leaves it in place.
+     */
+    public static void join(String fork) {
+        end();
+        CURRENT.set(new Scope(fork));
+    }
+
+    /** Drops the forks this thread made and goes back to the default store. */
+    public static void end() {
+        Scope scope = CURRENT.get();
+        CURRENT.remove();
+        if (scope == null) {
+            return;
+        }
+        for (Map.Entry<String, String> fork : scope.created.entrySet()) {
+            drop(fork.getKey(), fork.getValue());
+        }
+    }
+
+    /**
+     * The current thread's fork on the server, made now if this is the
+     * first request to it, or {@code null} for the default store.
+     *
+     * @param uri any URI on the server, e.g. its base URI
+     * @throws IllegalStateException if the server does not make the fork
+     * @throws UncheckedIOException  if the server cannot be reached
+     */
+    public static String current(String uri) {
+        Scope scope = CURRENT.get();
+        if (scope == null) {
+            return null;
+        }
+        if (scope.joined != null) {
+            return scope.joined;
+        }
+        // a failed fork is not cached, so the next request tries again
+        return scope.created.computeIfAbsent(origin(URI.create(uri)), StoreFork::create);
+    }
+
+    /** The current thread's fork on the server. */
+    public static String current(Main server) {
+        return current(server.baseUri());
+    }
+
+    /** Nanoseconds the current thread has spent making and dropping forks so far. */
+    public static long adminNanos() {
+        return ADMIN_NANOS.get()[0];
+    }
+
+    /** Forks the server's seed. */
+    private static String create(String origin) {
+        HttpRequest request = admin(origin + Main.ADMIN_PATH + "/forks")
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        HttpResponse<String> response;
+        try {
+            response = send(request);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not fork the store of " + origin, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while forking the store of " + origin, e);
+        }
+        Object fork = response.statusCode() == 201 ? Json.parseObject(response.body()).get("fork") : null;
+        if (!(fork instanceof String)) {
+            throw new IllegalStateException("Could not fork the store of " + origin + ": POST "
+                    + request.uri().getPath() + " returned " + response.statusCode() + " " + response.body());
+        }
+        return (String) fork;
+    }
+
+    private static void drop(String origin, String fork) {
+        try {
+            send(admin(origin + Main.ADMIN_PATH + "/forks/" + fork).DELETE().build());
+        } catch (IOException e) {
+            // a server that has already stopped took its forks with it
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static HttpRequest.Builder admin(String uri) {
+        ApiConfig config = ApiConfig.load();
+        return HttpRequest.newBuilder(URI.create(uri))
+                .timeout(Duration.ofSeconds(30))
+                .header("Authorization", ApiConfig.basicAuthorization(config.adminUsername(), config.adminPassword()));
+    }
+
+    private static HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        try {
+            return CLIENT.send(request, HttpResponse.BodyHandlers.ofString());
+        } finally {
+            ADMIN_NANOS.get()[0] += System.nanoTime() - start;
+        }
+    }
+
+    private static String origin(URI uri) {
+        int port = uri.getPort() >= 0 ? uri.getPort() : "https".equals(uri.getScheme()) ? 443 : 80;
+        return uri.getScheme() + "://" + uri.getHost() + ":" + port;
+    }
+
+    private static final class Scope {
+        /** The fork joined on every server, or {@code null} to make one per server. */
+        final String joined;
+        /** The fork made on each server by origin. */
+        final Map<String, String> created = new HashMap<>();
+
+        Scope(String joined) {
+            this.joined = joined;
+        }
+    }
+}
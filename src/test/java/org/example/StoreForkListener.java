@@ -0,0 +1,44 @@
+package org.example;
+
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.ITestResult;
+
+/**
+ * Runs every test method in a {@link StoreFork} of its own.
+ *
+ * Register it in testng.xml for TestNG suites, or with
+ * {@code @ExtendWith(StoreForkListener.class)} on a JUnit class. Both run
+ * the callbacks on the thread that runs the test, which is what the
+ * thread-local fork needs. Each fork is dropped when its test ends,
+ * so a long run does not pile them up on the server.
+ */
+public final class StoreForkListener implements IInvokedMethodListener, BeforeEachCallback, AfterEachCallback {
+
+    @Override
+    public void beforeInvocation(IInvokedMethod method, ITestResult result) {
+        if (method.isTestMethod()) {
+            StoreFork.begin();
+        }
+    }
+
+    @Override
+    public void afterInvocation(IInvokedMethod method, ITestResult result) {
+        if (method.isTestMethod()) {
+            StoreFork.end();
+        }
+    }
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        StoreFork.begin();
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        StoreFork.end();
+    }
+}
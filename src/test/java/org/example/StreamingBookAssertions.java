@@ -0,0 +1,189 @@
+package org.example;
+
+import io.restassured.response.Response;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Assertions over a GET /api/books listing that read the body as a stream.
+ *
+ * <pre>
+ * Response response = api.asAdmin().get().then().statusCode(200).extract().response();
+ * StreamingBookAssertions.assertThatBooks(response)
+ *         .eachHasTitleAndAuthor()
+ *         .hasUniqueIds()
+ *         .hasCount(3)
+ *         .verify();
+ * </pre>
+ *
+ * All checks run in a single pass of {@link JsonReader} over the response
+ * stream, one book at a time, so memory does not grow with the listing.
+ * The one exception is {@link #hasUniqueIds()}, which keeps a bitmap of the
+ * ids seen: about one bit per book for the service's sequential ids.
+ */
+public final class StreamingBookAssertions {
+
+    private static final int MAX_REPORTED = 10;
+
+    private final InputStream body;
+    private final List<Check> checks = new ArrayList<>();
+    private boolean uniqueIds;
+    private long expectedCount = -1;
+
+    private StreamingBookAssertions(InputStream body) {
+        this.body = body;
+    }
+
+    /**
+     * Streams the body of a response that has not been read yet.
+     */
+    public static StreamingBookAssertions assertThatBooks(Response response) {
+        return new StreamingBookAssertions(response.asInputStream());
+    }
+
+    public static StreamingBookAssertions assertThatBooks(InputStream body) {
+        return new StreamingBookAssertions(body);
+    }
+
+    public StreamingBookAssertions each(String description, Predicate<Book> condition) {
+        checks.add(new Check(description, condition));
+        return this;
+    }
+
+    public StreamingBookAssertions eachHasTitleAndAuthor() {
+        return each("non-blank title and author", book -> !isBlank(book.getTitle()) && !isBlank(book.getAuthor()));
+    }
+
+    public StreamingBookAssertions hasUniqueIds() {
+        uniqueIds = true;
+        return this;
+    }
+
+    public StreamingBookAssertions hasCount(long expected) {
+        expectedCount = expected;
+        return this;
+    }
+
+    /**
+     * Reads the listing once, evaluating every check, and closes the stream.
+     *
+     * @return the number of books read
+     * @throws AssertionError listing each failed check with up to {@value #MAX_REPORTED} offending books
+     */
+    public long verify() {
+        long count = 0;
+        IdBitmap seen = new IdBitmap();
+        List<String> duplicates = new ArrayList<>();
+        long duplicateCount = 0;
+        try (JsonReader reader = new JsonReader(body)) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                Book book = readBook(reader);
+                count++;
+                for (Check check : checks) {
+                    check.test(book);
+                }
+                if (uniqueIds && !seen.add(book.getId()) && duplicateCount++ < MAX_REPORTED) {
+                    duplicates.add(book.toString());
+                }
+            }
+            reader.endArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        List<String> failures = new ArrayList<>();
+        if (expectedCount >= 0 && count != expectedCount) {
+            failures.add("expected " + expectedCount + " books but got " + count);
+        }
+        if (duplicateCount > 0) {
+            failures.add(duplicateCount + " duplicate ids, e.g. " + duplicates);
+        }
+        for (Check check : checks) {
+            if (check.failed > 0) {
+                failures.add(check.failed + " books without " + check.description + ", e.g. " + check.examples);
+            }
+        }
+        if (!failures.isEmpty()) {
+            throw new AssertionError(String.join("\n", failures));
+        }
+        return count;
+    }
+
+    private static Book readBook(JsonReader reader) throws IOException {
+        long id = 0;
+        String title = null;
+        String author = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonReader.Token.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id": id = reader.nextLong(); break;
+                case "title": title = reader.nextString(); break;
+                case "author": author = reader.nextString(); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new Book(id, title, author);
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private static final class Check {
+        final String description;
+        final Predicate<Book> condition;
+        final List<String> examples = new ArrayList<>();
+        long failed;
+
+        Check(String description, Predicate<Book> condition) {
+            this.description = description;
+            this.condition = condition;
+        }
+
+        void test(Book book) {
+            if (!condition.test(book) && failed++ < MAX_REPORTED) {
+                examples.add(book.toString());
+            }
+        }
+    }
+
+    /**
+     * Set of ids as a bitmap in pages of 4096 ids. The service hands out
+     * ids sequentially, so a listing costs about one bit per book.
+     */
+    private static final class IdBitmap {
+        private static final int PAGE_BITS = 12;
+
+        private final Map<Long, long[]> pages = new HashMap<>();
+        private long lastKey = Long.MIN_VALUE;
+        private long[] lastPage;
+
+        /** @return false if the id was already seen */
+        boolean add(long id) {
+            long key = id >> PAGE_BITS;
+            if (key != lastKey) {
+                lastPage = pages.computeIfAbsent(key, k -> new long[1 << (PAGE_BITS - 6)]);
+                lastKey = key;
+            }
+            int bit = (int) id & ((1 << PAGE_BITS) - 1);
+            long mask = 1L << (bit & 63);
+            long word = lastPage[bit >> 6];
+            lastPage[bit >> 6] = word | mask;
+            return (word & mask) == 0;
+        }
+    }
+}